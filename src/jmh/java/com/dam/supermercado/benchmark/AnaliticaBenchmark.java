@@ -0,0 +1,108 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.analitica.AnaliticaInventario;
+import com.dam.supermercado.model.InformeInventario;
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.model.ResumenCategoria;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: AnaliticaBenchmark
+ * ============================================
+ * Estadísticas de inventario (valor del stock por categoría, precios,
+ * stock bajo, histograma) calculadas de tres formas:
+ * - traerTodo: findAll() y sumar en Java, como hacían los paneles.
+ * - sql: las dos consultas GROUP BY de AnaliticaInventario, sin caché.
+ * - informeGuardado: el informe ya calculado (lo que ven las lecturas).
+ * traerTodo crece con el número de filas (todas viajan por la red y se
+ * convierten en objetos); sql solo devuelve una fila por categoría y tramo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnaliticaBenchmark {
+
+    private static final int UMBRAL_STOCK_BAJO = 10;
+
+    @Param({"10000", "100000"})
+    private int filas;
+
+    private HikariDataSource dataSource;
+    private ProductoRepository repository;
+    private AnaliticaInventario analitica;
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("analitica", 4);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, filas);
+        analitica = new AnaliticaInventario(repository, UMBRAL_STOCK_BAJO, BigDecimal.ONE, 0);
+        analitica.obtenerInforme();
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public void traerTodo(Blackhole bh) {
+        Map<String, ResumenCategoria> resultado = new HashMap<>();
+        Map<BigDecimal, Long> histograma = new TreeMap<>();
+        for (Producto p : repository.findAll()) {
+            int stock = p.getStock() != null ? p.getStock() : 0;
+            BigDecimal precio = p.getPrecio();
+            ResumenCategoria fila = new ResumenCategoria(p.getCategoria(), 1, stock,
+                    precio != null ? precio.multiply(BigDecimal.valueOf(stock)) : BigDecimal.ZERO,
+                    stock < UMBRAL_STOCK_BAJO ? 1 : 0, precio != null ? 1 : 0,
+                    precio != null ? precio : BigDecimal.ZERO, precio, precio);
+            resultado.merge(p.getCategoria(), fila,
+                    (a, b) -> ResumenCategoria.combinar(a.categoria(), List.of(a, b)));
+            if (precio != null) {
+                histograma.merge(precio.setScale(0, RoundingMode.FLOOR), 1L, Long::sum);
+            }
+        }
+        bh.consume(resultado);
+        bh.consume(histograma);
+    }
+
+    @Benchmark
+    public void sql(Blackhole bh) {
+        bh.consume(repository.findResumenPorCategoria(UMBRAL_STOCK_BAJO));
+        bh.consume(repository.findHistogramaPrecios(BigDecimal.ONE));
+    }
+
+    @Benchmark
+    public InformeInventario informeGuardado() {
+        return analitica.obtenerInforme();
+    }
+}
@@ -0,0 +1,126 @@
+package com.dam.supermercado.benchmark;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+
+/**
+ * ============================================
+ * BENCHMARK: BaseDatosBenchmark
+ * ============================================
+ * Crea la base de datos sobre la que se ejecutan los benchmarks.
+ * - Por defecto: H2 en memoria en modo MySQL. No necesita nada instalado,
+ *   así los benchmarks funcionan sin conexión.
+ * - Con -Dbenchmark.jdbc.url=jdbc:mysql://localhost:3306/supermercado_bench
+ *   (y opcionalmente benchmark.jdbc.usuario / benchmark.jdbc.password) se
+ *   usa un MySQL local. CUIDADO: la tabla productos de esa BD se borra y se
+ *   vuelve a crear, así que debe ser una BD solo para pruebas.
+ * El pool es HikariCP, igual que en la aplicación.
+ */
+final class BaseDatosBenchmark {
+
+    /**
+     * Mismo esquema que supermercado.sql, sin las opciones propias de MySQL
+     * (ENGINE, CHARSET, COLLATE) para que también lo acepte H2.
+     */
+    private static final String[] ESQUEMA = {
+            "DROP TABLE IF EXISTS productos",
+            "CREATE TABLE productos ("
+                    + " id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + " nombre VARCHAR(100) NOT NULL,"
+                    + " descripcion VARCHAR(255),"
+                    + " precio DECIMAL(10,2) NOT NULL,"
+                    + " stock INT DEFAULT 0,"
+                    + " categoria VARCHAR(50),"
+                    + " version BIGINT NOT NULL DEFAULT 0)",
+            "CREATE INDEX idx_categoria ON productos (categoria)",
+            "CREATE INDEX idx_nombre ON productos (nombre)",
+            "CREATE INDEX idx_precio ON productos (precio)",
+            "CREATE INDEX idx_stock ON productos (stock)",
+            "DROP TABLE IF EXISTS lotes_precios",
+            "CREATE TABLE lotes_precios ("
+                    + " id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + " motivo VARCHAR(100),"
+                    + " porcentaje DECIMAL(7,2),"
+                    + " categoria VARCHAR(50),"
+                    + " precio_minimo DECIMAL(10,2),"
+                    + " precio_maximo DECIMAL(10,2),"
+                    + " inicio DATETIME NOT NULL,"
+                    + " fin DATETIME,"
+                    + " estado VARCHAR(12) NOT NULL,"
+                    + " productos INT NOT NULL DEFAULT 0,"
+                    + " revierte BIGINT)",
+            "CREATE INDEX idx_lotes_estado ON lotes_precios (estado, inicio)",
+            "DROP TABLE IF EXISTS historial_precios",
+            "CREATE TABLE historial_precios ("
+                    + " id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + " lote BIGINT NOT NULL,"
+                    + " producto_id BIGINT NOT NULL,"
+                    + " precio_anterior DECIMAL(10,2) NOT NULL,"
+                    + " precio_nuevo DECIMAL(10,2) NOT NULL,"
+                    + " fecha DATETIME NOT NULL)",
+            "CREATE INDEX idx_historial_lote ON historial_precios (lote, producto_id)",
+            "CREATE INDEX idx_historial_producto ON historial_precios (producto_id, fecha)",
+            "CREATE INDEX idx_historial_fecha ON historial_precios (fecha)",
+            "DROP TABLE IF EXISTS invalidaciones_cache",
+            "CREATE TABLE invalidaciones_cache ("
+                    + " id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + " origen VARCHAR(36) NOT NULL,"
+                    + " ids TEXT,"
+                    + " total BOOLEAN NOT NULL DEFAULT FALSE,"
+                    + " categorias BOOLEAN NOT NULL DEFAULT FALSE,"
+                    + " todo BOOLEAN NOT NULL DEFAULT FALSE,"
+                    + " fecha DATETIME NOT NULL)",
+            "CREATE INDEX idx_invalidaciones_fecha ON invalidaciones_cache (fecha)"
+    };
+
+    private BaseDatosBenchmark() {
+    }
+
+    /**
+     * Crea un pool de conexiones. Con H2, cada nombre es una BD distinta,
+     * de modo que cada tamaño de tabla (@Param) tiene la suya.
+     */
+    static HikariDataSource crearDataSource(String nombre, int tamanoPool) {
+        return crearDataSource(nombre, tamanoPool, Map.of(), "");
+    }
+
+    /**
+     * Igual, con propiedades para el driver de MySQL (las de
+     * spring.datasource.hikari.data-source-properties) u opciones que se
+     * añaden a la URL de H2 (";CLAVE=valor"). Solo se usa lo que
+     * corresponde a la BD elegida.
+     */
+    static HikariDataSource crearDataSource(String nombre, int tamanoPool,
+                                            Map<String, String> propiedadesMysql, String opcionesH2) {
+        HikariConfig config = new HikariConfig();
+        String url = System.getProperty("benchmark.jdbc.url");
+        if (url != null) {
+            config.setJdbcUrl(url);
+            config.setUsername(System.getProperty("benchmark.jdbc.usuario", "root"));
+            config.setPassword(System.getProperty("benchmark.jdbc.password", ""));
+            propiedadesMysql.forEach(config::addDataSourceProperty);
+        } else {
+            config.setJdbcUrl("jdbc:h2:mem:" + nombre + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1" + opcionesH2);
+        }
+        config.setPoolName("bench-" + nombre);
+        config.setMaximumPoolSize(tamanoPool);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Borra y vuelve a crear la tabla productos.
+     */
+    static void crearEsquema(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.batchUpdate(ESQUEMA);
+    }
+
+    /**
+     * Vacía la tabla y reinicia el AUTO_INCREMENT (los ids vuelven a empezar en 1).
+     */
+    static void vaciar(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("TRUNCATE TABLE productos");
+    }
+}
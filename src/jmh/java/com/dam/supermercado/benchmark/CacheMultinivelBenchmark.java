@@ -0,0 +1,138 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.cache.BusInvalidacion;
+import com.dam.supermercado.cache.BusInvalidacionJdbc;
+import com.dam.supermercado.cache.BusInvalidacionLocal;
+import com.dam.supermercado.cache.CacheCompartida;
+import com.dam.supermercado.cache.CacheCompartidaMemoria;
+import com.dam.supermercado.cache.ProductoCache;
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: CacheMultinivelBenchmark
+ * ============================================
+ * Dos "instancias" (dos ProductoCache) que comparten la BD, el bus de
+ * invalidaciones y, según el modo, la L2. Cada operación lee un producto
+ * de una de las dos al azar, y el 2% invalida uno en una de ellas (lo que
+ * hace ProductoService tras escribir), que el bus propaga a la otra.
+ * TTL de la L1 de 1 segundo, para que caduquen entradas todo el rato:
+ * - L1: cada caducidad o invalidación es una consulta a la BD.
+ * - L1_L2: lo que carga una instancia lo aprovecha la otra.
+ * - L1_L2_OBSOLETO: además, las caducadas se sirven mientras se recargan
+ *   (stale-while-revalidate): el p99 debería bajar.
+ * bus=jdbc usa BusInvalidacionJdbc (una fila por invalidación, leída cada
+ * 100 ms); bus=local, BusInvalidacionLocal (sin coste).
+ * Mide el tiempo de cada operación (SampleTime): mirar p50 y p99.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(8)
+@Fork(1)
+public class CacheMultinivelBenchmark {
+
+    private static final int FILAS = 10_000;
+
+    /**
+     * Productos que se leen (los "calientes"): caben en la L1.
+     */
+    private static final int PRODUCTOS_LEIDOS = 1000;
+
+    private static final int PORCENTAJE_INVALIDACIONES = 2;
+
+    @Param({"L1", "L1_L2", "L1_L2_OBSOLETO"})
+    private String modo;
+
+    @Param({"local", "jdbc"})
+    private String bus;
+
+    private HikariDataSource dataSource;
+    private ProductoRepository repository;
+    private CacheCompartidaMemoria compartida;
+    private final List<BusInvalidacionJdbc> busesJdbc = new ArrayList<>();
+    private ProductoCache nodoA;
+    private ProductoCache nodoB;
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("cache_multinivel", 8);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, FILAS);
+
+        compartida = modo.equals("L1") ? null : new CacheCompartidaMemoria(2000);
+        long obsoletoSegundos = modo.equals("L1_L2_OBSOLETO") ? 5 : 0;
+        BusInvalidacionLocal busLocal = new BusInvalidacionLocal();
+        nodoA = crearNodo(jdbcTemplate, busLocal, obsoletoSegundos);
+        nodoB = crearNodo(jdbcTemplate, busLocal, obsoletoSegundos);
+    }
+
+    private ProductoCache crearNodo(JdbcTemplate jdbcTemplate, BusInvalidacionLocal busLocal, long obsoletoSegundos) {
+        BusInvalidacion busNodo = busLocal;
+        if (bus.equals("jdbc")) {
+            BusInvalidacionJdbc busJdbc = new BusInvalidacionJdbc(jdbcTemplate, true, 100, 1000, 60);
+            busJdbc.iniciar();
+            busesJdbc.add(busJdbc);
+            busNodo = busJdbc;
+        }
+        return new ProductoCache(true, FILAS, 1, obsoletoSegundos,
+                Optional.<CacheCompartida>ofNullable(compartida), 60, busNodo);
+    }
+
+    @TearDown(Level.Iteration)
+    public void informar() {
+        System.out.printf("%n  nodo B: %s%n", nodoB.estadisticas());
+        System.out.printf("  invalidaciones recibidas: A=%d B=%d%n",
+                nodoA.invalidacionesRecibidas(), nodoB.invalidacionesRecibidas());
+        if (compartida != null) {
+            System.out.printf("  L2: %d productos, %d operaciones%n", compartida.tamano(), compartida.operaciones());
+        }
+    }
+
+    @TearDown
+    public void cerrar() {
+        busesJdbc.forEach(BusInvalidacionJdbc::detener);
+        nodoA.detener();
+        nodoB.detener();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Optional<Producto> leerConInvalidaciones() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id = random.nextLong(1, PRODUCTOS_LEIDOS + 1);
+        ProductoCache nodo = random.nextBoolean() ? nodoA : nodoB;
+        if (random.nextInt(100) < PORCENTAJE_INVALIDACIONES) {
+            nodo.invalidarProducto(id);
+            return Optional.empty();
+        }
+        return nodo.obtenerProducto(id, repository::findById);
+    }
+}
@@ -0,0 +1,121 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.analitica.AnaliticaInventario;
+import com.dam.supermercado.busqueda.IndiceBusqueda;
+import com.dam.supermercado.cache.ProductoCache;
+import com.dam.supermercado.cambios.FeedCambios;
+import com.dam.supermercado.catalogo.CatalogoEnMemoria;
+import com.dam.supermercado.importacion.ImportadorProductos;
+import com.dam.supermercado.metricas.MetricasRepositorio;
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.precios.CriterioPrecios;
+import com.dam.supermercado.precios.LotePrecios;
+import com.dam.supermercado.precios.MotorPrecios;
+import com.dam.supermercado.repository.CargadorProductos;
+import com.dam.supermercado.repository.PreciosRepository;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.dam.supermercado.service.ProductoService;
+import com.dam.supermercado.stock.BufferStock;
+import com.dam.supermercado.stock.MotorReservasStock;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: CambioPreciosBenchmark
+ * ============================================
+ * Subir un 1% el precio de toda la tabla ("filas" productos):
+ * - bucleActual: como se hacía antes de MotorPrecios: leer los productos,
+ *   cambiar el precio en Java y llamar a actualizarProducto con cada uno
+ *   (un UPDATE y una ida y vuelta por producto).
+ * - enBloque: ProductoService.cambiarPrecios (INSERT ... SELECT al
+ *   historial + un UPDATE, en una transacción).
+ * - enBloquePorCategoria: lo mismo para una sola categoría.
+ * Cada operación es un cambio completo, así que se mide una vez por
+ * iteración (SingleShotTime). Contra MySQL:
+ *   -Dbenchmark.jdbc.url=jdbc:mysql://localhost:3306/supermercado_bench
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CambioPreciosBenchmark {
+
+    private static final BigDecimal FACTOR = new BigDecimal("1.01");
+
+    @Param({"100000"})
+    private int filas;
+
+    private HikariDataSource dataSource;
+    private ProductoService service;
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("precios_" + filas, 4);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        ProductoRepository repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, filas);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        BufferStock bufferStock = new BufferStock(repository, transactionTemplate, false, 1000, 10000, "stock-deltas.journal");
+        service = new ProductoService(repository,
+                new ProductoCache(true, 10_000, 300),
+                new CatalogoEnMemoria(repository, false),
+                new IndiceBusqueda(repository, false),
+                new MotorReservasStock(repository, bufferStock, transactionTemplate, true),
+                bufferStock,
+                new MetricasRepositorio(false, 200, 0),
+                new CargadorProductos(repository, false, 0),
+                new AnaliticaInventario(repository, 10, BigDecimal.ONE, 0),
+                new FeedCambios(false, 1, 1),
+                new ImportadorProductos(repository, transactionTemplate, 10_000, 1),
+                new MotorPrecios(new PreciosRepository(jdbcTemplate), transactionTemplate, 0, 0));
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public int bucleActual() {
+        int actualizados = 0;
+        for (Producto producto : service.obtenerTodosLosProductos()) {
+            producto.setPrecio(producto.getPrecio().multiply(FACTOR).setScale(2, RoundingMode.HALF_UP));
+            if (service.actualizarProducto(producto)) {
+                actualizados++;
+            }
+        }
+        return actualizados;
+    }
+
+    @Benchmark
+    public LotePrecios enBloque() {
+        return service.cambiarPrecios(CriterioPrecios.porTramo(BigDecimal.ZERO, null), BigDecimal.ONE, "benchmark");
+    }
+
+    @Benchmark
+    public LotePrecios enBloquePorCategoria() {
+        return service.cambiarPrecios(CriterioPrecios.porCategoria("Bebidas"), BigDecimal.ONE, "benchmark");
+    }
+}
@@ -0,0 +1,159 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.analitica.AnaliticaInventario;
+import com.dam.supermercado.busqueda.IndiceBusqueda;
+import com.dam.supermercado.cache.ProductoCache;
+import com.dam.supermercado.cambios.FeedCambios;
+import com.dam.supermercado.catalogo.CatalogoEnMemoria;
+import com.dam.supermercado.ejecucion.EjecutorPeticiones;
+import com.dam.supermercado.importacion.ImportadorProductos;
+import com.dam.supermercado.metricas.MetricasRepositorio;
+import com.dam.supermercado.pool.DataSourceLimitado;
+import com.dam.supermercado.precios.MotorPrecios;
+import com.dam.supermercado.repository.CargadorProductos;
+import com.dam.supermercado.repository.PreciosRepository;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.dam.supermercado.service.ProductoService;
+import com.dam.supermercado.stock.BufferStock;
+import com.dam.supermercado.stock.MotorReservasStock;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: CargaConcurrenteBenchmark
+ * ============================================
+ * Prueba de carga: "clientes" peticiones simultáneas, cada una con
+ * CONSULTAS_POR_CLIENTE búsquedas por id (sin caché, todas van a la BD),
+ * contra un pool de TAMANO_POOL conexiones.
+ * Compara:
+ * - hilos: un hilo virtual por cliente, o un pool de HILOS_PLATAFORMA
+ *   hilos normales (con 1000 clientes, 800 esperan en la cola).
+ * - limitado: con o sin DataSourceLimitado delante del pool.
+ * El contador "consultas" da las búsquedas por segundo.
+ * Los hilos virtuales necesitan ejecutar el benchmark con Java 21 o superior.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(1)
+@Fork(1)
+public class CargaConcurrenteBenchmark {
+
+    private static final int FILAS = 10_000;
+    private static final int TAMANO_POOL = 10;
+    private static final int HILOS_PLATAFORMA = 200;
+    private static final int CONSULTAS_POR_CLIENTE = 20;
+
+    @Param({"10", "100", "1000"})
+    private int clientes;
+
+    @Param({"virtual", "plataforma"})
+    private String hilos;
+
+    @Param({"false", "true"})
+    private boolean limitado;
+
+    private HikariDataSource dataSource;
+    private ProductoService service;
+    private ExecutorService executor;
+
+    /**
+     * Contador de búsquedas que JMH muestra como operaciones por segundo.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Contadores {
+
+        public long consultas;
+
+        @Setup(Level.Iteration)
+        public void reiniciar() {
+            consultas = 0;
+        }
+    }
+
+    @Setup
+    public void preparar() {
+        if (hilos.equals("virtual")) {
+            executor = EjecutorPeticiones.crearEjecutorVirtual();
+            if (executor == null) {
+                throw new IllegalStateException("Los hilos virtuales necesitan Java 21 o superior");
+            }
+        } else {
+            executor = EjecutorPeticiones.crearEjecutorPlataforma(HILOS_PLATAFORMA);
+        }
+
+        dataSource = BaseDatosBenchmark.crearDataSource("carga", TAMANO_POOL);
+        DataSource usado = limitado ? new DataSourceLimitado(dataSource, TAMANO_POOL, 30_000) : dataSource;
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(usado);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        ProductoRepository repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, FILAS);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(usado));
+        BufferStock bufferStock = new BufferStock(repository, transactionTemplate, false, 1000, 10000, "stock-deltas.journal");
+        service = new ProductoService(repository,
+                new ProductoCache(false, 10_000, 300),
+                new CatalogoEnMemoria(repository, false),
+                new IndiceBusqueda(repository, false),
+                new MotorReservasStock(repository, bufferStock, transactionTemplate, true),
+                bufferStock,
+                new MetricasRepositorio(false, 200, 0),
+                new CargadorProductos(repository, false, 0),
+                new AnaliticaInventario(repository, 10, BigDecimal.ONE, 0),
+                new FeedCambios(false, 1, 1),
+                new ImportadorProductos(repository, transactionTemplate, 10_000, 1),
+                new MotorPrecios(new PreciosRepository(jdbcTemplate), transactionTemplate, 0, 0));
+    }
+
+    @TearDown
+    public void cerrar() {
+        executor.shutdownNow();
+        dataSource.close();
+    }
+
+    /**
+     * Una ronda: lanza todos los clientes a la vez y espera a que terminen.
+     */
+    @Benchmark
+    public void ronda(Contadores contadores) {
+        CompletableFuture<?>[] peticiones = new CompletableFuture<?>[clientes];
+        for (int i = 0; i < clientes; i++) {
+            peticiones[i] = CompletableFuture.runAsync(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < CONSULTAS_POR_CLIENTE; j++) {
+                    service.obtenerProductoPorId(random.nextLong(1, FILAS + 1));
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(peticiones).join();
+        contadores.consultas += (long) clientes * CONSULTAS_POR_CLIENTE;
+    }
+}
@@ -0,0 +1,125 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.repository.CargadorProductos;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: CargaPorIdBenchmark
+ * ============================================
+ * 32 hilos buscando productos por ID a la vez, como las pantallas de
+ * carrito y pedidos:
+ * - porId: una búsqueda cada vez, con o sin CargadorProductos ("agrupar").
+ * - carrito: un carrito de LINEAS_CARRITO productos, línea a línea o con
+ *   un solo findAllById (una consulta por carrito; no pasa por el cargador
+ *   y no aparece en el recuento). Resultados en carritos por segundo.
+ * Al final de cada iteración se imprime cuántas búsquedas se pidieron y
+ * cuántas consultas llegaron de verdad a la BD (viajes de ida y vuelta).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class CargaPorIdBenchmark {
+
+    private static final int FILAS = 10_000;
+    private static final int LINEAS_CARRITO = 20;
+
+    @Param({"false", "true"})
+    private boolean agrupar;
+
+    /**
+     * Rango de ids consultados: con pocos, muchas búsquedas coinciden y se deduplican.
+     */
+    @Param({"100", "10000"})
+    private int ids;
+
+    private HikariDataSource dataSource;
+    private ProductoRepository repository;
+    private CargadorProductos cargador;
+    private Map<String, Long> anteriores;
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("cargaporid", 8);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, FILAS);
+        cargador = new CargadorProductos(repository, agrupar, 200);
+        anteriores = cargador.estadisticas();
+    }
+
+    @TearDown(Level.Iteration)
+    public void informar() {
+        Map<String, Long> actuales = cargador.estadisticas();
+        long peticiones = actuales.get("peticiones") - anteriores.get("peticiones");
+        long consultas = actuales.get("consultas") - anteriores.get("consultas");
+        long deduplicadas = actuales.get("deduplicadas") - anteriores.get("deduplicadas");
+        System.out.printf("%n  búsquedas=%d consultas BD=%d deduplicadas=%d (%.1f búsquedas por consulta)%n",
+                peticiones, consultas, deduplicadas, consultas == 0 ? 0.0 : (double) peticiones / consultas);
+        anteriores = actuales;
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Optional<Producto> porId() {
+        return cargador.cargar(ThreadLocalRandom.current().nextLong(1, ids + 1));
+    }
+
+    @Benchmark
+    public int carritoLineaALinea() {
+        int encontrados = 0;
+        for (Long id : carrito()) {
+            if (cargador.cargar(id).isPresent()) {
+                encontrados++;
+            }
+        }
+        return encontrados;
+    }
+
+    @Benchmark
+    public List<Producto> carritoFindAllById() {
+        return repository.findAllById(carrito());
+    }
+
+    private List<Long> carrito() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> lineas = new ArrayList<>(LINEAS_CARRITO);
+        for (int i = 0; i < LINEAS_CARRITO; i++) {
+            lineas.add(random.nextLong(1, ids + 1));
+        }
+        return lineas;
+    }
+}
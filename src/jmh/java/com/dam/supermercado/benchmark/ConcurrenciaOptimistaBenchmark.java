@@ -0,0 +1,148 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.analitica.AnaliticaInventario;
+import com.dam.supermercado.busqueda.IndiceBusqueda;
+import com.dam.supermercado.cache.ProductoCache;
+import com.dam.supermercado.cambios.FeedCambios;
+import com.dam.supermercado.catalogo.CatalogoEnMemoria;
+import com.dam.supermercado.importacion.ImportadorProductos;
+import com.dam.supermercado.metricas.MetricasRepositorio;
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.model.ResultadoActualizacion;
+import com.dam.supermercado.precios.MotorPrecios;
+import com.dam.supermercado.repository.CargadorProductos;
+import com.dam.supermercado.repository.PreciosRepository;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.dam.supermercado.service.ProductoService;
+import com.dam.supermercado.stock.BufferStock;
+import com.dam.supermercado.stock.MotorReservasStock;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: ConcurrenciaOptimistaBenchmark
+ * ============================================
+ * 16 hilos suben el precio de productos al azar entre "productos" posibles
+ * (1 = todos pelean por la misma fila; 10000 = casi nunca coinciden):
+ * - optimista: ProductoService.modificarProducto (leer sin bloquear,
+ *   UPDATE ... AND version = ?, y releer y reintentar si hay conflicto).
+ * - pesimista: SELECT ... FOR UPDATE y UPDATE en una transacción; los
+ *   demás hilos esperan a que termine.
+ * "agotados" cuenta las veces que el optimista se rinde tras agotar los
+ * reintentos. Con poca contención el optimista gana porque no mantiene
+ * bloqueos ni transacciones; con una sola fila muy disputada, los
+ * reintentos se acumulan y el pesimista puede salir mejor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class ConcurrenciaOptimistaBenchmark {
+
+    private static final BigDecimal CENTIMO = new BigDecimal("0.01");
+
+    @Param({"1", "16", "10000"})
+    private int productos;
+
+    private HikariDataSource dataSource;
+    private ProductoRepository repository;
+    private ProductoService service;
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Actualizaciones que el optimista no consiguió guardar.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Contadores {
+
+        public long agotados;
+
+        @Setup(Level.Iteration)
+        public void reiniciar() {
+            agotados = 0;
+        }
+    }
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("optimista", 32);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, productos);
+
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        BufferStock bufferStock = new BufferStock(repository, transactionTemplate, false, 1000, 10000, "stock-deltas.journal");
+        service = new ProductoService(repository,
+                new ProductoCache(false, 10_000, 300),
+                new CatalogoEnMemoria(repository, false),
+                new IndiceBusqueda(repository, false),
+                new MotorReservasStock(repository, bufferStock, transactionTemplate, true),
+                bufferStock,
+                new MetricasRepositorio(false, 200, 0),
+                new CargadorProductos(repository, false, 0),
+                new AnaliticaInventario(repository, 10, BigDecimal.ONE, 0),
+                new FeedCambios(false, 1, 1),
+                new ImportadorProductos(repository, transactionTemplate, 10_000, 1),
+                new MotorPrecios(new PreciosRepository(jdbcTemplate), transactionTemplate, 0, 0));
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    private long idAleatorio() {
+        return ThreadLocalRandom.current().nextLong(1, productos + 1);
+    }
+
+    private static void subirPrecio(Producto producto) {
+        producto.setPrecio(producto.getPrecio().add(CENTIMO));
+    }
+
+    @Benchmark
+    public ResultadoActualizacion optimista(Contadores contadores) {
+        ResultadoActualizacion resultado = service.modificarProducto(idAleatorio(),
+                ConcurrenciaOptimistaBenchmark::subirPrecio);
+        if (resultado == ResultadoActualizacion.CONFLICTO) {
+            contadores.agotados++;
+        }
+        return resultado;
+    }
+
+    @Benchmark
+    public ResultadoActualizacion pesimista() {
+        long id = idAleatorio();
+        return transactionTemplate.execute(estado -> {
+            Producto producto = repository.findByIdForUpdate(id).orElseThrow();
+            subirPrecio(producto);
+            return service.actualizarProductoConVersion(producto);
+        });
+    }
+}
@@ -0,0 +1,175 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: DescripcionDiferidaBenchmark
+ * ============================================
+ * Listados sin descripción (se carga al pedirla) frente a listados que
+ * la traen en cada fila (findPageAfterId, que la sigue leyendo):
+ * - listarSinDescripcion / listarConDescripcion: solo el listado.
+ * - listarYLeerDescripciones: el listado y después todas las
+ *   descripciones (una consulta por bloque de 512): el peor caso.
+ * El contador "filas" da las filas por segundo de cada uno.
+ * Al arrancar imprime la memoria que ocupa cada lista por fila (medida
+ * tras un GC, aproximada) y los bytes de datos por fila que se
+ * transfieren; contra MySQL, también los Bytes_sent reales:
+ *   -Dbenchmark.jdbc.url=jdbc:mysql://localhost:3306/supermercado_bench
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DescripcionDiferidaBenchmark {
+
+    @Param({"10000", "100000"})
+    private int filas;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ProductoRepository repository;
+
+    /**
+     * Filas leídas, que JMH muestra como filas por segundo.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Contadores {
+
+        public long filas;
+
+        @Setup(Level.Iteration)
+        public void reiniciar() {
+            filas = 0;
+        }
+    }
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("descripcion_" + filas, 4);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, filas);
+        imprimirMemoria();
+        imprimirBytes();
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    private void imprimirMemoria() {
+        long base = memoriaUsada();
+        List<Producto> sinDescripcion = repository.findAll();
+        long conSinDescripcion = memoriaUsada();
+        List<Producto> conDescripcion = repository.findPageAfterId(null, filas);
+        long conAmbas = memoriaUsada();
+        System.out.printf("%n  memoria por fila: sin descripción=%d bytes, con descripción=%d bytes%n",
+                (conSinDescripcion - base) / filas, (conAmbas - conSinDescripcion) / filas);
+        // Mantiene vivas las dos listas hasta después de medir
+        if (sinDescripcion.size() + conDescripcion.size() != 2L * filas) {
+            throw new IllegalStateException("Faltan filas");
+        }
+    }
+
+    private static long memoriaUsada() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Bytes de datos por fila (sin las cabeceras del protocolo), contados
+     * como en ProyeccionesBenchmark.
+     */
+    private void imprimirBytes() {
+        long sinDescripcion = 0;
+        long descripciones = 0;
+        for (Producto p : repository.findPageAfterId(null, filas)) {
+            sinDescripcion += 8 + bytes(p.getNombre()) + 8 + 4 + bytes(p.getCategoria()) + 8;
+            descripciones += bytes(p.getDescripcion());
+        }
+        System.out.printf("  bytes de datos por fila: sin descripción=%d con descripción=%d%n",
+                sinDescripcion / filas, (sinDescripcion + descripciones) / filas);
+
+        long antes = bytesEnviadosMySql();
+        if (antes < 0) {
+            return;
+        }
+        repository.findAll();
+        long medio = bytesEnviadosMySql();
+        repository.findPageAfterId(null, filas);
+        long despues = bytesEnviadosMySql();
+        System.out.printf("  Bytes_sent de MySQL: sin descripción=%d con descripción=%d%n", medio - antes, despues - medio);
+    }
+
+    private static long bytes(String texto) {
+        return texto == null ? 0 : texto.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Bytes_sent global del servidor, o -1 si no es MySQL.
+     */
+    private long bytesEnviadosMySql() {
+        if (System.getProperty("benchmark.jdbc.url") == null) {
+            return -1;
+        }
+        Map<String, Object> fila = jdbcTemplate.queryForMap("SHOW GLOBAL STATUS LIKE 'Bytes_sent'");
+        return Long.parseLong(String.valueOf(fila.get("Value")));
+    }
+
+    @Benchmark
+    public List<Producto> listarSinDescripcion(Contadores contadores) {
+        List<Producto> productos = repository.findAll();
+        contadores.filas += productos.size();
+        return productos;
+    }
+
+    @Benchmark
+    public List<Producto> listarConDescripcion(Contadores contadores) {
+        List<Producto> productos = repository.findPageAfterId(null, filas);
+        contadores.filas += productos.size();
+        return productos;
+    }
+
+    @Benchmark
+    public long listarYLeerDescripciones(Contadores contadores) {
+        List<Producto> productos = repository.findAll();
+        long caracteres = 0;
+        for (Producto producto : productos) {
+            String descripcion = producto.getDescripcion();
+            caracteres += descripcion == null ? 0 : descripcion.length();
+        }
+        contadores.filas += productos.size();
+        return caracteres;
+    }
+}
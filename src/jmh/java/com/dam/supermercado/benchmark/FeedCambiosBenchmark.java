@@ -0,0 +1,146 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.analitica.AnaliticaInventario;
+import com.dam.supermercado.busqueda.IndiceBusqueda;
+import com.dam.supermercado.cache.ProductoCache;
+import com.dam.supermercado.cambios.EventoCambio;
+import com.dam.supermercado.cambios.FeedCambios;
+import com.dam.supermercado.catalogo.CatalogoEnMemoria;
+import com.dam.supermercado.importacion.ImportadorProductos;
+import com.dam.supermercado.metricas.MetricasRepositorio;
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.precios.MotorPrecios;
+import com.dam.supermercado.repository.CargadorProductos;
+import com.dam.supermercado.repository.PreciosRepository;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.dam.supermercado.service.ProductoService;
+import com.dam.supermercado.stock.BufferStock;
+import com.dam.supermercado.stock.MotorReservasStock;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: FeedCambiosBenchmark
+ * ============================================
+ * Coste de mantener al día una copia local de los productos (como la de la
+ * tienda online) tras "cambios" escrituras:
+ * - releerTodo: volver a pedir toda la tabla, como hacían los consumidores.
+ * - aplicarCambios: pedir a FeedCambios los eventos desde la última
+ *   secuencia procesada y aplicar solo esos.
+ * Las escrituras se hacen igual en los dos casos; la diferencia es solo
+ * la sincronización.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeedCambiosBenchmark {
+
+    @Param({"10000", "100000"})
+    private int filas;
+
+    @Param({"10"})
+    private int cambios;
+
+    private HikariDataSource dataSource;
+    private ProductoRepository repository;
+    private ProductoService service;
+    private FeedCambios feed;
+
+    private final Map<Long, Producto> copiaLocal = new HashMap<>();
+    private long marca;
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("cambios", 4);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, filas);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        feed = new FeedCambios(true, 8192, 1024);
+        BufferStock bufferStock = new BufferStock(repository, transactionTemplate, false, 1000, 10000, "stock-deltas.journal");
+        service = new ProductoService(repository,
+                new ProductoCache(false, 10_000, 300),
+                new CatalogoEnMemoria(repository, false),
+                new IndiceBusqueda(repository, false),
+                new MotorReservasStock(repository, bufferStock, transactionTemplate, true),
+                bufferStock,
+                new MetricasRepositorio(false, 200, 0),
+                new CargadorProductos(repository, false, 0),
+                new AnaliticaInventario(repository, 10, BigDecimal.ONE, 0),
+                feed,
+                new ImportadorProductos(repository, transactionTemplate, 10_000, 1),
+                new MotorPrecios(new PreciosRepository(jdbcTemplate), transactionTemplate, 0, 0));
+
+        repository.findAll().forEach(p -> copiaLocal.put(p.getId(), p));
+        marca = feed.ultimaSecuencia();
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    private void escribir() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < cambios; i++) {
+            Producto producto = new Producto(copiaLocal.get(random.nextLong(1, filas + 1)));
+            producto.setPrecio(BigDecimal.valueOf(random.nextInt(100, 10_000), 2));
+            service.actualizarProducto(producto);
+        }
+    }
+
+    @Benchmark
+    public int releerTodo() {
+        escribir();
+        copiaLocal.clear();
+        repository.findAll().forEach(p -> copiaLocal.put(p.getId(), p));
+        return copiaLocal.size();
+    }
+
+    @Benchmark
+    public int aplicarCambios() {
+        escribir();
+        List<EventoCambio> eventos = feed.cambiosDesde(marca).orElseThrow();
+        for (EventoCambio evento : eventos) {
+            switch (evento.tipo()) {
+                case ALTA, MODIFICACION -> copiaLocal.put(evento.productoId(), evento.producto());
+                case BAJA -> copiaLocal.remove(evento.productoId());
+                case STOCK -> {
+                    Producto producto = copiaLocal.get(evento.productoId());
+                    producto.setStock(producto.getStock() + evento.deltaStock());
+                }
+                // cambiosDesde no devuelve RESINCRONIZAR: avisa con Optional.empty()
+                case RESINCRONIZAR -> { }
+            }
+            marca = evento.secuencia();
+        }
+        return copiaLocal.size();
+    }
+}
@@ -0,0 +1,135 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ============================================
+ * BENCHMARK: GeneradorDatos
+ * ============================================
+ * Herramienta para poblar la tabla productos con muchas filas a partir
+ * de los datos de ejemplo de supermercado.sql.
+ * Lee las tuplas de los INSERT del script, y genera N productos
+ * repitiéndolas con pequeñas variaciones:
+ * - nombre: "Leche Entera 1L #1234"
+ * - precio: el original ±20%
+ * - stock: aleatorio entre 0 y 200 (un 10% sin stock)
+ * - categoría y descripción: las originales
+ * La semilla es fija, así que dos ejecuciones generan los mismos datos.
+ * USO DESDE LÍNEA DE COMANDOS (contra un MySQL local ya creado con supermercado.sql):
+ *   java ... GeneradorDatos jdbc:mysql://localhost:3306/supermercado root 1234 1000000
+ */
+public final class GeneradorDatos {
+
+    private static final Pattern TUPLA = Pattern.compile(
+            "\\('((?:[^']|'')*)',\\s*'((?:[^']|'')*)',\\s*([0-9.]+),\\s*(\\d+),\\s*'((?:[^']|'')*)'\\)");
+
+    private static final int FILAS_POR_LOTE = 5_000;
+
+    private final List<Producto> muestras;
+
+    private GeneradorDatos(List<Producto> muestras) {
+        if (muestras.isEmpty()) {
+            throw new IllegalStateException("No se encontraron productos de ejemplo en supermercado.sql");
+        }
+        this.muestras = muestras;
+    }
+
+    /**
+     * Carga los productos de ejemplo de supermercado.sql (se busca en el
+     * directorio actual, o en la ruta indicada con -Dbenchmark.sql=...).
+     */
+    static GeneradorDatos desdeScript() {
+        Path script = Path.of(System.getProperty("benchmark.sql", "supermercado.sql"));
+        try {
+            String contenido = Files.readString(script, StandardCharsets.UTF_8);
+            List<Producto> muestras = new ArrayList<>();
+            Matcher m = TUPLA.matcher(contenido);
+            while (m.find()) {
+                muestras.add(new Producto(
+                        m.group(1).replace("''", "'"),
+                        m.group(2).replace("''", "'"),
+                        new BigDecimal(m.group(3)),
+                        Integer.valueOf(m.group(4)),
+                        m.group(5).replace("''", "'")));
+            }
+            return new GeneradorDatos(muestras);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo leer " + script.toAbsolutePath(), e);
+        }
+    }
+
+    int numeroDeMuestras() {
+        return muestras.size();
+    }
+
+    /**
+     * Genera el producto número i (determinista para un mismo i).
+     */
+    Producto generar(long i) {
+        Producto base = muestras.get((int) (i % muestras.size()));
+        Random random = new Random(i * 31 + 7);
+        BigDecimal factor = BigDecimal.valueOf(80 + random.nextInt(41), 2);
+        BigDecimal precio = base.getPrecio().multiply(factor).setScale(2, RoundingMode.HALF_UP).max(new BigDecimal("0.01"));
+        int stock = random.nextInt(10) == 0 ? 0 : random.nextInt(200) + 1;
+        return new Producto(base.getNombre() + " #" + i, base.getDescripcion(), precio, stock, base.getCategoria());
+    }
+
+    /**
+     * Inserta "filas" productos generados usando el saveAll por lotes del repositorio.
+     */
+    void poblar(ProductoRepository repository, long filas) {
+        List<Producto> lote = new ArrayList<>(FILAS_POR_LOTE);
+        for (long i = 0; i < filas; i++) {
+            lote.add(generar(i));
+            if (lote.size() == FILAS_POR_LOTE) {
+                repository.saveAll(lote);
+                lote = new ArrayList<>(FILAS_POR_LOTE);
+            }
+        }
+        if (!lote.isEmpty()) {
+            repository.saveAll(lote);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 4) {
+            System.err.println("Uso: GeneradorDatos <url-jdbc> <usuario> <password> <filas>");
+            System.exit(1);
+        }
+        long filas = Long.parseLong(args[3]);
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(args[0]);
+        config.setUsername(args[1]);
+        config.setPassword(args[2]);
+        config.setMaximumPoolSize(2);
+
+        try (HikariDataSource dataSource = new HikariDataSource(config)) {
+            ProductoRepository repository = new ProductoRepository(new JdbcTemplate(dataSource), FILAS_POR_LOTE);
+            GeneradorDatos generador = desdeScript();
+
+            long inicio = System.nanoTime();
+            generador.poblar(repository, filas);
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+
+            System.out.printf("Insertados %d productos (a partir de %d de ejemplo) en %.1f s (%.0f filas/s)%n",
+                    filas, generador.numeroDeMuestras(), segundos, filas / segundos);
+        }
+    }
+}
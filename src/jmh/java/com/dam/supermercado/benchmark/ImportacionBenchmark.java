@@ -0,0 +1,120 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.importacion.ExportadorProductos;
+import com.dam.supermercado.importacion.ImportadorProductos;
+import com.dam.supermercado.importacion.ResultadoImportacion;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: ImportacionBenchmark
+ * ============================================
+ * Importación y exportación completas de un fichero de "filas" productos,
+ * en CSV y en JSON. El contador "registros" da los registros por segundo
+ * (multiplicado por 60, los registros por minuto).
+ * Al importar, los registros llevan id, así que cada vuelta actualiza las
+ * mismas filas (INSERT ... ON DUPLICATE KEY UPDATE) y la tabla no crece.
+ * "intervaloCommit" permite ver el efecto del tamaño de cada transacción.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ImportacionBenchmark {
+
+    @Param({"100000"})
+    private int filas;
+
+    @Param({"csv", "json"})
+    private String formato;
+
+    @Param({"1000", "10000"})
+    private int intervaloCommit;
+
+    private HikariDataSource dataSource;
+    private Path fichero;
+    private Path exportado;
+    private ImportadorProductos importador;
+    private ExportadorProductos exportador;
+
+    /**
+     * Registros procesados, que JMH muestra como registros por segundo.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Contadores {
+
+        public long registros;
+
+        @Setup(Level.Iteration)
+        public void reiniciar() {
+            registros = 0;
+        }
+    }
+
+    @Setup
+    public void preparar() throws IOException {
+        dataSource = BaseDatosBenchmark.crearDataSource("importacion", 4);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        ProductoRepository repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, filas);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        importador = new ImportadorProductos(repository, transactionTemplate, intervaloCommit, 0);
+        exportador = new ExportadorProductos(repository);
+
+        Path directorio = Files.createTempDirectory("importacion");
+        fichero = directorio.resolve("catalogo." + formato);
+        exportado = directorio.resolve("exportado." + formato);
+        exportador.exportar(fichero, null);
+        System.out.printf("%n  fichero %s: %d bytes%n", fichero.getFileName(), Files.size(fichero));
+    }
+
+    @TearDown
+    public void cerrar() throws IOException {
+        dataSource.close();
+        Files.deleteIfExists(fichero);
+        Files.deleteIfExists(exportado);
+        Files.deleteIfExists(fichero.getParent());
+    }
+
+    @Benchmark
+    public ResultadoImportacion importar(Contadores contadores) {
+        ResultadoImportacion resultado = importador.importar(fichero, null);
+        contadores.registros += resultado.progreso().registros();
+        return resultado;
+    }
+
+    @Benchmark
+    public long exportar(Contadores contadores) {
+        long exportados = exportador.exportar(exportado, null);
+        contadores.registros += exportados;
+        return exportados;
+    }
+}
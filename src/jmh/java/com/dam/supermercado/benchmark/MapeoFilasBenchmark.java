@@ -0,0 +1,79 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.model.ProductoCompacto;
+import com.dam.supermercado.model.ProductosColumnares;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: MapeoFilasBenchmark
+ * ============================================
+ * Compara las tres formas de leer la tabla completa:
+ * - findAll():          List<Producto> (Long, Integer y BigDecimal por fila)
+ * - findAllCompactos(): List<ProductoCompacto> (primitivos, precio en céntimos)
+ * - findAllColumnar():  ProductosColumnares (un array por columna)
+ * Cada operación lee "filas" filas. Para obtener las métricas por fila:
+ * - filas/segundo       = ops/s × filas
+ * - bytes por fila      = gc.alloc.rate.norm / filas   (requiere -prof gc)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapeoFilasBenchmark {
+
+    @Param({"100000"})
+    private int filas;
+
+    private HikariDataSource dataSource;
+    private ProductoRepository repository;
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("mapeo_" + filas, 2);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, filas);
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<Producto> findAll() {
+        return repository.findAll();
+    }
+
+    @Benchmark
+    public List<ProductoCompacto> findAllCompactos() {
+        return repository.findAllCompactos();
+    }
+
+    @Benchmark
+    public ProductosColumnares findAllColumnar() {
+        return repository.findAllColumnar();
+    }
+}
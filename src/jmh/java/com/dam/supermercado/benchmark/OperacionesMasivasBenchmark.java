@@ -0,0 +1,127 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.model.ResultadoActualizacion;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: OperacionesMasivasBenchmark
+ * ============================================
+ * Compara la carga de productos fila a fila (save() en un bucle, como
+ * se hacía antes) con saveAll() y updateAll() en lotes de distinto tamaño.
+ * Cada invocación escribe FILAS productos; gracias a @OperationsPerInvocation
+ * el resultado sale en filas por segundo.
+ * Contra MySQL, la diferencia real depende de rewriteBatchedStatements=true
+ * en la URL (-Dbenchmark.jdbc.url=...&rewriteBatchedStatements=true).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OperacionesMasivasBenchmark {
+
+    private static final int FILAS = 5_000;
+
+    @Param({"100", "1000"})
+    private int tamanoLote;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ProductoRepository repository;
+    private GeneradorDatos generador;
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("masivas", 2);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, tamanoLote);
+        generador = GeneradorDatos.desdeScript();
+    }
+
+    /**
+     * Se vacía la tabla en cada iteración para que no crezca sin límite.
+     */
+    @Setup(Level.Iteration)
+    public void vaciar() {
+        BaseDatosBenchmark.vaciar(jdbcTemplate);
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    private List<Producto> nuevos() {
+        List<Producto> productos = new ArrayList<>(FILAS);
+        for (int i = 0; i < FILAS; i++) {
+            productos.add(generador.generar(i));
+        }
+        return productos;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILAS)
+    public List<Producto> saveFilaAFila() {
+        List<Producto> productos = nuevos();
+        for (Producto producto : productos) {
+            repository.save(producto);
+        }
+        return productos;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILAS)
+    public List<Producto> saveAll() {
+        List<Producto> productos = nuevos();
+        repository.saveAll(productos);
+        return productos;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILAS)
+    public int updateFilaAFila() {
+        List<Producto> productos = repository.saveAll(nuevos()).stream().toList();
+        int filas = 0;
+        for (Producto producto : productos) {
+            producto.setStock(producto.getStock() + 1);
+            if (repository.update(producto) == ResultadoActualizacion.ACTUALIZADO) {
+                filas++;
+            }
+        }
+        return filas;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILAS)
+    public int updateAll() {
+        List<Producto> productos = repository.saveAll(nuevos()).stream().toList();
+        for (Producto producto : productos) {
+            producto.setStock(producto.getStock() + 1);
+        }
+        return repository.updateAll(productos);
+    }
+}
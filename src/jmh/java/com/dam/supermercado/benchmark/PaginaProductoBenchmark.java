@@ -0,0 +1,116 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.analitica.AnaliticaInventario;
+import com.dam.supermercado.busqueda.IndiceBusqueda;
+import com.dam.supermercado.cache.ProductoCache;
+import com.dam.supermercado.cambios.FeedCambios;
+import com.dam.supermercado.catalogo.CatalogoEnMemoria;
+import com.dam.supermercado.ejecucion.EjecutorPeticiones;
+import com.dam.supermercado.importacion.ImportadorProductos;
+import com.dam.supermercado.metricas.MetricasRepositorio;
+import com.dam.supermercado.model.PaginaProducto;
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.precios.MotorPrecios;
+import com.dam.supermercado.repository.CargadorProductos;
+import com.dam.supermercado.repository.PreciosRepository;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.dam.supermercado.service.ProductoService;
+import com.dam.supermercado.service.ProductoServiceAsync;
+import com.dam.supermercado.stock.BufferStock;
+import com.dam.supermercado.stock.MotorReservasStock;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: PaginaProductoBenchmark
+ * ============================================
+ * Latencia de montar la ficha de un producto (producto + relacionados +
+ * categorías) con las tres consultas en secuencia o en paralelo con
+ * ProductoServiceAsync. Sin caché, para que las tres vayan a la BD.
+ * Con H2 en memoria cada consulta tarda microsegundos y el coste de
+ * cambiar de hilo pesa mucho; la diferencia real se ve contra MySQL:
+ *   -Dbenchmark.jdbc.url=jdbc:mysql://localhost:3306/supermercado_bench
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaginaProductoBenchmark {
+
+    private static final int FILAS = 10_000;
+    private static final int RELACIONADOS = 10;
+
+    private HikariDataSource dataSource;
+    private ProductoService service;
+    private EjecutorPeticiones ejecutor;
+    private ProductoServiceAsync serviceAsync;
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("pagina", 8);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        ProductoRepository repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, FILAS);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        BufferStock bufferStock = new BufferStock(repository, transactionTemplate, false, 1000, 10000, "stock-deltas.journal");
+        service = new ProductoService(repository,
+                new ProductoCache(false, 10_000, 300),
+                new CatalogoEnMemoria(repository, false),
+                new IndiceBusqueda(repository, false),
+                new MotorReservasStock(repository, bufferStock, transactionTemplate, true),
+                bufferStock,
+                new MetricasRepositorio(false, 200, 0),
+                new CargadorProductos(repository, false, 0),
+                new AnaliticaInventario(repository, 10, BigDecimal.ONE, 0),
+                new FeedCambios(false, 1, 1),
+                new ImportadorProductos(repository, transactionTemplate, 10_000, 1),
+                new MotorPrecios(new PreciosRepository(jdbcTemplate), transactionTemplate, 0, 0));
+        ejecutor = new EjecutorPeticiones(true, 64);
+        serviceAsync = new ProductoServiceAsync(service, ejecutor, 8, 256, 2000);
+    }
+
+    @TearDown
+    public void cerrar() {
+        ejecutor.cerrar();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Optional<PaginaProducto> secuencial() {
+        Long id = ThreadLocalRandom.current().nextLong(1, FILAS + 1);
+        Optional<Producto> producto = service.obtenerProductoPorId(id);
+        List<Producto> relacionados = service.obtenerProductosRelacionados(id, RELACIONADOS);
+        List<String> categorias = service.obtenerCategorias();
+        return producto.map(p -> new PaginaProducto(p, relacionados, categorias));
+    }
+
+    @Benchmark
+    public Optional<PaginaProducto> paralelo() {
+        Long id = ThreadLocalRandom.current().nextLong(1, FILAS + 1);
+        return serviceAsync.obtenerPaginaProducto(id, RELACIONADOS).join();
+    }
+}
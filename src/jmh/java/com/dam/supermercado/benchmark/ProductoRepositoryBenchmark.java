@@ -0,0 +1,105 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.model.ResultadoActualizacion;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: ProductoRepositoryBenchmark
+ * ============================================
+ * Mide los métodos más usados de ProductoRepository con distintos
+ * tamaños de tabla.
+ * - Throughput: operaciones por milisegundo.
+ * - SampleTime: distribución de latencias (p50, p90, p99, p99.9, máx).
+ * - Con -prof gc (activado en el perfil "benchmark") JMH añade
+ *   gc.alloc.rate.norm: bytes asignados por operación.
+ * save y update escriben en la tabla, así que findAll y las búsquedas
+ * verán algunas filas más al final de la medición; con los tamaños
+ * usados el efecto es despreciable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductoRepositoryBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int filas;
+
+    private HikariDataSource dataSource;
+    private ProductoRepository repository;
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("repo_" + filas, 4);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, filas);
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    private long idAleatorio() {
+        return ThreadLocalRandom.current().nextLong(1, filas + 1);
+    }
+
+    @Benchmark
+    public Optional<Producto> findById() {
+        return repository.findById(idAleatorio());
+    }
+
+    @Benchmark
+    public List<Producto> findAll() {
+        return repository.findAll();
+    }
+
+    @Benchmark
+    public List<Producto> findByCategoria() {
+        return repository.findByCategoria("Lácteos");
+    }
+
+    @Benchmark
+    public List<Producto> findByNombreContaining() {
+        return repository.findByNombreContaining("leche");
+    }
+
+    @Benchmark
+    public Producto save() {
+        return repository.save(new Producto("Producto benchmark", "Insertado por JMH",
+                new BigDecimal("1.99"), 10, "Benchmark"));
+    }
+
+    @Benchmark
+    public ResultadoActualizacion update() {
+        long id = idAleatorio();
+        return repository.update(new Producto(id, "Producto actualizado " + id, "Actualizado por JMH",
+                new BigDecimal("2.49"), ThreadLocalRandom.current().nextInt(200), "Lácteos"));
+    }
+}
@@ -0,0 +1,152 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.analitica.AnaliticaInventario;
+import com.dam.supermercado.busqueda.IndiceBusqueda;
+import com.dam.supermercado.cache.ProductoCache;
+import com.dam.supermercado.cambios.FeedCambios;
+import com.dam.supermercado.catalogo.CatalogoEnMemoria;
+import com.dam.supermercado.importacion.ImportadorProductos;
+import com.dam.supermercado.metricas.InstrumentacionRepositorio;
+import com.dam.supermercado.metricas.MetricasRepositorio;
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.precios.MotorPrecios;
+import com.dam.supermercado.repository.CargadorProductos;
+import com.dam.supermercado.repository.PreciosRepository;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.dam.supermercado.service.ProductoService;
+import com.dam.supermercado.stock.BufferStock;
+import com.dam.supermercado.stock.MotorReservasStock;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: ProductoServiceBenchmark
+ * ============================================
+ * Mide ProductoService con y sin la caché de lectura, y con y sin el
+ * catálogo en memoria y el índice de búsqueda, y con y sin la
+ * instrumentación de métricas del repositorio.
+ * "ids" limita el rango de ids consultados: con 1000 ids distintos y una
+ * caché de 10000 entradas casi todo son aciertos; con toda la tabla la
+ * caché trabaja al límite.
+ * filas=1000000 mide el catálogo y la búsqueda a escala de producción
+ * (la carga inicial tarda; para solo esa escala:
+ *   mvn -P benchmark test-compile exec:exec -Djmh.incluir="ProductoServiceBenchmark -p filas=1000000").
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductoServiceBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int filas;
+
+    @Param({"1000", "100000"})
+    private int ids;
+
+    @Param({"false", "true"})
+    private boolean enMemoria;
+
+    /**
+     * Con el repositorio envuelto por InstrumentacionRepositorio, para medir su coste.
+     */
+    @Param({"false", "true"})
+    private boolean instrumentado;
+
+    private HikariDataSource dataSource;
+    private ProductoService service;
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("service_" + filas, 4);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        ProductoRepository repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, filas);
+        MetricasRepositorio metricas = new MetricasRepositorio(instrumentado, 200, 0);
+        if (instrumentado) {
+            repository = InstrumentacionRepositorio.instrumentar(repository, metricas);
+        }
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        BufferStock bufferStock = new BufferStock(repository, transactionTemplate, false, 1000, 10000, "stock-deltas.journal");
+        service = new ProductoService(repository,
+                new ProductoCache(enMemoria, 10_000, 300),
+                new CatalogoEnMemoria(repository, enMemoria),
+                new IndiceBusqueda(repository, enMemoria),
+                new MotorReservasStock(repository, bufferStock, transactionTemplate, true),
+                bufferStock,
+                metricas,
+                new CargadorProductos(repository, false, 0),
+                new AnaliticaInventario(repository, 10, BigDecimal.ONE, 0),
+                new FeedCambios(false, 1, 1),
+                new ImportadorProductos(repository, transactionTemplate, 10_000, 1),
+                new MotorPrecios(new PreciosRepository(jdbcTemplate), transactionTemplate, 0, 0));
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Optional<Producto> obtenerProductoPorId() {
+        return service.obtenerProductoPorId(ThreadLocalRandom.current().nextLong(1, ids + 1));
+    }
+
+    @Benchmark
+    public List<String> obtenerCategorias() {
+        return service.obtenerCategorias();
+    }
+
+    @Benchmark
+    public long contarProductos() {
+        return service.contarProductos();
+    }
+
+    @Benchmark
+    public List<Producto> obtenerProductosPorCategoria() {
+        return service.obtenerProductosPorCategoria("Bebidas");
+    }
+
+    @Benchmark
+    public List<Producto> obtenerProductosDisponibles() {
+        return service.obtenerProductosDisponibles();
+    }
+
+    @Benchmark
+    public List<Producto> buscarProductos() {
+        return service.buscarProductos("leche entera", 20);
+    }
+
+    /**
+     * Una palabra de 2 letras: con el índice, por el mapa de prefijos.
+     */
+    @Benchmark
+    public List<Producto> buscarProductosPalabraCorta() {
+        return service.buscarProductos("de", 20);
+    }
+}
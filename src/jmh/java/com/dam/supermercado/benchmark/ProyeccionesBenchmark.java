@@ -0,0 +1,166 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.model.ProductoResumen;
+import com.dam.supermercado.model.ResultadoActualizacion;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: ProyeccionesBenchmark
+ * ============================================
+ * Listados: todas las columnas (findAll) frente a la proyección
+ * id + nombre + precio (findAllResumenes). El contador "filas" da las
+ * filas por segundo de cada uno.
+ * Actualizaciones de precio: UPDATE de las cinco columnas frente al
+ * UPDATE solo de las columnas cambiadas (Producto lleva la cuenta).
+ * Al arrancar imprime los bytes de datos por fila de cada forma y, contra
+ * MySQL, los bytes que el servidor envía realmente (Bytes_sent):
+ *   -Dbenchmark.jdbc.url=jdbc:mysql://localhost:3306/supermercado_bench
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProyeccionesBenchmark {
+
+    @Param({"10000", "100000"})
+    private int filas;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ProductoRepository repository;
+    private List<Producto> leidos;
+
+    /**
+     * Filas leídas, que JMH muestra como filas por segundo.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Contadores {
+
+        public long filas;
+
+        @Setup(Level.Iteration)
+        public void reiniciar() {
+            filas = 0;
+        }
+    }
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("proyecciones", 4);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, filas);
+        leidos = repository.findAll();
+        imprimirBytes();
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    /**
+     * Bytes de datos por fila (sin las cabeceras del protocolo): texto en
+     * UTF-8, 8 bytes por BIGINT y DECIMAL, 4 por INT.
+     */
+    private void imprimirBytes() {
+        long completos = 0;
+        long resumen = 0;
+        for (Producto p : leidos) {
+            long comunes = 8 + bytes(p.getNombre()) + 8;
+            resumen += comunes;
+            completos += comunes + bytes(p.getDescripcion()) + 4 + bytes(p.getCategoria()) + 8;
+        }
+        System.out.printf("%n  bytes de datos por fila: completos=%d resumen=%d%n",
+                completos / leidos.size(), resumen / leidos.size());
+
+        long antes = bytesEnviadosMySql();
+        if (antes < 0) {
+            return;
+        }
+        repository.findAll();
+        long medio = bytesEnviadosMySql();
+        repository.findAllResumenes();
+        long despues = bytesEnviadosMySql();
+        System.out.printf("  Bytes_sent de MySQL: findAll=%d findAllResumenes=%d%n", medio - antes, despues - medio);
+    }
+
+    private static long bytes(String texto) {
+        return texto == null ? 0 : texto.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Bytes_sent global del servidor, o -1 si no es MySQL. Es global, así que
+     * solo es exacto en una BD de pruebas sin más clientes.
+     */
+    private long bytesEnviadosMySql() {
+        if (System.getProperty("benchmark.jdbc.url") == null) {
+            return -1;
+        }
+        Map<String, Object> fila = jdbcTemplate.queryForMap("SHOW GLOBAL STATUS LIKE 'Bytes_sent'");
+        return Long.parseLong(String.valueOf(fila.get("Value")));
+    }
+
+    @Benchmark
+    public List<Producto> listarCompletos(Contadores contadores) {
+        List<Producto> productos = repository.findAll();
+        contadores.filas += productos.size();
+        return productos;
+    }
+
+    @Benchmark
+    public List<ProductoResumen> listarResumenes(Contadores contadores) {
+        List<ProductoResumen> resumenes = repository.findAllResumenes();
+        contadores.filas += resumenes.size();
+        return resumenes;
+    }
+
+    private Producto productoConPrecioNuevo() {
+        Producto producto = new Producto(leidos.get(ThreadLocalRandom.current().nextInt(leidos.size())));
+        producto.setVersion(null);
+        producto.setPrecio(BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(100, 10_000), 2));
+        return producto;
+    }
+
+    @Benchmark
+    public ResultadoActualizacion actualizarPrecioCompleto() {
+        Producto producto = productoConPrecioNuevo();
+        // Sin la cuenta de campos cambiados: se envían todas las columnas
+        producto.limpiarCambios();
+        return repository.update(producto);
+    }
+
+    @Benchmark
+    public ResultadoActualizacion actualizarPrecioParcial() {
+        return repository.update(productoConPrecioNuevo());
+    }
+}
@@ -0,0 +1,143 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.analitica.AnaliticaInventario;
+import com.dam.supermercado.busqueda.IndiceBusqueda;
+import com.dam.supermercado.cache.ProductoCache;
+import com.dam.supermercado.cambios.FeedCambios;
+import com.dam.supermercado.catalogo.CatalogoEnMemoria;
+import com.dam.supermercado.importacion.ImportadorProductos;
+import com.dam.supermercado.metricas.MetricasRepositorio;
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.precios.MotorPrecios;
+import com.dam.supermercado.repository.CargadorProductos;
+import com.dam.supermercado.repository.PreciosRepository;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.dam.supermercado.service.ProductoService;
+import com.dam.supermercado.stock.BufferStock;
+import com.dam.supermercado.stock.MotorReservasStock;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * ============================================
+ * BENCHMARK: RecorridoTablaGrande
+ * ============================================
+ * Comprueba que los recorridos de la tabla completa usan memoria acotada:
+ * streamAll, forEachProducto y ProductoService.recorrerTodosLosProductos
+ * sobre millones de filas con un heap pequeño (-Xmx64m). Si alguno
+ * acumulara las filas, la JVM terminaría con OutOfMemoryError (y
+ * -XX:+ExitOnOutOfMemoryError hace fallar el build).
+ * Son dos procesos, porque con H2 en memoria los datos estarían en el
+ * propio heap:
+ * 1. poblar N: crea la tabla en un H2 en fichero (target/tabla-grande) con N filas.
+ * 2. recorrer N: la recorre de las tres formas, con el heap limitado.
+ * El perfil benchmark los lanza en la fase integration-test:
+ *   mvn -P benchmark verify
+ *   mvn -P benchmark verify -Dtabla-grande.filas=5000000
+ * Con -Dbenchmark.jdbc.url=jdbc:mysql://... se usa esa BD en lugar de H2.
+ */
+public final class RecorridoTablaGrande {
+
+    private static final String URL_H2 = "jdbc:h2:file:./target/tabla-grande/productos;MODE=MySQL;"
+            + "DATABASE_TO_LOWER=TRUE;CACHE_SIZE=8192;LAZY_QUERY_EXECUTION=TRUE";
+
+    private static final int TAMANO_PAGINA = 1000;
+
+    private RecorridoTablaGrande() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2 || !(args[0].equals("poblar") || args[0].equals("recorrer"))) {
+            System.err.println("Uso: RecorridoTablaGrande poblar|recorrer <filas>");
+            System.exit(1);
+        }
+        long filas = Long.parseLong(args[1]);
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(System.getProperty("benchmark.jdbc.url", URL_H2));
+        config.setUsername(System.getProperty("benchmark.jdbc.usuario", "root"));
+        config.setPassword(System.getProperty("benchmark.jdbc.password", ""));
+        config.setMaximumPoolSize(2);
+
+        try (HikariDataSource dataSource = new HikariDataSource(config)) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            ProductoRepository repository = new ProductoRepository(jdbcTemplate, 5000);
+            if (args[0].equals("poblar")) {
+                poblar(jdbcTemplate, repository, filas);
+            } else {
+                recorrer(dataSource, jdbcTemplate, repository, filas);
+            }
+        }
+    }
+
+    private static void poblar(JdbcTemplate jdbcTemplate, ProductoRepository repository, long filas) {
+        long inicio = System.nanoTime();
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        GeneradorDatos.desdeScript().poblar(repository, filas);
+        System.out.printf("Tabla con %d productos creada en %.1f s%n", filas, (System.nanoTime() - inicio) / 1e9);
+    }
+
+    private static void recorrer(HikariDataSource dataSource, JdbcTemplate jdbcTemplate,
+                                 ProductoRepository repository, long filas) {
+        long enTabla = repository.count();
+        if (enTabla != filas) {
+            fallar("La tabla tiene " + enTabla + " productos y se esperaban " + filas + " (falta poblar)");
+        }
+        System.out.printf("Recorriendo %d productos con -Xmx%d MB%n", filas, Runtime.getRuntime().maxMemory() >> 20);
+
+        medir("streamAll", filas, contador -> {
+            try (Stream<Producto> productos = repository.streamAll()) {
+                productos.forEach(contador);
+            }
+        });
+        medir("forEachProducto", filas, repository::forEachProducto);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        BufferStock bufferStock = new BufferStock(repository, transactionTemplate, false, 1000, 10000, "stock-deltas.journal");
+        ProductoService service = new ProductoService(repository,
+                new ProductoCache(false, 10_000, 300),
+                new CatalogoEnMemoria(repository, false),
+                new IndiceBusqueda(repository, false),
+                new MotorReservasStock(repository, bufferStock, transactionTemplate, true),
+                bufferStock,
+                new MetricasRepositorio(false, 200, 0),
+                new CargadorProductos(repository, false, 0),
+                new AnaliticaInventario(repository, 10, BigDecimal.ONE, 0),
+                new FeedCambios(false, 1, 1),
+                new ImportadorProductos(repository, transactionTemplate, 10_000, 1),
+                new MotorPrecios(new PreciosRepository(jdbcTemplate), transactionTemplate, 0, 0));
+        medir("recorrerTodosLosProductos", filas,
+                contador -> service.recorrerTodosLosProductos(TAMANO_PAGINA, contador));
+    }
+
+    /**
+     * Ejecuta el recorrido contando filas y comprueba que llegan todas.
+     * Imprime el heap usado al terminar (tras un GC): debe ser del orden
+     * de unos pocos MB, sea cual sea el número de filas.
+     */
+    private static void medir(String nombre, long filas, Consumer<Consumer<Producto>> recorrido) {
+        long[] vistas = {0};
+        long inicio = System.nanoTime();
+        recorrido.accept(producto -> vistas[0]++);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        if (vistas[0] != filas) {
+            fallar(nombre + " recorrió " + vistas[0] + " productos de " + filas);
+        }
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("  %-26s %d filas en %.1f s (%.0f filas/s), heap usado %d MB%n",
+                nombre, vistas[0], segundos, vistas[0] / segundos, (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+    }
+
+    private static void fallar(String mensaje) {
+        System.err.println(mensaje);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,98 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.replicas.ConfiguracionReplicas;
+import com.dam.supermercado.replicas.DataSourceEnrutado;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: ReplicasBenchmark
+ * ============================================
+ * Separación lectura/escritura con una primaria y dos réplicas, las tres
+ * H2 en memoria con los mismos datos (no hay replicación real: solo se
+ * mide el enrutado). Al final de cada iteración imprime cuántas
+ * conexiones fueron a cada sitio:
+ * - lecturas: casi todo debe ir a las réplicas.
+ * - escrituraYLectura: la lectura justo después de escribir debe ir a la
+ *   primaria (pegajosidad), así que lecturasReplica apenas sube.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(8)
+@Fork(1)
+public class ReplicasBenchmark {
+
+    private static final int FILAS = 10_000;
+
+    private DataSourceEnrutado dataSource;
+    private ProductoRepository repository;
+
+    @Setup
+    public void preparar() {
+        HikariDataSource primaria = crearPoblada("replicas-primaria");
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", crearPoblada("replicas-r1"));
+        replicas.put("replica-2", crearPoblada("replicas-r2"));
+
+        dataSource = new DataSourceEnrutado(primaria, replicas, 2000, 5);
+        dataSource.iniciar(5);
+        repository = ConfiguracionReplicas.marcarLecturas(
+                new ProductoRepository(new JdbcTemplate(dataSource), 1000));
+    }
+
+    private static HikariDataSource crearPoblada(String nombre) {
+        HikariDataSource ds = BaseDatosBenchmark.crearDataSource(nombre, 8);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(ds);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        GeneradorDatos.desdeScript().poblar(new ProductoRepository(jdbcTemplate, 1000), FILAS);
+        return ds;
+    }
+
+    @TearDown(Level.Iteration)
+    public void imprimir() {
+        System.out.println("\n  enrutado: " + dataSource.estadisticas());
+    }
+
+    @TearDown
+    public void cerrar() throws Exception {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Optional<Producto> lecturas() {
+        return repository.findById(ThreadLocalRandom.current().nextLong(1, FILAS + 1));
+    }
+
+    @Benchmark
+    public Optional<Producto> escrituraYLectura() {
+        Long id = ThreadLocalRandom.current().nextLong(1, FILAS + 1);
+        repository.incrementarStock(id, 1);
+        return repository.findById(id);
+    }
+}
@@ -0,0 +1,142 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.dam.supermercado.stock.BufferStock;
+import com.dam.supermercado.stock.MotorReservasStock;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ============================================
+ * BENCHMARK: ReservasStockBenchmark
+ * ============================================
+ * Prueba de estrés de MotorReservasStock: 16 hilos reservando a la vez
+ * sobre pocos productos "calientes" (como el agua o la leche un sábado).
+ * - Mide reservas por segundo con y sin agrupación por producto.
+ * - Al final de cada iteración comprueba dos invariantes y, si fallan,
+ *   lanza una excepción que hace fallar el benchmark:
+ *     1. Ningún producto tiene stock negativo.
+ *     2. stock inicial - stock final == unidades reservadas con éxito
+ *        (no se ha perdido ni duplicado ninguna actualización).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class ReservasStockBenchmark {
+
+    private static final int STOCK_INICIAL = 1_000_000;
+
+    @Param({"false", "true"})
+    private boolean agrupar;
+
+    @Param({"1", "8"})
+    private int productosCalientes;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ProductoRepository repository;
+    private MotorReservasStock motor;
+    private List<Long> ids;
+
+    private final LongAdder unidadesReservadas = new LongAdder();
+
+    @Setup
+    public void preparar() {
+        dataSource = BaseDatosBenchmark.crearDataSource("reservas", 16);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, 1000);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        motor = new MotorReservasStock(repository,
+                new BufferStock(repository, transactionTemplate, false, 1000, 10000, "stock-deltas.journal"),
+                transactionTemplate, agrupar);
+    }
+
+    @Setup(Level.Iteration)
+    public void reponer() {
+        BaseDatosBenchmark.vaciar(jdbcTemplate);
+        List<Producto> productos = new ArrayList<>();
+        for (int i = 0; i < productosCalientes; i++) {
+            productos.add(new Producto("Agua Mineral 1.5L #" + i, "Producto caliente", new BigDecimal("0.45"),
+                    STOCK_INICIAL, "Bebidas"));
+        }
+        repository.saveAll(productos);
+        ids = productos.stream().map(Producto::getId).toList();
+        unidadesReservadas.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void comprobarInvariantes() {
+        long stockTotal = 0;
+        for (Long id : ids) {
+            int stock = repository.findById(id).orElseThrow().getStock();
+            if (stock < 0) {
+                throw new IllegalStateException("Stock negativo en el producto " + id + ": " + stock);
+            }
+            stockTotal += stock;
+        }
+        long esperado = (long) STOCK_INICIAL * ids.size() - unidadesReservadas.sum();
+        if (stockTotal != esperado) {
+            throw new IllegalStateException("Actualizaciones perdidas: stock " + stockTotal + ", esperado " + esperado);
+        }
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public boolean reservar() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long id = ids.get(random.nextInt(ids.size()));
+        int cantidad = 1 + random.nextInt(3);
+        boolean ok = motor.reservar(id, cantidad);
+        if (ok) {
+            unidadesReservadas.add(cantidad);
+        }
+        return ok;
+    }
+
+    @Benchmark
+    public boolean reservarPedido() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long a = ids.get(random.nextInt(ids.size()));
+        Long b = ids.get(random.nextInt(ids.size()));
+        Map<Long, Integer> lineas = a.equals(b) ? Map.of(a, 2) : Map.of(a, 1, b, 1);
+        boolean ok = motor.reservarPedido(lineas);
+        if (ok) {
+            unidadesReservadas.add(2);
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,119 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.metricas.MonitorSentencias;
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: SentenciasPreparadasBenchmark
+ * ============================================
+ * Las consultas más frecuentes (findById, findAllById, save) con y sin
+ * caché de sentencias preparadas:
+ * - MySQL (-Dbenchmark.jdbc.url=...): cache=true usa las mismas
+ *   propiedades del driver que application.properties (useServerPrepStmts,
+ *   cachePrepStmts...); cache=false, las de por defecto (el driver manda
+ *   el SQL completo y el servidor lo analiza en cada ejecución).
+ * - H2: cache=false desactiva su caché de consultas analizadas
+ *   (QUERY_CACHE_SIZE=0).
+ * Con MySQL, al final de cada iteración se imprimen los contadores de
+ * MonitorSentencias: con la caché, preparaciones << ejecuciones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class SentenciasPreparadasBenchmark {
+
+    private static final int FILAS = 10_000;
+    private static final int IDS_POR_LOTE = 20;
+
+    private static final Map<String, String> CACHE_MYSQL = Map.of(
+            "useServerPrepStmts", "true",
+            "cachePrepStmts", "true",
+            "prepStmtCacheSize", "250",
+            "prepStmtCacheSqlLimit", "2048",
+            "cacheResultSetMetadata", "true",
+            "cacheServerConfiguration", "true",
+            "useLocalSessionState", "true",
+            "elideSetAutoCommits", "true");
+
+    @Param({"false", "true"})
+    private boolean cache;
+
+    private HikariDataSource dataSource;
+    private ProductoRepository repository;
+    private MonitorSentencias monitor;
+    private GeneradorDatos generador;
+
+    @Setup
+    public void preparar() {
+        dataSource = cache
+                ? BaseDatosBenchmark.crearDataSource("sentencias-cache", 8, CACHE_MYSQL, "")
+                : BaseDatosBenchmark.crearDataSource("sentencias-sin-cache", 8, Map.of(), ";QUERY_CACHE_SIZE=0");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, 1000);
+        generador = GeneradorDatos.desdeScript();
+        generador.poblar(repository, FILAS);
+        monitor = new MonitorSentencias(jdbcTemplate);
+        monitor.iniciar();
+    }
+
+    @TearDown(Level.Iteration)
+    public void informar() {
+        monitor.leer().ifPresent(estadisticas -> System.out.printf("%n  %s%n", estadisticas));
+        monitor.iniciar();
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Optional<Producto> findById() {
+        return repository.findById(ThreadLocalRandom.current().nextLong(1, FILAS + 1));
+    }
+
+    @Benchmark
+    public List<Producto> findAllById() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> ids = new ArrayList<>(IDS_POR_LOTE);
+        for (int i = 0; i < IDS_POR_LOTE; i++) {
+            ids.add(random.nextLong(1, FILAS + 1));
+        }
+        return repository.findAllById(ids);
+    }
+
+    @Benchmark
+    public Producto save() {
+        return repository.save(generador.generar(ThreadLocalRandom.current().nextInt(FILAS)));
+    }
+}
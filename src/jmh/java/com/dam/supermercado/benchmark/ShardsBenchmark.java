@@ -0,0 +1,171 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.dam.supermercado.shards.EstrategiaShard;
+import com.dam.supermercado.shards.GeneradorIds;
+import com.dam.supermercado.shards.ProductoRepositoryShards;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: ShardsBenchmark
+ * ============================================
+ * La tabla repartida en 1, 2 o 4 bases de datos, por hash del id o por
+ * categoría. Con 1 shard se mide el coste propio de la capa de shards
+ * frente a usar ProductoRepository directamente.
+ * - Operaciones por id o por categoría: van a un shard (o a todos, según
+ *   la estrategia).
+ * - Consultas a todos los shards: count, findAllCategorias y
+ *   findAllOrderByPrecio (merge de las listas ordenadas).
+ * Cada shard es una H2 en memoria distinta. Para medir contra varios
+ * MySQL (uno por shard, con la tabla de supermercado.sql y SIN datos que
+ * se quieran conservar: se vacían):
+ *   -Dbenchmark.shards.urls=jdbc:mysql://localhost:3306/s0,jdbc:mysql://localhost:3307/s0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ShardsBenchmark {
+
+    private static final int FILAS_POR_LOTE = 5_000;
+
+    @Param({"1", "2", "4"})
+    private int numeroShards;
+
+    @Param({"id", "categoria"})
+    private String estrategia;
+
+    @Param({"100000"})
+    private int filas;
+
+    private final List<HikariDataSource> dataSources = new ArrayList<>();
+    private ProductoRepositoryShards repository;
+    private long[] ids;
+    private List<String> categorias;
+
+    @Setup
+    public void preparar() {
+        String urls = System.getProperty("benchmark.shards.urls");
+        List<ProductoRepository> shards = new ArrayList<>();
+        for (int i = 0; i < numeroShards; i++) {
+            HikariDataSource dataSource = urls != null
+                    ? crearMySql(urls.split(",")[i].trim(), i)
+                    : crearH2("shard" + i + "_" + numeroShards + "_" + estrategia);
+            dataSources.add(dataSource);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            if (urls != null) {
+                BaseDatosBenchmark.vaciar(jdbcTemplate);
+            } else {
+                BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+            }
+            shards.add(new ProductoRepository(jdbcTemplate, 1000));
+        }
+        repository = new ProductoRepositoryShards(shards,
+                EstrategiaShard.desdeNombre(estrategia, numeroShards), new GeneradorIds(1));
+
+        GeneradorDatos generador = GeneradorDatos.desdeScript();
+        ids = new long[filas];
+        List<Producto> lote = new ArrayList<>(FILAS_POR_LOTE);
+        for (int i = 0; i < filas; i++) {
+            lote.add(generador.generar(i));
+            if (lote.size() == FILAS_POR_LOTE || i == filas - 1) {
+                repository.saveAll(lote);
+                for (int j = 0; j < lote.size(); j++) {
+                    ids[i - lote.size() + 1 + j] = lote.get(j).getId();
+                }
+                lote = new ArrayList<>(FILAS_POR_LOTE);
+            }
+        }
+        categorias = repository.findAllCategorias();
+        System.out.printf("%n  filas por shard:");
+        for (int i = 0; i < numeroShards; i++) {
+            System.out.printf(" %d", repository.shard(i).count());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Siempre H2, aunque se haya indicado benchmark.jdbc.url: todos los
+     * shards serían entonces la misma base de datos.
+     */
+    private static HikariDataSource crearH2(String nombre) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:" + nombre + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        config.setPoolName("bench-" + nombre);
+        config.setMaximumPoolSize(8);
+        return new HikariDataSource(config);
+    }
+
+    private static HikariDataSource crearMySql(String url, int numero) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setUsername(System.getProperty("benchmark.jdbc.usuario", "root"));
+        config.setPassword(System.getProperty("benchmark.jdbc.password", ""));
+        config.setPoolName("bench-shard-" + numero);
+        config.setMaximumPoolSize(8);
+        return new HikariDataSource(config);
+    }
+
+    @TearDown
+    public void cerrar() {
+        dataSources.forEach(HikariDataSource::close);
+    }
+
+    @Benchmark
+    public Optional<Producto> findById() {
+        return repository.findById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public List<Producto> findByCategoria() {
+        return repository.findByCategoria(categorias.get(ThreadLocalRandom.current().nextInt(categorias.size())));
+    }
+
+    @Benchmark
+    public Producto save() {
+        return repository.save(new Producto("Nuevo", "Alta desde el benchmark", BigDecimal.ONE, 10,
+                categorias.get(ThreadLocalRandom.current().nextInt(categorias.size()))));
+    }
+
+    @Benchmark
+    public long count() {
+        return repository.count();
+    }
+
+    @Benchmark
+    public List<String> findAllCategorias() {
+        return repository.findAllCategorias();
+    }
+
+    @Benchmark
+    public List<Producto> findAllOrderByPrecio() {
+        return repository.findAllOrderByPrecio();
+    }
+}
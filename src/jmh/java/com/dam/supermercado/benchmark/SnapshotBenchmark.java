@@ -0,0 +1,104 @@
+package com.dam.supermercado.benchmark;
+
+import com.dam.supermercado.repository.ProductoRepository;
+import com.dam.supermercado.snapshot.Reconciliacion;
+import com.dam.supermercado.snapshot.SnapshotCatalogo;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * BENCHMARK: SnapshotBenchmark
+ * ============================================
+ * Arranque en frío del catálogo: recorrer toda la tabla desde la BD
+ * (forEachProducto, lo que hace hoy CatalogoEnMemoria.cargar()) frente a
+ * mapear el snapshot y recorrerlo. Aparte, el coste de reconciliar el
+ * snapshot con la BD cuando ha cambiado un porcentaje de las filas.
+ * Con H2 en memoria la BD no tiene red ni disco, así que la ventaja real
+ * contra MySQL es mayor:
+ *   -Dbenchmark.jdbc.url=jdbc:mysql://localhost:3306/supermercado_bench
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({"10000", "100000"})
+    private int filas;
+
+    /**
+     * Porcentaje de filas modificadas después de generar el snapshot.
+     */
+    @Param({"0", "5"})
+    private int porcentajeCambiado;
+
+    private HikariDataSource dataSource;
+    private ProductoRepository repository;
+    private Path fichero;
+    private SnapshotCatalogo snapshot;
+
+    @Setup
+    public void preparar() throws IOException {
+        dataSource = BaseDatosBenchmark.crearDataSource("snapshot", 4);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BaseDatosBenchmark.crearEsquema(jdbcTemplate);
+        repository = new ProductoRepository(jdbcTemplate, 1000);
+        GeneradorDatos.desdeScript().poblar(repository, filas);
+
+        fichero = Files.createTempFile("catalogo", ".snapshot");
+        snapshot = new SnapshotCatalogo(repository, true, fichero.toString(), 0);
+        snapshot.escribir();
+        System.out.printf("%n  snapshot: %d productos, %d bytes%n", snapshot.tamano(), Files.size(fichero));
+
+        // Cambios posteriores al snapshot: suben la versión de esas filas
+        jdbcTemplate.update("UPDATE productos SET stock = stock + 1, version = version + 1 WHERE MOD(id, 100) < ?",
+                porcentajeCambiado);
+    }
+
+    @TearDown
+    public void cerrar() throws IOException {
+        dataSource.close();
+        Files.deleteIfExists(fichero);
+    }
+
+    @Benchmark
+    public void cargarDesdeBd(Blackhole bh) {
+        repository.forEachProducto(bh::consume);
+    }
+
+    /**
+     * Incluye el mapeo del fichero, como en un arranque.
+     */
+    @Benchmark
+    public void cargarDesdeSnapshot(Blackhole bh) {
+        SnapshotCatalogo nuevo = new SnapshotCatalogo(repository, true, fichero.toString(), 0);
+        nuevo.abrir();
+        nuevo.forEach(bh::consume);
+    }
+
+    @Benchmark
+    public Reconciliacion reconciliar() {
+        return snapshot.reconciliar();
+    }
+}
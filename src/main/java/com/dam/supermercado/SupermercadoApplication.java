@@ -1,6 +1,9 @@
 package com.dam.supermercado;
 
+import com.dam.supermercado.metricas.MonitorSentencias;
+import com.dam.supermercado.model.InformeInventario;
 import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.model.ResumenCategoria;
 import com.dam.supermercado.service.ProductoService;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -113,6 +116,21 @@ public class SupermercadoApplication {
             long totalProductos = productoService.contarProductos();
             System.out.println("\n📊 Estadísticas:");
             System.out.println("   • Total de productos en BD: " + totalProductos);
+
+            // Estadísticas calculadas por MySQL (GROUP BY), sin traer los productos
+            InformeInventario informe = productoService.obtenerInformeInventario();
+            ResumenCategoria total = informe.total();
+            System.out.println("   • Valor del stock: " + total.valorStock() + "€");
+            System.out.println("   • Precio mínimo / medio / máximo: " + total.precioMinimo() + "€ / "
+                    + total.precioMedio() + "€ / " + total.precioMaximo() + "€");
+            System.out.println("   • Productos con poco stock: " + total.stockBajo());
+            System.out.println("\n📦 Valor del stock por categoría:");
+            informe.categorias().forEach(r -> System.out.println("   • " + r.categoria() + ": "
+                    + r.valorStock() + "€ (" + r.productos() + " productos, " + r.stockBajo() + " con poco stock)"));
+
+            // Reutilización de sentencias preparadas (solo con MySQL)
+            contexto.getBean(MonitorSentencias.class).leer().ifPresent(estadisticas ->
+                    System.out.println("\n⚙️  Sentencias preparadas: " + estadisticas));
         }
         
         // Mensaje final comparativo
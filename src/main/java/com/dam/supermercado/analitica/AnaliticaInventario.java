@@ -0,0 +1,257 @@
+package com.dam.supermercado.analitica;
+
+import com.dam.supermercado.model.InformeInventario;
+import com.dam.supermercado.model.ResumenCategoria;
+import com.dam.supermercado.model.TramoPrecio;
+import com.dam.supermercado.repository.ProductoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ============================================
+ * ANALÍTICA: AnaliticaInventario
+ * ============================================
+ * Estadísticas de inventario (valor del stock por categoría, precio
+ * mínimo/medio/máximo, productos con poco stock, histograma de precios)
+ * calculadas por MySQL con GROUP BY, en lugar de traer todas las filas y
+ * sumarlas en Java.
+ * El informe se guarda ya calculado y las lecturas lo devuelven sin ir a
+ * la BD. Las escrituras de ProductoService no lo recalculan: solo lo
+ * marcan como "sucio", y un hilo en segundo plano lo refresca cada
+ * refresco-ms si hace falta. Así mil escrituras seguidas cuestan un solo
+ * refresco, a cambio de que el informe vaya como mucho refresco-ms por
+ * detrás de la BD.
+ * El refresco es incremental cuando se sabe qué categoría ha cambiado
+ * (altas de productos): solo se vuelven a consultar esas categorías y el
+ * total se obtiene sumando las filas guardadas. Si no se sabe (cambios de
+ * stock por id, borrados, cambios de categoría), se recalcula todo, que
+ * siguen siendo solo dos consultas.
+ */
+@Component
+public class AnaliticaInventario {
+
+    private static final Logger log = LoggerFactory.getLogger(AnaliticaInventario.class);
+
+    private final ProductoRepository productoRepository;
+    private final int umbralStockBajo;
+    private final BigDecimal anchoTramo;
+    private final long refrescoMs;
+
+    /**
+     * Filas guardadas por categoría. Solo las modifica el refresco, que está
+     * sincronizado; las lecturas usan el informe ya montado.
+     */
+    private final Map<String, ResumenCategoria> resumenes = new TreeMap<>(this::compararCategorias);
+    private final Map<String, List<TramoPrecio>> histogramas = new LinkedHashMap<>();
+
+    private final Set<String> categoriasSucias = ConcurrentHashMap.newKeySet();
+    private volatile boolean todoSucio = true;
+    private volatile InformeInventario informe;
+
+    private final LongAdder refrescosCompletos = new LongAdder();
+    private final LongAdder refrescosParciales = new LongAdder();
+
+    private ScheduledExecutorService planificador;
+
+    /**
+     * umbralStockBajo Un producto tiene stock bajo si stock < umbralStockBajo
+     * anchoTramo Anchura en euros de cada barra del histograma de precios
+     * refrescoMs Cada cuánto se revisa si hay que recalcular (0 = solo al pedirlo)
+     */
+    @Autowired
+    public AnaliticaInventario(ProductoRepository productoRepository,
+                               @Value("${supermercado.analitica.umbral-stock-bajo:10}") int umbralStockBajo,
+                               @Value("${supermercado.analitica.ancho-tramo:1.00}") BigDecimal anchoTramo,
+                               @Value("${supermercado.analitica.refresco-ms:5000}") long refrescoMs) {
+        this.productoRepository = productoRepository;
+        this.umbralStockBajo = umbralStockBajo;
+        this.anchoTramo = anchoTramo;
+        this.refrescoMs = refrescoMs;
+    }
+
+
+    // CICLO DE VIDA
+
+    @PostConstruct
+    public void iniciar() {
+        if (refrescoMs <= 0) {
+            return;
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "refresco-analitica");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::refrescarEnSegundoPlano, refrescoMs, refrescoMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+        }
+    }
+
+
+    // CONSULTA
+
+    /**
+     * Último informe calculado. Solo va a la BD la primera vez, o siempre
+     * si el refresco en segundo plano está desactivado (refresco-ms=0) y
+     * hay cambios pendientes.
+     */
+    public InformeInventario obtenerInforme() {
+        InformeInventario actual = informe;
+        if (actual == null || (planificador == null && haySucios())) {
+            return refrescar();
+        }
+        return actual;
+    }
+
+    public List<ResumenCategoria> obtenerResumenPorCategoria() {
+        return obtenerInforme().categorias();
+    }
+
+    public ResumenCategoria obtenerTotal() {
+        return obtenerInforme().total();
+    }
+
+    public List<TramoPrecio> obtenerHistogramaPrecios() {
+        return obtenerInforme().histograma();
+    }
+
+    /**
+     * Refrescos hechos desde el arranque: "completos" (todas las categorías)
+     * y "parciales" (solo las categorías marcadas).
+     */
+    public Map<String, Long> estadisticas() {
+        Map<String, Long> resultado = new LinkedHashMap<>();
+        resultado.put("completos", refrescosCompletos.sum());
+        resultado.put("parciales", refrescosParciales.sum());
+        return resultado;
+    }
+
+
+    // MARCAS DE CAMBIO (las llama ProductoService tras cada escritura)
+
+    /**
+     * Ha cambiado algún producto de esta categoría.
+     */
+    public void marcarCategoria(String categoria) {
+        if (categoria == null) {
+            todoSucio = true;
+        } else {
+            categoriasSucias.add(categoria);
+        }
+    }
+
+    /**
+     * Ha cambiado algo pero no se sabe de qué categoría.
+     */
+    public void marcarTodo() {
+        todoSucio = true;
+    }
+
+
+    // REFRESCO
+
+    /**
+     * Recalcula lo que esté marcado y monta un informe nuevo.
+     * Las marcas se retiran ANTES de consultar: una escritura que llegue
+     * durante el refresco vuelve a marcar y se recoge en el siguiente.
+     */
+    public synchronized InformeInventario refrescar() {
+        if (informe != null && !haySucios()) {
+            return informe;
+        }
+        if (todoSucio || informe == null) {
+            todoSucio = false;
+            categoriasSucias.clear();
+            List<ResumenCategoria> filas = productoRepository.findResumenPorCategoria(umbralStockBajo);
+            Map<String, List<TramoPrecio>> tramos = productoRepository.findHistogramaPrecios(anchoTramo);
+            resumenes.clear();
+            histogramas.clear();
+            filas.forEach(r -> resumenes.put(r.categoria(), r));
+            histogramas.putAll(tramos);
+            refrescosCompletos.increment();
+        } else {
+            List<String> categorias = new ArrayList<>(categoriasSucias);
+            categoriasSucias.removeAll(categorias);
+            for (String categoria : categorias) {
+                productoRepository.findResumenPorCategoria(categoria, umbralStockBajo).ifPresentOrElse(
+                        r -> resumenes.put(categoria, r), () -> resumenes.remove(categoria));
+                List<TramoPrecio> tramos = productoRepository.findHistogramaPrecios(categoria, anchoTramo);
+                if (tramos.isEmpty()) {
+                    histogramas.remove(categoria);
+                } else {
+                    histogramas.put(categoria, tramos);
+                }
+            }
+            refrescosParciales.increment();
+        }
+        informe = montarInforme();
+        return informe;
+    }
+
+    private void refrescarEnSegundoPlano() {
+        try {
+            if (informe != null && haySucios()) {
+                refrescar();
+            }
+        } catch (RuntimeException e) {
+            // Se reintenta en la siguiente vuelta; mientras, se sirve el informe anterior
+            todoSucio = true;
+            log.warn("[ANALITICA] No se pudo refrescar el informe de inventario", e);
+        }
+    }
+
+    private boolean haySucios() {
+        return todoSucio || !categoriasSucias.isEmpty();
+    }
+
+    private InformeInventario montarInforme() {
+        List<ResumenCategoria> categorias = List.copyOf(resumenes.values());
+        ResumenCategoria total = ResumenCategoria.combinar(null, categorias);
+
+        // Se suman las barras de todas las categorías (misma anchura, mismo origen)
+        TreeMap<BigDecimal, Long> barras = new TreeMap<>();
+        for (List<TramoPrecio> tramos : histogramas.values()) {
+            for (TramoPrecio tramo : tramos) {
+                barras.merge(tramo.desde(), tramo.productos(), Long::sum);
+            }
+        }
+        List<TramoPrecio> histograma = new ArrayList<>(barras.size());
+        barras.forEach((desde, productos) -> histograma.add(new TramoPrecio(desde, desde.add(anchoTramo), productos)));
+
+        return new InformeInventario(categorias, total, List.copyOf(histograma), System.currentTimeMillis());
+    }
+
+    /**
+     * Mismo orden que ORDER BY categoria en MySQL para los no nulos; la
+     * categoría nula (productos sin categoría) va la primera.
+     */
+    private int compararCategorias(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a.compareTo(b);
+    }
+}
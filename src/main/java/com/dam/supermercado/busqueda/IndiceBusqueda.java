@@ -0,0 +1,377 @@
+package com.dam.supermercado.busqueda;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.repository.ProductoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ============================================
+ * BÚSQUEDA: IndiceBusqueda (índice de trigramas)
+ * ============================================
+ * Sustituye a "WHERE LOWER(nombre) LIKE '%texto%'", que no puede usar
+ * idx_nombre (el comodín inicial y LOWER() obligan a recorrer toda la tabla).
+ * CÓMO FUNCIONA:
+ * 1. Cada producto se normaliza (minúsculas, sin acentos) y se parte en
+ *    trigramas: "leche" -> "lec", "ech", "che".
+ * 2. Para cada trigrama guardamos la lista ordenada de ids de los productos
+ *    que lo contienen en el nombre o en la descripción (índice invertido).
+ * 3. Al buscar "leche", intersectamos las listas de sus trigramas: solo esos
+ *    productos PUEDEN contener el texto. Después se comprueba de verdad
+ *    (contains) y se puntúa cada candidato.
+ * PUNTUACIÓN (de mayor a menor relevancia):
+ * - Coincidencia en el nombre, mejor si es al principio de una palabra
+ * - Frase completa dentro del nombre
+ * - Coincidencia solo en la descripción
+ * - A igualdad, gana el nombre más corto (más específico)
+ * Las palabras de la búsqueda se combinan con AND: todas deben aparecer.
+ * PALABRAS DE 1 O 2 LETRAS ("1l", "de"...): no tienen trigramas,
+ * así que hay un segundo índice con los prefijos de 1 y 2 letras de cada
+ * palabra: "de" encuentra "desnatada" o "de", pero no "verde". Sin él,
+ * cualquier búsqueda corta recorrería todos los documentos.
+ * MEMORIA: cada documento guarda solo lo que hace falta para puntuar (el
+ * nombre y la descripción normalizados), no una copia del Producto. Los
+ * resultados son ids, que ProductoService convierte en productos con el
+ * catálogo en memoria o con la caché (así la tabla no está dos veces en
+ * el heap, aquí y en CatalogoEnMemoria).
+ */
+@Component
+public class IndiceBusqueda {
+
+    private static final int LONGITUD_TRIGRAMA = 3;
+
+    private static final Comparator<Resultado> POR_RELEVANCIA =
+            Comparator.comparingDouble(Resultado::puntuacion).thenComparing(Resultado::id, Comparator.reverseOrder());
+
+    private final ProductoRepository productoRepository;
+    private final boolean habilitado;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Documento> documentos = new HashMap<>();
+    private final Map<Long, ListaIds> idsPorTrigrama = new HashMap<>();
+    private final Map<Integer, ListaIds> idsPorPrefijo = new HashMap<>();
+
+    private volatile boolean cargado;
+
+    /**
+     * productoRepository Repositorio usado para la carga inicial
+     * habilitado Activa el índice de búsqueda en memoria
+     */
+    @Autowired
+    public IndiceBusqueda(ProductoRepository productoRepository,
+                          @Value("${supermercado.busqueda.habilitada:false}") boolean habilitado) {
+        this.productoRepository = productoRepository;
+        this.habilitado = habilitado;
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+
+    // CARGA
+
+    public void cargar() {
+        lock.writeLock().lock();
+        try {
+            documentos.clear();
+            idsPorTrigrama.clear();
+            idsPorPrefijo.clear();
+            productoRepository.forEachProducto(this::indexar);
+            cargado = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void asegurarCargado() {
+        if (!cargado) {
+            lock.writeLock().lock();
+            try {
+                if (!cargado) {
+                    cargar();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+
+    // BÚSQUEDA
+
+    /**
+     * Busca productos cuyo nombre o descripción contengan todas las palabras
+     * del texto (las de menos de 3 letras, al principio de una palabra).
+     * texto Texto a buscar (sin distinguir mayúsculas ni acentos)
+     * limite Número máximo de resultados
+     * Ids de los productos, de más a menos relevante
+     */
+    public List<Long> buscar(String texto, int limite) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("El límite debe ser positivo: " + limite);
+        }
+        String consulta = NormalizadorTexto.normalizar(texto);
+        if (consulta.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String[] palabras = consulta.split(" ");
+
+        asegurarCargado();
+        lock.readLock().lock();
+        try {
+            // Min-heap con los "limite" mejores: el peor está arriba y se descarta primero
+            PriorityQueue<Resultado> mejores = new PriorityQueue<>(POR_RELEVANCIA);
+            for (long id : candidatos(palabras)) {
+                Documento doc = documentos.get(id);
+                double puntuacion = puntuar(doc, consulta, palabras);
+                if (puntuacion <= 0) {
+                    continue;
+                }
+                mejores.add(new Resultado(id, puntuacion));
+                if (mejores.size() > limite) {
+                    mejores.poll();
+                }
+            }
+
+            List<Resultado> ordenados = new ArrayList<>(mejores);
+            ordenados.sort(POR_RELEVANCIA.reversed());
+            List<Long> ids = new ArrayList<>(ordenados.size());
+            for (Resultado r : ordenados) {
+                ids.add(r.id());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids que contienen todos los trigramas de la búsqueda y, por cada
+     * palabra de 1 o 2 letras, una palabra que empieza por ella.
+     */
+    private long[] candidatos(String[] palabras) {
+        List<ListaIds> listas = new ArrayList<>();
+        for (String palabra : palabras) {
+            if (palabra.length() < LONGITUD_TRIGRAMA) {
+                ListaIds lista = idsPorPrefijo.get(prefijo(palabra, 0, palabra.length()));
+                if (lista == null) {
+                    return new long[0];
+                }
+                listas.add(lista);
+                continue;
+            }
+            for (int i = 0; i + LONGITUD_TRIGRAMA <= palabra.length(); i++) {
+                ListaIds lista = idsPorTrigrama.get(trigrama(palabra, i));
+                if (lista == null) {
+                    return new long[0];
+                }
+                listas.add(lista);
+            }
+        }
+        if (listas.isEmpty()) {
+            return new long[0];
+        }
+
+        // Recorremos la lista más corta y comprobamos el resto con búsqueda binaria
+        listas.sort(Comparator.comparingInt(ListaIds::tamano));
+        ListaIds menor = listas.get(0);
+        long[] resultado = new long[menor.tamano()];
+        int n = 0;
+        siguiente:
+        for (int i = 0; i < menor.tamano(); i++) {
+            long id = menor.get(i);
+            for (int j = 1; j < listas.size(); j++) {
+                if (!listas.get(j).contiene(id)) {
+                    continue siguiente;
+                }
+            }
+            resultado[n++] = id;
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+
+    private static double puntuar(Documento doc, String consulta, String[] palabras) {
+        double puntuacion = 0;
+        for (String palabra : palabras) {
+            int pos = doc.nombre.indexOf(palabra);
+            if (pos >= 0) {
+                puntuacion += 10;
+                if (pos == 0 || doc.nombre.charAt(pos - 1) == ' ') {
+                    puntuacion += 5;
+                }
+            } else if (doc.descripcion.contains(palabra)) {
+                puntuacion += 2;
+            } else {
+                // Falso positivo de los trigramas: falta una palabra
+                return 0;
+            }
+        }
+        if (palabras.length > 1 && doc.nombre.contains(consulta)) {
+            puntuacion += 20;
+        }
+        // Desempate: el nombre más corto se parece más a lo buscado
+        return puntuacion + 1.0 / (1 + doc.nombre.length());
+    }
+
+
+    // MANTENIMIENTO TRAS ESCRITURAS
+
+    public void registrar(Producto producto) {
+        lock.writeLock().lock();
+        try {
+            if (!cargado) {
+                return;
+            }
+            desindexar(producto.getId());
+            indexar(producto);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void registrarTodos(Collection<Producto> productos) {
+        lock.writeLock().lock();
+        try {
+            if (!cargado) {
+                return;
+            }
+            for (Producto producto : productos) {
+                desindexar(producto.getId());
+                indexar(producto);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(Long id) {
+        lock.writeLock().lock();
+        try {
+            if (!cargado) {
+                return;
+            }
+            desindexar(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    // ÍNDICE (siempre con el write lock tomado)
+
+    private void indexar(Producto producto) {
+        Documento doc = new Documento(
+                NormalizadorTexto.normalizar(producto.getNombre()),
+                NormalizadorTexto.normalizar(producto.getDescripcion()));
+        documentos.put(producto.getId(), doc);
+        for (long t : doc.trigramas()) {
+            idsPorTrigrama.computeIfAbsent(t, k -> new ListaIds()).anadir(producto.getId());
+        }
+        for (int p : doc.prefijos()) {
+            idsPorPrefijo.computeIfAbsent(p, k -> new ListaIds()).anadir(producto.getId());
+        }
+    }
+
+    private void desindexar(Long id) {
+        Documento anterior = documentos.remove(id);
+        if (anterior == null) {
+            return;
+        }
+        for (long t : anterior.trigramas()) {
+            ListaIds lista = idsPorTrigrama.get(t);
+            if (lista != null) {
+                lista.quitar(id);
+                if (lista.vacia()) {
+                    idsPorTrigrama.remove(t);
+                }
+            }
+        }
+        for (int p : anterior.prefijos()) {
+            ListaIds lista = idsPorPrefijo.get(p);
+            if (lista != null) {
+                lista.quitar(id);
+                if (lista.vacia()) {
+                    idsPorPrefijo.remove(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Empaqueta 3 caracteres en un long (16 bits cada uno) para no crear
+     * un String por trigrama.
+     */
+    private static long trigrama(String texto, int desde) {
+        return ((long) texto.charAt(desde) << 32) | ((long) texto.charAt(desde + 1) << 16) | texto.charAt(desde + 2);
+    }
+
+    /**
+     * Empaqueta 1 o 2 caracteres en un int. El carácter 0 no aparece en un
+     * texto normalizado, así que "d" y "de" no se confunden.
+     */
+    private static int prefijo(String texto, int desde, int longitud) {
+        int segundo = longitud > 1 ? texto.charAt(desde + 1) : 0;
+        return (texto.charAt(desde) << 16) | segundo;
+    }
+
+    private static final class Documento {
+        private final String nombre;
+        private final String descripcion;
+
+        private Documento(String nombre, String descripcion) {
+            this.nombre = nombre;
+            this.descripcion = descripcion;
+        }
+
+        /**
+         * Trigramas distintos del nombre y la descripción.
+         */
+        private long[] trigramas() {
+            long[] t = new long[Math.max(0, nombre.length() - 2) + Math.max(0, descripcion.length() - 2)];
+            int n = 0;
+            for (int i = 0; i + LONGITUD_TRIGRAMA <= nombre.length(); i++) {
+                t[n++] = trigrama(nombre, i);
+            }
+            for (int i = 0; i + LONGITUD_TRIGRAMA <= descripcion.length(); i++) {
+                t[n++] = trigrama(descripcion, i);
+            }
+            return Arrays.stream(t, 0, n).distinct().toArray();
+        }
+
+        /**
+         * Prefijos distintos de 1 y 2 letras de las palabras del nombre y la descripción.
+         */
+        private int[] prefijos() {
+            List<Integer> p = new ArrayList<>();
+            anadirPrefijos(nombre, p);
+            anadirPrefijos(descripcion, p);
+            return p.stream().mapToInt(Integer::intValue).distinct().toArray();
+        }
+
+        private static void anadirPrefijos(String texto, List<Integer> p) {
+            for (int i = 0; i < texto.length(); i++) {
+                if (texto.charAt(i) != ' ' && (i == 0 || texto.charAt(i - 1) == ' ')) {
+                    p.add(prefijo(texto, i, 1));
+                    if (i + 1 < texto.length() && texto.charAt(i + 1) != ' ') {
+                        p.add(prefijo(texto, i, 2));
+                    }
+                }
+            }
+        }
+    }
+
+    private record Resultado(long id, double puntuacion) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.dam.supermercado.busqueda;
+
+import java.util.Arrays;
+
+/**
+ * Lista de ids ordenada y sin repetidos, guardada en un long[].
+ * Es la "lista de apariciones" (posting list) de cada trigrama del índice.
+ * Un long[] ocupa 8 bytes por id, frente a los ~40 de un Long dentro de un
+ * HashSet, lo que importa cuando hay millones de productos.
+ * Como los ids llegan casi siempre en orden creciente (AUTO_INCREMENT),
+ * añadir suele ser simplemente escribir al final.
+ */
+final class ListaIds {
+
+    private long[] ids = new long[4];
+    private int tamano;
+
+    void anadir(long id) {
+        if (tamano > 0 && ids[tamano - 1] >= id) {
+            int pos = Arrays.binarySearch(ids, 0, tamano, id);
+            if (pos >= 0) {
+                return;
+            }
+            insertarEn(-pos - 1, id);
+            return;
+        }
+        insertarEn(tamano, id);
+    }
+
+    void quitar(long id) {
+        int pos = Arrays.binarySearch(ids, 0, tamano, id);
+        if (pos >= 0) {
+            System.arraycopy(ids, pos + 1, ids, pos, tamano - pos - 1);
+            tamano--;
+        }
+    }
+
+    boolean contiene(long id) {
+        return Arrays.binarySearch(ids, 0, tamano, id) >= 0;
+    }
+
+    long get(int i) {
+        return ids[i];
+    }
+
+    int tamano() {
+        return tamano;
+    }
+
+    boolean vacia() {
+        return tamano == 0;
+    }
+
+    private void insertarEn(int pos, long id) {
+        if (tamano == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+        System.arraycopy(ids, pos, ids, pos + 1, tamano - pos);
+        ids[pos] = id;
+        tamano++;
+    }
+}
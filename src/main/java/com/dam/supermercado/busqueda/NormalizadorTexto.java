@@ -0,0 +1,50 @@
+package com.dam.supermercado.busqueda;
+
+import java.text.Normalizer;
+
+/**
+ * ============================================
+ * BÚSQUEDA: NormalizadorTexto
+ * ============================================
+ * Pasa el texto a una forma canónica para comparar igual que la
+ * colación utf8mb4_spanish_ci de la tabla productos:
+ * - Sin distinguir mayúsculas:  "LECHE" == "leche"
+ * - Sin distinguir acentos:     "Plátanos" == "platanos"
+ * - PERO la ñ es una letra propia en español: "año" != "ano"
+ * Los espacios repetidos se reducen a uno.
+ */
+public final class NormalizadorTexto {
+
+    private NormalizadorTexto() {
+    }
+
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(texto.length());
+        boolean espacioPendiente = false;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = Character.toLowerCase(texto.charAt(i));
+            if (Character.isWhitespace(c)) {
+                espacioPendiente = sb.length() > 0;
+                continue;
+            }
+            if (espacioPendiente) {
+                sb.append(' ');
+                espacioPendiente = false;
+            }
+            sb.append(quitarAcento(c));
+        }
+        return sb.toString();
+    }
+
+    private static char quitarAcento(char c) {
+        if (c < 0x80 || c == 'ñ') {
+            return c;
+        }
+        // Descomponemos (á -> a + ´) y nos quedamos con la letra base
+        String descompuesto = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        return descompuesto.charAt(0);
+    }
+}
@@ -0,0 +1,37 @@
+package com.dam.supermercado.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * ============================================
+ * CACHÉ: BusInvalidacion
+ * ============================================
+ * Canal por el que las instancias de la aplicación se avisan de sus
+ * escrituras para invalidar las cachés locales (L1) de las demás. Cada
+ * ProductoCache publica una Invalidacion tras cada escritura y aplica las
+ * que recibe de las otras instancias.
+ * Implementaciones:
+ * - BusInvalidacionJdbc: una tabla de MySQL que todas las instancias
+ *   leen cada pocos milisegundos (no necesita más infraestructura).
+ * - BusInvalidacionLocal: dentro del mismo proceso, para pruebas y
+ *   benchmarks con varias "instancias" en una JVM.
+ * Otra opción sería Redis Pub/Sub o un topic de Kafka implementando esta
+ * interfaz.
+ * La entrega es "como mucho una vez" y sin orden garantizado: el TTL de
+ * la L1 es el límite de lo que puede durar un dato obsoleto si se pierde
+ * un mensaje.
+ */
+public interface BusInvalidacion {
+
+    /**
+     * Envía el mensaje a todas las instancias (también puede llegarle a la
+     * que lo publica, que lo reconoce por el origen).
+     */
+    void publicar(Invalidacion invalidacion);
+
+    /**
+     * Registra la acción a ejecutar con cada mensaje recibido. Puede
+     * llamarse desde otro hilo.
+     */
+    void suscribir(Consumer<Invalidacion> suscriptor);
+}
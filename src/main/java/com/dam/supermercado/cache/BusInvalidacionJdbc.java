@@ -0,0 +1,229 @@
+package com.dam.supermercado.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * ============================================
+ * CACHÉ: BusInvalidacionJdbc
+ * ============================================
+ * BusInvalidacion sobre la tabla invalidaciones_cache de la propia BD,
+ * que ya comparten todas las instancias: publicar() inserta una fila y
+ * cada instancia lee las filas nuevas cada intervalo-ms milisegundos.
+ * Un mensaje tarda en llegar, como mucho, ese intervalo.
+ * El problema de leer "WHERE id > último leído": el AUTO_INCREMENT se
+ * reparte al insertar, pero la fila se ve al confirmar, así que una
+ * transacción lenta puede hacer visible el id 10 después de que ya se
+ * haya leído el 11. Por eso no se avanza hasta el último id leído, sino
+ * hasta el último que se leyó hace más de solape-ms; los ids de ese
+ * margen se vuelven a leer y se descartan los ya entregados.
+ * Las filas de más de retencion-minutos se borran. Si la instancia pasa
+ * más de ese tiempo sin poder leer la tabla, pueden haberse perdido
+ * mensajes: al recuperarse entrega un "vaciarlo todo".
+ * Las invalidaciones con muchos ids (un cambio de precios en bloque) se
+ * parten en filas de MAXIMO_IDS_POR_FILA.
+ */
+@Component
+public class BusInvalidacionJdbc implements BusInvalidacion {
+
+    private static final Logger log = LoggerFactory.getLogger(BusInvalidacionJdbc.class);
+
+    private static final int MAXIMO_IDS_POR_FILA = 1000;
+
+    /**
+     * Origen de los mensajes que genera el propio bus (no es ninguna instancia).
+     */
+    private static final String ORIGEN_BUS = "bus";
+
+    private static final String SQL_INSERTAR = "INSERT INTO invalidaciones_cache"
+            + " (origen, ids, total, categorias, todo, fecha) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_LEER = "SELECT id, origen, ids, total, categorias, todo"
+            + " FROM invalidaciones_cache WHERE id > ? ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean habilitado;
+    private final long intervaloMs;
+    private final long solapeNanos;
+    private final long retencionMinutos;
+
+    private final List<Consumer<Invalidacion>> suscriptores = new CopyOnWriteArrayList<>();
+
+    // Solo los usa el hilo del bus
+    private long horizonte;
+    private final TreeMap<Long, Long> entregados = new TreeMap<>();
+    private long ultimaLecturaCorrecta;
+    private long ultimoBorrado;
+
+    private ScheduledExecutorService planificador;
+
+    /**
+     * habilitado Si es false, publicar() no hace nada y no se lee la tabla
+     * intervaloMs Cada cuánto se buscan mensajes nuevos
+     * solapeMs Tiempo que se espera a las transacciones lentas (ver arriba)
+     * retencionMinutos Antigüedad a partir de la que se borran las filas
+     */
+    @Autowired
+    public BusInvalidacionJdbc(JdbcTemplate jdbcTemplate,
+                               @Value("${supermercado.cache.bus.habilitado:false}") boolean habilitado,
+                               @Value("${supermercado.cache.bus.intervalo-ms:500}") long intervaloMs,
+                               @Value("${supermercado.cache.bus.solape-ms:5000}") long solapeMs,
+                               @Value("${supermercado.cache.bus.retencion-minutos:60}") long retencionMinutos) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.habilitado = habilitado;
+        this.intervaloMs = intervaloMs;
+        this.solapeNanos = TimeUnit.MILLISECONDS.toNanos(solapeMs);
+        this.retencionMinutos = retencionMinutos;
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+
+    // CICLO DE VIDA
+
+    /**
+     * Empieza a leer desde el último mensaje que hay ahora en la tabla: los
+     * anteriores no importan, porque la L1 de esta instancia está vacía.
+     */
+    @PostConstruct
+    public void iniciar() {
+        if (!habilitado) {
+            return;
+        }
+        Long maximo = jdbcTemplate.queryForObject("SELECT MAX(id) FROM invalidaciones_cache", Long.class);
+        horizonte = maximo != null ? maximo : 0;
+        ultimaLecturaCorrecta = System.nanoTime();
+        ultimoBorrado = ultimaLecturaCorrecta;
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "bus-invalidacion");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::leerSinExcepciones, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+        }
+    }
+
+
+    // BUS
+
+    @Override
+    public void publicar(Invalidacion invalidacion) {
+        if (!habilitado) {
+            return;
+        }
+        Timestamp fecha = Timestamp.from(Instant.now());
+        List<Object[]> filas = new ArrayList<>();
+        List<Long> ids = invalidacion.ids();
+        int desde = 0;
+        do {
+            List<Long> bloque = ids.subList(desde, Math.min(desde + MAXIMO_IDS_POR_FILA, ids.size()));
+            String texto = bloque.isEmpty() ? null
+                    : bloque.stream().map(String::valueOf).collect(Collectors.joining(","));
+            filas.add(new Object[]{invalidacion.origen(), texto,
+                    invalidacion.total(), invalidacion.categorias(), invalidacion.todo(), fecha});
+            desde += MAXIMO_IDS_POR_FILA;
+        } while (desde < ids.size());
+        jdbcTemplate.batchUpdate(SQL_INSERTAR, filas);
+    }
+
+    @Override
+    public void suscribir(Consumer<Invalidacion> suscriptor) {
+        suscriptores.add(suscriptor);
+    }
+
+    /**
+     * Lee y entrega los mensajes nuevos. Lo llama el hilo del bus; se puede
+     * llamar a mano (por ejemplo en pruebas con intervalo-ms muy alto).
+     * Número de mensajes entregados
+     */
+    public synchronized int leer() {
+        if (!habilitado) {
+            return 0;
+        }
+        long ahora = System.nanoTime();
+        if (ahora - ultimaLecturaCorrecta > TimeUnit.MINUTES.toNanos(retencionMinutos)) {
+            log.warn("[BUS] Más de {} minutos sin leer invalidaciones: se vacían las cachés", retencionMinutos);
+            entregar(Invalidacion.deTodo(ORIGEN_BUS));
+        }
+
+        int entregadas = 0;
+        List<Fila> filas = jdbcTemplate.query(SQL_LEER, (rs, rowNum) -> new Fila(rs.getLong(1),
+                new Invalidacion(rs.getString(2), ids(rs.getString(3)),
+                        rs.getBoolean(4), rs.getBoolean(5), rs.getBoolean(6))), horizonte);
+        for (Fila fila : filas) {
+            if (entregados.putIfAbsent(fila.id(), ahora) == null) {
+                entregar(fila.invalidacion());
+                entregadas++;
+            }
+        }
+        ultimaLecturaCorrecta = ahora;
+
+        // Avanza el horizonte solo sobre los ids entregados hace más de solape
+        while (!entregados.isEmpty() && ahora - entregados.firstEntry().getValue() >= solapeNanos) {
+            horizonte = entregados.pollFirstEntry().getKey();
+        }
+
+        if (ahora - ultimoBorrado >= TimeUnit.MINUTES.toNanos(1)) {
+            ultimoBorrado = ahora;
+            Instant limite = Instant.now().minus(retencionMinutos, ChronoUnit.MINUTES);
+            jdbcTemplate.update("DELETE FROM invalidaciones_cache WHERE fecha < ?", Timestamp.from(limite));
+        }
+        return entregadas;
+    }
+
+    private void leerSinExcepciones() {
+        try {
+            leer();
+        } catch (RuntimeException e) {
+            log.warn("[BUS] Error leyendo invalidaciones", e);
+        }
+    }
+
+    private void entregar(Invalidacion invalidacion) {
+        for (Consumer<Invalidacion> suscriptor : suscriptores) {
+            try {
+                suscriptor.accept(invalidacion);
+            } catch (RuntimeException e) {
+                log.warn("[BUS] Error aplicando {}", invalidacion, e);
+            }
+        }
+    }
+
+    private static List<Long> ids(String texto) {
+        if (texto == null || texto.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(texto.split(",")).map(Long::valueOf).toList();
+    }
+
+    private record Fila(long id, Invalidacion invalidacion) {
+    }
+}
@@ -0,0 +1,32 @@
+package com.dam.supermercado.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * ============================================
+ * CACHÉ: BusInvalidacionLocal
+ * ============================================
+ * BusInvalidacion dentro del proceso: publicar() entrega el mensaje en el
+ * mismo hilo a todos los suscriptores. Sirve para probar varias
+ * ProductoCache (una por "instancia") que comparten el mismo bus sin
+ * levantar varias aplicaciones, y como bus de una caché sin otras
+ * instancias a las que avisar.
+ */
+public class BusInvalidacionLocal implements BusInvalidacion {
+
+    private final List<Consumer<Invalidacion>> suscriptores = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publicar(Invalidacion invalidacion) {
+        for (Consumer<Invalidacion> suscriptor : suscriptores) {
+            suscriptor.accept(invalidacion);
+        }
+    }
+
+    @Override
+    public void suscribir(Consumer<Invalidacion> suscriptor) {
+        suscriptores.add(suscriptor);
+    }
+}
@@ -0,0 +1,43 @@
+package com.dam.supermercado.cache;
+
+import com.dam.supermercado.model.Producto;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * ============================================
+ * CACHÉ: CacheCompartida (L2)
+ * ============================================
+ * Segundo nivel de ProductoCache, compartido por todas las instancias
+ * (normalmente Redis o Memcached). Cuando un producto no está en la L1
+ * de una instancia se busca aquí antes de ir a MySQL, así que lo que
+ * carga una instancia lo aprovechan las demás.
+ * Para usar una, basta con declarar un bean que implemente esta interfaz
+ * (por ejemplo, con ConversorProducto para serializar a JSON); si no hay
+ * ninguno, ProductoCache trabaja solo con la L1. CacheCompartidaMemoria
+ * hace de L2 en pruebas y benchmarks.
+ * Contrato de invalidar()/guardar(): una lectura lenta puede cargar un
+ * producto de la BD, perder la CPU mientras otra instancia lo modifica e
+ * invalida, y guardarlo DESPUÉS, ya obsoleto. Para evitarlo, invalidar()
+ * deja una marca durante unos segundos y guardar() no escribe encima de
+ * nada (ni de la marca ni de otro valor). En Redis: invalidar = SET clave
+ * "borrado" EX n, y guardar = SET clave valor NX EX ttl.
+ */
+public interface CacheCompartida {
+
+    /**
+     * Productos cacheados de esos ids (los que no están se omiten).
+     */
+    Map<Long, Producto> obtener(Collection<Long> ids);
+
+    /**
+     * Guarda los productos que no estén ya (ni invalidados hace poco).
+     */
+    void guardar(Map<Long, Producto> productos, long ttlSegundos);
+
+    /**
+     * Borra esos productos e impide guardarlos durante unos segundos.
+     */
+    void invalidar(Collection<Long> ids);
+}
@@ -0,0 +1,99 @@
+package com.dam.supermercado.cache;
+
+import com.dam.supermercado.model.Producto;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ============================================
+ * CACHÉ: CacheCompartidaMemoria
+ * ============================================
+ * CacheCompartida en un ConcurrentHashMap, para pruebas y benchmarks:
+ * varias ProductoCache que reciben la misma instancia se comportan como
+ * varias instancias de la aplicación con un Redis común.
+ * Cumple el contrato de la interfaz igual que lo haría Redis (marcas de
+ * invalidación, guardar sin sobrescribir, TTL) y guarda copias, como si
+ * los productos viajaran serializados. Cuenta las operaciones: cada una
+ * sería una ida y vuelta por la red.
+ */
+public class CacheCompartidaMemoria implements CacheCompartida {
+
+    private final ConcurrentHashMap<Long, Entrada> entradas = new ConcurrentHashMap<>();
+    private final long marcaNanos;
+
+    private final AtomicLong operaciones = new AtomicLong();
+
+    /**
+     * marcaMs Tiempo que un producto invalidado no se puede volver a guardar
+     */
+    public CacheCompartidaMemoria(long marcaMs) {
+        this.marcaNanos = TimeUnit.MILLISECONDS.toNanos(marcaMs);
+    }
+
+    @Override
+    public Map<Long, Producto> obtener(Collection<Long> ids) {
+        operaciones.incrementAndGet();
+        long ahora = System.nanoTime();
+        Map<Long, Producto> encontrados = new HashMap<>();
+        for (Long id : ids) {
+            Entrada entrada = entradas.get(id);
+            if (entrada == null) {
+                continue;
+            }
+            if (entrada.caducada(ahora)) {
+                entradas.remove(id, entrada);
+            } else if (entrada.producto != null) {
+                encontrados.put(id, new Producto(entrada.producto));
+            }
+        }
+        return encontrados;
+    }
+
+    @Override
+    public void guardar(Map<Long, Producto> productos, long ttlSegundos) {
+        operaciones.incrementAndGet();
+        long ahora = System.nanoTime();
+        long caducaEn = ahora + TimeUnit.SECONDS.toNanos(ttlSegundos);
+        productos.forEach((id, producto) -> entradas.compute(id, (clave, actual) ->
+                actual != null && !actual.caducada(ahora) ? actual : new Entrada(new Producto(producto), caducaEn)));
+    }
+
+    @Override
+    public void invalidar(Collection<Long> ids) {
+        operaciones.incrementAndGet();
+        Entrada marca = new Entrada(null, System.nanoTime() + marcaNanos);
+        for (Long id : ids) {
+            entradas.put(id, marca);
+        }
+    }
+
+    /**
+     * Llamadas hechas (idas y vueltas que tendría un Redis).
+     */
+    public long operaciones() {
+        return operaciones.get();
+    }
+
+    /**
+     * Productos guardados, sin contar marcas ni caducados.
+     */
+    public int tamano() {
+        long ahora = System.nanoTime();
+        return (int) entradas.values().stream().filter(e -> e.producto != null && !e.caducada(ahora)).count();
+    }
+
+    /**
+     * producto null = marca de invalidación
+     */
+    private record Entrada(Producto producto, long caducaEn) {
+
+        private boolean caducada(long ahora) {
+            return ahora - caducaEn >= 0;
+        }
+    }
+}
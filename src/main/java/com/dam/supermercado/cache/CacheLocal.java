@@ -0,0 +1,341 @@
+package com.dam.supermercado.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * ============================================
+ * CACHÉ: CacheLocal (en memoria, acotada)
+ * ============================================
+ * Caché sencilla dentro del proceso con dos políticas de expulsión:
+ * - Por TAMAÑO: como máximo "tamanoMaximo" entradas; cuando se llena se
+ *   expulsa la usada hace más tiempo (LRU), gracias al modo "accessOrder"
+ *   de LinkedHashMap.
+ * - Por TIEMPO (TTL): cada entrada caduca "ttl" después de cargarse.
+ * Funciona como caché de lectura a través (read-through): si la clave no
+ * está, se llama al cargador, se guarda el resultado y se devuelve.
+ * Cuenta aciertos, fallos y expulsiones para poder dimensionarla.
+ * Los valores no pueden ser null (usa Optional para cachear "no existe").
+ * OBSOLETO MIENTRAS SE REVALIDA (stale-while-revalidate, opcional): una
+ * entrada caducada hace menos de "obsoleto" se sigue devolviendo, y se
+ * recarga en segundo plano con el ejecutor "refrescos". Así la lectura
+ * que coincide con la caducidad no paga la ida a la BD (el pico de
+ * latencia del p99 cada TTL). Una entrada invalidada no se sirve nunca
+ * obsoleta: la invalidación dice que ha cambiado, la caducidad no.
+ */
+public class CacheLocal<K, V> {
+
+    private final String nombre;
+    private final int tamanoMaximo;
+    private final long ttlNanos;
+    private final long obsoletoNanos;
+    private final Executor refrescos;
+
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+
+    /**
+     * Cargas en curso de cada clave. Una carga que empezó antes de invalidar
+     * SU clave no guarda el resultado, porque podría estar ya obsoleto; las
+     * de otras claves no se ven afectadas (si una invalidación descartara
+     * todas las cargas, con escrituras frecuentes la caché casi no se
+     * llenaría). Solo están las claves que se están cargando ahora mismo.
+     */
+    private final Map<K, CargaEnCurso> cargas = new HashMap<>();
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong expulsiones = new AtomicLong();
+    private final AtomicLong obsoletos = new AtomicLong();
+
+    public CacheLocal(String nombre, int tamanoMaximo, long ttl, TimeUnit unidad) {
+        this(nombre, tamanoMaximo, ttl, 0, unidad, null);
+    }
+
+    /**
+     * obsoleto Tiempo, pasado el TTL, durante el que se sirve la entrada
+     *          mientras se recarga (0 = nunca)
+     * refrescos Ejecutor de las recargas en segundo plano (null si obsoleto es 0)
+     */
+    public CacheLocal(String nombre, int tamanoMaximo, long ttl, long obsoleto, TimeUnit unidad, Executor refrescos) {
+        if (tamanoMaximo <= 0) {
+            throw new IllegalArgumentException("El tamaño máximo debe ser positivo: " + tamanoMaximo);
+        }
+        if (obsoleto > 0 && refrescos == null) {
+            throw new IllegalArgumentException("Servir entradas obsoletas necesita un ejecutor de refrescos");
+        }
+        this.nombre = nombre;
+        this.tamanoMaximo = tamanoMaximo;
+        this.ttlNanos = unidad.toNanos(ttl);
+        this.obsoletoNanos = unidad.toNanos(Math.max(obsoleto, 0));
+        this.refrescos = refrescos;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> masAntigua) {
+                if (size() > CacheLocal.this.tamanoMaximo) {
+                    expulsiones.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Devuelve el valor cacheado o, si no está o ha caducado, lo carga.
+     * La carga se hace fuera del bloqueo para no frenar al resto de hilos.
+     * clave Clave a buscar
+     * cargador Función que obtiene el valor de la BD
+     */
+    public V obtener(K clave, Function<? super K, ? extends V> cargador) {
+        long version;
+        synchronized (this) {
+            Entrada<V> entrada = entradas.get(clave);
+            if (entrada != null) {
+                long ahora = System.nanoTime();
+                if (!entrada.caducada(ahora)) {
+                    aciertos.incrementAndGet();
+                    return entrada.valor;
+                }
+                if (servibleObsoleta(entrada, ahora)) {
+                    aciertos.incrementAndGet();
+                    obsoletos.incrementAndGet();
+                    if (!entrada.refrescando) {
+                        entrada.refrescando = true;
+                        refrescar(List.of(entrada), () -> guardarRefresco(clave, entrada, cargador.apply(clave)));
+                    }
+                    return entrada.valor;
+                }
+                entradas.remove(clave);
+                expulsiones.incrementAndGet();
+            }
+            version = empezarCarga(clave);
+        }
+
+        fallos.incrementAndGet();
+        V valor = null;
+        try {
+            valor = cargador.apply(clave);
+            return valor;
+        } finally {
+            synchronized (this) {
+                if (terminarCarga(clave, version) && valor != null) {
+                    entradas.put(clave, new Entrada<>(valor, System.nanoTime() + ttlNanos));
+                }
+            }
+        }
+    }
+
+    /**
+     * Versión para varias claves: las que no están se cargan todas juntas
+     * con UNA llamada al cargador (por ejemplo, un solo WHERE id IN (...)).
+     * claves Claves a buscar
+     * cargador Recibe las claves que faltan y devuelve sus valores
+     * Mapa clave -> valor con las claves encontradas, en el orden recibido
+     */
+    public Map<K, V> obtenerVarios(Collection<K> claves,
+                                   Function<? super List<K>, ? extends Map<K, ? extends V>> cargador) {
+        Map<K, V> resultado = new LinkedHashMap<>();
+        List<K> faltan = new ArrayList<>();
+        Set<K> vistas = new HashSet<>();
+        Map<K, Entrada<V>> porRefrescar = new LinkedHashMap<>();
+        Map<K, Long> versiones = new HashMap<>();
+        synchronized (this) {
+            long ahora = System.nanoTime();
+            for (K clave : claves) {
+                if (!vistas.add(clave)) {
+                    continue;
+                }
+                Entrada<V> entrada = entradas.get(clave);
+                if (entrada != null && !entrada.caducada(ahora)) {
+                    aciertos.incrementAndGet();
+                    resultado.put(clave, entrada.valor);
+                } else if (entrada != null && servibleObsoleta(entrada, ahora)) {
+                    aciertos.incrementAndGet();
+                    obsoletos.incrementAndGet();
+                    resultado.put(clave, entrada.valor);
+                    if (!entrada.refrescando) {
+                        entrada.refrescando = true;
+                        porRefrescar.put(clave, entrada);
+                    }
+                } else {
+                    if (entrada != null) {
+                        entradas.remove(clave);
+                        expulsiones.incrementAndGet();
+                    }
+                    faltan.add(clave);
+                    versiones.put(clave, empezarCarga(clave));
+                }
+            }
+        }
+        if (!porRefrescar.isEmpty()) {
+            // Todas las obsoletas con UNA llamada al cargador, como las que faltan
+            refrescar(porRefrescar.values(), () -> {
+                Map<K, ? extends V> cargados = cargador.apply(new ArrayList<>(porRefrescar.keySet()));
+                porRefrescar.forEach((clave, entrada) -> guardarRefresco(clave, entrada, cargados.get(clave)));
+            });
+        }
+        if (faltan.isEmpty()) {
+            return resultado;
+        }
+
+        fallos.addAndGet(faltan.size());
+        Map<K, ? extends V> cargados = Map.of();
+        try {
+            cargados = cargador.apply(faltan);
+        } finally {
+            synchronized (this) {
+                long caducaEn = System.nanoTime() + ttlNanos;
+                for (K clave : faltan) {
+                    V valor = cargados.get(clave);
+                    if (terminarCarga(clave, versiones.get(clave)) && valor != null) {
+                        entradas.put(clave, new Entrada<>(valor, caducaEn));
+                    }
+                }
+            }
+        }
+        for (K clave : faltan) {
+            V valor = cargados.get(clave);
+            if (valor != null) {
+                resultado.put(clave, valor);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Devuelve el valor si está cacheado y vigente, sin cargarlo ni contar estadísticas.
+     */
+    public synchronized V consultar(K clave) {
+        Entrada<V> entrada = entradas.get(clave);
+        return entrada != null && !entrada.caducada(System.nanoTime()) ? entrada.valor : null;
+    }
+
+    /**
+     * Elimina una clave concreta.
+     */
+    public synchronized void invalidar(K clave) {
+        CargaEnCurso carga = cargas.get(clave);
+        if (carga != null) {
+            carga.version++;
+        }
+        entradas.remove(clave);
+    }
+
+    /**
+     * Vacía la caché completa (y descarta todas las cargas en curso).
+     */
+    public synchronized void invalidarTodo() {
+        for (CargaEnCurso carga : cargas.values()) {
+            carga.version++;
+        }
+        entradas.clear();
+    }
+
+    public synchronized EstadisticasCache estadisticas() {
+        return new EstadisticasCache(nombre, aciertos.get(), fallos.get(), expulsiones.get(), obsoletos.get(),
+                entradas.size(), tamanoMaximo);
+    }
+
+    private boolean servibleObsoleta(Entrada<V> entrada, long ahora) {
+        return obsoletoNanos > 0 && ahora - (entrada.caducaEn + obsoletoNanos) < 0;
+    }
+
+    /**
+     * Lanza la recarga en segundo plano. Si falla (o el ejecutor la
+     * rechaza), las entradas se desmarcan y la próxima lectura lo reintenta;
+     * mientras tanto se sigue sirviendo el valor obsoleto.
+     */
+    private void refrescar(Collection<Entrada<V>> refrescadas, Runnable recarga) {
+        Runnable desmarcar = () -> {
+            synchronized (this) {
+                refrescadas.forEach(entrada -> entrada.refrescando = false);
+            }
+        };
+        try {
+            refrescos.execute(() -> {
+                try {
+                    recarga.run();
+                } catch (RuntimeException e) {
+                    desmarcar.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            desmarcar.run();
+        }
+    }
+
+    /**
+     * Registra una carga de la clave (con el bloqueo tomado).
+     * Versión que terminarCarga compara para saber si se invalidó
+     */
+    private long empezarCarga(K clave) {
+        CargaEnCurso carga = cargas.computeIfAbsent(clave, k -> new CargaEnCurso());
+        carga.pendientes++;
+        return carga.version;
+    }
+
+    /**
+     * Da por terminada la carga (con el bloqueo tomado).
+     * true si la clave no se ha invalidado desde empezarCarga
+     */
+    private boolean terminarCarga(K clave, long version) {
+        CargaEnCurso carga = cargas.get(clave);
+        boolean vigente = carga.version == version;
+        if (--carga.pendientes == 0) {
+            cargas.remove(clave);
+        }
+        return vigente;
+    }
+
+    /**
+     * Guarda el valor recargado si la entrada sigue siendo la que se
+     * refrescó: si se invalidó, ya no está (o hay otra más nueva). Un valor
+     * null (ya no existe) la elimina.
+     */
+    private synchronized void guardarRefresco(K clave, Entrada<V> anterior, V valor) {
+        if (entradas.get(clave) != anterior) {
+            anterior.refrescando = false;
+            return;
+        }
+        if (valor == null) {
+            entradas.remove(clave);
+        } else {
+            entradas.put(clave, new Entrada<>(valor, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    private static final class CargaEnCurso {
+        private int pendientes;
+        private long version;
+    }
+
+    private static final class Entrada<V> {
+        private final V valor;
+        private final long caducaEn;
+
+        /**
+         * Hay una recarga en marcha (protegido por el bloqueo de la caché).
+         */
+        private boolean refrescando;
+
+        private Entrada(V valor, long caducaEn) {
+            this.valor = valor;
+            this.caducaEn = caducaEn;
+        }
+
+        private boolean caducada(long ahora) {
+            return ahora - caducaEn >= 0;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.dam.supermercado.cache;
+
+/**
+ * Foto de los contadores de una CacheLocal.
+ * Sirve para dimensionar la caché: con una tasa de aciertos baja y muchas
+ * expulsiones, probablemente el tamaño máximo o el TTL se quedan cortos.
+ * "obsoletos" son los aciertos servidos ya caducados mientras se recargaban
+ * (ya están contados también en "aciertos").
+ */
+public record EstadisticasCache(String nombre, long aciertos, long fallos, long expulsiones, long obsoletos,
+                                int tamano, int tamanoMaximo) {
+
+    /**
+     * Proporción de lecturas servidas desde la caché (0.0 - 1.0).
+     */
+    public double tasaAciertos() {
+        long total = aciertos + fallos;
+        return total == 0 ? 0.0 : (double) aciertos / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Cache [%s: aciertos=%d, fallos=%d, expulsiones=%d, obsoletos=%d, tamaño=%d/%d, tasa=%.1f%%]",
+                nombre, aciertos, fallos, expulsiones, obsoletos, tamano, tamanoMaximo, tasaAciertos() * 100);
+    }
+}
@@ -0,0 +1,29 @@
+package com.dam.supermercado.cache;
+
+import java.util.List;
+
+/**
+ * Mensaje que una instancia envía a las demás por el BusInvalidacion tras
+ * una escritura: qué entradas de sus cachés locales (L1) han quedado
+ * obsoletas. La instancia que lo calcula sabe, por ejemplo, si cambió
+ * una categoría; las que lo reciben solo lo aplican.
+ * origen Instancia que hizo la escritura (ignora sus propios mensajes)
+ * ids Productos modificados
+ * total Ha cambiado el número de productos
+ * categorias Puede haber cambiado la lista de categorías
+ * todo Hay que vaciarlo todo (el bus pudo perder mensajes)
+ */
+public record Invalidacion(String origen, List<Long> ids, boolean total, boolean categorias, boolean todo) {
+
+    public Invalidacion {
+        ids = List.copyOf(ids);
+    }
+
+    public static Invalidacion deProductos(String origen, List<Long> ids, boolean total, boolean categorias) {
+        return new Invalidacion(origen, ids, total, categorias, false);
+    }
+
+    public static Invalidacion deTodo(String origen) {
+        return new Invalidacion(origen, List.of(), true, true, true);
+    }
+}
@@ -0,0 +1,412 @@
+package com.dam.supermercado.cache;
+
+import com.dam.supermercado.model.Producto;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * ============================================
+ * CACHÉ: ProductoCache
+ * ============================================
+ * Caché de lectura que se coloca delante de ProductoService para las
+ * consultas que casi no cambian entre escrituras:
+ * - Productos por ID          (findById)
+ * - Lista de categorías       (SELECT DISTINCT categoria)
+ * - Número total de productos (SELECT COUNT(*))
+ * Las escrituras del servicio llaman a los métodos "alGuardar",
+ * "alActualizar" y "alEliminar", que invalidan SOLO las entradas afectadas.
+ * Como Producto es mutable, se guardan y se devuelven copias: así nadie
+ * puede modificar por accidente el objeto que está dentro de la caché.
+ * VARIAS INSTANCIAS: estas cachés (la L1) son de cada JVM, así que una
+ * escritura en otra instancia las dejaría obsoletas hasta el TTL. Por eso
+ * cada invalidación se publica también en el BusInvalidacion, y las que
+ * llegan de otras instancias se aplican aquí. Además, los productos por
+ * ID pueden tener un segundo nivel compartido (CacheCompartida, la L2):
+ * al fallar la L1 se busca allí antes de ir a la BD, y las escrituras lo
+ * invalidan directamente.
+ * Con obsoleto-segundos > 0, una entrada de la L1 caducada se sigue
+ * sirviendo ese tiempo mientras un hilo la recarga (ver CacheLocal).
+ */
+@Component
+public class ProductoCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductoCache.class);
+
+    private static final String CLAVE_CATEGORIAS = "categorias";
+    private static final String CLAVE_TOTAL = "total";
+
+    /**
+     * Recargas en segundo plano que pueden esperar en cola; si se llena,
+     * se siguen sirviendo los valores obsoletos hasta que haya hueco.
+     */
+    private static final int REFRESCOS_EN_COLA = 1000;
+
+    private final boolean habilitada;
+
+    /**
+     * Identifica a esta instancia en los mensajes del bus.
+     */
+    private final String instancia = UUID.randomUUID().toString();
+
+    private final CacheCompartida compartida;
+    private final long ttlCompartidaSegundos;
+    private final BusInvalidacion bus;
+    private final ThreadPoolExecutor refrescos;
+
+    private final AtomicLong aciertosCompartida = new AtomicLong();
+    private final AtomicLong fallosCompartida = new AtomicLong();
+    private final AtomicLong invalidacionesRecibidas = new AtomicLong();
+
+    private final CacheLocal<Long, Optional<Producto>> productosPorId;
+    private final CacheLocal<String, List<String>> categorias;
+    private final CacheLocal<String, Long> contador;
+
+    /**
+     * Caché solo local: sin L2, sin entradas obsoletas y sin otras
+     * instancias a las que avisar.
+     */
+    public ProductoCache(boolean habilitada, int tamanoMaximo, long ttlSegundos) {
+        this(habilitada, tamanoMaximo, ttlSegundos, 0, Optional.empty(), 0, new BusInvalidacionLocal());
+    }
+
+    /**
+     * habilitada Si es false, todas las lecturas van directamente a la BD
+     * tamanoMaximo Número máximo de productos cacheados por ID
+     * ttlSegundos Tiempo de vida de cada entrada
+     * obsoletoSegundos Tiempo, pasado el TTL, que se sirve una entrada mientras se recarga
+     * compartida L2 (vacío si no se ha declarado ningún bean)
+     * ttlCompartidaSegundos Tiempo de vida de los productos en la L2
+     * bus Por donde se avisa a las otras instancias
+     */
+    @Autowired
+    public ProductoCache(@Value("${supermercado.cache.habilitada:true}") boolean habilitada,
+                         @Value("${supermercado.cache.tamano-maximo:10000}") int tamanoMaximo,
+                         @Value("${supermercado.cache.ttl-segundos:300}") long ttlSegundos,
+                         @Value("${supermercado.cache.obsoleto-segundos:0}") long obsoletoSegundos,
+                         Optional<CacheCompartida> compartida,
+                         @Value("${supermercado.cache.compartida.ttl-segundos:600}") long ttlCompartidaSegundos,
+                         BusInvalidacion bus) {
+        this.habilitada = habilitada;
+        this.compartida = compartida.orElse(null);
+        this.ttlCompartidaSegundos = ttlCompartidaSegundos;
+        this.bus = bus;
+        this.refrescos = obsoletoSegundos > 0 ? crearRefrescos() : null;
+        this.productosPorId = new CacheLocal<>("productosPorId", tamanoMaximo, ttlSegundos, obsoletoSegundos,
+                TimeUnit.SECONDS, refrescos);
+        this.categorias = new CacheLocal<>("categorias", 1, ttlSegundos, obsoletoSegundos, TimeUnit.SECONDS, refrescos);
+        this.contador = new CacheLocal<>("contador", 1, ttlSegundos, obsoletoSegundos, TimeUnit.SECONDS, refrescos);
+        bus.suscribir(this::alRecibir);
+    }
+
+    private static ThreadPoolExecutor crearRefrescos() {
+        return new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(REFRESCOS_EN_COLA), r -> {
+            Thread hilo = new Thread(r, "cache-refresco");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (refrescos != null) {
+            refrescos.shutdownNow();
+        }
+    }
+
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+
+    // LECTURAS
+
+    public Optional<Producto> obtenerProducto(Long id, Function<Long, Optional<Producto>> cargador) {
+        if (!habilitada) {
+            return cargador.apply(id);
+        }
+        return productosPorId.obtener(id, clave -> {
+            Map<Long, Producto> enCompartida = leerCompartida(List.of(clave));
+            if (!enCompartida.isEmpty()) {
+                return Optional.of(enCompartida.get(clave));
+            }
+            Optional<Producto> producto = cargador.apply(clave).map(Producto::new);
+            producto.ifPresent(p -> guardarCompartida(Map.of(clave, p)));
+            return producto;
+        }).map(Producto::new);
+    }
+
+    /**
+     * Varios productos por ID: los que no están en la L1 se piden juntos a
+     * la L2, y los que tampoco están allí, juntos al cargador.
+     * Los IDs que no existen también se cachean en la L1 (como Optional vacío).
+     */
+    public Map<Long, Producto> obtenerProductos(Collection<Long> ids,
+                                                Function<List<Long>, Map<Long, Producto>> cargador) {
+        Map<Long, Producto> productos = new LinkedHashMap<>();
+        if (!habilitada) {
+            productos.putAll(cargador.apply(new ArrayList<>(new LinkedHashSet<>(ids))));
+            return productos;
+        }
+        Map<Long, Optional<Producto>> encontrados = productosPorId.obtenerVarios(ids, faltan -> {
+            Map<Long, Optional<Producto>> copias = new HashMap<>();
+            Map<Long, Producto> enCompartida = leerCompartida(faltan);
+            enCompartida.forEach((id, producto) -> copias.put(id, Optional.of(producto)));
+            List<Long> restantes = faltan;
+            if (!enCompartida.isEmpty()) {
+                restantes = faltan.stream().filter(id -> !enCompartida.containsKey(id)).toList();
+            }
+            if (restantes.isEmpty()) {
+                return copias;
+            }
+            Map<Long, Producto> cargados = cargador.apply(restantes);
+            Map<Long, Producto> paraCompartida = new HashMap<>();
+            for (Long id : restantes) {
+                Producto producto = cargados.get(id);
+                copias.put(id, Optional.ofNullable(producto).map(Producto::new));
+                if (producto != null) {
+                    paraCompartida.put(id, producto);
+                }
+            }
+            guardarCompartida(paraCompartida);
+            return copias;
+        });
+        encontrados.forEach((id, producto) -> producto.ifPresent(p -> productos.put(id, new Producto(p))));
+        return productos;
+    }
+
+    public List<String> obtenerCategorias(Supplier<List<String>> cargador) {
+        if (!habilitada) {
+            return cargador.get();
+        }
+        return categorias.obtener(CLAVE_CATEGORIAS, clave -> List.copyOf(cargador.get()));
+    }
+
+    public long contarProductos(LongSupplier cargador) {
+        if (!habilitada) {
+            return cargador.getAsLong();
+        }
+        return contador.obtener(CLAVE_TOTAL, clave -> cargador.getAsLong());
+    }
+
+
+    // INVALIDACIÓN TRAS ESCRITURAS
+
+    /**
+     * Un producto nuevo cambia el total y, si su categoría no existía,
+     * también la lista de categorías.
+     */
+    public void alGuardar(Producto producto) {
+        if (!habilitada) {
+            return;
+        }
+        invalidar(List.of(producto.getId()), true, !categoriaConocida(producto.getCategoria()));
+    }
+
+    /**
+     * Al actualizar, el total no cambia. La lista de categorías solo hay que
+     * invalidarla si la categoría es nueva o si el producto cambió de categoría
+     * (la antigua podría haberse quedado vacía).
+     */
+    public void alActualizar(Producto producto) {
+        if (!habilitada) {
+            return;
+        }
+        Optional<Producto> anterior = productosPorId.consultar(producto.getId());
+        boolean mismaCategoria = anterior != null && anterior.isPresent()
+                && Objects.equals(anterior.get().getCategoria(), producto.getCategoria());
+        invalidar(List.of(producto.getId()), false, !mismaCategoria || !categoriaConocida(producto.getCategoria()));
+    }
+
+    /**
+     * Al borrar cambia el total y la categoría del producto podría desaparecer.
+     */
+    public void alEliminar(Long id) {
+        if (!habilitada) {
+            return;
+        }
+        invalidar(List.of(id), true, true);
+    }
+
+    /**
+     * Invalida solo el producto indicado (por ejemplo, tras cambiar su stock:
+     * ni el total ni las categorías se ven afectados).
+     */
+    public void invalidarProducto(Long id) {
+        if (habilitada) {
+            invalidar(List.of(id), false, false);
+        }
+    }
+
+    /**
+     * Como invalidarProducto, con un solo mensaje para todos.
+     */
+    public void invalidarProductos(Collection<Long> ids) {
+        if (habilitada && !ids.isEmpty()) {
+            invalidar(new ArrayList<>(ids), false, false);
+        }
+    }
+
+    /**
+     * Para las operaciones masivas: invalida los productos afectados y los
+     * datos agregados (total y categorías).
+     */
+    public void alModificarVarios(Collection<Producto> productos) {
+        if (!habilitada) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            if (producto.getId() != null) {
+                ids.add(producto.getId());
+            }
+        }
+        invalidar(ids, true, true);
+    }
+
+    /**
+     * Tras un cambio de precios en bloque (MotorPrecios): una sola llamada
+     * por lote con todos los productos afectados. Ni el total ni las
+     * categorías cambian.
+     */
+    public void alCambiarPrecios(Collection<Long> ids) {
+        if (!habilitada) {
+            return;
+        }
+        invalidar(new ArrayList<>(ids), false, false);
+    }
+
+    /**
+     * Vacía todas las cachés locales (ni la L2 ni las de otras instancias).
+     */
+    public void invalidarTodo() {
+        productosPorId.invalidarTodo();
+        categorias.invalidarTodo();
+        contador.invalidarTodo();
+    }
+
+    /**
+     * Las tres cachés de la L1 y, si hay L2, sus aciertos y fallos
+     * (sin tamaño: no se conoce desde aquí).
+     */
+    public List<EstadisticasCache> estadisticas() {
+        List<EstadisticasCache> estadisticas = new ArrayList<>(List.of(
+                productosPorId.estadisticas(), categorias.estadisticas(), contador.estadisticas()));
+        if (compartida != null) {
+            estadisticas.add(new EstadisticasCache("compartida", aciertosCompartida.get(), fallosCompartida.get(),
+                    0, 0, 0, 0));
+        }
+        return estadisticas;
+    }
+
+    /**
+     * Invalidaciones de otras instancias aplicadas aquí.
+     */
+    public long invalidacionesRecibidas() {
+        return invalidacionesRecibidas.get();
+    }
+
+
+    // L2 Y BUS
+
+    /**
+     * Invalida en la L1, en la L2 y, con un mensaje por el bus, en la L1 de
+     * las demás instancias. Un fallo de la L2 o del bus no hace fallar la
+     * escritura (que ya está hecha): esas entradas caducarán por TTL.
+     */
+    private void invalidar(List<Long> ids, boolean total, boolean categorias) {
+        Invalidacion invalidacion = Invalidacion.deProductos(instancia, ids, total, categorias);
+        aplicar(invalidacion);
+        if (compartida != null && !ids.isEmpty()) {
+            try {
+                compartida.invalidar(ids);
+            } catch (RuntimeException e) {
+                log.warn("[CACHE] No se pudo invalidar la caché compartida", e);
+            }
+        }
+        try {
+            bus.publicar(invalidacion);
+        } catch (RuntimeException e) {
+            log.warn("[CACHE] No se pudo publicar la invalidación", e);
+        }
+    }
+
+    private void alRecibir(Invalidacion invalidacion) {
+        if (!habilitada || instancia.equals(invalidacion.origen())) {
+            return;
+        }
+        invalidacionesRecibidas.incrementAndGet();
+        aplicar(invalidacion);
+    }
+
+    private void aplicar(Invalidacion invalidacion) {
+        if (invalidacion.todo()) {
+            invalidarTodo();
+            return;
+        }
+        for (Long id : invalidacion.ids()) {
+            productosPorId.invalidar(id);
+        }
+        if (invalidacion.total()) {
+            contador.invalidarTodo();
+        }
+        if (invalidacion.categorias()) {
+            categorias.invalidarTodo();
+        }
+    }
+
+    /**
+     * Productos de la L2 (vacío si no hay L2 o si falla: se irá a la BD).
+     */
+    private Map<Long, Producto> leerCompartida(List<Long> ids) {
+        if (compartida == null) {
+            return Map.of();
+        }
+        try {
+            Map<Long, Producto> encontrados = compartida.obtener(ids);
+            aciertosCompartida.addAndGet(encontrados.size());
+            fallosCompartida.addAndGet(ids.size() - encontrados.size());
+            return encontrados;
+        } catch (RuntimeException e) {
+            log.warn("[CACHE] No se pudo leer la caché compartida", e);
+            return Map.of();
+        }
+    }
+
+    private void guardarCompartida(Map<Long, Producto> productos) {
+        if (compartida == null || productos.isEmpty()) {
+            return;
+        }
+        try {
+            compartida.guardar(productos, ttlCompartidaSegundos);
+        } catch (RuntimeException e) {
+            log.warn("[CACHE] No se pudo guardar en la caché compartida", e);
+        }
+    }
+
+    private boolean categoriaConocida(String categoria) {
+        List<String> conocidas = categorias.consultar(CLAVE_CATEGORIAS);
+        return conocidas != null && conocidas.contains(categoria);
+    }
+}
@@ -0,0 +1,17 @@
+package com.dam.supermercado.cambios;
+
+import com.dam.supermercado.model.Producto;
+
+/**
+ * Un cambio en la tabla productos, tal como lo publica FeedCambios.
+ * secuencia Número de orden, creciente y sin huecos: sirve de "marca de
+ *           agua" para pedir después los cambios posteriores
+ * tipo Qué ha pasado
+ * productoId Producto afectado (null en RESINCRONIZAR)
+ * producto Copia del producto en ALTA y MODIFICACION, null en el resto
+ * deltaStock Unidades sumadas al stock en STOCK, 0 en el resto
+ * instanteMillis Cuándo se publicó (System.currentTimeMillis())
+ */
+public record EventoCambio(long secuencia, TipoCambio tipo, Long productoId, Producto producto,
+                           int deltaStock, long instanteMillis) {
+}
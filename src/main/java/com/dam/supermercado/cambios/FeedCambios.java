@@ -0,0 +1,230 @@
+package com.dam.supermercado.cambios;
+
+import com.dam.supermercado.model.Producto;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * ============================================
+ * CAMBIOS: FeedCambios
+ * ============================================
+ * Publica, en orden, cada alta, modificación, baja y cambio de stock que
+ * hace ProductoService, para que la búsqueda, los carteles de precios o la
+ * caché de la tienda online procesen solo lo que ha cambiado en lugar de
+ * volver a leer la tabla entera cada pocos minutos.
+ * Dos formas de consumirlo:
+ * - Suscripción (suscribir): cada suscriptor tiene su propia cola acotada
+ *   y su propio hilo, así que uno lento no frena ni a los demás ni a las
+ *   escrituras. Si su cola se llena deja de recibir y, cuando la vacía,
+ *   recupera lo perdido del historial.
+ * - Sondeo (cambiosDesde): quien guarde la secuencia del último evento que
+ *   procesó pide "lo que haya después". Sirve, por ejemplo, para un proceso
+ *   que se ejecuta cada cierto tiempo.
+ * El historial es un buffer circular con los últimos capacidad-historial
+ * eventos. Quien se quede más atrás recibe RESINCRONIZAR y debe recargar.
+ * ORDEN: los eventos se numeran después de escribir en la BD, fuera del
+ * bloqueo de la fila, así que dos modificaciones simultáneas del mismo
+ * producto pueden llegar aquí al revés de como se confirmaron. Por eso una
+ * MODIFICACION cuya versión no es mayor que la del último evento publicado
+ * de ese producto (o que llega tras su BAJA) se descarta: es una foto más
+ * vieja que la que ya tienen los consumidores.
+ * Limitaciones: solo ve las escrituras hechas a través de ProductoService
+ * en esta instancia, y el historial se pierde al reiniciar.
+ */
+@Component
+public class FeedCambios {
+
+    private final boolean habilitado;
+    private final int capacidadCola;
+
+    /**
+     * Buffer circular: el evento de secuencia s está en historial[s % longitud].
+     * Se accede siempre con el monitor de esta clase.
+     */
+    private final EventoCambio[] historial;
+    private long ultimaSecuencia;
+
+    /**
+     * Último ALTA, MODIFICACION (con versión) o BAJA de cada producto que
+     * sigue en el historial: contra él se comparan las modificaciones que
+     * llegan. Se quita al salir su evento del historial, así que no crece
+     * más que este.
+     */
+    private final Map<Long, EventoCambio> ultimoPorProducto = new HashMap<>();
+
+    private final List<Suscripcion> suscripciones = new CopyOnWriteArrayList<>();
+
+    /**
+     * habilitado Si es false no se publica nada
+     * capacidadHistorial Eventos que se guardan para cambiosDesde y para recuperar suscriptores
+     * capacidadCola Tamaño por defecto de la cola de cada suscriptor
+     */
+    @Autowired
+    public FeedCambios(@Value("${supermercado.cambios.habilitado:true}") boolean habilitado,
+                       @Value("${supermercado.cambios.capacidad-historial:8192}") int capacidadHistorial,
+                       @Value("${supermercado.cambios.capacidad-cola:1024}") int capacidadCola) {
+        this.habilitado = habilitado;
+        this.capacidadCola = capacidadCola;
+        this.historial = new EventoCambio[Math.max(1, capacidadHistorial)];
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+
+    // PUBLICACIÓN (la llama ProductoService tras cada escritura)
+
+    public void publicarAlta(Producto producto) {
+        publicar(TipoCambio.ALTA, producto.getId(), new Producto(producto), 0);
+    }
+
+    public void publicarModificacion(Producto producto) {
+        publicar(TipoCambio.MODIFICACION, producto.getId(), new Producto(producto), 0);
+    }
+
+    /**
+     * Una modificación por producto, publicadas juntas (un cambio de precios
+     * en bloque): ninguna otra escritura se intercala entre ellas.
+     */
+    public void publicarModificaciones(Collection<Producto> productos) {
+        if (!habilitado) {
+            return;
+        }
+        synchronized (this) {
+            for (Producto producto : productos) {
+                publicarModificacion(producto);
+            }
+        }
+    }
+
+    public void publicarBaja(Long id) {
+        publicar(TipoCambio.BAJA, id, null, 0);
+    }
+
+    public void publicarStock(Long id, int delta) {
+        publicar(TipoCambio.STOCK, id, null, delta);
+    }
+
+    /**
+     * Numera el evento, lo guarda en el historial y lo deja en la cola de
+     * cada suscriptor. Todo bajo el mismo monitor: así la secuencia y el
+     * orden en las colas coinciden siempre.
+     */
+    private void publicar(TipoCambio tipo, Long id, Producto producto, int delta) {
+        if (!habilitado) {
+            return;
+        }
+        synchronized (this) {
+            if (obsoleta(tipo, id, producto)) {
+                return;
+            }
+            EventoCambio evento = new EventoCambio(ultimaSecuencia + 1, tipo, id, producto, delta,
+                    System.currentTimeMillis());
+            ultimaSecuencia = evento.secuencia();
+            int posicion = (int) (evento.secuencia() % historial.length);
+            EventoCambio expulsado = historial[posicion];
+            if (expulsado != null) {
+                ultimoPorProducto.remove(expulsado.productoId(), expulsado);
+            }
+            historial[posicion] = evento;
+            if (tipo == TipoCambio.BAJA || producto != null && producto.getVersion() != null) {
+                ultimoPorProducto.put(id, evento);
+            }
+            for (Suscripcion suscripcion : suscripciones) {
+                suscripcion.ofrecer(evento);
+            }
+        }
+    }
+
+
+    /**
+     * true si es una MODIFICACION más vieja que el último evento publicado
+     * del producto. Sin versión no se puede saber y se publica.
+     */
+    private boolean obsoleta(TipoCambio tipo, Long id, Producto producto) {
+        if (tipo != TipoCambio.MODIFICACION || producto.getVersion() == null) {
+            return false;
+        }
+        EventoCambio anterior = ultimoPorProducto.get(id);
+        if (anterior == null) {
+            return false;
+        }
+        if (anterior.tipo() == TipoCambio.BAJA) {
+            return true;
+        }
+        return producto.getVersion() <= anterior.producto().getVersion();
+    }
+
+
+    // CONSULTA POR MARCA DE AGUA
+
+    /**
+     * Secuencia del último evento publicado (0 si no hay ninguno).
+     */
+    public synchronized long ultimaSecuencia() {
+        return ultimaSecuencia;
+    }
+
+    /**
+     * Eventos con secuencia mayor que "secuencia", en orden.
+     * Vacío (Optional.empty()) si algunos ya no están en el historial: hay
+     * que recargar todo y continuar desde ultimaSecuencia().
+     */
+    public synchronized Optional<List<EventoCambio>> cambiosDesde(long secuencia) {
+        long primeraGuardada = Math.max(1, ultimaSecuencia - historial.length + 1);
+        if (secuencia + 1 < primeraGuardada) {
+            return Optional.empty();
+        }
+        List<EventoCambio> eventos = new ArrayList<>((int) Math.max(0, ultimaSecuencia - secuencia));
+        for (long s = secuencia + 1; s <= ultimaSecuencia; s++) {
+            eventos.add(historial[(int) (s % historial.length)]);
+        }
+        return Optional.of(eventos);
+    }
+
+
+    // SUSCRIPCIONES
+
+    /**
+     * Suscribe un consumidor con la cola por defecto. Recibe los eventos
+     * publicados a partir de ahora, en orden, desde un hilo propio.
+     */
+    public Suscripcion suscribir(String nombre, Consumer<EventoCambio> consumidor) {
+        return suscribir(nombre, capacidadCola, consumidor);
+    }
+
+    public Suscripcion suscribir(String nombre, int capacidad, Consumer<EventoCambio> consumidor) {
+        Suscripcion suscripcion;
+        synchronized (this) {
+            suscripcion = new Suscripcion(this, nombre, capacidad, consumidor, ultimaSecuencia);
+            suscripciones.add(suscripcion);
+        }
+        suscripcion.arrancar();
+        return suscripcion;
+    }
+
+    public List<Suscripcion> suscripciones() {
+        return List.copyOf(suscripciones);
+    }
+
+    void quitar(Suscripcion suscripcion) {
+        suscripciones.remove(suscripcion);
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        suscripciones.forEach(Suscripcion::cancelar);
+    }
+}
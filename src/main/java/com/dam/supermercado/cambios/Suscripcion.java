@@ -0,0 +1,184 @@
+package com.dam.supermercado.cambios;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Un suscriptor de FeedCambios: una cola acotada y un hilo que la vacía
+ * llamando al consumidor.
+ * Si la cola se llena, FeedCambios deja de meter eventos (nunca espera por
+ * un suscriptor lento) y la marca como desbordada. Cuando el hilo la vacía,
+ * pide al historial los eventos que faltan desde el último entregado; si
+ * ya no están, entrega un RESINCRONIZAR. El consumidor ve siempre los
+ * eventos en orden y sin duplicados.
+ */
+public class Suscripcion {
+
+    private static final Logger log = LoggerFactory.getLogger(Suscripcion.class);
+
+    private final FeedCambios feed;
+    private final String nombre;
+    private final BlockingQueue<EventoCambio> cola;
+    private final Consumer<EventoCambio> consumidor;
+    private final Thread hilo;
+
+    /**
+     * Solo se leen y escriben con el monitor de FeedCambios, igual que la
+     * publicación, para que el paso de "recuperando" a "recibiendo" no pierda
+     * ni repita eventos.
+     */
+    private boolean desbordada;
+    private long ultimaEncolada;
+
+    private volatile boolean activa = true;
+    private volatile long ultimaEntregada;
+
+    private final LongAdder entregados = new LongAdder();
+    private final LongAdder recuperados = new LongAdder();
+    private final LongAdder resincronizaciones = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+
+    Suscripcion(FeedCambios feed, String nombre, int capacidad, Consumer<EventoCambio> consumidor, long desde) {
+        this.feed = feed;
+        this.nombre = nombre;
+        this.cola = new ArrayBlockingQueue<>(capacidad);
+        this.consumidor = consumidor;
+        this.ultimaEncolada = desde;
+        this.ultimaEntregada = desde;
+        this.hilo = new Thread(this::bucle, "cambios-" + nombre);
+        this.hilo.setDaemon(true);
+    }
+
+    void arrancar() {
+        hilo.start();
+    }
+
+    /**
+     * Llamado por FeedCambios (con su monitor) al publicar. No bloquea nunca.
+     */
+    void ofrecer(EventoCambio evento) {
+        if (desbordada) {
+            return;
+        }
+        if (cola.offer(evento)) {
+            ultimaEncolada = evento.secuencia();
+        } else {
+            desbordada = true;
+        }
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Secuencia del último evento que ha procesado el consumidor.
+     */
+    public long getUltimaEntregada() {
+        return ultimaEntregada;
+    }
+
+    public int getPendientes() {
+        return cola.size();
+    }
+
+    /**
+     * entregados, recuperados (del historial tras desbordarse),
+     * resincronizaciones y errores del consumidor.
+     */
+    public Map<String, Long> estadisticas() {
+        Map<String, Long> resultado = new LinkedHashMap<>();
+        resultado.put("entregados", entregados.sum());
+        resultado.put("recuperados", recuperados.sum());
+        resultado.put("resincronizaciones", resincronizaciones.sum());
+        resultado.put("errores", errores.sum());
+        return resultado;
+    }
+
+    /**
+     * Deja de recibir eventos. Los que estén en la cola se descartan.
+     */
+    public void cancelar() {
+        activa = false;
+        feed.quitar(this);
+        hilo.interrupt();
+    }
+
+
+    // HILO DEL SUSCRIPTOR
+
+    private void bucle() {
+        try {
+            while (activa) {
+                EventoCambio evento = cola.poll();
+                if (evento == null) {
+                    if (recuperar()) {
+                        continue;
+                    }
+                    evento = cola.take();
+                }
+                entregar(evento);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Con la cola vacía y marcada como desbordada, trae del historial lo que
+     * no se pudo encolar. Devuelve false si no estaba desbordada.
+     */
+    private boolean recuperar() {
+        List<EventoCambio> perdidos;
+        EventoCambio resincronizar = null;
+        synchronized (feed) {
+            if (!desbordada) {
+                return false;
+            }
+            Optional<List<EventoCambio>> enHistorial = feed.cambiosDesde(ultimaEncolada);
+            if (enHistorial.isPresent()) {
+                perdidos = enHistorial.get();
+            } else {
+                perdidos = List.of();
+                resincronizar = new EventoCambio(feed.ultimaSecuencia(), TipoCambio.RESINCRONIZAR,
+                        null, null, 0, System.currentTimeMillis());
+            }
+            ultimaEncolada = feed.ultimaSecuencia();
+            desbordada = false;
+        }
+
+        if (resincronizar != null) {
+            log.warn("[CAMBIOS] El suscriptor '{}' se ha quedado atrás: debe resincronizar", nombre);
+            resincronizaciones.increment();
+            entregar(resincronizar);
+        }
+        for (EventoCambio evento : perdidos) {
+            if (!activa) {
+                break;
+            }
+            recuperados.increment();
+            entregar(evento);
+        }
+        return true;
+    }
+
+    private void entregar(EventoCambio evento) {
+        try {
+            consumidor.accept(evento);
+        } catch (RuntimeException e) {
+            errores.increment();
+            log.warn("[CAMBIOS] El suscriptor '{}' falló con el evento {}", nombre, evento.secuencia(), e);
+        }
+        ultimaEntregada = evento.secuencia();
+        entregados.increment();
+    }
+}
@@ -0,0 +1,28 @@
+package com.dam.supermercado.cambios;
+
+/**
+ * Qué le ha pasado al producto de un EventoCambio.
+ */
+public enum TipoCambio {
+
+    /** Producto nuevo. El evento lleva el producto completo. */
+    ALTA,
+
+    /**
+     * Producto modificado (o guardado con upsert, sin saber si ya existía).
+     * El evento lleva el producto completo: basta con sustituir la copia local.
+     */
+    MODIFICACION,
+
+    /** Producto eliminado. El evento solo lleva el id. */
+    BAJA,
+
+    /** Cambio de stock. El evento lleva el id y las unidades sumadas (delta). */
+    STOCK,
+
+    /**
+     * El suscriptor se ha quedado tan atrás que los eventos perdidos ya no
+     * están en el historial: debe recargarlo todo y seguir con los siguientes.
+     */
+    RESINCRONIZAR
+}
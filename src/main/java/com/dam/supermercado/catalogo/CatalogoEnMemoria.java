@@ -0,0 +1,458 @@
+package com.dam.supermercado.catalogo;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.dam.supermercado.snapshot.Reconciliacion;
+import com.dam.supermercado.snapshot.SnapshotCatalogo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ============================================
+ * CATÁLOGO: CatalogoEnMemoria
+ * ============================================
+ * Modo opcional que mantiene la tabla productos cargada en memoria y
+ * responde a las consultas más frecuentes con índices secundarios
+ * pensados para cada una, sin ir a MySQL:
+ * ─────────────────────────────────────────────────────────────
+ * | Consulta                     | Índice en memoria           |
+ * ├─────────────────────────────────────────────────────────────┤
+ * | findByCategoria              | HashMap categoría -> ids    |
+ * | findByPrecioLessThanEqual    | TreeMap precio -> ids       |
+ * | findByPrecioBetween          | TreeMap precio -> ids       |
+ * | findByStockGreaterThanZero   | BitSet de ids con stock > 0 |
+ * ─────────────────────────────────────────────────────────────
+ * Los índices guardan ids ordenados (TreeSet), así que el orden de los
+ * resultados coincide con el de MySQL: por id, y por (precio, id) en las
+ * consultas de precio.
+ * La consistencia depende de que TODAS las escrituras pasen por
+ * ProductoService, que llama a registrar() y eliminar() tras cada cambio.
+ * Se carga la primera vez que se usa, recorriendo la tabla con un cursor.
+ * Si hay un snapshot local (SnapshotCatalogo), la primera carga sale de él
+ * sin tocar MySQL y después se reconcilia con la BD en segundo plano:
+ * mientras tanto se sirven los datos del snapshot, que pueden tener unos
+ * minutos de antigüedad.
+ */
+@Component
+public class CatalogoEnMemoria {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogoEnMemoria.class);
+
+    /**
+     * Rondas de relectura para los productos que se modifican mientras se
+     * reconcilia (ver reconciliarConBd()).
+     */
+    private static final int MAX_RONDAS_RECONCILIACION = 5;
+
+    private final ProductoRepository productoRepository;
+    private final SnapshotCatalogo snapshot;
+    private final boolean habilitado;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Producto> productosPorId = new HashMap<>();
+    private final Map<String, TreeSet<Long>> idsPorCategoria = new HashMap<>();
+    private final NavigableMap<BigDecimal, TreeSet<Long>> idsPorPrecio = new TreeMap<>();
+    private final BitSet idsConStock = new BitSet();
+
+    private volatile boolean cargado;
+
+    /**
+     * Ids escritos mientras se reconcilia con la BD (null si no se está
+     * reconciliando). Sus datos reconciliados pueden ser más viejos que
+     * los de la escritura, así que se vuelven a leer.
+     */
+    private Set<Long> tocadosDuranteReconciliacion;
+
+    /**
+     * productoRepository Repositorio usado para la carga inicial
+     * snapshot Snapshot local para la primera carga (puede ser null)
+     * habilitado Activa el modo catálogo en memoria
+     */
+    @Autowired
+    public CatalogoEnMemoria(ProductoRepository productoRepository,
+                             SnapshotCatalogo snapshot,
+                             @Value("${supermercado.catalogo.habilitado:false}") boolean habilitado) {
+        this.productoRepository = productoRepository;
+        this.snapshot = snapshot;
+        this.habilitado = habilitado;
+    }
+
+    public CatalogoEnMemoria(ProductoRepository productoRepository, boolean habilitado) {
+        this(productoRepository, null, habilitado);
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+
+    // CARGA
+
+    /**
+     * Carga (o recarga) toda la tabla en memoria.
+     * La primera carga usa el snapshot local si está disponible; las
+     * recargas siempre leen la BD, que está más al día que el snapshot.
+     */
+    public void cargar() {
+        lock.writeLock().lock();
+        try {
+            boolean desdeSnapshot = !cargado && snapshot != null && snapshot.isDisponible();
+            vaciar();
+            if (desdeSnapshot) {
+                try {
+                    snapshot.forEach(this::indexar);
+                } catch (RuntimeException e) {
+                    // Un fichero dañado no debe impedir arrancar: se carga desde la BD
+                    log.warn("[CATALOGO] No se pudo cargar el snapshot; se usa la BD", e);
+                    vaciar();
+                    desdeSnapshot = false;
+                }
+            }
+            if (desdeSnapshot) {
+                tocadosDuranteReconciliacion = new HashSet<>();
+                Thread hilo = new Thread(this::reconciliarConBd, "reconciliacion-catalogo");
+                hilo.setDaemon(true);
+                hilo.start();
+            } else {
+                productoRepository.forEachProducto(this::indexar);
+            }
+            cargado = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Pone al día lo cargado desde el snapshot. Las lecturas de la BD se
+     * hacen sin lock; solo se toma el write lock para aplicar el resultado.
+     * Si entretanto llega una escritura para un producto (registrar,
+     * ajustarStock...), lo leído de ese producto puede ser anterior a ella:
+     * no se aplica y se vuelve a leer en la ronda siguiente.
+     */
+    private void reconciliarConBd() {
+        try {
+            Reconciliacion reconciliacion = snapshot.reconciliar();
+            Set<Long> pendientes = aplicarReconciliacion(reconciliacion.cambiados(), reconciliacion.borrados());
+            for (int ronda = 1; !pendientes.isEmpty() && ronda < MAX_RONDAS_RECONCILIACION; ronda++) {
+                List<Producto> releidos = productoRepository.findAllById(pendientes);
+                Set<Long> desaparecidos = new HashSet<>(pendientes);
+                releidos.forEach(producto -> desaparecidos.remove(producto.getId()));
+                pendientes = aplicarReconciliacion(releidos, desaparecidos);
+            }
+            if (!pendientes.isEmpty()) {
+                log.warn("[CATALOGO] {} productos siguen cambiando; se quedan con la última escritura recibida", pendientes.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("[CATALOGO] Falló la reconciliación con la BD; se recargará desde MySQL", e);
+            cargar();
+        } finally {
+            lock.writeLock().lock();
+            try {
+                tocadosDuranteReconciliacion = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Aplica productos leídos y borrados salvo los escritos desde la última
+     * ronda, que se devuelven para volver a leerlos.
+     */
+    private Set<Long> aplicarReconciliacion(Collection<Producto> leidos, Collection<Long> borrados) {
+        lock.writeLock().lock();
+        try {
+            Set<Long> tocados = tocadosDuranteReconciliacion;
+            Set<Long> pendientes = new HashSet<>();
+            for (Producto producto : leidos) {
+                if (tocados.contains(producto.getId())) {
+                    pendientes.add(producto.getId());
+                } else {
+                    desindexar(producto.getId());
+                    indexar(producto);
+                }
+            }
+            for (Long id : borrados) {
+                if (tocados.contains(id)) {
+                    pendientes.add(id);
+                } else {
+                    desindexar(id);
+                }
+            }
+            tocados.clear();
+            return pendientes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void asegurarCargado() {
+        if (!cargado) {
+            lock.writeLock().lock();
+            try {
+                if (!cargado) {
+                    cargar();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+
+    // CONSULTAS
+
+    /**
+     * Todos los productos, ordenados por id.
+     */
+    public List<Producto> findAll() {
+        asegurarCargado();
+        lock.readLock().lock();
+        try {
+            return copiar(new TreeSet<>(productosPorId.keySet()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Producto> findByCategoria(String categoria) {
+        asegurarCargado();
+        lock.readLock().lock();
+        try {
+            return copiar(idsPorCategoria.getOrDefault(categoria, new TreeSet<>()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Productos con precio <= precioMaximo, ordenados por precio.
+     */
+    public List<Producto> findByPrecioLessThanEqual(BigDecimal precioMaximo) {
+        asegurarCargado();
+        lock.readLock().lock();
+        try {
+            return copiarTodos(idsPorPrecio.headMap(precioMaximo, true).values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Productos con precio entre precioMinimo y precioMaximo (ambos incluidos),
+     * ordenados por precio.
+     */
+    public List<Producto> findByPrecioBetween(BigDecimal precioMinimo, BigDecimal precioMaximo) {
+        asegurarCargado();
+        if (precioMinimo.compareTo(precioMaximo) > 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            return copiarTodos(idsPorPrecio.subMap(precioMinimo, true, precioMaximo, true).values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Los productos de esos ids, en el mismo orden (los que no están se
+     * omiten). Es como IndiceBusqueda resuelve sus resultados.
+     */
+    public List<Producto> findAllById(List<Long> ids) {
+        asegurarCargado();
+        lock.readLock().lock();
+        try {
+            List<Producto> resultado = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                Producto producto = productosPorId.get(id);
+                if (producto != null) {
+                    resultado.add(new Producto(producto));
+                }
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Producto> findByStockGreaterThanZero() {
+        asegurarCargado();
+        lock.readLock().lock();
+        try {
+            List<Producto> resultado = new ArrayList<>(idsConStock.cardinality());
+            for (int id = idsConStock.nextSetBit(0); id >= 0; id = idsConStock.nextSetBit(id + 1)) {
+                resultado.add(new Producto(productosPorId.get((long) id)));
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // MANTENIMIENTO TRAS ESCRITURAS
+
+    /**
+     * Añade o reemplaza un producto (tras un INSERT o un UPDATE).
+     */
+    public void registrar(Producto producto) {
+        lock.writeLock().lock();
+        try {
+            // Si aún no se ha cargado, la carga inicial ya leerá el cambio de la BD.
+            // Se comprueba con el lock tomado para no perder cambios durante una carga.
+            if (!cargado) {
+                return;
+            }
+            marcarTocado(producto.getId());
+            desindexar(producto.getId());
+            indexar(new Producto(producto));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void registrarTodos(Collection<Producto> productos) {
+        lock.writeLock().lock();
+        try {
+            if (!cargado) {
+                return;
+            }
+            for (Producto producto : productos) {
+                marcarTocado(producto.getId());
+                desindexar(producto.getId());
+                indexar(new Producto(producto));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Aplica un cambio de stock sin volver a leer el producto de la BD
+     * (tras una reserva o una liberación atómica).
+     */
+    public void ajustarStock(Long id, int delta) {
+        lock.writeLock().lock();
+        try {
+            Producto producto = productosPorId.get(id);
+            if (!cargado || producto == null) {
+                return;
+            }
+            marcarTocado(id);
+            int stock = (producto.getStock() != null ? producto.getStock() : 0) + delta;
+            producto.setStock(stock);
+            // La copia indexada refleja la BD: las copias que se entregan no
+            // deben llevar el stock como "modificado" a un update() parcial
+            producto.limpiarCambios();
+            idsConStock.set(id.intValue(), stock > 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita un producto de todos los índices (tras un DELETE).
+     */
+    public void eliminar(Long id) {
+        lock.writeLock().lock();
+        try {
+            if (!cargado) {
+                return;
+            }
+            marcarTocado(id);
+            desindexar(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    // ÍNDICES (siempre con el write lock tomado)
+
+    private void vaciar() {
+        productosPorId.clear();
+        idsPorCategoria.clear();
+        idsPorPrecio.clear();
+        idsConStock.clear();
+    }
+
+    private void marcarTocado(Long id) {
+        if (tocadosDuranteReconciliacion != null) {
+            tocadosDuranteReconciliacion.add(id);
+        }
+    }
+
+    private void indexar(Producto producto) {
+        Long id = producto.getId();
+        if (id > Integer.MAX_VALUE) {
+            throw new IllegalStateException("El índice de stock (BitSet) no admite ids mayores que Integer.MAX_VALUE: " + id);
+        }
+        producto.limpiarCambios();
+        productosPorId.put(id, producto);
+        if (producto.getCategoria() != null) {
+            idsPorCategoria.computeIfAbsent(producto.getCategoria(), c -> new TreeSet<>()).add(id);
+        }
+        idsPorPrecio.computeIfAbsent(producto.getPrecio(), p -> new TreeSet<>()).add(id);
+        idsConStock.set(id.intValue(), producto.getStock() != null && producto.getStock() > 0);
+    }
+
+    private void desindexar(Long id) {
+        Producto anterior = productosPorId.remove(id);
+        if (anterior == null) {
+            return;
+        }
+        quitar(idsPorCategoria, anterior.getCategoria(), id);
+        quitar(idsPorPrecio, anterior.getPrecio(), id);
+        idsConStock.clear(id.intValue());
+    }
+
+    private static <K> void quitar(Map<K, TreeSet<Long>> indice, K clave, Long id) {
+        if (clave == null) {
+            return;
+        }
+        Set<Long> ids = indice.get(clave);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                indice.remove(clave);
+            }
+        }
+    }
+
+    private List<Producto> copiar(Collection<Long> ids) {
+        List<Producto> resultado = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            resultado.add(new Producto(productosPorId.get(id)));
+        }
+        return resultado;
+    }
+
+    private List<Producto> copiarTodos(Collection<TreeSet<Long>> grupos) {
+        List<Producto> resultado = new ArrayList<>();
+        for (TreeSet<Long> ids : grupos) {
+            for (Long id : ids) {
+                resultado.add(new Producto(productosPorId.get(id)));
+            }
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,116 @@
+package com.dam.supermercado.ejecucion;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * ============================================
+ * EJECUCIÓN: EjecutorPeticiones
+ * ============================================
+ * Ejecutor para lanzar llamadas a ProductoService en paralelo.
+ * Cada llamada a JDBC deja el hilo BLOQUEADO esperando a MySQL. Con hilos
+ * normales (de plataforma) cada uno cuesta ~1 MB de pila y un hilo del
+ * sistema operativo, así que miles de peticiones a la vez no caben.
+ * Los HILOS VIRTUALES (Java 21) son muy baratos: cuando uno se bloquea,
+ * se "aparca" y el hilo real queda libre para otro. Así podemos tener un
+ * hilo por petición aunque haya miles.
+ * El proyecto compila con Java 17, donde no existen, así que se buscan por
+ * reflexión: con Java 21 o superior se usan hilos virtuales y, si no, un
+ * pool fijo de "hilos-plataforma" hilos normales.
+ * Las conexiones siguen siendo pocas: DataSourceLimitado hace que solo
+ * entren al pool tantas peticiones como conexiones hay.
+ */
+@Component
+public class EjecutorPeticiones {
+
+    private static final Logger log = LoggerFactory.getLogger(EjecutorPeticiones.class);
+
+    private final ExecutorService executor;
+    private final boolean virtual;
+
+    /**
+     * hilosVirtuales Usar hilos virtuales si la JVM los tiene
+     * hilosPlataforma Tamaño del pool de hilos normales si no se usan virtuales
+     */
+    @Autowired
+    public EjecutorPeticiones(@Value("${supermercado.ejecucion.hilos-virtuales:true}") boolean hilosVirtuales,
+                              @Value("${supermercado.ejecucion.hilos-plataforma:64}") int hilosPlataforma) {
+        ExecutorService virtuales = hilosVirtuales ? crearEjecutorVirtual() : null;
+        if (virtuales != null) {
+            this.executor = virtuales;
+            this.virtual = true;
+            log.info("[EJECUCION] Usando hilos virtuales");
+        } else {
+            this.executor = crearEjecutorPlataforma(hilosPlataforma);
+            this.virtual = false;
+            log.info("[EJECUCION] Usando {} hilos de plataforma{}", hilosPlataforma,
+                    hilosVirtuales ? " (esta JVM no tiene hilos virtuales)" : "");
+        }
+    }
+
+    /**
+     * Ejecuta la tarea en otro hilo.
+     * tarea Llamada a ejecutar, por ejemplo () -> service.obtenerProductoPorId(id)
+     * Future que se completa con el resultado o con la excepción lanzada
+     */
+    public <T> CompletableFuture<T> ejecutar(Supplier<T> tarea) {
+        return CompletableFuture.supplyAsync(tarea, executor);
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() si la JVM es Java 21 o superior.
+     * El ejecutor, o null si no hay hilos virtuales
+     */
+    public static ExecutorService crearEjecutorVirtual() {
+        try {
+            Method fabrica = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) fabrica.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo crear el ejecutor de hilos virtuales", e);
+        }
+    }
+
+    public static ExecutorService crearEjecutorPlataforma(int hilos) {
+        AtomicInteger contador = new AtomicInteger();
+        return Executors.newFixedThreadPool(hilos, r -> {
+            Thread hilo = new Thread(r, "peticion-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+}
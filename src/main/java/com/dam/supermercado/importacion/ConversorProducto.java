@@ -0,0 +1,395 @@
+package com.dam.supermercado.importacion;
+
+import com.dam.supermercado.model.Producto;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ============================================
+ * IMPORTACIÓN: ConversorProducto
+ * ============================================
+ * Convierte registros CSV y JSON en Producto (y al revés) y comprueba que
+ * cumplen las restricciones de la tabla productos antes de enviarlos a
+ * MySQL, para que un registro malo se rechace solo en vez de hacer fallar
+ * el lote entero.
+ * El JSON que se admite es el que generamos al exportar: objetos planos
+ * con cadenas, números y null. No hace falta una librería JSON completa
+ * (y el proyecto no depende de ninguna).
+ * Todos los métodos son estáticos y sin estado: se llaman a la vez desde
+ * los hilos de validación.
+ */
+final class ConversorProducto {
+
+    /**
+     * Orden de los campos en la cabecera que escribe la exportación.
+     */
+    static final String[] CAMPOS = {"id", "nombre", "descripcion", "precio", "stock", "categoria"};
+
+    private static final int ID = 0;
+    private static final int NOMBRE = 1;
+    private static final int DESCRIPCION = 2;
+    private static final int PRECIO = 3;
+    private static final int STOCK = 4;
+    private static final int CATEGORIA = 5;
+
+    // Límites de las columnas en supermercado.sql
+    private static final int MAX_NOMBRE = 100;
+    private static final int MAX_DESCRIPCION = 255;
+    private static final int MAX_CATEGORIA = 50;
+    private static final BigDecimal MAX_PRECIO = new BigDecimal("99999999.99");
+
+    private ConversorProducto() {
+    }
+
+
+    // LECTURA CSV
+
+    /**
+     * Lee la cabecera CSV y devuelve, para cada campo de CAMPOS, su columna
+     * en el fichero (-1 si no está). Las columnas desconocidas se ignoran.
+     */
+    static int[] leerCabecera(String linea) {
+        List<String> columnas = partirCsv(linea);
+        int[] indices = new int[CAMPOS.length];
+        for (int campo = 0; campo < CAMPOS.length; campo++) {
+            indices[campo] = -1;
+            for (int i = 0; i < columnas.size(); i++) {
+                String columna = columnas.get(i);
+                if (columna != null && columna.strip().toLowerCase(Locale.ROOT).equals(CAMPOS[campo])) {
+                    indices[campo] = i;
+                }
+            }
+        }
+        if (indices[NOMBRE] < 0 || indices[PRECIO] < 0) {
+            throw new IllegalArgumentException("La cabecera CSV debe tener al menos las columnas nombre y precio: " + linea);
+        }
+        return indices;
+    }
+
+    static Producto desdeCsv(String linea, int[] columnas) {
+        List<String> valores = partirCsv(linea);
+        String[] campos = new String[CAMPOS.length];
+        for (int campo = 0; campo < CAMPOS.length; campo++) {
+            int i = columnas[campo];
+            campos[campo] = i >= 0 && i < valores.size() ? valores.get(i) : null;
+        }
+        return crear(campos);
+    }
+
+    /**
+     * Separa una fila CSV (RFC 4180): campos entre comillas con "" para
+     * una comilla literal. Un campo vacío sin comillas es null; "" es la
+     * cadena vacía.
+     */
+    static List<String> partirCsv(String linea) {
+        List<String> campos = new ArrayList<>(CAMPOS.length);
+        int i = 0;
+        int n = linea.length();
+        while (true) {
+            if (i < n && linea.charAt(i) == '"') {
+                StringBuilder campo = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= n) {
+                        throw new IllegalArgumentException("comillas sin cerrar");
+                    }
+                    char c = linea.charAt(i++);
+                    if (c == '"') {
+                        if (i < n && linea.charAt(i) == '"') {
+                            campo.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        campo.append(c);
+                    }
+                }
+                campos.add(campo.toString());
+                if (i < n && linea.charAt(i) != ',') {
+                    throw new IllegalArgumentException("texto después de las comillas de cierre");
+                }
+            } else {
+                int coma = linea.indexOf(',', i);
+                int fin = coma < 0 ? n : coma;
+                campos.add(fin == i ? null : linea.substring(i, fin));
+                i = fin;
+            }
+            if (i >= n) {
+                return campos;
+            }
+            i++; // la coma
+        }
+    }
+
+
+    // LECTURA JSON
+
+    /**
+     * Lee un objeto JSON plano. Los campos desconocidos se ignoran.
+     */
+    static Producto desdeJson(String objeto) {
+        String[] campos = new String[CAMPOS.length];
+        LectorJson lector = new LectorJson(objeto);
+        lector.esperar('{');
+        if (!lector.consumir('}')) {
+            do {
+                String clave = lector.cadena();
+                lector.esperar(':');
+                String valor = lector.valor();
+                for (int campo = 0; campo < CAMPOS.length; campo++) {
+                    if (CAMPOS[campo].equals(clave)) {
+                        campos[campo] = valor;
+                    }
+                }
+            } while (lector.consumir(','));
+            lector.esperar('}');
+        }
+        return crear(campos);
+    }
+
+    /**
+     * Analizador mínimo de JSON sobre un String ya en memoria.
+     */
+    private static final class LectorJson {
+
+        private final String texto;
+        private int i;
+
+        LectorJson(String texto) {
+            this.texto = texto;
+        }
+
+        private void saltarEspacios() {
+            while (i < texto.length() && Character.isWhitespace(texto.charAt(i))) {
+                i++;
+            }
+        }
+
+        boolean consumir(char c) {
+            saltarEspacios();
+            if (i < texto.length() && texto.charAt(i) == c) {
+                i++;
+                return true;
+            }
+            return false;
+        }
+
+        void esperar(char c) {
+            if (!consumir(c)) {
+                throw new IllegalArgumentException("JSON no válido: se esperaba '" + c + "' en la posición " + i);
+            }
+        }
+
+        /**
+         * Una cadena, un número, true/false o null (como null de Java).
+         * Los números se devuelven tal cual están escritos.
+         */
+        String valor() {
+            saltarEspacios();
+            if (i >= texto.length()) {
+                throw new IllegalArgumentException("JSON no válido: falta un valor");
+            }
+            char c = texto.charAt(i);
+            if (c == '"') {
+                return cadena();
+            }
+            if (c == '{' || c == '[') {
+                throw new IllegalArgumentException("JSON no válido: no se admiten objetos ni arrays anidados");
+            }
+            int inicio = i;
+            while (i < texto.length() && ",}] \t\r\n".indexOf(texto.charAt(i)) < 0) {
+                i++;
+            }
+            String literal = texto.substring(inicio, i);
+            return literal.equals("null") ? null : literal;
+        }
+
+        String cadena() {
+            esperar('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (i >= texto.length()) {
+                    throw new IllegalArgumentException("JSON no válido: cadena sin cerrar");
+                }
+                char c = texto.charAt(i++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char e = texto.charAt(i++);
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 't' -> sb.append('\t');
+                    case 'r' -> sb.append('\r');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        sb.append((char) Integer.parseInt(texto.substring(i, i + 4), 16));
+                        i += 4;
+                    }
+                    default -> sb.append(e); // \" \\ \/
+                }
+            }
+        }
+    }
+
+
+    // CREACIÓN Y VALIDACIÓN
+
+    /**
+     * Crea el producto a partir de los textos de cada campo. Lanza
+     * IllegalArgumentException con el motivo si un número no es válido.
+     */
+    private static Producto crear(String[] campos) {
+        Producto producto = new Producto();
+        try {
+            if (campos[ID] != null && !campos[ID].isBlank()) {
+                producto.setId(Long.parseLong(campos[ID].strip()));
+            }
+            producto.setNombre(campos[NOMBRE]);
+            producto.setDescripcion(campos[DESCRIPCION]);
+            if (campos[PRECIO] != null && !campos[PRECIO].isBlank()) {
+                producto.setPrecio(new BigDecimal(campos[PRECIO].strip()));
+            }
+            producto.setStock(campos[STOCK] != null && !campos[STOCK].isBlank()
+                    ? Integer.parseInt(campos[STOCK].strip()) : 0);
+            producto.setCategoria(campos[CATEGORIA]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("número no válido: " + e.getMessage());
+        }
+        producto.limpiarCambios();
+        return producto;
+    }
+
+    /**
+     * Comprueba las restricciones de la tabla. Devuelve el motivo del
+     * rechazo, o null si el producto es válido.
+     */
+    static String validar(Producto producto) {
+        if (producto.getId() != null && producto.getId() <= 0) {
+            return "id debe ser positivo";
+        }
+        if (producto.getNombre() == null || producto.getNombre().isBlank()) {
+            return "nombre vacío";
+        }
+        if (producto.getNombre().length() > MAX_NOMBRE) {
+            return "nombre de más de " + MAX_NOMBRE + " caracteres";
+        }
+        if (producto.getDescripcion() != null && producto.getDescripcion().length() > MAX_DESCRIPCION) {
+            return "descripción de más de " + MAX_DESCRIPCION + " caracteres";
+        }
+        if (producto.getPrecio() == null) {
+            return "falta el precio";
+        }
+        if (producto.getPrecio().signum() < 0 || producto.getPrecio().compareTo(MAX_PRECIO) > 0) {
+            return "precio fuera de rango: " + producto.getPrecio();
+        }
+        if (producto.getPrecio().stripTrailingZeros().scale() > 2) {
+            return "precio con más de 2 decimales: " + producto.getPrecio();
+        }
+        if (producto.getStock() < 0) {
+            return "stock negativo";
+        }
+        if (producto.getCategoria() != null && producto.getCategoria().length() > MAX_CATEGORIA) {
+            return "categoría de más de " + MAX_CATEGORIA + " caracteres";
+        }
+        return null;
+    }
+
+
+    // ESCRITURA
+
+    static void escribirCabeceraCsv(Writer salida) throws IOException {
+        salida.write(String.join(",", CAMPOS));
+        salida.write('\n');
+    }
+
+    static void escribirCsv(Producto producto, Writer salida) throws IOException {
+        salida.write(String.valueOf(producto.getId()));
+        salida.write(',');
+        escribirCampoCsv(producto.getNombre(), salida);
+        salida.write(',');
+        escribirCampoCsv(producto.getDescripcion(), salida);
+        salida.write(',');
+        salida.write(producto.getPrecio() != null ? producto.getPrecio().toPlainString() : "");
+        salida.write(',');
+        salida.write(producto.getStock() != null ? producto.getStock().toString() : "");
+        salida.write(',');
+        escribirCampoCsv(producto.getCategoria(), salida);
+        salida.write('\n');
+    }
+
+    /**
+     * null se escribe como campo vacío; los textos, entre comillas solo si
+     * contienen comas, comillas o saltos de línea (o están vacíos, para no
+     * confundirlos con null).
+     */
+    private static void escribirCampoCsv(String valor, Writer salida) throws IOException {
+        if (valor == null) {
+            return;
+        }
+        boolean comillas = valor.isEmpty();
+        for (int i = 0; i < valor.length() && !comillas; i++) {
+            char c = valor.charAt(i);
+            comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!comillas) {
+            salida.write(valor);
+            return;
+        }
+        salida.write('"');
+        salida.write(valor.replace("\"", "\"\""));
+        salida.write('"');
+    }
+
+    static void escribirJson(Producto producto, Writer salida) throws IOException {
+        salida.write("{\"id\":");
+        salida.write(String.valueOf(producto.getId()));
+        salida.write(",\"nombre\":");
+        escribirCadenaJson(producto.getNombre(), salida);
+        salida.write(",\"descripcion\":");
+        escribirCadenaJson(producto.getDescripcion(), salida);
+        salida.write(",\"precio\":");
+        salida.write(producto.getPrecio() != null ? producto.getPrecio().toPlainString() : "null");
+        salida.write(",\"stock\":");
+        salida.write(String.valueOf(producto.getStock()));
+        salida.write(",\"categoria\":");
+        escribirCadenaJson(producto.getCategoria(), salida);
+        salida.write('}');
+    }
+
+    private static void escribirCadenaJson(String valor, Writer salida) throws IOException {
+        if (valor == null) {
+            salida.write("null");
+            return;
+        }
+        salida.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"' -> salida.write("\\\"");
+                case '\\' -> salida.write("\\\\");
+                case '\n' -> salida.write("\\n");
+                case '\r' -> salida.write("\\r");
+                case '\t' -> salida.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        salida.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        salida.write(c);
+                    }
+                }
+            }
+        }
+        salida.write('"');
+    }
+}
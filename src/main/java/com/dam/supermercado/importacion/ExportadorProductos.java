@@ -0,0 +1,115 @@
+package com.dam.supermercado.importacion;
+
+import com.dam.supermercado.repository.ProductoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * ============================================
+ * EXPORTACIÓN: ExportadorProductos
+ * ============================================
+ * Vuelca la tabla productos a CSV o JSON en el formato que lee
+ * ImportadorProductos.
+ * Lee con forEachProducto (un cursor: MySQL va enviando las filas según
+ * se consumen) y escribe cada fila al momento, así que la memoria usada
+ * es la misma con mil productos que con diez millones.
+ * Se escribe en un temporal que se renombra al terminar: quien lea el
+ * fichero nunca ve una exportación a medias.
+ */
+@Component
+public class ExportadorProductos {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportadorProductos.class);
+
+    private static final int TAMANO_BUFFER = 1 << 16;
+
+    /**
+     * Cada cuántas filas se avisa del progreso.
+     */
+    private static final int AVISO_CADA = 10_000;
+
+    private final ProductoRepository productoRepository;
+
+    @Autowired
+    public ExportadorProductos(ProductoRepository productoRepository) {
+        this.productoRepository = productoRepository;
+    }
+
+    /**
+     * Exporta todos los productos (formato según la extensión).
+     * progreso Recibe el avance cada AVISO_CADA filas y al final (puede ser null)
+     * Número de productos exportados
+     */
+    public long exportar(Path destino, Consumer<Progreso> progreso) {
+        FormatoFichero formato = FormatoFichero.desdeRuta(destino);
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        long inicio = System.nanoTime();
+        long[] filas = {0};
+        try {
+            try (Writer salida = new BufferedWriter(new OutputStreamWriter(
+                    Files.newOutputStream(temporal), StandardCharsets.UTF_8), TAMANO_BUFFER)) {
+                if (formato == FormatoFichero.CSV) {
+                    ConversorProducto.escribirCabeceraCsv(salida);
+                } else if (formato == FormatoFichero.JSON) {
+                    salida.write("[\n");
+                }
+                productoRepository.forEachProducto(producto -> {
+                    try {
+                        if (formato == FormatoFichero.CSV) {
+                            ConversorProducto.escribirCsv(producto, salida);
+                        } else {
+                            if (formato == FormatoFichero.JSON && filas[0] > 0) {
+                                salida.write(",\n");
+                            }
+                            ConversorProducto.escribirJson(producto, salida);
+                            if (formato == FormatoFichero.JSON_LINEAS) {
+                                salida.write('\n');
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    if (++filas[0] % AVISO_CADA == 0 && progreso != null) {
+                        progreso.accept(progreso(filas[0], inicio));
+                    }
+                });
+                if (formato == FormatoFichero.JSON) {
+                    salida.write(filas[0] > 0 ? "\n]\n" : "]\n");
+                }
+            }
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error escribiendo " + destino, e);
+        } finally {
+            try {
+                Files.deleteIfExists(temporal);
+            } catch (IOException e) {
+                log.warn("[EXPORTACION] No se pudo borrar {}", temporal, e);
+            }
+        }
+        Progreso fin = progreso(filas[0], inicio);
+        if (progreso != null) {
+            progreso.accept(fin);
+        }
+        log.info("[EXPORTACION] {} productos en {} ({} ms)", filas[0], destino, fin.millis());
+        return filas[0];
+    }
+
+    private static Progreso progreso(long filas, long inicio) {
+        return new Progreso(filas, filas, 0, -1, -1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+}
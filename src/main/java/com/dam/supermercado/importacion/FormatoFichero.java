@@ -0,0 +1,36 @@
+package com.dam.supermercado.importacion;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Formatos de fichero admitidos para importar y exportar el catálogo.
+ * - CSV: primera línea con los nombres de columna (id, nombre, descripcion,
+ *   precio, stock, categoria; en cualquier orden, id opcional).
+ * - JSON: un array de objetos con esos mismos campos.
+ * - JSON_LINEAS: un objeto por línea (.jsonl / .ndjson), sin array.
+ * Al importar, JSON y JSON_LINEAS se leen igual: se toma cada objeto de
+ * primer nivel sin importar lo que haya entre ellos.
+ */
+public enum FormatoFichero {
+    CSV,
+    JSON,
+    JSON_LINEAS;
+
+    /**
+     * Deduce el formato por la extensión del fichero.
+     */
+    public static FormatoFichero desdeRuta(Path ruta) {
+        String nombre = ruta.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (nombre.endsWith(".csv")) {
+            return CSV;
+        }
+        if (nombre.endsWith(".jsonl") || nombre.endsWith(".ndjson")) {
+            return JSON_LINEAS;
+        }
+        if (nombre.endsWith(".json")) {
+            return JSON;
+        }
+        throw new IllegalArgumentException("Extensión no reconocida (se admite .csv, .json, .jsonl): " + ruta);
+    }
+}
@@ -0,0 +1,331 @@
+package com.dam.supermercado.importacion;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.repository.ProductoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * ============================================
+ * IMPORTACIÓN: ImportadorProductos
+ * ============================================
+ * Carga ficheros CSV o JSON grandes en la tabla productos.
+ * EL PROCESO ES UNA CADENA DE TRES ETAPAS que trabajan a la vez:
+ * ─────────────────────────────────────────────────────────────
+ * | Etapa       | Hilos          | Trabajo                          |
+ * ├─────────────────────────────────────────────────────────────┤
+ * | Lectura     | el que llama   | bloques de 1 MB, cortar registros |
+ * | Validación  | "hilos"        | decodificar, convertir, validar  |
+ * | Escritura   | el que llama   | upsertAll en una transacción     |
+ * ─────────────────────────────────────────────────────────────
+ * Mientras se valida el lote N se escribe en la BD el lote N-1, así que
+ * la lectura y la validación quedan ocultas detrás de la escritura, que es
+ * la etapa lenta.
+ * Cada "intervaloCommit" registros se confirma una transacción. Los
+ * registros no válidos se rechazan uno a uno sin parar la importación.
+ * CHECKPOINTS: tras cada commit se guarda en "fichero.checkpoint" la
+ * posición en bytes alcanzada. Si la importación se corta, la siguiente
+ * llamada con el mismo fichero continúa desde ahí (si el fichero no ha
+ * cambiado de tamaño ni de fecha). Al terminar se borra.
+ * Los registros con id se guardan con INSERT ... ON DUPLICATE KEY UPDATE,
+ * así que repetirlos no duplica nada. Los que no traen id se insertan: si
+ * la aplicación cae entre un commit y la escritura de su checkpoint, ese
+ * último lote se insertaría dos veces al reanudar.
+ * Las importaciones escriben directamente con el repositorio; para que
+ * cachés, catálogo y feed de cambios se enteren, ProductoService se
+ * registra con alConfirmarLote().
+ */
+@Component
+public class ImportadorProductos {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportadorProductos.class);
+
+    /**
+     * Registros que valida cada tarea (repartir un lote en trozos permite
+     * usar todos los hilos aunque el lote sea pequeño).
+     */
+    private static final int REGISTROS_POR_TAREA = 2_000;
+
+    public static final int MAX_RECHAZOS_GUARDADOS = 100;
+
+    private final ProductoRepository productoRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int intervaloCommit;
+    private final int hilos;
+
+    private final List<Consumer<List<Producto>>> alConfirmarLote = new ArrayList<>();
+
+    /**
+     * intervaloCommit Registros por transacción
+     * hilos Hilos de validación (0 = uno por procesador)
+     */
+    @Autowired
+    public ImportadorProductos(ProductoRepository productoRepository, TransactionTemplate transactionTemplate,
+                               @Value("${supermercado.importacion.intervalo-commit:10000}") int intervaloCommit,
+                               @Value("${supermercado.importacion.hilos:0}") int hilos) {
+        if (intervaloCommit <= 0) {
+            throw new IllegalArgumentException("El intervalo de commit debe ser positivo: " + intervaloCommit);
+        }
+        this.productoRepository = productoRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.intervaloCommit = intervaloCommit;
+        this.hilos = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Registra una acción a ejecutar tras cada lote confirmado, con los
+     * productos guardados.
+     */
+    public void alConfirmarLote(Consumer<List<Producto>> accion) {
+        alConfirmarLote.add(accion);
+    }
+
+
+    // IMPORTACIÓN
+
+    /**
+     * Registros leídos del fichero, aún sin convertir.
+     * primero Número del primer registro
+     * posicionFin Posición en bytes tras el último
+     */
+    private record Bloque(List<byte[]> registros, long primero, long posicionFin) {
+    }
+
+    /**
+     * Un bloque ya convertido y validado.
+     */
+    private record Lote(List<Producto> validos, List<RegistroRechazado> rechazados, int registros, long posicionFin) {
+    }
+
+    /**
+     * Importa el fichero (formato según la extensión).
+     * progreso Recibe el avance tras cada commit (puede ser null)
+     */
+    public ResultadoImportacion importar(Path fichero, Consumer<Progreso> progreso) {
+        FormatoFichero formato = FormatoFichero.desdeRuta(fichero);
+        Path checkpoint = fichero.resolveSibling(fichero.getFileName() + ".checkpoint");
+        long inicio = System.nanoTime();
+        ExecutorService validadores = crearValidadores();
+        try (LectorRegistros lector = new LectorRegistros(fichero, formato)) {
+            long tamano = lector.tamano();
+            long modificado = Files.getLastModifiedTime(fichero).toMillis();
+
+            int[] columnas = null;
+            if (formato == FormatoFichero.CSV) {
+                byte[] cabecera = lector.siguiente();
+                if (cabecera == null) {
+                    throw new IllegalArgumentException("El fichero CSV está vacío: " + fichero);
+                }
+                columnas = ConversorProducto.leerCabecera(new String(cabecera, StandardCharsets.UTF_8));
+            }
+
+            Properties estado = leerCheckpoint(checkpoint, tamano, modificado);
+            boolean reanudada = estado != null;
+            long registros = reanudada ? Long.parseLong(estado.getProperty("registros")) : 0;
+            long correctos = reanudada ? Long.parseLong(estado.getProperty("correctos")) : 0;
+            long rechazados = reanudada ? Long.parseLong(estado.getProperty("rechazados")) : 0;
+            if (reanudada) {
+                lector.saltarA(Long.parseLong(estado.getProperty("posicion")));
+                log.info("[IMPORTACION] Reanudando {} en el registro {}", fichero, registros + 1);
+            }
+
+            List<RegistroRechazado> rechazos = new ArrayList<>();
+            long registrosAlEmpezar = registros;
+            Bloque bloque = leerBloque(lector, registros + 1);
+            CompletableFuture<Lote> validando = bloque.registros().isEmpty() ? null : validar(bloque, formato, columnas, validadores);
+            while (validando != null) {
+                // Se lee (y empieza a validarse) el siguiente bloque antes de escribir el actual
+                bloque = leerBloque(lector, bloque.primero() + bloque.registros().size());
+                CompletableFuture<Lote> siguiente = bloque.registros().isEmpty() ? null : validar(bloque, formato, columnas, validadores);
+
+                Lote lote = esperar(validando);
+                confirmar(lote.validos());
+                registros += lote.registros();
+                correctos += lote.validos().size();
+                rechazados += lote.rechazados().size();
+                for (RegistroRechazado rechazo : lote.rechazados()) {
+                    if (rechazos.size() < MAX_RECHAZOS_GUARDADOS) {
+                        rechazos.add(rechazo);
+                    }
+                }
+                guardarCheckpoint(checkpoint, tamano, modificado, lote.posicionFin(), registros, correctos, rechazados);
+
+                Progreso actual = new Progreso(registros, correctos, rechazados, lote.posicionFin(), tamano,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+                if (progreso != null) {
+                    progreso.accept(actual);
+                }
+                validando = siguiente;
+            }
+
+            Files.deleteIfExists(checkpoint);
+            Progreso fin = new Progreso(registros, correctos, rechazados, tamano, tamano,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+            log.info("[IMPORTACION] {}: {} registros ({} guardados, {} rechazados) en {} ms, {} registros/s",
+                    fichero, registros, correctos, rechazados, fin.millis(),
+                    (registros - registrosAlEmpezar) * 1000 / Math.max(fin.millis(), 1));
+            return new ResultadoImportacion(fin, Collections.unmodifiableList(rechazos), reanudada);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error leyendo " + fichero, e);
+        } finally {
+            validadores.shutdownNow();
+        }
+    }
+
+    private Bloque leerBloque(LectorRegistros lector, long primero) throws IOException {
+        List<byte[]> registros = new ArrayList<>(intervaloCommit);
+        byte[] registro;
+        while (registros.size() < intervaloCommit && (registro = lector.siguiente()) != null) {
+            registros.add(registro);
+        }
+        return new Bloque(registros, primero, lector.posicion());
+    }
+
+    /**
+     * Reparte la conversión y validación del bloque entre los hilos y junta
+     * los resultados en el orden del fichero.
+     */
+    private CompletableFuture<Lote> validar(Bloque bloque, FormatoFichero formato, int[] columnas,
+                                            ExecutorService validadores) {
+        List<byte[]> registros = bloque.registros();
+        List<CompletableFuture<Lote>> partes = new ArrayList<>();
+        for (int desde = 0; desde < registros.size(); desde += REGISTROS_POR_TAREA) {
+            int inicio = desde;
+            int fin = Math.min(desde + REGISTROS_POR_TAREA, registros.size());
+            partes.add(CompletableFuture.supplyAsync(
+                    () -> validarTrozo(registros.subList(inicio, fin), bloque.primero() + inicio, formato, columnas),
+                    validadores));
+        }
+        return CompletableFuture.allOf(partes.toArray(new CompletableFuture[0])).thenApply(nada -> {
+            List<Producto> validos = new ArrayList<>(registros.size());
+            List<RegistroRechazado> rechazados = new ArrayList<>();
+            for (CompletableFuture<Lote> parte : partes) {
+                Lote lote = parte.join();
+                validos.addAll(lote.validos());
+                rechazados.addAll(lote.rechazados());
+            }
+            return new Lote(validos, rechazados, registros.size(), bloque.posicionFin());
+        });
+    }
+
+    private static Lote validarTrozo(List<byte[]> registros, long primero, FormatoFichero formato, int[] columnas) {
+        List<Producto> validos = new ArrayList<>(registros.size());
+        List<RegistroRechazado> rechazados = new ArrayList<>();
+        long numero = primero;
+        for (byte[] registro : registros) {
+            String texto = new String(registro, StandardCharsets.UTF_8);
+            try {
+                Producto producto = formato == FormatoFichero.CSV
+                        ? ConversorProducto.desdeCsv(texto, columnas)
+                        : ConversorProducto.desdeJson(texto);
+                String motivo = ConversorProducto.validar(producto);
+                if (motivo == null) {
+                    validos.add(producto);
+                } else {
+                    rechazados.add(new RegistroRechazado(numero, motivo));
+                }
+            } catch (RuntimeException e) {
+                rechazados.add(new RegistroRechazado(numero, e.getMessage()));
+            }
+            numero++;
+        }
+        return new Lote(validos, rechazados, registros.size(), -1);
+    }
+
+    private void confirmar(List<Producto> validos) {
+        if (validos.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> productoRepository.upsertAll(validos));
+        for (Consumer<List<Producto>> accion : alConfirmarLote) {
+            accion.accept(validos);
+        }
+    }
+
+    private static Lote esperar(CompletableFuture<Lote> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    private ExecutorService crearValidadores() {
+        AtomicInteger numero = new AtomicInteger();
+        return Executors.newFixedThreadPool(hilos, r -> {
+            Thread hilo = new Thread(r, "validacion-importacion-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+
+    // CHECKPOINTS
+
+    /**
+     * Lee el checkpoint si corresponde a este mismo fichero; si no (o no
+     * hay), devuelve null y la importación empieza desde el principio.
+     */
+    private static Properties leerCheckpoint(Path checkpoint, long tamano, long modificado) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return null;
+        }
+        Properties estado = new Properties();
+        try (InputStream entrada = Files.newInputStream(checkpoint)) {
+            estado.load(entrada);
+        }
+        if (!String.valueOf(tamano).equals(estado.getProperty("tamano"))
+                || !String.valueOf(modificado).equals(estado.getProperty("modificado"))) {
+            log.warn("[IMPORTACION] El fichero ha cambiado desde el checkpoint {}; se empieza de nuevo", checkpoint);
+            return null;
+        }
+        return estado;
+    }
+
+    /**
+     * Escribe el checkpoint en un temporal y lo renombra, para que una
+     * caída a mitad nunca deje un checkpoint a medias.
+     */
+    private static void guardarCheckpoint(Path checkpoint, long tamano, long modificado, long posicion,
+                                          long registros, long correctos, long rechazados) throws IOException {
+        Properties estado = new Properties();
+        estado.setProperty("tamano", String.valueOf(tamano));
+        estado.setProperty("modificado", String.valueOf(modificado));
+        estado.setProperty("posicion", String.valueOf(posicion));
+        estado.setProperty("registros", String.valueOf(registros));
+        estado.setProperty("correctos", String.valueOf(correctos));
+        estado.setProperty("rechazados", String.valueOf(rechazados));
+        Path temporal = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (OutputStream salida = Files.newOutputStream(temporal)) {
+            estado.store(salida, "Checkpoint de importacion");
+        }
+        Files.move(temporal, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
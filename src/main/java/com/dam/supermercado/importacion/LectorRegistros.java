@@ -0,0 +1,233 @@
+package com.dam.supermercado.importacion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * ============================================
+ * IMPORTACIÓN: LectorRegistros
+ * ============================================
+ * Parte un fichero CSV o JSON en registros (una fila CSV, o un objeto
+ * JSON de primer nivel) leyendo bloques de 1 MB con un FileChannel.
+ * Trabaja con BYTES, sin decodificar el texto: los caracteres que marcan
+ * dónde acaba un registro (salto de línea, comillas, llaves) son ASCII y
+ * en UTF-8 nunca forman parte de un carácter multibyte. Así el hilo
+ * lector solo busca límites, y decodificar y validar (lo caro) se reparte
+ * entre varios hilos.
+ * Lleva la cuenta de la posición en bytes del final de cada registro:
+ * es lo que guarda el checkpoint para reanudar una importación.
+ * No es thread-safe: lo usa un único hilo.
+ */
+final class LectorRegistros implements AutoCloseable {
+
+    private static final int TAMANO_BLOQUE = 1 << 20;
+
+    private final FileChannel canal;
+    private final FormatoFichero formato;
+    private final byte[] bloque = new byte[TAMANO_BLOQUE];
+    private final ByteBuffer envoltorio = ByteBuffer.wrap(bloque);
+    private int pos;
+    private int lim;
+
+    /**
+     * Posición en el fichero de bloque[0].
+     */
+    private long base;
+
+    /**
+     * Posición en el fichero justo después del último registro devuelto.
+     */
+    private long posicion;
+
+    /**
+     * Registro en construcción cuando cruza el final de un bloque.
+     */
+    private byte[] registro = new byte[1024];
+    private int longitud;
+
+    // Estado del analizador
+    private boolean enRegistro;
+    private boolean enComillas;
+    private boolean escape;
+    private int profundidad;
+
+    LectorRegistros(Path ruta, FormatoFichero formato) throws IOException {
+        this.canal = FileChannel.open(ruta, StandardOpenOption.READ);
+        this.formato = formato;
+    }
+
+    /**
+     * Continúa la lectura en una posición devuelta antes por posicion()
+     * (siempre el límite entre dos registros).
+     */
+    void saltarA(long nuevaPosicion) throws IOException {
+        canal.position(nuevaPosicion);
+        base = nuevaPosicion;
+        posicion = nuevaPosicion;
+        pos = 0;
+        lim = 0;
+        longitud = 0;
+        enRegistro = false;
+        enComillas = false;
+        escape = false;
+        profundidad = 0;
+    }
+
+    /**
+     * Posición en bytes justo después del último registro devuelto.
+     */
+    long posicion() {
+        return posicion;
+    }
+
+    long tamano() throws IOException {
+        return canal.size();
+    }
+
+    /**
+     * Siguiente registro (bytes UTF-8, sin el salto de línea), o null al
+     * llegar al final del fichero.
+     */
+    byte[] siguiente() throws IOException {
+        return formato == FormatoFichero.CSV ? siguienteCsv() : siguienteJson();
+    }
+
+    /**
+     * Una fila acaba en un salto de línea fuera de comillas (un campo entre
+     * comillas puede contener saltos de línea). Las comillas dobles
+     * escapadas ("") cambian el estado dos veces y lo dejan como estaba.
+     * Las líneas en blanco se saltan.
+     */
+    private byte[] siguienteCsv() throws IOException {
+        int inicio = pos;
+        while (true) {
+            if (pos == lim) {
+                acumular(inicio, pos);
+                if (!rellenar()) {
+                    posicion = base;
+                    return longitud > 0 ? cerrar() : null;
+                }
+                inicio = 0;
+                continue;
+            }
+            byte b = bloque[pos++];
+            if (b == '"') {
+                enComillas = !enComillas;
+            } else if (b == '\n' && !enComillas) {
+                acumular(inicio, pos - 1);
+                posicion = base + pos;
+                inicio = pos;
+                byte[] fila = cerrar();
+                if (fila.length > 0) {
+                    return fila;
+                }
+            }
+        }
+    }
+
+    /**
+     * Un registro es un objeto { ... } de primer nivel: se cuentan las
+     * llaves fuera de las cadenas. Lo que hay entre objetos ('[', ',', ']',
+     * espacios y saltos de línea) se ignora.
+     */
+    private byte[] siguienteJson() throws IOException {
+        int inicio = pos;
+        while (true) {
+            if (pos == lim) {
+                if (enRegistro) {
+                    acumular(inicio, pos);
+                }
+                if (!rellenar()) {
+                    if (enRegistro) {
+                        throw new IllegalArgumentException("El fichero JSON acaba con un objeto incompleto");
+                    }
+                    return null;
+                }
+                inicio = 0;
+                continue;
+            }
+            byte b = bloque[pos++];
+            if (!enRegistro) {
+                if (b == '{') {
+                    inicio = pos - 1;
+                    enRegistro = true;
+                    profundidad = 1;
+                } else if (!ignorable(b)) {
+                    throw new IllegalArgumentException("Carácter inesperado entre objetos JSON en el byte " + (base + pos - 1));
+                }
+                continue;
+            }
+            if (enComillas) {
+                if (escape) {
+                    escape = false;
+                } else if (b == '\\') {
+                    escape = true;
+                } else if (b == '"') {
+                    enComillas = false;
+                }
+            } else if (b == '"') {
+                enComillas = true;
+            } else if (b == '{') {
+                profundidad++;
+            } else if (b == '}' && --profundidad == 0) {
+                acumular(inicio, pos);
+                posicion = base + pos;
+                enRegistro = false;
+                return cerrar();
+            }
+        }
+    }
+
+    private static boolean ignorable(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == ',' || b == '[' || b == ']';
+    }
+
+    private boolean rellenar() throws IOException {
+        base += lim;
+        envoltorio.clear();
+        int leidos;
+        do {
+            leidos = canal.read(envoltorio);
+        } while (leidos == 0);
+        pos = 0;
+        lim = Math.max(leidos, 0);
+        return leidos > 0;
+    }
+
+    /**
+     * Copia bloque[desde, hasta) al registro en construcción.
+     */
+    private void acumular(int desde, int hasta) {
+        int n = hasta - desde;
+        if (n <= 0) {
+            return;
+        }
+        if (longitud + n > registro.length) {
+            registro = Arrays.copyOf(registro, Math.max(registro.length * 2, longitud + n));
+        }
+        System.arraycopy(bloque, desde, registro, longitud, n);
+        longitud += n;
+    }
+
+    /**
+     * Devuelve el registro acumulado (sin el '\r' final de los ficheros de
+     * Windows) y lo vacía.
+     */
+    private byte[] cerrar() {
+        int n = longitud;
+        if (n > 0 && registro[n - 1] == '\r') {
+            n--;
+        }
+        longitud = 0;
+        return Arrays.copyOf(registro, n);
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+}
@@ -0,0 +1,21 @@
+package com.dam.supermercado.importacion;
+
+/**
+ * Estado de una importación o exportación, para mostrar el avance.
+ * - registros: registros procesados (en una importación reanudada,
+ *   incluye los de ejecuciones anteriores).
+ * - correctos / rechazados: guardados en la BD / descartados por no ser válidos.
+ * - bytes / bytesTotales: posición en el fichero y su tamaño
+ *   (bytesTotales = -1 al exportar, cuando aún no se conoce).
+ * - millis: tiempo transcurrido en esta ejecución.
+ */
+public record Progreso(long registros, long correctos, long rechazados,
+                       long bytes, long bytesTotales, long millis) {
+
+    /**
+     * Porcentaje del fichero procesado, o -1 si no se conoce el total.
+     */
+    public double porcentaje() {
+        return bytesTotales > 0 ? 100.0 * bytes / bytesTotales : -1;
+    }
+}
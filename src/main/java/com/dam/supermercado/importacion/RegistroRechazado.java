@@ -0,0 +1,9 @@
+package com.dam.supermercado.importacion;
+
+/**
+ * Registro del fichero que no se importó.
+ * numero Posición del registro en el fichero (1 = el primero de datos)
+ * motivo Por qué no es válido
+ */
+public record RegistroRechazado(long numero, String motivo) {
+}
@@ -0,0 +1,12 @@
+package com.dam.supermercado.importacion;
+
+import java.util.List;
+
+/**
+ * Resultado final de ImportadorProductos.importar().
+ * progreso Contadores finales
+ * rechazos Los primeros registros rechazados (como mucho MAX_RECHAZOS_GUARDADOS)
+ * reanudada true si se continuó desde un checkpoint de una ejecución anterior
+ */
+public record ResultadoImportacion(Progreso progreso, List<RegistroRechazado> rechazos, boolean reanudada) {
+}
@@ -0,0 +1,15 @@
+package com.dam.supermercado.metricas;
+
+/**
+ * Foto de las métricas de un método del repositorio (o de la espera del pool).
+ * Los tiempos están en microsegundos.
+ */
+public record EstadisticasMetodo(String nombre, long llamadas, long errores, long filas,
+                                 long mediaMicros, long p50Micros, long p99Micros, long maxMicros) {
+
+    @Override
+    public String toString() {
+        return String.format("%-32s llamadas=%d errores=%d filas=%d media=%dµs p50=%dµs p99=%dµs max=%dµs",
+                nombre, llamadas, errores, filas, mediaMicros, p50Micros, p99Micros, maxMicros);
+    }
+}
@@ -0,0 +1,36 @@
+package com.dam.supermercado.metricas;
+
+/**
+ * Contadores de sentencias preparadas en el servidor MySQL (SHOW GLOBAL STATUS).
+ * - preparaciones (Com_stmt_prepare): veces que el servidor ha analizado y
+ *   planificado una sentencia.
+ * - ejecuciones (Com_stmt_execute): veces que se ha ejecutado una ya preparada.
+ * - repreparaciones (Com_stmt_reprepare): preparadas otra vez porque cambió
+ *   la tabla (por ejemplo, tras un ALTER TABLE).
+ * - abiertas (Prepared_stmt_count): sentencias preparadas vivas ahora mismo
+ *   (la suma de las cachés de todas las conexiones).
+ */
+public record EstadisticasSentencias(long preparaciones, long ejecuciones, long repreparaciones, long abiertas) {
+
+    /**
+     * Parte de las ejecuciones que reutilizaron una sentencia ya preparada
+     * (1 = nunca se vuelve a analizar; 0 = se analiza en cada ejecución).
+     */
+    public double reutilizacion() {
+        return ejecuciones > 0 ? Math.max(0, 1 - (double) preparaciones / ejecuciones) : 0;
+    }
+
+    /**
+     * Diferencia con una foto anterior (abiertas es un valor actual, no se resta).
+     */
+    public EstadisticasSentencias desde(EstadisticasSentencias anterior) {
+        return new EstadisticasSentencias(preparaciones - anterior.preparaciones,
+                ejecuciones - anterior.ejecuciones, repreparaciones - anterior.repreparaciones, abiertas);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("preparaciones=%d ejecuciones=%d repreparaciones=%d abiertas=%d reutilizacion=%.1f%%",
+                preparaciones, ejecuciones, repreparaciones, abiertas, reutilizacion() * 100);
+    }
+}
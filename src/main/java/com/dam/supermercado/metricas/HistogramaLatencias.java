@@ -0,0 +1,104 @@
+package com.dam.supermercado.metricas;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ============================================
+ * MÉTRICAS: HistogramaLatencias
+ * ============================================
+ * Histograma de tiempos en microsegundos con memoria fija y sin locks.
+ * En vez de guardar cada medida (crecería sin límite), se cuenta cuántas
+ * caen en cada "cubo". Los cubos son log-lineales: cada potencia de dos
+ * se parte en 8 tramos iguales, así que un percentil nunca se desvía más
+ * de un 12,5% del valor real, y con ~490 contadores se cubre desde 1 µs
+ * hasta siglos.
+ * Ejemplo: 8-15 µs van a cubos de 1 µs, 1024-2047 µs a cubos de 128 µs.
+ */
+public class HistogramaLatencias {
+
+    private static final int BITS_SUBCUBO = 3;
+    private static final int SUBCUBOS = 1 << BITS_SUBCUBO;
+    private static final int CUBOS = (64 - BITS_SUBCUBO) * SUBCUBOS;
+
+    private final AtomicLongArray cubos = new AtomicLongArray(CUBOS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    public void registrar(long micros) {
+        long valor = Math.max(0, micros);
+        cubos.incrementAndGet(indice(valor));
+        total.increment();
+        suma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    public long total() {
+        return total.sum();
+    }
+
+    public long maximo() {
+        return maximo.get();
+    }
+
+    public long media() {
+        long n = total.sum();
+        return n == 0 ? 0 : suma.sum() / n;
+    }
+
+    /**
+     * Valor por debajo del cual queda la fracción "p" de las medidas.
+     * p Percentil entre 0.0 y 1.0 (0.99 = p99)
+     * Límite superior del cubo donde cae el percentil, en microsegundos
+     */
+    public long percentil(double p) {
+        long[] copia = new long[CUBOS];
+        long n = 0;
+        for (int i = 0; i < CUBOS; i++) {
+            copia[i] = cubos.get(i);
+            n += copia[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(p * n));
+        long acumulado = 0;
+        for (int i = 0; i < CUBOS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), maximo());
+            }
+        }
+        return maximo();
+    }
+
+    public void reiniciar() {
+        for (int i = 0; i < CUBOS; i++) {
+            cubos.set(i, 0);
+        }
+        total.reset();
+        suma.reset();
+        maximo.reset();
+    }
+
+    static int indice(long valor) {
+        if (valor < SUBCUBOS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int subcubo = (int) (valor >>> (exponente - BITS_SUBCUBO)) & (SUBCUBOS - 1);
+        return (exponente - BITS_SUBCUBO + 1) * SUBCUBOS + subcubo;
+    }
+
+    static long limiteSuperior(int indice) {
+        if (indice < SUBCUBOS) {
+            return indice;
+        }
+        int exponente = indice / SUBCUBOS + BITS_SUBCUBO - 1;
+        int subcubo = indice % SUBCUBOS;
+        long ancho = 1L << (exponente - BITS_SUBCUBO);
+        return ((long) (SUBCUBOS + subcubo) << (exponente - BITS_SUBCUBO)) + ancho - 1;
+    }
+}
@@ -0,0 +1,188 @@
+package com.dam.supermercado.metricas;
+
+import com.dam.supermercado.model.ProductosColumnares;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * ============================================
+ * MÉTRICAS: InstrumentacionRepositorio
+ * ============================================
+ * Engancha las medidas de MetricasRepositorio sin tocar el código del
+ * repositorio ni del pool. Es un BeanPostProcessor: Spring le pasa cada
+ * bean recién creado y puede devolver otro en su lugar.
+ * - ProductoRepository: se sustituye por un PROXY (una subclase generada
+ *   en tiempo de ejecución) que cronometra cada método público, cuenta las
+ *   filas del resultado y luego delega en el repositorio real.
+ * - HikariDataSource: se le registra un MetricsTrackerFactory, el punto de
+ *   extensión de HikariCP para medir cuánto tarda en prestar una conexión
+ *   y cuánto tiempo la retiene quien la pide.
+ * Cómo se cuentan las filas según lo que devuelve el método:
+ * - Colección o ProductosColumnares: su tamaño.  - Optional: 0 ó 1.
+ * - int: filas afectadas.  - int[] / int[][]: suma de filas afectadas.
+ * - Stream: se mide al cerrarlo, con el tiempo y las filas del recorrido
+ *   completo (si no se cierra, no se registra).
+ * - Con un Consumer como parámetro (forEachProducto): las veces que se llama.
+ * Con supermercado.metricas.habilitadas=false no se envuelve nada.
+ */
+@Component
+public class InstrumentacionRepositorio implements BeanPostProcessor {
+
+    private final MetricasRepositorio metricas;
+
+    @Autowired
+    public InstrumentacionRepositorio(MetricasRepositorio metricas) {
+        this.metricas = metricas;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String nombreBean) {
+        // Antes de inicializar: HikariCP no admite cambios una vez arrancado el pool
+        if (metricas.isHabilitadas() && bean instanceof HikariDataSource dataSource) {
+            dataSource.setMetricsTrackerFactory(rastreadorPool(metricas));
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String nombreBean) {
+        if (metricas.isHabilitadas() && bean instanceof ProductoRepository repositorio) {
+            return instrumentar(repositorio, metricas);
+        }
+        return bean;
+    }
+
+    /**
+     * Devuelve un ProductoRepository que mide cada llamada y delega en "repositorio".
+     * Público para poder instrumentar repositorios creados fuera de Spring (benchmarks).
+     */
+    public static ProductoRepository instrumentar(ProductoRepository repositorio, MetricasRepositorio metricas) {
+        MethodInterceptor interceptor = invocacion -> medir(invocacion, metricas);
+        if (repositorio instanceof Advised proxy && !proxy.isFrozen()) {
+            // Ya es un proxy de Spring (por ejemplo, traducción de excepciones):
+            // se añade la medida delante en lugar de envolver un proxy con otro
+            proxy.addAdvice(0, interceptor);
+            return repositorio;
+        }
+        ProxyFactory fabrica = new ProxyFactory(repositorio);
+        fabrica.setProxyTargetClass(true);
+        fabrica.addAdvice(interceptor);
+        return (ProductoRepository) fabrica.getProxy();
+    }
+
+    /**
+     * MetricsTrackerFactory de HikariCP que envía a "metricas" la espera y el uso de cada conexión.
+     */
+    public static MetricsTrackerFactory rastreadorPool(MetricasRepositorio metricas) {
+        return (nombrePool, estadisticasPool) -> new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long nanos) {
+                metricas.registrarEsperaPool(nanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long millis) {
+                metricas.registrarUsoConexion(millis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                metricas.registrarTimeoutPool();
+            }
+        };
+    }
+
+    private static Object medir(MethodInvocation invocacion, MetricasRepositorio metricas) throws Throwable {
+        String metodo = invocacion.getMethod().getName();
+        Object[] argumentos = invocacion.getArguments();
+        LongAdder filasConsumidas = contarConsumidor(argumentos);
+
+        long inicio = System.nanoTime();
+        Object resultado;
+        try {
+            resultado = invocacion.proceed();
+        } catch (Throwable e) {
+            metricas.registrarLlamada(metodo, argumentos, System.nanoTime() - inicio, 0, true);
+            throw e;
+        }
+
+        if (resultado instanceof Stream<?> stream) {
+            LongAdder filas = new LongAdder();
+            return stream.peek(fila -> filas.increment())
+                    .onClose(() -> metricas.registrarLlamada(metodo, argumentos,
+                            System.nanoTime() - inicio, filas.sum(), false));
+        }
+        long filas = filasConsumidas != null ? filasConsumidas.sum() : contarFilas(resultado);
+        metricas.registrarLlamada(metodo, argumentos, System.nanoTime() - inicio, filas, false);
+        return resultado;
+    }
+
+    /**
+     * Si algún parámetro es un Consumer, lo sustituye por uno que cuenta las filas.
+     */
+    @SuppressWarnings("unchecked")
+    private static LongAdder contarConsumidor(Object[] argumentos) {
+        for (int i = 0; i < argumentos.length; i++) {
+            if (argumentos[i] instanceof Consumer<?> original) {
+                LongAdder contador = new LongAdder();
+                Consumer<Object> accion = (Consumer<Object>) original;
+                argumentos[i] = (Consumer<Object>) fila -> {
+                    contador.increment();
+                    accion.accept(fila);
+                };
+                return contador;
+            }
+        }
+        return null;
+    }
+
+    private static long contarFilas(Object resultado) {
+        if (resultado instanceof Collection<?> coleccion) {
+            return coleccion.size();
+        }
+        if (resultado instanceof Optional<?> opcional) {
+            return opcional.isPresent() ? 1 : 0;
+        }
+        if (resultado instanceof Integer afectadas) {
+            return afectadas;
+        }
+        if (resultado instanceof int[] lote) {
+            return sumar(lote);
+        }
+        if (resultado instanceof int[][] lotes) {
+            long total = 0;
+            for (int[] lote : lotes) {
+                total += sumar(lote);
+            }
+            return total;
+        }
+        if (resultado instanceof ProductosColumnares columnares) {
+            return columnares.tamano();
+        }
+        return resultado == null ? 0 : 1;
+    }
+
+    private static long sumar(int[] lote) {
+        long total = 0;
+        for (int filas : lote) {
+            // SUCCESS_NO_INFO (-2): el driver no dice cuántas, cuenta como una
+            total += filas >= 0 ? filas : 1;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,41 @@
+package com.dam.supermercado.metricas;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de un método: llamadas, errores, filas e histograma de tiempos.
+ * Todos admiten escrituras concurrentes sin bloquear.
+ */
+class MetricaMetodo {
+
+    private final String nombre;
+    private final LongAdder llamadas = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private final LongAdder filas = new LongAdder();
+    private final HistogramaLatencias latencias = new HistogramaLatencias();
+
+    MetricaMetodo(String nombre) {
+        this.nombre = nombre;
+    }
+
+    void registrar(long micros, long filasDevueltas, boolean error) {
+        llamadas.increment();
+        if (error) {
+            errores.increment();
+        }
+        filas.add(filasDevueltas);
+        latencias.registrar(micros);
+    }
+
+    void reiniciar() {
+        llamadas.reset();
+        errores.reset();
+        filas.reset();
+        latencias.reiniciar();
+    }
+
+    EstadisticasMetodo instantanea() {
+        return new EstadisticasMetodo(nombre, llamadas.sum(), errores.sum(), filas.sum(),
+                latencias.media(), latencias.percentil(0.50), latencias.percentil(0.99), latencias.maximo());
+    }
+}
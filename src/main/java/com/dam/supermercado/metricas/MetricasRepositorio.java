@@ -0,0 +1,216 @@
+package com.dam.supermercado.metricas;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ============================================
+ * MÉTRICAS: MetricasRepositorio
+ * ============================================
+ * Punto central donde se acumulan las medidas de acceso a datos:
+ * - Por cada método de ProductoRepository: llamadas, errores, filas
+ *   devueltas o afectadas, y tiempos (media, p50, p99 y máximo).
+ * - Del pool de conexiones HikariCP: cuánto espera cada petición hasta
+ *   conseguir una conexión, cuánto la retiene, y cuántas se quedan sin
+ *   ella (timeout).
+ * Quién mide: InstrumentacionRepositorio envuelve el repositorio y el pool
+ * y llama a los métodos "registrar..." de esta clase.
+ * Cómo se consulta:
+ * - instantanea() / esperaPool() desde código (ProductoService las expone).
+ * - Un volcado periódico al log cada "volcado-segundos".
+ * - Las consultas que tardan más de "umbral-lento-ms" se escriben en el log
+ *   en el momento, con sus parámetros.
+ */
+@Component
+public class MetricasRepositorio {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricasRepositorio.class);
+
+    private final boolean habilitadas;
+    private final long umbralLentoMicros;
+    private final long volcadoSegundos;
+
+    private final Map<String, MetricaMetodo> metodos = new ConcurrentHashMap<>();
+    private final MetricaMetodo esperaPool = new MetricaMetodo("pool.espera-conexion");
+    private final MetricaMetodo usoConexion = new MetricaMetodo("pool.uso-conexion");
+    private final LongAdder timeoutsPool = new LongAdder();
+
+    private ScheduledExecutorService planificador;
+
+    /**
+     * habilitadas Si es false no se instrumenta nada (coste cero)
+     * umbralLentoMs Tiempo a partir del cual una consulta se considera lenta
+     * volcadoSegundos Cada cuánto se escriben las métricas en el log (0 = nunca)
+     */
+    @Autowired
+    public MetricasRepositorio(@Value("${supermercado.metricas.habilitadas:true}") boolean habilitadas,
+                               @Value("${supermercado.metricas.umbral-lento-ms:200}") long umbralLentoMs,
+                               @Value("${supermercado.metricas.volcado-segundos:60}") long volcadoSegundos) {
+        this.habilitadas = habilitadas;
+        this.umbralLentoMicros = TimeUnit.MILLISECONDS.toMicros(umbralLentoMs);
+        this.volcadoSegundos = volcadoSegundos;
+    }
+
+    public boolean isHabilitadas() {
+        return habilitadas;
+    }
+
+
+    // CICLO DE VIDA
+
+    @PostConstruct
+    public void iniciar() {
+        if (!habilitadas || volcadoSegundos <= 0) {
+            return;
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "volcado-metricas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleAtFixedRate(this::volcarAlLog, volcadoSegundos, volcadoSegundos, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+        }
+    }
+
+
+    // REGISTRO DE MEDIDAS
+
+    /**
+     * Registra una llamada a un método del repositorio.
+     * metodo Nombre del método (por ejemplo "findByCategoria")
+     * argumentos Parámetros de la llamada, solo se usan si es lenta
+     * nanos Duración de la llamada
+     * filas Filas devueltas o afectadas
+     * error true si la llamada lanzó una excepción
+     */
+    public void registrarLlamada(String metodo, Object[] argumentos, long nanos, long filas, boolean error) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        metodos.computeIfAbsent(metodo, MetricaMetodo::new).registrar(micros, filas, error);
+
+        if (micros >= umbralLentoMicros && log.isWarnEnabled()) {
+            log.warn("[REPOSITORIO] Consulta lenta: {}({}) tardó {} ms y devolvió {} filas",
+                    metodo, resumir(argumentos), TimeUnit.MICROSECONDS.toMillis(micros), filas);
+        }
+    }
+
+    public void registrarEsperaPool(long nanos) {
+        esperaPool.registrar(TimeUnit.NANOSECONDS.toMicros(nanos), 0, false);
+    }
+
+    public void registrarUsoConexion(long millis) {
+        usoConexion.registrar(TimeUnit.MILLISECONDS.toMicros(millis), 0, false);
+    }
+
+    public void registrarTimeoutPool() {
+        timeoutsPool.increment();
+    }
+
+
+    // CONSULTA
+
+    /**
+     * Métricas de todos los métodos llamados al menos una vez, por nombre.
+     */
+    public List<EstadisticasMetodo> instantanea() {
+        List<EstadisticasMetodo> resultado = new ArrayList<>(metodos.size());
+        for (MetricaMetodo metrica : metodos.values()) {
+            resultado.add(metrica.instantanea());
+        }
+        resultado.sort(Comparator.comparing(EstadisticasMetodo::nombre));
+        return resultado;
+    }
+
+    /**
+     * Tiempo de espera para obtener conexión del pool. "llamadas" es el número
+     * de conexiones prestadas y "errores" siempre es 0 (ver timeoutsPool()).
+     */
+    public EstadisticasMetodo esperaPool() {
+        return esperaPool.instantanea();
+    }
+
+    /**
+     * Tiempo que cada conexión pasa prestada, desde que sale del pool hasta
+     * que se devuelve. "llamadas" es el número de préstamos.
+     */
+    public EstadisticasMetodo usoConexiones() {
+        return usoConexion.instantanea();
+    }
+
+    /**
+     * Peticiones que no consiguieron conexión dentro de connectionTimeout.
+     */
+    public long timeoutsPool() {
+        return timeoutsPool.sum();
+    }
+
+    public void reiniciar() {
+        metodos.values().forEach(MetricaMetodo::reiniciar);
+        esperaPool.reiniciar();
+        usoConexion.reiniciar();
+        timeoutsPool.reset();
+    }
+
+    /**
+     * Escribe todas las métricas en el log (nivel INFO).
+     */
+    public void volcarAlLog() {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        StringBuilder texto = new StringBuilder("[METRICAS] Acceso a datos:");
+        for (EstadisticasMetodo estadisticas : instantanea()) {
+            texto.append(System.lineSeparator()).append("  ").append(estadisticas);
+        }
+        texto.append(System.lineSeparator()).append("  ").append(esperaPool())
+                .append(" timeouts=").append(timeoutsPool());
+        texto.append(System.lineSeparator()).append("  ").append(usoConexiones());
+        log.info(texto.toString());
+    }
+
+    /**
+     * Convierte los parámetros en texto corto: de una colección solo se
+     * muestra el tamaño, para no llenar el log con miles de productos.
+     */
+    private static String resumir(Object[] argumentos) {
+        if (argumentos == null || argumentos.length == 0) {
+            return "";
+        }
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < argumentos.length; i++) {
+            if (i > 0) {
+                texto.append(", ");
+            }
+            Object argumento = argumentos[i];
+            if (argumento instanceof Collection<?> coleccion) {
+                texto.append('[').append(coleccion.size()).append(" elementos]");
+            } else if (argumento instanceof Map<?, ?> mapa) {
+                texto.append('{').append(mapa.size()).append(" entradas}");
+            } else {
+                texto.append(argumento);
+            }
+        }
+        return texto.toString();
+    }
+}
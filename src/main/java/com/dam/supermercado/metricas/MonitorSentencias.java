@@ -0,0 +1,83 @@
+package com.dam.supermercado.metricas;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * ============================================
+ * MÉTRICAS: MonitorSentencias
+ * ============================================
+ * Muestra si las sentencias preparadas se están reutilizando.
+ * Con useServerPrepStmts=true el driver de MySQL prepara cada SQL en el
+ * servidor (que la analiza y planifica UNA vez) y con cachePrepStmts=true
+ * guarda las preparadas en una caché LRU por conexión (prepStmtCacheSize
+ * entradas); ver application.properties. Si la caché funciona, casi todas
+ * las ejecuciones reutilizan una sentencia: ejecuciones >> preparaciones.
+ * Los contadores son los GLOBALES del servidor (no hay otros para las
+ * sentencias de un cliente concreto), así que incluyen a cualquier otra
+ * aplicación conectada. leer() devuelve lo ocurrido desde que arrancó esta.
+ * Sin sentencias en el servidor (useServerPrepStmts=false, o con H2) los
+ * contadores no se mueven, y con una BD que no es MySQL no hay datos.
+ */
+@Component
+public class MonitorSentencias {
+
+    private static final Logger log = LoggerFactory.getLogger(MonitorSentencias.class);
+
+    private static final String SQL = "SHOW GLOBAL STATUS WHERE Variable_name IN "
+            + "('Com_stmt_prepare', 'Com_stmt_execute', 'Com_stmt_reprepare', 'Prepared_stmt_count')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile EstadisticasSentencias alArrancar;
+    private volatile boolean disponible = true;
+
+    @Autowired
+    public MonitorSentencias(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        alArrancar = consultar().orElse(null);
+    }
+
+    /**
+     * Contadores desde que arrancó la aplicación, o vacío si la BD no es MySQL.
+     */
+    public Optional<EstadisticasSentencias> leer() {
+        Optional<EstadisticasSentencias> actual = consultar();
+        EstadisticasSentencias inicial = alArrancar;
+        return inicial == null ? actual : actual.map(estadisticas -> estadisticas.desde(inicial));
+    }
+
+    private Optional<EstadisticasSentencias> consultar() {
+        if (!disponible) {
+            return Optional.empty();
+        }
+        try {
+            Map<String, Long> valores = new HashMap<>();
+            jdbcTemplate.query(SQL, rs -> {
+                valores.put(rs.getString(1), rs.getLong(2));
+            });
+            return Optional.of(new EstadisticasSentencias(
+                    valores.getOrDefault("Com_stmt_prepare", 0L),
+                    valores.getOrDefault("Com_stmt_execute", 0L),
+                    valores.getOrDefault("Com_stmt_reprepare", 0L),
+                    valores.getOrDefault("Prepared_stmt_count", 0L)));
+        } catch (DataAccessException e) {
+            // No es MySQL (p. ej. H2): no se vuelve a intentar
+            log.debug("[METRICAS] Sin contadores de sentencias preparadas: {}", e.getMessage());
+            disponible = false;
+            return Optional.empty();
+        }
+    }
+}
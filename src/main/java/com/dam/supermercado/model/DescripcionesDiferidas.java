@@ -0,0 +1,113 @@
+package com.dam.supermercado.model;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * ============================================
+ * MODELO: DescripcionesDiferidas
+ * ============================================
+ * Carga perezosa ("lazy loading") de la descripción de los productos de
+ * un listado. Es lo que hace Hibernate con @Basic(fetch = LAZY).
+ * Los listados (findAll, findByCategoria...) no traen la descripción: solo
+ * se muestra en la ficha de un producto, y es la columna más larga. Cada
+ * Producto del listado guarda este objeto (compartido por toda la lista)
+ * y su posición en ella; la primera vez que se llama a getDescripcion()
+ * se cargan a la vez las descripciones de todo su bloque de tamanoBloque
+ * productos con un único WHERE id IN (...). Así, recorrer la lista entera
+ * pidiendo descripciones cuesta una consulta por bloque, no una por
+ * producto (el problema "N+1" de los ORM).
+ * Como en Hibernate, se lee la descripción que haya en la BD al pedirla,
+ * no la que había al hacer el listado.
+ * Cada producto se queda con su descripción al recogerla. El bloque cargado
+ * se guarda con una SoftReference: este objeto vive mientras viva cualquier
+ * producto de la lista (o una copia suya en la caché, el catálogo...), y
+ * con referencias normales retendría todas las descripciones leídas. Con
+ * SoftReference el GC puede liberar los bloques si falta memoria; si luego
+ * un producto pide la suya, se vuelve a leer su bloque (una consulta).
+ * No vale una WeakReference: nadie más apunta a esas cadenas, así que el
+ * GC las liberaría en la siguiente recolección.
+ * Es thread-safe.
+ */
+public final class DescripcionesDiferidas {
+
+    private final Function<List<Long>, Map<Long, String>> cargador;
+    private final int tamanoBloque;
+
+    private long[] ids = new long[64];
+    private int tamano;
+    private SoftReference<String[]>[] bloques = nuevosBloques(0);
+    private int consultas;
+
+    /**
+     * cargador Devuelve la descripción de cada id (los que no existen se omiten)
+     * tamanoBloque Productos cuyas descripciones se cargan en cada consulta
+     */
+    public DescripcionesDiferidas(Function<List<Long>, Map<Long, String>> cargador, int tamanoBloque) {
+        if (tamanoBloque <= 0) {
+            throw new IllegalArgumentException("El tamaño de bloque debe ser positivo: " + tamanoBloque);
+        }
+        this.cargador = cargador;
+        this.tamanoBloque = tamanoBloque;
+    }
+
+    /**
+     * Registra el producto con ese id (en el orden de la lista).
+     * Posición que el producto pasa a descripcion()
+     */
+    public synchronized int anadir(long id) {
+        if (tamano == ids.length) {
+            ids = Arrays.copyOf(ids, tamano * 2);
+        }
+        ids[tamano] = id;
+        return tamano++;
+    }
+
+    /**
+     * Descripción del producto de esa posición, cargando su bloque si
+     * todavía no se ha cargado (null si el producto ya no existe).
+     */
+    public synchronized String descripcion(int posicion) {
+        int bloque = posicion / tamanoBloque;
+        if (bloque >= bloques.length) {
+            bloques = Arrays.copyOf(bloques, (tamano + tamanoBloque - 1) / tamanoBloque);
+        }
+        String[] valores = bloques[bloque] != null ? bloques[bloque].get() : null;
+        int desde = bloque * tamanoBloque;
+        if (valores == null) {
+            valores = cargarBloque(desde, Math.min(desde + tamanoBloque, tamano));
+            bloques[bloque] = new SoftReference<>(valores);
+        }
+        return valores[posicion - desde];
+    }
+
+    private String[] cargarBloque(int desde, int hasta) {
+        List<Long> pendientes = new ArrayList<>(hasta - desde);
+        for (int i = desde; i < hasta; i++) {
+            pendientes.add(ids[i]);
+        }
+        Map<Long, String> leidas = cargador.apply(pendientes);
+        consultas++;
+        String[] valores = new String[hasta - desde];
+        for (int i = desde; i < hasta; i++) {
+            valores[i - desde] = leidas.get(ids[i]);
+        }
+        return valores;
+    }
+
+    /**
+     * Consultas hechas hasta ahora (bloques cargados, contando las recargas).
+     */
+    public synchronized int consultas() {
+        return consultas;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SoftReference<String[]>[] nuevosBloques(int n) {
+        return (SoftReference<String[]>[]) new SoftReference<?>[n];
+    }
+}
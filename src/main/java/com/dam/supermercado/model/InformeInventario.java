@@ -0,0 +1,12 @@
+package com.dam.supermercado.model;
+
+import java.util.List;
+
+/**
+ * Foto de las estadísticas de inventario que sirve AnaliticaInventario:
+ * una fila por categoría, el total de todas, el histograma de precios
+ * (tramos vacíos omitidos) y cuándo se calculó (System.currentTimeMillis()).
+ */
+public record InformeInventario(List<ResumenCategoria> categorias, ResumenCategoria total,
+                                List<TramoPrecio> histograma, long calculadoEnMillis) {
+}
@@ -0,0 +1,12 @@
+package com.dam.supermercado.model;
+
+import java.util.List;
+
+/**
+ * Datos de la ficha de un producto: el producto, otros de su categoría
+ * y la lista de categorías para el menú de navegación.
+ * Lo devuelve ProductoServiceAsync.obtenerPaginaProducto, que hace las tres
+ * consultas a la vez.
+ */
+public record PaginaProducto(Producto producto, List<Producto> relacionados, List<String> categorias) {
+}
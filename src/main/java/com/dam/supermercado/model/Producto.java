@@ -1,6 +1,7 @@
 package com.dam.supermercado.model;
 
 import java.math.BigDecimal;
+import java.util.Objects;
 
 /**
  * ============================================
@@ -16,6 +17,18 @@ import java.math.BigDecimal;
  */
 public class Producto {
 
+    /**
+     * Campos que se pueden modificar, como bits de camposModificados.
+     */
+    public static final int CAMPO_NOMBRE = 1;
+    public static final int CAMPO_DESCRIPCION = 1 << 1;
+    public static final int CAMPO_PRECIO = 1 << 2;
+    public static final int CAMPO_STOCK = 1 << 3;
+    public static final int CAMPO_CATEGORIA = 1 << 4;
+
+    private static final int TODOS_LOS_CAMPOS =
+            CAMPO_NOMBRE | CAMPO_DESCRIPCION | CAMPO_PRECIO | CAMPO_STOCK | CAMPO_CATEGORIA;
+
     private Long id;
     private String nombre;
     private String descripcion;
@@ -23,6 +36,31 @@ public class Producto {
     private Integer stock;
     private String categoria;
 
+    /**
+     * Versión de la fila para el bloqueo optimista: la BD la incrementa en
+     * cada UPDATE. null en productos que no vienen de la BD.
+     */
+    private Long version;
+
+    /**
+     * Campos cambiados con los setters desde que se leyó de la BD (o desde
+     * el último limpiarCambios()). Es lo que hace Hibernate con el "dirty
+     * checking": así update() solo envía las columnas que han cambiado.
+     * Un producto creado con un constructor empieza con TODOS los campos
+     * marcados: no viene de la BD, así que no hay con qué comparar y todos
+     * sus valores (también los null) deben escribirse. Solo el RowMapper y
+     * el repositorio, que saben que el objeto coincide con la fila, lo
+     * dejan a 0 con limpiarCambios().
+     */
+    private int camposModificados = TODOS_LOS_CAMPOS;
+
+    /**
+     * Si no es null, la descripción todavía no se ha leído de la BD: la
+     * carga getDescripcion() con las del resto de su listado.
+     */
+    private DescripcionesDiferidas descripcionesDiferidas;
+    private int posicionDiferida;
+
 
     // CONSTRUCTORES
 
@@ -58,6 +96,20 @@ public class Producto {
         this.categoria = categoria;
     }
 
+    /**
+     * Constructor de copia.
+     * Útil para devolver copias de productos guardados en caché,
+     * de forma que quien los reciba no modifique el original.
+     */
+    public Producto(Producto otro) {
+        // otro.descripcion y no getDescripcion(): la copia no fuerza la carga
+        this(otro.id, otro.nombre, otro.descripcion, otro.precio, otro.stock, otro.categoria);
+        this.version = otro.version;
+        this.camposModificados = otro.camposModificados;
+        this.descripcionesDiferidas = otro.descripcionesDiferidas;
+        this.posicionDiferida = otro.posicionDiferida;
+    }
+
 
     // GETTERS Y SETTERS
 
@@ -74,22 +126,51 @@ public class Producto {
     }
 
     public void setNombre(String nombre) {
+        marcar(CAMPO_NOMBRE, !Objects.equals(this.nombre, nombre));
         this.nombre = nombre;
     }
 
+    /**
+     * Si el producto viene de un listado, la primera llamada lee la
+     * descripción de la BD (ver DescripcionesDiferidas).
+     */
     public String getDescripcion() {
+        if (descripcionesDiferidas != null) {
+            descripcion = descripcionesDiferidas.descripcion(posicionDiferida);
+            descripcionesDiferidas = null;
+        }
         return descripcion;
     }
 
     public void setDescripcion(String descripcion) {
+        // Sin cargar no se sabe si cambia: se da por cambiada
+        marcar(CAMPO_DESCRIPCION, descripcionesDiferidas != null || !Objects.equals(this.descripcion, descripcion));
+        descripcionesDiferidas = null;
         this.descripcion = descripcion;
     }
 
+    /**
+     * La descripción se cargará al pedirla. Lo usa el repositorio en los
+     * listados, que no leen esa columna.
+     */
+    public void diferirDescripcion(DescripcionesDiferidas diferidas, int posicion) {
+        this.descripcionesDiferidas = diferidas;
+        this.posicionDiferida = posicion;
+    }
+
+    /**
+     * false si la descripción todavía no se ha leído de la BD.
+     */
+    public boolean isDescripcionCargada() {
+        return descripcionesDiferidas == null;
+    }
+
     public BigDecimal getPrecio() {
         return precio;
     }
 
     public void setPrecio(BigDecimal precio) {
+        marcar(CAMPO_PRECIO, !Objects.equals(this.precio, precio));
         this.precio = precio;
     }
 
@@ -98,6 +179,7 @@ public class Producto {
     }
 
     public void setStock(Integer stock) {
+        marcar(CAMPO_STOCK, !Objects.equals(this.stock, stock));
         this.stock = stock;
     }
 
@@ -106,9 +188,42 @@ public class Producto {
     }
 
     public void setCategoria(String categoria) {
+        marcar(CAMPO_CATEGORIA, !Objects.equals(this.categoria, categoria));
         this.categoria = categoria;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+
+    // CAMPOS MODIFICADOS
+
+    /**
+     * Bits CAMPO_* de los campos cambiados (0 si coincide con la BD).
+     */
+    public int getCamposModificados() {
+        return camposModificados;
+    }
+
+    /**
+     * Da el producto por sincronizado con la BD: lo llaman el RowMapper al
+     * leerlo y el repositorio tras guardarlo.
+     */
+    public void limpiarCambios() {
+        camposModificados = 0;
+    }
+
+    private void marcar(int campo, boolean cambia) {
+        if (cambia) {
+            camposModificados |= campo;
+        }
+    }
+
     @Override
     public String toString() {
         return String.format(
@@ -0,0 +1,55 @@
+package com.dam.supermercado.model;
+
+import java.math.BigDecimal;
+
+/**
+ * ============================================
+ * MODELO: ProductoCompacto (inmutable)
+ * ============================================
+ * Variante de Producto pensada para lecturas masivas:
+ * - Tipos primitivos: long id e int stock en lugar de Long/Integer,
+ *   así no se crea un objeto "caja" por cada campo.
+ * - El precio se guarda en CÉNTIMOS como long (1.15€ -> 115), en lugar de
+ *   un BigDecimal por fila. DECIMAL(10,2) cabe de sobra en un long.
+ * - Es un record: inmutable, se puede compartir entre hilos y cachés
+ *   sin hacer copias.
+ * El stock NULL de la BD se lee como 0, igual que hace ProductoRepository.
+ */
+public record ProductoCompacto(long id, String nombre, String descripcion,
+                               long precioCentimos, int stock, String categoria) {
+
+    /**
+     * Precio en euros. Crea un BigDecimal solo cuando realmente se necesita.
+     */
+    public BigDecimal precio() {
+        return BigDecimal.valueOf(precioCentimos, 2);
+    }
+
+    /**
+     * Convierte a Producto (el POJO mutable) para usarlo con el resto de la aplicación.
+     */
+    public Producto toProducto() {
+        return new Producto(id, nombre, descripcion, precio(), stock, categoria);
+    }
+
+    /**
+     * Crea la variante compacta a partir de un Producto.
+     */
+    public static ProductoCompacto desde(Producto producto) {
+        return new ProductoCompacto(
+                producto.getId(),
+                producto.getNombre(),
+                producto.getDescripcion(),
+                aCentimos(producto.getPrecio()),
+                producto.getStock() != null ? producto.getStock() : 0,
+                producto.getCategoria()
+        );
+    }
+
+    /**
+     * Pasa un precio en euros a céntimos. Falla si tiene más de 2 decimales.
+     */
+    public static long aCentimos(BigDecimal precio) {
+        return precio.movePointRight(2).longValueExact();
+    }
+}
@@ -0,0 +1,18 @@
+package com.dam.supermercado.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Proyección de Producto para listados: solo id, nombre y precio.
+ * Las consultas que la devuelven seleccionan únicamente esas tres
+ * columnas, así que la descripción (hasta 255 caracteres), el stock y la
+ * categoría ni se leen en MySQL ni viajan por la red.
+ * En JPA sería una "interface-based projection" o un DTO con
+ * SELECT new ...ProductoResumen(p.id, p.nombre, p.precio).
+ */
+public record ProductoResumen(long id, String nombre, BigDecimal precio) {
+
+    public static ProductoResumen desde(Producto producto) {
+        return new ProductoResumen(producto.getId(), producto.getNombre(), producto.getPrecio());
+    }
+}
@@ -0,0 +1,192 @@
+package com.dam.supermercado.model;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * ============================================
+ * MODELO: ProductosColumnares
+ * ============================================
+ * Contenedor para leer muchos productos ocupando poca memoria.
+ * En vez de un objeto por fila (filas), guarda un array por columna:
+ *   ids[]      = {1, 2, 3, ...}
+ *   precios[]  = {115, 105, 180, ...}   (en céntimos)
+ *   stocks[]   = {150, 120, 80, ...}
+ * Ventajas frente a List<Producto>:
+ * - Sin cabeceras de objeto, sin Long/Integer/BigDecimal por fila.
+ * - Las categorías se repiten muchísimo ("Lácteos", "Bebidas"...): se
+ *   guarda una sola instancia de cada una (pool de cadenas).
+ * - Recorrer una columna (por ejemplo sumar precios) es muy rápido porque
+ *   los datos están contiguos en memoria.
+ * Para leer una fila completa se usa una "vista" reutilizable (patrón
+ * flyweight): el mismo objeto Fila apunta a una posición u otra, así que
+ * recorrer el contenedor no crea ningún objeto nuevo.
+ * No es seguro para usarlo desde varios hilos mientras se rellena.
+ */
+public class ProductosColumnares {
+
+    private long[] ids;
+    private String[] nombres;
+    private String[] descripciones;
+    private long[] preciosCentimos;
+    private int[] stocks;
+    private String[] categorias;
+    private int tamano;
+
+    private final Map<String, String> poolCategorias = new HashMap<>();
+
+    public ProductosColumnares() {
+        this(64);
+    }
+
+    public ProductosColumnares(int capacidadInicial) {
+        int capacidad = Math.max(capacidadInicial, 1);
+        ids = new long[capacidad];
+        nombres = new String[capacidad];
+        descripciones = new String[capacidad];
+        preciosCentimos = new long[capacidad];
+        stocks = new int[capacidad];
+        categorias = new String[capacidad];
+    }
+
+    /**
+     * Añade una fila al final.
+     */
+    public void anadir(long id, String nombre, String descripcion, long precioCentimos, int stock, String categoria) {
+        if (tamano == ids.length) {
+            crecer();
+        }
+        ids[tamano] = id;
+        nombres[tamano] = nombre;
+        descripciones[tamano] = descripcion;
+        preciosCentimos[tamano] = precioCentimos;
+        stocks[tamano] = stock;
+        categorias[tamano] = categoria != null ? poolCategorias.computeIfAbsent(categoria, c -> c) : null;
+        tamano++;
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    public long id(int i) {
+        comprobarIndice(i);
+        return ids[i];
+    }
+
+    public String nombre(int i) {
+        comprobarIndice(i);
+        return nombres[i];
+    }
+
+    public String descripcion(int i) {
+        comprobarIndice(i);
+        return descripciones[i];
+    }
+
+    public long precioCentimos(int i) {
+        comprobarIndice(i);
+        return preciosCentimos[i];
+    }
+
+    public int stock(int i) {
+        comprobarIndice(i);
+        return stocks[i];
+    }
+
+    public String categoria(int i) {
+        comprobarIndice(i);
+        return categorias[i];
+    }
+
+    /**
+     * Recorre todas las filas con una única vista reutilizada.
+     * IMPORTANTE: no hay que guardar la Fila recibida, porque en la
+     * siguiente iteración apuntará a otra posición. Si se necesita
+     * conservarla, usar fila.toCompacto() o fila.toProducto().
+     */
+    public void forEach(Consumer<? super Fila> accion) {
+        Fila fila = new Fila();
+        for (int i = 0; i < tamano; i++) {
+            fila.posicion = i;
+            accion.accept(fila);
+        }
+    }
+
+    /**
+     * Devuelve una vista independiente situada en la posición i.
+     */
+    public Fila fila(int i) {
+        comprobarIndice(i);
+        Fila fila = new Fila();
+        fila.posicion = i;
+        return fila;
+    }
+
+    private void crecer() {
+        int capacidad = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacidad);
+        nombres = Arrays.copyOf(nombres, capacidad);
+        descripciones = Arrays.copyOf(descripciones, capacidad);
+        preciosCentimos = Arrays.copyOf(preciosCentimos, capacidad);
+        stocks = Arrays.copyOf(stocks, capacidad);
+        categorias = Arrays.copyOf(categorias, capacidad);
+    }
+
+    private void comprobarIndice(int i) {
+        if (i < 0 || i >= tamano) {
+            throw new IndexOutOfBoundsException("Índice " + i + " fuera de rango (tamaño " + tamano + ")");
+        }
+    }
+
+    /**
+     * Vista (flyweight) sobre una fila del contenedor.
+     */
+    public final class Fila {
+
+        private int posicion;
+
+        private Fila() {
+        }
+
+        public long getId() {
+            return ids[posicion];
+        }
+
+        public String getNombre() {
+            return nombres[posicion];
+        }
+
+        public String getDescripcion() {
+            return descripciones[posicion];
+        }
+
+        public long getPrecioCentimos() {
+            return preciosCentimos[posicion];
+        }
+
+        public BigDecimal getPrecio() {
+            return BigDecimal.valueOf(preciosCentimos[posicion], 2);
+        }
+
+        public int getStock() {
+            return stocks[posicion];
+        }
+
+        public String getCategoria() {
+            return categorias[posicion];
+        }
+
+        public ProductoCompacto toCompacto() {
+            return new ProductoCompacto(ids[posicion], nombres[posicion], descripciones[posicion],
+                    preciosCentimos[posicion], stocks[posicion], categorias[posicion]);
+        }
+
+        public Producto toProducto() {
+            return toCompacto().toProducto();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.dam.supermercado.model;
+
+/**
+ * Resultado de ProductoRepository.update con control de versión (bloqueo optimista).
+ */
+public enum ResultadoActualizacion {
+
+    /** Se guardaron los cambios; el producto lleva ya la versión nueva. */
+    ACTUALIZADO,
+
+    /**
+     * Otro proceso modificó el producto después de leerlo: la versión de la
+     * BD ya no es la del producto y no se ha guardado nada.
+     */
+    CONFLICTO,
+
+    /** No existe ningún producto con ese id. */
+    NO_ENCONTRADO
+}
@@ -0,0 +1,61 @@
+package com.dam.supermercado.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+
+/**
+ * Estadísticas de inventario de una categoría, calculadas por MySQL en una
+ * sola pasada (GROUP BY categoria):
+ * - productos: filas de la categoría.
+ * - unidades: SUM(stock).
+ * - valorStock: SUM(precio * stock), lo que vale el stock a precio de venta.
+ * - stockBajo: productos con stock por debajo del umbral.
+ * - conPrecio y sumaPrecios: para el precio medio. Se guarda la suma y no
+ *   la media para poder juntar categorías sin perder precisión.
+ * - precioMinimo y precioMaximo: null si ningún producto tiene precio.
+ */
+public record ResumenCategoria(String categoria, long productos, long unidades, BigDecimal valorStock,
+                               long stockBajo, long conPrecio, BigDecimal sumaPrecios,
+                               BigDecimal precioMinimo, BigDecimal precioMaximo) {
+
+    /**
+     * Precio medio con dos decimales (null si ningún producto tiene precio).
+     */
+    public BigDecimal precioMedio() {
+        if (conPrecio == 0) {
+            return null;
+        }
+        return sumaPrecios.divide(BigDecimal.valueOf(conPrecio), 2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Junta varios resúmenes en uno (por ejemplo, el total de todas las categorías).
+     */
+    public static ResumenCategoria combinar(String categoria, Collection<ResumenCategoria> resumenes) {
+        long productos = 0;
+        long unidades = 0;
+        long stockBajo = 0;
+        long conPrecio = 0;
+        BigDecimal valorStock = BigDecimal.ZERO;
+        BigDecimal sumaPrecios = BigDecimal.ZERO;
+        BigDecimal minimo = null;
+        BigDecimal maximo = null;
+        for (ResumenCategoria r : resumenes) {
+            productos += r.productos;
+            unidades += r.unidades;
+            stockBajo += r.stockBajo;
+            conPrecio += r.conPrecio;
+            valorStock = valorStock.add(r.valorStock);
+            sumaPrecios = sumaPrecios.add(r.sumaPrecios);
+            if (r.precioMinimo != null && (minimo == null || r.precioMinimo.compareTo(minimo) < 0)) {
+                minimo = r.precioMinimo;
+            }
+            if (r.precioMaximo != null && (maximo == null || r.precioMaximo.compareTo(maximo) > 0)) {
+                maximo = r.precioMaximo;
+            }
+        }
+        return new ResumenCategoria(categoria, productos, unidades, valorStock, stockBajo,
+                conPrecio, sumaPrecios, minimo, maximo);
+    }
+}
@@ -0,0 +1,9 @@
+package com.dam.supermercado.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Una barra del histograma de precios: productos con precio en [desde, hasta).
+ */
+public record TramoPrecio(BigDecimal desde, BigDecimal hasta, long productos) {
+}
@@ -0,0 +1,184 @@
+package com.dam.supermercado.pool;
+
+import com.dam.supermercado.metricas.EstadisticasMetodo;
+import com.dam.supermercado.metricas.MetricasRepositorio;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ============================================
+ * POOL: AsesorPool (tamaño del pool según lo medido)
+ * ============================================
+ * Cada "intervalo" segundos mira las métricas del pool y calcula cuántas
+ * conexiones hacen falta de verdad, con la LEY DE LITTLE:
+ *   conexiones ocupadas = préstamos por segundo x segundos que dura cada uno
+ * Ejemplo: 400 préstamos/s de 5 ms cada uno = 2 conexiones ocupadas de media.
+ * A esa media se le suma un 25% de margen para los picos, y:
+ * - Si hay peticiones esperando más de "espera-objetivo-ms", se recomienda crecer.
+ * - Si sobran más de la mitad de las conexiones, se recomienda encoger
+ *   (cada conexión abierta gasta memoria en el servidor MySQL).
+ * - El resultado siempre queda entre "minimo" y "maximo".
+ * Con auto-ajuste=true la recomendación se aplica en caliente al pool de
+ * HikariCP y al DataSourceLimitado; si no, solo se escribe en el log.
+ */
+@Component
+public class AsesorPool {
+
+    private static final Logger log = LoggerFactory.getLogger(AsesorPool.class);
+
+    private static final double MARGEN = 1.25;
+
+    private final DataSource dataSource;
+    private final MetricasRepositorio metricas;
+    private final boolean autoAjuste;
+    private final int minimo;
+    private final int maximo;
+    private final long intervaloSegundos;
+    private final long esperaObjetivoMicros;
+
+    private ScheduledExecutorService planificador;
+    private long ultimaMedicion = System.nanoTime();
+    private EstadisticasMetodo ultimaEspera;
+    private EstadisticasMetodo ultimoUso;
+
+    @Autowired
+    public AsesorPool(DataSource dataSource, MetricasRepositorio metricas,
+                      @Value("${supermercado.pool.auto-ajuste:false}") boolean autoAjuste,
+                      @Value("${supermercado.pool.minimo:2}") int minimo,
+                      @Value("${supermercado.pool.maximo:20}") int maximo,
+                      @Value("${supermercado.pool.intervalo-segundos:30}") long intervaloSegundos,
+                      @Value("${supermercado.pool.espera-objetivo-ms:5}") long esperaObjetivoMs) {
+        this.dataSource = dataSource;
+        this.metricas = metricas;
+        this.autoAjuste = autoAjuste;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.intervaloSegundos = intervaloSegundos;
+        this.esperaObjetivoMicros = TimeUnit.MILLISECONDS.toMicros(esperaObjetivoMs);
+        this.ultimaEspera = metricas.esperaPool();
+        this.ultimoUso = metricas.usoConexiones();
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        if (!metricas.isHabilitadas() || intervaloSegundos <= 0) {
+            return;
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "asesor-pool");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleAtFixedRate(() -> {
+            try {
+                evaluar();
+            } catch (RuntimeException e) {
+                log.warn("[POOL] No se pudo evaluar el pool de conexiones", e);
+            }
+        }, intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+        }
+    }
+
+    /**
+     * Calcula la recomendación con lo medido desde la evaluación anterior y,
+     * si está activado el auto-ajuste, la aplica.
+     * La recomendación, o null si el pool no es HikariCP o aún no ha arrancado
+     */
+    public synchronized RecomendacionPool evaluar() {
+        HikariDataSource hikari = desenvolver(HikariDataSource.class);
+        HikariPoolMXBean pool = hikari != null ? hikari.getHikariPoolMXBean() : null;
+        if (pool == null) {
+            return null;
+        }
+
+        long ahora = System.nanoTime();
+        double segundos = Math.max(1e-3, (ahora - ultimaMedicion) / 1e9);
+        EstadisticasMetodo espera = metricas.esperaPool();
+        EstadisticasMetodo uso = metricas.usoConexiones();
+
+        // Negativo si alguien ha reiniciado las métricas entre medias
+        long prestamos = Math.max(0, uso.llamadas() - ultimoUso.llamadas());
+        long usoMedio = mediaDelIntervalo(ultimoUso, uso);
+        long esperaMedia = mediaDelIntervalo(ultimaEspera, espera);
+        ultimaMedicion = ahora;
+        ultimaEspera = espera;
+        ultimoUso = uso;
+
+        int actual = hikari.getHikariConfigMXBean().getMaximumPoolSize();
+        double concurrencia = prestamos / segundos * (usoMedio / 1e6);
+        int necesarias = (int) Math.ceil(concurrencia * MARGEN);
+        boolean hayEsperas = pool.getThreadsAwaitingConnection() > 0 || esperaMedia > esperaObjetivoMicros;
+
+        int recomendado = actual;
+        String motivo = "el tamaño actual es adecuado";
+        if (hayEsperas && necesarias >= actual) {
+            recomendado = Math.max(necesarias, actual + 1);
+            motivo = "hay peticiones esperando conexión";
+        } else if (!hayEsperas && necesarias < actual / 2) {
+            recomendado = necesarias;
+            motivo = "sobran conexiones";
+        }
+        recomendado = Math.max(minimo, Math.min(maximo, recomendado));
+
+        RecomendacionPool recomendacion = new RecomendacionPool(actual, recomendado, concurrencia,
+                esperaMedia, usoMedio, motivo);
+        if (recomendacion.cambia()) {
+            log.info("[POOL] {}", recomendacion);
+            if (autoAjuste) {
+                aplicar(hikari, recomendado);
+            }
+        }
+        return recomendacion;
+    }
+
+    private void aplicar(HikariDataSource hikari, int tamano) {
+        hikari.getHikariConfigMXBean().setMaximumPoolSize(tamano);
+        DataSourceLimitado limitado = desenvolver(DataSourceLimitado.class);
+        if (limitado != null) {
+            limitado.ajustarLimite(tamano);
+        }
+        log.info("[POOL] Tamaño máximo del pool ajustado a {}", tamano);
+    }
+
+    /**
+     * Media de un intervalo a partir de dos fotos acumuladas (media x llamadas = total).
+     */
+    private static long mediaDelIntervalo(EstadisticasMetodo antes, EstadisticasMetodo despues) {
+        long llamadas = despues.llamadas() - antes.llamadas();
+        if (llamadas <= 0) {
+            return 0;
+        }
+        long total = despues.mediaMicros() * despues.llamadas() - antes.mediaMicros() * antes.llamadas();
+        return Math.max(0, total / llamadas);
+    }
+
+    private <T> T desenvolver(Class<T> tipo) {
+        if (tipo.isInstance(dataSource)) {
+            return tipo.cast(dataSource);
+        }
+        try {
+            return dataSource.isWrapperFor(tipo) ? dataSource.unwrap(tipo) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
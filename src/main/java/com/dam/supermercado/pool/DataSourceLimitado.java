@@ -0,0 +1,195 @@
+package com.dam.supermercado.pool;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ============================================
+ * POOL: DataSourceLimitado
+ * ============================================
+ * Envoltorio del DataSource que deja pasar como máximo "limite" peticiones
+ * de conexión a la vez, usando un semáforo justo (por orden de llegada).
+ * ¿Para qué, si HikariCP ya tiene un máximo de conexiones?
+ * Con hilos virtuales puede haber miles de peticiones a la vez. Sin este
+ * límite, todas entrarían en HikariCP a pelearse por unas pocas conexiones
+ * (una "estampida"), y además el driver de MySQL usa bloques synchronized,
+ * que dejan "clavado" (pinned) el hilo real que ejecuta al hilo virtual.
+ * Con el semáforo, las peticiones que sobran esperan aquí, aparcadas sin
+ * ocupar ningún hilo real, y solo "limite" hilos tocan el driver a la vez.
+ * El permiso se devuelve al cerrar la conexión (una sola vez aunque se
+ * llame a close() varias veces).
+ */
+public class DataSourceLimitado extends DelegatingDataSource implements AutoCloseable {
+
+    private final Permisos permisos;
+    private final long esperaMaximaMs;
+    private volatile int limite;
+
+    private final AtomicInteger esperando = new AtomicInteger();
+    private final LongAdder concedidas = new LongAdder();
+    private final LongAdder rechazadas = new LongAdder();
+
+    /**
+     * destino DataSource real (normalmente el HikariDataSource)
+     * limite Conexiones simultáneas como máximo (normalmente el tamaño del pool)
+     * esperaMaximaMs Tiempo máximo esperando permiso antes de fallar
+     */
+    public DataSourceLimitado(DataSource destino, int limite, long esperaMaximaMs) {
+        super(destino);
+        if (limite <= 0) {
+            throw new IllegalArgumentException("El límite de conexiones debe ser positivo: " + limite);
+        }
+        this.permisos = new Permisos(limite);
+        this.limite = limite;
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        adquirir();
+        try {
+            return envolver(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String usuario, String password) throws SQLException {
+        adquirir();
+        try {
+            return envolver(super.getConnection(usuario, password));
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Cambia el límite en caliente (lo usa AsesorPool al redimensionar el pool).
+     * Si se reduce, las conexiones ya prestadas no se quitan: simplemente no
+     * se conceden nuevas hasta que se devuelvan las que sobran.
+     */
+    public synchronized void ajustarLimite(int nuevoLimite) {
+        if (nuevoLimite <= 0) {
+            throw new IllegalArgumentException("El límite de conexiones debe ser positivo: " + nuevoLimite);
+        }
+        int diferencia = nuevoLimite - limite;
+        if (diferencia > 0) {
+            permisos.release(diferencia);
+        } else if (diferencia < 0) {
+            permisos.reducePermits(-diferencia);
+        }
+        limite = nuevoLimite;
+    }
+
+    public int getLimite() {
+        return limite;
+    }
+
+    /**
+     * Peticiones esperando permiso en este momento.
+     */
+    public int getEsperando() {
+        return esperando.get();
+    }
+
+    public long getConcedidas() {
+        return concedidas.sum();
+    }
+
+    /**
+     * Peticiones que superaron la espera máxima sin conseguir permiso.
+     */
+    public long getRechazadas() {
+        return rechazadas.sum();
+    }
+
+    /**
+     * Cierra el DataSource envuelto. Spring llama a close() al apagar, y sin
+     * este método el pool de HikariCP quedaría abierto.
+     */
+    @Override
+    public void close() throws Exception {
+        if (getTargetDataSource() instanceof AutoCloseable destino) {
+            destino.close();
+        }
+    }
+
+    private void adquirir() throws SQLException {
+        esperando.incrementAndGet();
+        try {
+            if (!permisos.tryAcquire(esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                rechazadas.increment();
+                throw new SQLTransientConnectionException(
+                        "No hay conexión disponible tras esperar " + esperaMaximaMs + " ms (límite " + limite + ")");
+            }
+            concedidas.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrumpido esperando una conexión", e);
+        } finally {
+            esperando.decrementAndGet();
+        }
+    }
+
+    /**
+     * Devuelve un proxy de la conexión cuyo close() libera también el permiso.
+     */
+    private Connection envolver(Connection conexion) {
+        AtomicBoolean liberada = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, metodo, argumentos) -> {
+                    switch (metodo.getName()) {
+                        case "equals":
+                            return proxy == argumentos[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    if (metodo.getName().equals("close") && metodo.getParameterCount() == 0) {
+                        if (liberada.compareAndSet(false, true)) {
+                            try {
+                                conexion.close();
+                            } finally {
+                                permisos.release();
+                            }
+                        }
+                        return null;
+                    }
+                    try {
+                        return metodo.invoke(conexion, argumentos);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Semaphore con reducePermits() accesible, para poder bajar el límite.
+     */
+    private static class Permisos extends Semaphore {
+
+        Permisos(int permisos) {
+            super(permisos, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduccion) {
+            super.reducePermits(reduccion);
+        }
+    }
+}
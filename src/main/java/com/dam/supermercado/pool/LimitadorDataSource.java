@@ -0,0 +1,49 @@
+package com.dam.supermercado.pool;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * ============================================
+ * POOL: LimitadorDataSource
+ * ============================================
+ * BeanPostProcessor que sustituye el DataSource creado por Spring Boot por
+ * un DataSourceLimitado con tantos permisos como conexiones tiene el pool.
+ * Así JdbcTemplate y el gestor de transacciones pasan por el semáforo sin
+ * cambiar nada en el repositorio.
+ * Se desactiva con supermercado.pool.limitar=false.
+ */
+@Component
+public class LimitadorDataSource implements BeanPostProcessor, Ordered {
+
+    private final boolean limitar;
+    private final long esperaMaximaMs;
+
+    @Autowired
+    public LimitadorDataSource(@Value("${supermercado.pool.limitar:true}") boolean limitar,
+                               @Value("${supermercado.pool.espera-maxima-ms:30000}") long esperaMaximaMs) {
+        this.limitar = limitar;
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    @Override
+    public int getOrder() {
+        // Antes que ConfiguracionReplicas: la primaria se limita y después se enruta
+        return 0;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String nombreBean) {
+        if (!limitar || !(bean instanceof DataSource dataSource) || bean instanceof DataSourceLimitado) {
+            return bean;
+        }
+        int limite = bean instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : 10;
+        return new DataSourceLimitado(dataSource, limite, esperaMaximaMs);
+    }
+}
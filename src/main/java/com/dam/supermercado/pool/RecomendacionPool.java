@@ -0,0 +1,23 @@
+package com.dam.supermercado.pool;
+
+/**
+ * Resultado de una evaluación de AsesorPool.
+ * actual / recomendado Tamaño máximo del pool ahora y el que se aconseja
+ * concurrenciaMedia Conexiones ocupadas de media en el intervalo (ley de Little)
+ * esperaMediaMicros Espera media por conexión en el intervalo
+ * usoMedioMicros Tiempo medio que se retiene cada conexión
+ * motivo Explicación de la recomendación
+ */
+public record RecomendacionPool(int actual, int recomendado, double concurrenciaMedia,
+                                long esperaMediaMicros, long usoMedioMicros, String motivo) {
+
+    public boolean cambia() {
+        return actual != recomendado;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Pool [actual=%d, recomendado=%d, concurrencia=%.1f, espera=%dµs, uso=%dµs: %s]",
+                actual, recomendado, concurrenciaMedia, esperaMediaMicros, usoMedioMicros, motivo);
+    }
+}
@@ -0,0 +1,11 @@
+package com.dam.supermercado.precios;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Una fila de historial_precios: el precio de un producto en un lote.
+ */
+public record CambioPrecio(long lote, long productoId, BigDecimal precioAnterior, BigDecimal precioNuevo,
+                           Instant fecha) {
+}
@@ -0,0 +1,50 @@
+package com.dam.supermercado.precios;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Qué productos cambian de precio en un lote. Los campos no nulos se
+ * combinan con AND (por ejemplo, categoría y tramo de precio a la vez).
+ * categoria Solo los de esa categoría
+ * precioMinimo Solo los de precio >= precioMinimo
+ * precioMaximo Solo los de precio <= precioMaximo
+ * ids Solo esos productos (no se puede guardar en lotes_precios, así que
+ *     no vale para promociones programadas)
+ */
+public record CriterioPrecios(String categoria, BigDecimal precioMinimo, BigDecimal precioMaximo, List<Long> ids) {
+
+    public CriterioPrecios {
+        if (categoria == null && precioMinimo == null && precioMaximo == null && ids == null) {
+            throw new IllegalArgumentException("Hay que indicar categoría, tramo de precio o ids");
+        }
+        if (precioMinimo != null && precioMaximo != null && precioMinimo.compareTo(precioMaximo) > 0) {
+            throw new IllegalArgumentException("Tramo de precio vacío: " + precioMinimo + " > " + precioMaximo);
+        }
+        ids = ids != null ? List.copyOf(new LinkedHashSet<>(ids)) : null;
+    }
+
+    public static CriterioPrecios porCategoria(String categoria) {
+        return new CriterioPrecios(categoria, null, null, null);
+    }
+
+    /**
+     * Productos con precio entre minimo y maximo, ambos incluidos (null = sin límite).
+     */
+    public static CriterioPrecios porTramo(BigDecimal minimo, BigDecimal maximo) {
+        return new CriterioPrecios(null, minimo, maximo, null);
+    }
+
+    public static CriterioPrecios porIds(Collection<Long> ids) {
+        return new CriterioPrecios(null, null, null, List.copyOf(ids));
+    }
+
+    /**
+     * El mismo criterio, limitado además a un tramo de precio.
+     */
+    public CriterioPrecios conTramo(BigDecimal minimo, BigDecimal maximo) {
+        return new CriterioPrecios(categoria, minimo, maximo, ids);
+    }
+}
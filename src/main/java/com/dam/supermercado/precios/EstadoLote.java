@@ -0,0 +1,16 @@
+package com.dam.supermercado.precios;
+
+/**
+ * Situación de un lote de cambios de precio (columna estado de lotes_precios).
+ */
+public enum EstadoLote {
+
+    /** Promoción que empieza en el futuro: MotorPrecios la aplicará al llegar el inicio. */
+    PROGRAMADO,
+
+    /** Precios cambiados. Si tiene fin, se revertirá al llegar. */
+    APLICADO,
+
+    /** Lote deshecho por otro lote (el que tiene revierte = este id). */
+    REVERTIDO
+}
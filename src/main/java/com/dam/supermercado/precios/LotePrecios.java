@@ -0,0 +1,19 @@
+package com.dam.supermercado.precios;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Una fila de lotes_precios: un cambio de precios en bloque o una promoción.
+ * porcentaje Subida (positivo) o bajada (negativo) aplicada; null si el
+ *            lote deshace otro
+ * categoria, precioMinimo, precioMaximo Criterio de selección (ver CriterioPrecios)
+ * inicio Cuándo se aplica (o se aplicó)
+ * fin Cuándo se restauran los precios (null = cambio permanente)
+ * productos Productos cambiados (0 mientras está PROGRAMADO)
+ * revierte Lote que deshace este, o null
+ */
+public record LotePrecios(long id, String motivo, BigDecimal porcentaje, String categoria,
+                          BigDecimal precioMinimo, BigDecimal precioMaximo, Instant inicio, Instant fin,
+                          EstadoLote estado, int productos, Long revierte) {
+}
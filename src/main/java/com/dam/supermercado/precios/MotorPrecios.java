@@ -0,0 +1,311 @@
+package com.dam.supermercado.precios;
+
+import com.dam.supermercado.repository.PreciosRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * ============================================
+ * PRECIOS: MotorPrecios
+ * ============================================
+ * Cambios de precio en bloque: "-15% en Lácteos", "+3% a todo lo que
+ * cuesta menos de 2 €" o una lista de productos.
+ * Antes había que leer los productos, cambiar el precio en Java y llamar
+ * a actualizarProducto con cada uno: una ida y vuelta por producto, y
+ * mientras tanto la categoría a medio cambiar. Aquí cada lote es UNA
+ * transacción con dos sentencias (ver PreciosRepository), que además deja
+ * el cambio de cada producto en historial_precios.
+ * Promociones: un lote con fin se revierte solo al llegar esa fecha (se
+ * restaura el precio anterior de los productos que no se han vuelto a
+ * cambiar), y uno con inicio futuro queda PROGRAMADO hasta entonces. Los
+ * lotes están en la BD, así que sobreviven a un reinicio; un hilo revisa
+ * cada intervalo-segundos si hay alguno pendiente. Si hay varias
+ * instancias, solo una aplica cada lote (ver updateEstadoLote).
+ * El mismo hilo borra el historial de más de retencion-dias días.
+ * Si al arrancar faltan las tablas de precios, el hilo no se crea.
+ * Tras cada lote se avisa UNA vez, con todos los ids cambiados, a quien
+ * se haya registrado con alCambiarPrecios (ProductoService invalida ahí
+ * sus cachés).
+ */
+@Component
+public class MotorPrecios {
+
+    private static final Logger log = LoggerFactory.getLogger(MotorPrecios.class);
+
+    private static final BigDecimal CIEN = BigDecimal.valueOf(100);
+
+    /**
+     * Filas del historial que se borran en cada DELETE de la retención.
+     */
+    private static final int BORRADO_POR_TANDA = 10_000;
+
+    private final PreciosRepository preciosRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long intervaloSegundos;
+    private final int retencionDias;
+
+    private final List<Consumer<List<Long>>> alCambiarPrecios = new ArrayList<>();
+
+    private final LongAdder lotesAplicados = new LongAdder();
+    private final LongAdder lotesRevertidos = new LongAdder();
+    private final LongAdder productosCambiados = new LongAdder();
+    private final LongAdder historialBorrado = new LongAdder();
+
+    private ScheduledExecutorService planificador;
+
+    /**
+     * intervaloSegundos Cada cuánto se buscan promociones por aplicar o
+     *                   revertir (0 = nunca; solo con revisar())
+     * retencionDias Días que se guarda el historial de precios (0 = siempre)
+     */
+    @Autowired
+    public MotorPrecios(PreciosRepository preciosRepository, TransactionTemplate transactionTemplate,
+                        @Value("${supermercado.precios.intervalo-segundos:30}") long intervaloSegundos,
+                        @Value("${supermercado.precios.retencion-dias:365}") int retencionDias) {
+        this.preciosRepository = preciosRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.intervaloSegundos = intervaloSegundos;
+        this.retencionDias = retencionDias;
+    }
+
+    /**
+     * Registra una acción a ejecutar tras cada lote confirmado, con los ids
+     * de los productos que han cambiado de precio.
+     */
+    public void alCambiarPrecios(Consumer<List<Long>> accion) {
+        alCambiarPrecios.add(accion);
+    }
+
+
+    // CICLO DE VIDA
+
+    @PostConstruct
+    public void iniciar() {
+        if (intervaloSegundos <= 0) {
+            return;
+        }
+        if (!preciosRepository.existenTablas()) {
+            // BD sin migrar: un aviso ahora en vez de un error en cada revisión
+            log.warn("[PRECIOS] Faltan las tablas lotes_precios/historial_precios (ver supermercado.sql):"
+                    + " no se revisarán promociones ni se borrará historial");
+            return;
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "motor-precios");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::revisarSinExcepciones, 0, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+        }
+    }
+
+
+    // CAMBIOS DE PRECIO
+
+    /**
+     * Cambia el precio de los productos del criterio de forma permanente.
+     * porcentaje Subida (10 = +10%) o bajada (-15 = -15%)
+     * Lote aplicado, con el número de productos cambiados
+     */
+    public LotePrecios cambiarPrecios(CriterioPrecios criterio, BigDecimal porcentaje, String motivo) {
+        return aplicarNuevo(criterio, porcentaje, motivo, Instant.now(), null);
+    }
+
+    /**
+     * Promoción: cambia los precios entre inicio y fin y después los
+     * restaura. Si inicio ya ha pasado se aplica al momento; si no, queda
+     * PROGRAMADA (solo por categoría o tramo de precio: la lista de ids no
+     * se guarda en la BD).
+     */
+    public LotePrecios programarPromocion(CriterioPrecios criterio, BigDecimal porcentaje,
+                                          Instant inicio, Instant fin, String motivo) {
+        if (!fin.isAfter(inicio)) {
+            throw new IllegalArgumentException("La promoción debe acabar después de empezar: " + inicio + " - " + fin);
+        }
+        Instant ahora = Instant.now();
+        if (!inicio.isAfter(ahora)) {
+            return aplicarNuevo(criterio, porcentaje, motivo, ahora, fin);
+        }
+        if (criterio.ids() != null) {
+            throw new IllegalArgumentException("Las promociones por lista de ids no se pueden programar: solo se aplican al momento");
+        }
+        comprobarPorcentaje(porcentaje);
+        LotePrecios lote = new LotePrecios(0, motivo, porcentaje, criterio.categoria(), criterio.precioMinimo(),
+                criterio.precioMaximo(), inicio, fin, EstadoLote.PROGRAMADO, 0, null);
+        long id = preciosRepository.saveLote(lote);
+        log.info("[PRECIOS] Lote {} programado: {}% desde {} hasta {}", id, porcentaje, inicio, fin);
+        return preciosRepository.findLoteById(id).orElseThrow();
+    }
+
+    /**
+     * Deshace un lote APLICADO: los productos que no han vuelto a cambiar de
+     * precio recuperan el anterior. Vacío si el lote no existe o no está
+     * aplicado (por ejemplo, si ya se revirtió).
+     * Lote de la reversión
+     */
+    public Optional<LotePrecios> revertir(long loteId) {
+        Instant ahora = Instant.now();
+        Optional<LotePrecios> original = preciosRepository.findLoteById(loteId);
+        if (original.isEmpty()) {
+            return Optional.empty();
+        }
+        Long id = transactionTemplate.execute(status -> {
+            if (!preciosRepository.updateEstadoLote(loteId, EstadoLote.APLICADO, EstadoLote.REVERTIDO)) {
+                return null;
+            }
+            String motivo = "Revierte el lote " + loteId
+                    + (original.get().motivo() != null ? " (" + original.get().motivo() + ")" : "");
+            long nuevo = preciosRepository.saveLote(new LotePrecios(0, motivo, null, null, null, null,
+                    ahora, null, EstadoLote.APLICADO, 0, loteId));
+            int productos = preciosRepository.registrarReversion(nuevo, loteId, ahora);
+            preciosRepository.aplicarLote(nuevo);
+            preciosRepository.updateProductosLote(nuevo, productos);
+            return nuevo;
+        });
+        if (id == null) {
+            return Optional.empty();
+        }
+        lotesRevertidos.increment();
+        return Optional.of(despuesDeAplicar(id));
+    }
+
+    /**
+     * Historial de precios de un producto, del cambio más reciente al más antiguo.
+     */
+    public List<CambioPrecio> historial(long productoId) {
+        return preciosRepository.findHistorialByProductoId(productoId);
+    }
+
+
+    // REVISIÓN PERIÓDICA
+
+    /**
+     * Aplica las promociones programadas cuyo inicio ha llegado, revierte
+     * las que han terminado y borra el historial caducado. La llama el
+     * hilo del motor cada intervalo-segundos.
+     */
+    public void revisar() {
+        Instant ahora = Instant.now();
+        for (LotePrecios lote : preciosRepository.findLotesParaAplicar(ahora)) {
+            aplicarProgramado(lote, ahora);
+        }
+        for (LotePrecios lote : preciosRepository.findLotesParaRevertir(ahora)) {
+            revertir(lote.id()).ifPresent(reversion ->
+                    log.info("[PRECIOS] Fin de la promoción {}: {} productos restaurados", lote.id(), reversion.productos()));
+        }
+        if (retencionDias > 0) {
+            Instant limite = ahora.minus(Duration.ofDays(retencionDias));
+            int borradas;
+            do {
+                borradas = preciosRepository.deleteHistorialAnteriorA(limite, BORRADO_POR_TANDA);
+                historialBorrado.add(borradas);
+            } while (borradas == BORRADO_POR_TANDA);
+        }
+    }
+
+    private void revisarSinExcepciones() {
+        try {
+            revisar();
+        } catch (RuntimeException e) {
+            // Se reintenta en la siguiente revisión
+            log.warn("[PRECIOS] Error revisando las promociones", e);
+        }
+    }
+
+    public Map<String, Long> estadisticas() {
+        return Map.of(
+                "lotesAplicados", lotesAplicados.sum(),
+                "lotesRevertidos", lotesRevertidos.sum(),
+                "productosCambiados", productosCambiados.sum(),
+                "historialBorrado", historialBorrado.sum());
+    }
+
+
+    // APLICACIÓN DE LOTES
+
+    private LotePrecios aplicarNuevo(CriterioPrecios criterio, BigDecimal porcentaje, String motivo,
+                                     Instant ahora, Instant fin) {
+        comprobarPorcentaje(porcentaje);
+        long id = transactionTemplate.execute(status -> {
+            long nuevo = preciosRepository.saveLote(new LotePrecios(0, motivo, porcentaje, criterio.categoria(),
+                    criterio.precioMinimo(), criterio.precioMaximo(), ahora, fin, EstadoLote.APLICADO, 0, null));
+            cambiar(nuevo, criterio, porcentaje, ahora);
+            return nuevo;
+        });
+        lotesAplicados.increment();
+        return despuesDeAplicar(id);
+    }
+
+    private void aplicarProgramado(LotePrecios lote, Instant ahora) {
+        CriterioPrecios criterio = new CriterioPrecios(lote.categoria(), lote.precioMinimo(), lote.precioMaximo(), null);
+        boolean aplicado = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (!preciosRepository.updateEstadoLote(lote.id(), EstadoLote.PROGRAMADO, EstadoLote.APLICADO)) {
+                return false;                 // lo ha aplicado otra instancia
+            }
+            cambiar(lote.id(), criterio, lote.porcentaje(), ahora);
+            return true;
+        }));
+        if (aplicado) {
+            lotesAplicados.increment();
+            LotePrecios aplicadoAhora = despuesDeAplicar(lote.id());
+            log.info("[PRECIOS] Inicio de la promoción {}: {} productos", lote.id(), aplicadoAhora.productos());
+        }
+    }
+
+    /**
+     * Dentro de la transacción del lote: historial + UPDATE.
+     */
+    private void cambiar(long lote, CriterioPrecios criterio, BigDecimal porcentaje, Instant ahora) {
+        BigDecimal factor = BigDecimal.ONE.add(porcentaje.divide(CIEN));
+        int productos = preciosRepository.registrarCambios(lote, criterio, factor, ahora);
+        preciosRepository.aplicarLote(lote);
+        preciosRepository.updateProductosLote(lote, productos);
+    }
+
+    /**
+     * Ya confirmada la transacción: avisa una vez con todos los ids.
+     */
+    private LotePrecios despuesDeAplicar(long loteId) {
+        LotePrecios lote = preciosRepository.findLoteById(loteId).orElseThrow();
+        productosCambiados.add(lote.productos());
+        if (lote.productos() > 0 && !alCambiarPrecios.isEmpty()) {
+            List<Long> ids = preciosRepository.findProductosByLote(loteId);
+            for (Consumer<List<Long>> accion : alCambiarPrecios) {
+                accion.accept(ids);
+            }
+        }
+        log.debug("[PRECIOS] Lote {} aplicado: {} productos", loteId, lote.productos());
+        return lote;
+    }
+
+    private static void comprobarPorcentaje(BigDecimal porcentaje) {
+        if (porcentaje.compareTo(CIEN.negate()) <= 0) {
+            throw new IllegalArgumentException("El porcentaje debe ser mayor que -100: " + porcentaje);
+        }
+    }
+}
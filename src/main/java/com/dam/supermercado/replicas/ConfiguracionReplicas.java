@@ -0,0 +1,164 @@
+package com.dam.supermercado.replicas;
+
+import com.dam.supermercado.pool.DataSourceLimitado;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ============================================
+ * RÉPLICAS: ConfiguracionReplicas
+ * ============================================
+ * Activa la separación lectura/escritura si supermercado.replicas.habilitadas=true.
+ * Es un BeanPostProcessor que hace dos cosas:
+ * 1. Envuelve el DataSource de Spring Boot (la primaria) en un
+ *    DataSourceEnrutado con un pool HikariCP por cada URL de réplica.
+ * 2. Marca los métodos de LECTURA de ProductoRepository, los que empiezan
+ *    por find, count, stream o forEach, para que puedan ir a una réplica.
+ *    El resto son escrituras: van a la primaria y activan la pegajosidad
+ *    del hilo (sus próximas lecturas también van a la primaria).
+ *    Las lecturas con bloqueo (terminan en ForUpdate, como findByIdForUpdate)
+ *    cuentan como escrituras: en una réplica de solo lectura no bloquearían
+ *    nada en la primaria.
+ * Se ejecuta después de LimitadorDataSource, así que la primaria llega ya
+ * limitada; las réplicas se limitan aquí igual si supermercado.pool.limitar=true.
+ * PRUEBAS EN LOCAL: basta con dos MySQL (por ejemplo en los puertos 3306 y
+ * 3307) con la misma base de datos, aunque no estén replicados, o con H2
+ * en memoria como réplica (jdbc:h2:mem:replica;MODE=MySQL).
+ */
+@Component
+public class ConfiguracionReplicas implements BeanPostProcessor, Ordered {
+
+    private static final List<String> PREFIJOS_LECTURA = List.of("find", "count", "stream", "forEach");
+
+    private static final String SUFIJO_BLOQUEO = "ForUpdate";
+
+    private final boolean habilitadas;
+    private final List<String> urls;
+    private final String usuario;
+    private final String password;
+    private final int tamanoPool;
+    private final long pegajosidadMs;
+    private final long comprobacionSegundos;
+    private final long maxRetrasoSegundos;
+    private final boolean limitar;
+    private final long esperaMaximaMs;
+
+    @Autowired
+    public ConfiguracionReplicas(@Value("${supermercado.replicas.habilitadas:false}") boolean habilitadas,
+                                 @Value("${supermercado.replicas.urls:}") List<String> urls,
+                                 @Value("${supermercado.replicas.usuario:${spring.datasource.username:}}") String usuario,
+                                 @Value("${supermercado.replicas.password:${spring.datasource.password:}}") String password,
+                                 @Value("${supermercado.replicas.tamano-pool:5}") int tamanoPool,
+                                 @Value("${supermercado.replicas.pegajosidad-ms:2000}") long pegajosidadMs,
+                                 @Value("${supermercado.replicas.comprobacion-segundos:5}") long comprobacionSegundos,
+                                 @Value("${supermercado.replicas.max-retraso-segundos:5}") long maxRetrasoSegundos,
+                                 @Value("${supermercado.pool.limitar:true}") boolean limitar,
+                                 @Value("${supermercado.pool.espera-maxima-ms:30000}") long esperaMaximaMs) {
+        this.habilitadas = habilitadas && !urls.isEmpty();
+        this.urls = urls;
+        this.usuario = usuario;
+        this.password = password;
+        this.tamanoPool = tamanoPool;
+        this.pegajosidadMs = pegajosidadMs;
+        this.comprobacionSegundos = comprobacionSegundos;
+        this.maxRetrasoSegundos = maxRetrasoSegundos;
+        this.limitar = limitar;
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    @Override
+    public int getOrder() {
+        // Después de LimitadorDataSource (orden 0)
+        return 10;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String nombreBean) {
+        if (!habilitadas) {
+            return bean;
+        }
+        if (bean instanceof DataSource primaria && !(bean instanceof DataSourceEnrutado)) {
+            Map<String, DataSource> replicas = new LinkedHashMap<>();
+            for (int i = 0; i < urls.size(); i++) {
+                String nombre = "replica-" + (i + 1);
+                replicas.put(nombre, crearReplica(nombre, urls.get(i).trim()));
+            }
+            DataSourceEnrutado enrutado = new DataSourceEnrutado(primaria, replicas, pegajosidadMs, maxRetrasoSegundos);
+            enrutado.iniciar(comprobacionSegundos);
+            return enrutado;
+        }
+        if (bean instanceof ProductoRepository repositorio) {
+            return marcarLecturas(repositorio);
+        }
+        return bean;
+    }
+
+    /**
+     * Devuelve el repositorio con los métodos de lectura marcados en ContextoEnrutado.
+     * Público para poder usarlo con repositorios creados fuera de Spring (benchmarks).
+     */
+    public static ProductoRepository marcarLecturas(ProductoRepository repositorio) {
+        MethodInterceptor interceptor = invocacion -> {
+            if (!esLectura(invocacion.getMethod().getName())) {
+                try {
+                    return invocacion.proceed();
+                } finally {
+                    ContextoEnrutado.registrarEscritura();
+                }
+            }
+            boolean anterior = ContextoEnrutado.enLectura();
+            ContextoEnrutado.marcarLectura(true);
+            try {
+                return invocacion.proceed();
+            } finally {
+                ContextoEnrutado.marcarLectura(anterior);
+            }
+        };
+        if (repositorio instanceof Advised proxy && !proxy.isFrozen()) {
+            proxy.addAdvice(interceptor);
+            return repositorio;
+        }
+        ProxyFactory fabrica = new ProxyFactory(repositorio);
+        fabrica.setProxyTargetClass(true);
+        fabrica.addAdvice(interceptor);
+        return (ProductoRepository) fabrica.getProxy();
+    }
+
+    static boolean esLectura(String metodo) {
+        if (metodo.endsWith(SUFIJO_BLOQUEO)) {
+            return false;
+        }
+        for (String prefijo : PREFIJOS_LECTURA) {
+            if (metodo.startsWith(prefijo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private DataSource crearReplica(String nombre, String url) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setUsername(usuario);
+        config.setPassword(password);
+        config.setPoolName(nombre);
+        config.setMaximumPoolSize(tamanoPool);
+        config.setReadOnly(true);
+        HikariDataSource replica = new HikariDataSource(config);
+        return limitar ? new DataSourceLimitado(replica, tamanoPool, esperaMaximaMs) : replica;
+    }
+}
@@ -0,0 +1,60 @@
+package com.dam.supermercado.replicas;
+
+import java.util.function.Supplier;
+
+/**
+ * Estado por hilo que usa DataSourceEnrutado para decidir a dónde va cada consulta:
+ * - enLectura: el hilo está dentro de un método de lectura del repositorio.
+ * - ultimaEscritura: cuándo escribió este hilo por última vez. Durante un
+ *   rato sus lecturas van a la primaria, porque la réplica podría no tener
+ *   aún lo que acaba de escribir ("leer lo que escribo").
+ * - forzarPrimaria: para código que necesita sí o sí el dato más reciente.
+ * Al ser por hilo, la pegajosidad no sigue a una petición que salta a otro
+ * hilo (por ejemplo, con ProductoServiceAsync).
+ */
+public final class ContextoEnrutado {
+
+    private static final ThreadLocal<Boolean> LECTURA = ThreadLocal.withInitial(() -> false);
+    private static final ThreadLocal<Boolean> FORZAR_PRIMARIA = ThreadLocal.withInitial(() -> false);
+    private static final ThreadLocal<Long> ULTIMA_ESCRITURA = new ThreadLocal<>();
+
+    private ContextoEnrutado() {
+    }
+
+    public static boolean enLectura() {
+        return LECTURA.get();
+    }
+
+    static void marcarLectura(boolean lectura) {
+        LECTURA.set(lectura);
+    }
+
+    public static void registrarEscritura() {
+        ULTIMA_ESCRITURA.set(System.nanoTime());
+    }
+
+    /**
+     * true si este hilo escribió hace menos de "ventanaNanos".
+     */
+    public static boolean escrituraReciente(long ventanaNanos) {
+        Long ultima = ULTIMA_ESCRITURA.get();
+        return ultima != null && System.nanoTime() - ultima < ventanaNanos;
+    }
+
+    public static boolean primariaForzada() {
+        return FORZAR_PRIMARIA.get();
+    }
+
+    /**
+     * Ejecuta "lectura" leyendo siempre de la primaria.
+     */
+    public static <T> T leerDePrimaria(Supplier<T> lectura) {
+        boolean anterior = FORZAR_PRIMARIA.get();
+        FORZAR_PRIMARIA.set(true);
+        try {
+            return lectura.get();
+        } finally {
+            FORZAR_PRIMARIA.set(anterior);
+        }
+    }
+}
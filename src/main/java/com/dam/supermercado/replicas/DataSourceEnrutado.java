@@ -0,0 +1,284 @@
+package com.dam.supermercado.replicas;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ============================================
+ * RÉPLICAS: DataSourceEnrutado (lectura/escritura separadas)
+ * ============================================
+ * DataSource que reparte las conexiones entre la base de datos PRIMARIA
+ * (donde se escribe) y una o varias RÉPLICAS (copias de solo lectura que
+ * MySQL mantiene al día con la replicación).
+ * Va a una réplica solo si se cumple todo:
+ * - El hilo está en un método de LECTURA del repositorio (ContextoEnrutado).
+ * - No hay una transacción en curso (dentro de una transacción todo va a la
+ *   primaria para leer lo que la propia transacción ha escrito).
+ * - El hilo no ha escrito hace menos de "pegajosidad" (leer lo que escribo).
+ * - Hay alguna réplica sana.
+ * Entre las réplicas sanas se reparte por turnos (round-robin).
+ * SALUD: cada "comprobacion" segundos se prueba cada réplica; se aparta si no
+ * responde o si va más de "maxRetraso" segundos por detrás de la primaria
+ * (Seconds_Behind_Source de SHOW REPLICA STATUS). Si al pedir una conexión
+ * la réplica falla, se aparta en el momento y se usa la primaria.
+ * Basado en AbstractRoutingDataSource de Spring: cada conexión se pide al
+ * DataSource cuya clave devuelve determineCurrentLookupKey().
+ */
+public class DataSourceEnrutado extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DataSourceEnrutado.class);
+
+    static final String PRIMARIA = "primaria";
+
+    private final DataSource primaria;
+    private final Map<String, DataSource> replicas;
+    private final long pegajosidadNanos;
+    private final long maxRetrasoSegundos;
+
+    private final Map<String, EstadoReplica> estados = new ConcurrentHashMap<>();
+    private volatile List<String> disponibles;
+    private final AtomicInteger turno = new AtomicInteger();
+    private final ThreadLocal<String> claveElegida = new ThreadLocal<>();
+
+    private final LongAdder lecturasReplica = new LongAdder();
+    private final LongAdder lecturasPrimaria = new LongAdder();
+    private final LongAdder escrituras = new LongAdder();
+    private final LongAdder sinReplica = new LongAdder();
+
+    private ScheduledExecutorService planificador;
+
+    /**
+     * primaria DataSource de la base de datos principal
+     * replicas DataSources de las réplicas, por nombre
+     * pegajosidadMs Tiempo tras una escritura en que el hilo lee de la primaria
+     * maxRetrasoSegundos Retraso de replicación a partir del cual se aparta una réplica
+     */
+    public DataSourceEnrutado(DataSource primaria, Map<String, DataSource> replicas,
+                              long pegajosidadMs, long maxRetrasoSegundos) {
+        this.primaria = primaria;
+        this.replicas = new LinkedHashMap<>(replicas);
+        this.pegajosidadNanos = TimeUnit.MILLISECONDS.toNanos(pegajosidadMs);
+        this.maxRetrasoSegundos = maxRetrasoSegundos;
+        this.disponibles = new ArrayList<>(this.replicas.keySet());
+
+        Map<Object, Object> destinos = new HashMap<>(this.replicas);
+        destinos.put(PRIMARIA, primaria);
+        setTargetDataSources(destinos);
+        setDefaultTargetDataSource(primaria);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Arranca la comprobación periódica de salud de las réplicas.
+     */
+    public void iniciar(long intervaloSegundos) {
+        comprobarReplicas();
+        if (intervaloSegundos <= 0) {
+            return;
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "salud-replicas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::comprobarReplicas, intervaloSegundos, intervaloSegundos,
+                TimeUnit.SECONDS);
+    }
+
+
+    // ENRUTADO
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String clave = elegir();
+        claveElegida.set(clave);
+        return clave;
+    }
+
+    private String elegir() {
+        if (!ContextoEnrutado.enLectura()) {
+            escrituras.increment();
+            return PRIMARIA;
+        }
+        if (ContextoEnrutado.primariaForzada()
+                || TransactionSynchronizationManager.isActualTransactionActive()
+                || ContextoEnrutado.escrituraReciente(pegajosidadNanos)) {
+            lecturasPrimaria.increment();
+            return PRIMARIA;
+        }
+        List<String> sanas = disponibles;
+        if (sanas.isEmpty()) {
+            sinReplica.increment();
+            lecturasPrimaria.increment();
+            return PRIMARIA;
+        }
+        lecturasReplica.increment();
+        return sanas.get(Math.floorMod(turno.getAndIncrement(), sanas.size()));
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        try {
+            return super.getConnection();
+        } catch (SQLException e) {
+            String clave = claveElegida.get();
+            if (clave == null || PRIMARIA.equals(clave)) {
+                throw e;
+            }
+            // La réplica ha fallado: se aparta y esta lectura va a la primaria
+            apartar(clave, -1, "error al conectar: " + e.getMessage());
+            sinReplica.increment();
+            return primaria.getConnection();
+        } finally {
+            claveElegida.remove();
+        }
+    }
+
+
+    // SALUD DE LAS RÉPLICAS
+
+    /**
+     * Comprueba todas las réplicas y actualiza la lista de las disponibles.
+     */
+    public void comprobarReplicas() {
+        for (Map.Entry<String, DataSource> replica : replicas.entrySet()) {
+            String nombre = replica.getKey();
+            try (Connection conexion = replica.getValue().getConnection()) {
+                if (!conexion.isValid(2)) {
+                    apartar(nombre, -1, "no responde");
+                    continue;
+                }
+                long retraso = retrasoReplicacion(conexion);
+                if (retraso > maxRetrasoSegundos) {
+                    apartar(nombre, retraso, "retraso de " + retraso + " s");
+                } else {
+                    admitir(nombre, retraso);
+                }
+            } catch (SQLException | RuntimeException e) {
+                apartar(nombre, -1, "error al comprobar: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Segundos de retraso respecto a la primaria, o -1 si no se puede saber
+     * (no es MySQL, o es una instancia sin replicación configurada, como dos
+     * MySQL independientes para pruebas locales).
+     * Long.MAX_VALUE si la replicación está parada.
+     */
+    private static long retrasoReplicacion(Connection conexion) {
+        try {
+            if (!conexion.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql")) {
+                return -1;
+            }
+            try (Statement sentencia = conexion.createStatement();
+                 ResultSet rs = sentencia.executeQuery("SHOW REPLICA STATUS")) {
+                if (!rs.next()) {
+                    return -1;
+                }
+                long retraso = rs.getLong("Seconds_Behind_Source");
+                return rs.wasNull() ? Long.MAX_VALUE : retraso;
+            }
+        } catch (SQLException e) {
+            // MySQL anterior a 8.0.22 o sin permiso REPLICATION CLIENT
+            return -1;
+        }
+    }
+
+    private synchronized void apartar(String nombre, long retraso, String motivo) {
+        EstadoReplica anterior = estados.put(nombre, new EstadoReplica(nombre, false, retraso, motivo));
+        if (anterior == null || anterior.disponible()) {
+            log.warn("[REPLICAS] Réplica {} apartada: {}", nombre, motivo);
+        }
+        recalcularDisponibles();
+    }
+
+    private synchronized void admitir(String nombre, long retraso) {
+        EstadoReplica anterior = estados.put(nombre, new EstadoReplica(nombre, true, retraso, "ok"));
+        if (anterior != null && !anterior.disponible()) {
+            log.info("[REPLICAS] Réplica {} disponible de nuevo", nombre);
+        }
+        recalcularDisponibles();
+    }
+
+    private void recalcularDisponibles() {
+        List<String> sanas = new ArrayList<>();
+        for (String nombre : replicas.keySet()) {
+            EstadoReplica estado = estados.get(nombre);
+            if (estado == null || estado.disponible()) {
+                sanas.add(nombre);
+            }
+        }
+        disponibles = sanas;
+    }
+
+
+    // CONSULTA Y CIERRE
+
+    public List<EstadoReplica> estadoReplicas() {
+        List<EstadoReplica> resultado = new ArrayList<>();
+        for (String nombre : replicas.keySet()) {
+            resultado.add(estados.getOrDefault(nombre, new EstadoReplica(nombre, true, -1, "sin comprobar")));
+        }
+        return resultado;
+    }
+
+    /**
+     * Conexiones pedidas por tipo. "sinReplica" cuenta las lecturas que fueron
+     * a la primaria porque no había ninguna réplica sana o la elegida falló.
+     */
+    public Map<String, Long> estadisticas() {
+        return Map.of("lecturasReplica", lecturasReplica.sum(), "lecturasPrimaria", lecturasPrimaria.sum(),
+                "escrituras", escrituras.sum(), "sinReplica", sinReplica.sum());
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (planificador != null) {
+            planificador.shutdownNow();
+        }
+        for (DataSource replica : replicas.values()) {
+            if (replica instanceof AutoCloseable cerrable) {
+                cerrable.close();
+            }
+        }
+        if (primaria instanceof AutoCloseable cerrable) {
+            cerrable.close();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> tipo) throws SQLException {
+        // Para herramientas como AsesorPool, que buscan el pool de la primaria
+        if (tipo.isInstance(this)) {
+            return (T) this;
+        }
+        return primaria.unwrap(tipo);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> tipo) throws SQLException {
+        return tipo.isInstance(this) || primaria.isWrapperFor(tipo);
+    }
+}
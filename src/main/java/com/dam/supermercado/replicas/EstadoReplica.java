@@ -0,0 +1,8 @@
+package com.dam.supermercado.replicas;
+
+/**
+ * Resultado de la última comprobación de salud de una réplica.
+ * retrasoSegundos es -1 si no se conoce (no es MySQL o no tiene replicación configurada).
+ */
+public record EstadoReplica(String nombre, boolean disponible, long retrasoSegundos, String motivo) {
+}
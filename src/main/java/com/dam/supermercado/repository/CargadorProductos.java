@@ -0,0 +1,162 @@
+package com.dam.supermercado.repository;
+
+import com.dam.supermercado.model.Producto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ============================================
+ * REPOSITORIO: CargadorProductos (micro-lotes)
+ * ============================================
+ * Junta las búsquedas por ID que llegan a la vez desde distintos hilos
+ * en una sola consulta WHERE id IN (...) (findAllById).
+ * Funciona como un "DataLoader":
+ * 1. DEDUPLICACIÓN: si ya hay una búsqueda en curso del mismo ID, la nueva
+ *    espera su resultado en lugar de lanzar otra consulta.
+ * 2. MICRO-LOTES: cada ID nuevo entra en una cola. El primer hilo que
+ *    encuentra la cola sin "líder" lo es: espera una ventana muy corta
+ *    ("ventana-micros") para que lleguen más IDs, vacía la cola y lanza la
+ *    consulta para todos. El resto solo espera su resultado.
+ *    La ventana solo se espera si ya hay otra consulta del cargador en
+ *    marcha; con poca carga no se añade ningún retraso.
+ * Varios líderes pueden tener consultas en marcha a la vez (una por
+ * conexión), así que los lotes no se ejecutan en fila india.
+ */
+@Component
+public class CargadorProductos {
+
+    private final ProductoRepository productoRepository;
+    private final boolean habilitado;
+    private final long ventanaNanos;
+
+    private final Map<Long, CompletableFuture<Optional<Producto>>> enVuelo = new ConcurrentHashMap<>();
+    private final Queue<Long> cola = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean hayLider = new AtomicBoolean();
+    private final AtomicInteger consultasEnMarcha = new AtomicInteger();
+
+    private final LongAdder peticiones = new LongAdder();
+    private final LongAdder deduplicadas = new LongAdder();
+    private final LongAdder consultas = new LongAdder();
+
+    /**
+     * habilitado Si es false, cada búsqueda es un findById normal
+     * ventanaMicros Tiempo que el líder espera a juntar más IDs
+     */
+    @Autowired
+    public CargadorProductos(ProductoRepository productoRepository,
+                             @Value("${supermercado.cargador.habilitado:true}") boolean habilitado,
+                             @Value("${supermercado.cargador.ventana-micros:200}") long ventanaMicros) {
+        this.productoRepository = productoRepository;
+        this.habilitado = habilitado;
+        this.ventanaNanos = TimeUnit.MICROSECONDS.toNanos(ventanaMicros);
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Busca un producto por ID, agrupándolo con las búsquedas simultáneas.
+     * Cada llamada recibe su propia copia del producto.
+     * id ID del producto
+     * Optional con el producto o vacío si no existe
+     */
+    public Optional<Producto> cargar(Long id) {
+        peticiones.increment();
+        if (!habilitado) {
+            consultas.increment();
+            return productoRepository.findById(id);
+        }
+
+        CompletableFuture<Optional<Producto>> nueva = new CompletableFuture<>();
+        CompletableFuture<Optional<Producto>> existente = enVuelo.putIfAbsent(id, nueva);
+        if (existente != null) {
+            deduplicadas.increment();
+            return esperar(existente).map(Producto::new);
+        }
+
+        // Primero se encola y después se intenta ser líder: así ningún ID se
+        // queda en la cola sin que algún líder la vacíe después
+        cola.add(id);
+        if (hayLider.compareAndSet(false, true)) {
+            if (consultasEnMarcha.get() > 0 && ventanaNanos > 0) {
+                LockSupport.parkNanos(ventanaNanos);
+            }
+            hayLider.set(false);
+            despachar();
+        }
+        return esperar(nueva);
+    }
+
+    private void despachar() {
+        List<Long> ids = new ArrayList<>();
+        Long id;
+        while ((id = cola.poll()) != null) {
+            ids.add(id);
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        consultasEnMarcha.incrementAndGet();
+        try {
+            consultas.increment();
+            Map<Long, Producto> encontrados = new HashMap<>();
+            for (Producto producto : productoRepository.findAllById(ids)) {
+                encontrados.put(producto.getId(), producto);
+            }
+            for (Long pedido : ids) {
+                // Se quita antes de completar: una búsqueda posterior ya no lo verá
+                // "en vuelo" y consultará de nuevo (podría haber cambiado)
+                enVuelo.remove(pedido).complete(Optional.ofNullable(encontrados.get(pedido)));
+            }
+        } catch (RuntimeException | Error e) {
+            for (Long pedido : ids) {
+                CompletableFuture<Optional<Producto>> pendiente = enVuelo.remove(pedido);
+                if (pendiente != null) {
+                    pendiente.completeExceptionally(e);
+                }
+            }
+            // Las excepciones normales ya las recibe cada hilo por su Future
+            if (e instanceof Error error) {
+                throw error;
+            }
+        } finally {
+            consultasEnMarcha.decrementAndGet();
+        }
+    }
+
+    private static Optional<Producto> esperar(CompletableFuture<Optional<Producto>> resultado) {
+        try {
+            return resultado.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    /**
+     * Búsquedas recibidas, cuántas se resolvieron con otra igual en curso,
+     * y consultas lanzadas a la BD. peticiones / consultas = ahorro de viajes.
+     */
+    public Map<String, Long> estadisticas() {
+        return Map.of("peticiones", peticiones.sum(), "deduplicadas", deduplicadas.sum(),
+                "consultas", consultas.sum());
+    }
+}
@@ -0,0 +1,290 @@
+package com.dam.supermercado.repository;
+
+import com.dam.supermercado.precios.CambioPrecio;
+import com.dam.supermercado.precios.CriterioPrecios;
+import com.dam.supermercado.precios.EstadoLote;
+import com.dam.supermercado.precios.LotePrecios;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * ============================================
+ * REPOSITORIO: PreciosRepository (JDBC)
+ * ============================================
+ * SQL de los cambios de precio en bloque (ver MotorPrecios) y de las
+ * tablas lotes_precios e historial_precios.
+ * Un lote se aplica con DOS sentencias, sea de 10 productos o de 100.000:
+ * 1. INSERT ... SELECT: copia al historial el precio actual y el nuevo
+ *    (calculado por MySQL) de cada producto que cumple el criterio.
+ * 2. UPDATE productos: pone a cada producto del lote su precio_nuevo.
+ * Así nunca se traen los productos a Java, y el UPDATE cambia justo las
+ * filas registradas en el historial (un producto que entre en la
+ * categoría entre las dos sentencias no se cambia sin quedar registrado).
+ * Las dos sentencias deben ir en la misma transacción.
+ */
+@Repository
+public class PreciosRepository {
+
+    /**
+     * Máximo de ids en cada WHERE id IN (...), como en ProductoRepository.
+     */
+    private static final int MAXIMO_IN = 512;
+
+    private static final String COLUMNAS_LOTE = "id, motivo, porcentaje, categoria, precio_minimo, precio_maximo,"
+            + " inicio, fin, estado, productos, revierte";
+
+    /**
+     * Precio nuevo: redondeado a céntimos y nunca por debajo de 0,01.
+     * Los "?" de la lista del SELECT llevan CAST porque H2 no sabe de qué
+     * tipo son (MySQL no lo necesita, pero lo acepta).
+     */
+    private static final String SQL_REGISTRAR_CAMBIOS =
+            "INSERT INTO historial_precios (lote, producto_id, precio_anterior, precio_nuevo, fecha)"
+                    + " SELECT CAST(? AS DECIMAL(19, 0)), id, precio, GREATEST(ROUND(precio * ?, 2), 0.01),"
+                    + " CAST(? AS DATETIME) FROM productos WHERE ";
+
+    /**
+     * Solo se restauran los productos cuyo precio sigue siendo el que puso
+     * el lote: si alguien lo cambió después, se respeta ese cambio.
+     */
+    private static final String SQL_REGISTRAR_REVERSION =
+            "INSERT INTO historial_precios (lote, producto_id, precio_anterior, precio_nuevo, fecha)"
+                    + " SELECT CAST(? AS DECIMAL(19, 0)), p.id, p.precio, h.precio_anterior, CAST(? AS DATETIME)"
+                    + " FROM historial_precios h"
+                    + " JOIN productos p ON p.id = h.producto_id WHERE h.lote = ? AND p.precio = h.precio_nuevo";
+
+    /**
+     * Subconsultas en lugar de UPDATE ... JOIN para que también lo acepte H2
+     * (los benchmarks). Las dos usan idx_historial_lote. Suma 1 a la
+     * versión, como cualquier otra escritura del producto.
+     */
+    private static final String SQL_APLICAR_LOTE =
+            "UPDATE productos SET precio = (SELECT h.precio_nuevo FROM historial_precios h"
+                    + " WHERE h.lote = ? AND h.producto_id = productos.id), version = version + 1"
+                    + " WHERE id IN (SELECT producto_id FROM historial_precios WHERE lote = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final RowMapper<LotePrecios> loteRowMapper = (rs, rowNum) -> new LotePrecios(
+            rs.getLong(1),
+            rs.getString(2),
+            rs.getBigDecimal(3),
+            rs.getString(4),
+            rs.getBigDecimal(5),
+            rs.getBigDecimal(6),
+            instante(rs.getTimestamp(7)),
+            instante(rs.getTimestamp(8)),
+            EstadoLote.valueOf(rs.getString(9)),
+            rs.getInt(10),
+            rs.getObject(11, Long.class)
+    );
+
+    private static final RowMapper<CambioPrecio> cambioRowMapper = (rs, rowNum) -> new CambioPrecio(
+            rs.getLong(1),
+            rs.getLong(2),
+            rs.getBigDecimal(3),
+            rs.getBigDecimal(4),
+            instante(rs.getTimestamp(5))
+    );
+
+    @Autowired
+    public PreciosRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+
+    // LOTES
+
+    /**
+     * Inserta el lote (sin id) y devuelve el id generado.
+     */
+    public long saveLote(LotePrecios lote) {
+        String sql = "INSERT INTO lotes_precios (motivo, porcentaje, categoria, precio_minimo, precio_maximo,"
+                + " inicio, fin, estado, productos, revierte) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, lote.motivo());
+            ps.setBigDecimal(2, lote.porcentaje());
+            ps.setString(3, lote.categoria());
+            ps.setBigDecimal(4, lote.precioMinimo());
+            ps.setBigDecimal(5, lote.precioMaximo());
+            ps.setTimestamp(6, Timestamp.from(lote.inicio()));
+            ps.setTimestamp(7, lote.fin() != null ? Timestamp.from(lote.fin()) : null);
+            ps.setString(8, lote.estado().name());
+            ps.setInt(9, lote.productos());
+            if (lote.revierte() != null) {
+                ps.setLong(10, lote.revierte());
+            } else {
+                ps.setNull(10, Types.BIGINT);
+            }
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    public Optional<LotePrecios> findLoteById(long id) {
+        String sql = "SELECT " + COLUMNAS_LOTE + " FROM lotes_precios WHERE id = ?";
+        return jdbcTemplate.query(sql, loteRowMapper, id).stream().findFirst();
+    }
+
+    /**
+     * Promociones programadas cuyo inicio ya ha llegado.
+     */
+    public List<LotePrecios> findLotesParaAplicar(Instant ahora) {
+        String sql = "SELECT " + COLUMNAS_LOTE + " FROM lotes_precios WHERE estado = 'PROGRAMADO' AND inicio <= ?"
+                + " ORDER BY inicio, id";
+        return jdbcTemplate.query(sql, loteRowMapper, Timestamp.from(ahora));
+    }
+
+    /**
+     * Promociones aplicadas cuyo fin ya ha llegado.
+     */
+    public List<LotePrecios> findLotesParaRevertir(Instant ahora) {
+        String sql = "SELECT " + COLUMNAS_LOTE + " FROM lotes_precios WHERE estado = 'APLICADO' AND fin <= ?"
+                + " ORDER BY fin, id";
+        return jdbcTemplate.query(sql, loteRowMapper, Timestamp.from(ahora));
+    }
+
+    /**
+     * Pasa el lote de un estado a otro solo si sigue en el primero. Es la
+     * forma de "reservarlo": si dos procesos lo intentan a la vez, solo uno
+     * recibe true.
+     */
+    public boolean updateEstadoLote(long id, EstadoLote desde, EstadoLote hasta) {
+        String sql = "UPDATE lotes_precios SET estado = ? WHERE id = ? AND estado = ?";
+        return jdbcTemplate.update(sql, hasta.name(), id, desde.name()) > 0;
+    }
+
+    public void updateProductosLote(long id, int productos) {
+        jdbcTemplate.update("UPDATE lotes_precios SET productos = ? WHERE id = ?", productos, id);
+    }
+
+
+    // CAMBIOS DE PRECIO
+
+    /**
+     * Registra en el historial el cambio de precio del lote para cada
+     * producto que cumple el criterio (precio nuevo = precio × factor).
+     * Con una lista de ids, un INSERT por cada bloque de MAXIMO_IN.
+     * Número de productos registrados
+     */
+    public int registrarCambios(long lote, CriterioPrecios criterio, BigDecimal factor, Instant fecha) {
+        List<Object> parametros = new ArrayList<>(List.of(lote, factor, Timestamp.from(fecha)));
+        StringBuilder condicion = new StringBuilder("1 = 1");
+        if (criterio.categoria() != null) {
+            condicion.append(" AND categoria = ?");
+            parametros.add(criterio.categoria());
+        }
+        if (criterio.precioMinimo() != null) {
+            condicion.append(" AND precio >= ?");
+            parametros.add(criterio.precioMinimo());
+        }
+        if (criterio.precioMaximo() != null) {
+            condicion.append(" AND precio <= ?");
+            parametros.add(criterio.precioMaximo());
+        }
+        if (criterio.ids() == null) {
+            return jdbcTemplate.update(SQL_REGISTRAR_CAMBIOS + condicion, parametros.toArray());
+        }
+
+        int registrados = 0;
+        List<Long> ids = criterio.ids();
+        for (int desde = 0; desde < ids.size(); desde += MAXIMO_IN) {
+            List<Long> bloque = ids.subList(desde, Math.min(desde + MAXIMO_IN, ids.size()));
+            List<Object> conIds = new ArrayList<>(parametros);
+            conIds.addAll(bloque);
+            String sql = SQL_REGISTRAR_CAMBIOS + condicion
+                    + " AND id IN (" + String.join(", ", Collections.nCopies(bloque.size(), "?")) + ")";
+            registrados += jdbcTemplate.update(sql, conIds.toArray());
+        }
+        return registrados;
+    }
+
+    /**
+     * Registra en el historial, como lote nuevo, la vuelta al precio
+     * anterior de los productos del lote revertido que no han vuelto a
+     * cambiar de precio.
+     * Número de productos registrados
+     */
+    public int registrarReversion(long lote, long loteRevertido, Instant fecha) {
+        return jdbcTemplate.update(SQL_REGISTRAR_REVERSION, lote, Timestamp.from(fecha), loteRevertido);
+    }
+
+    /**
+     * Pone a cada producto del lote el precio_nuevo registrado en el historial.
+     * Número de productos actualizados
+     */
+    public int aplicarLote(long lote) {
+        return jdbcTemplate.update(SQL_APLICAR_LOTE, lote, lote);
+    }
+
+
+    /**
+     * true si existen lotes_precios e historial_precios. Se comprueba una
+     * vez al arrancar: una BD sin migrar no tiene estas tablas y no tiene
+     * sentido revisar promociones contra ella.
+     */
+    public boolean existenTablas() {
+        try {
+            jdbcTemplate.queryForList("SELECT 1 FROM lotes_precios WHERE 1 = 0");
+            jdbcTemplate.queryForList("SELECT 1 FROM historial_precios WHERE 1 = 0");
+            return true;
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+
+
+    // HISTORIAL
+
+    /**
+     * IDs de los productos cambiados por un lote.
+     */
+    public List<Long> findProductosByLote(long lote) {
+        String sql = "SELECT producto_id FROM historial_precios WHERE lote = ? ORDER BY producto_id";
+        return jdbcTemplate.queryForList(sql, Long.class, lote);
+    }
+
+    /**
+     * Historial de precios de un producto, del cambio más reciente al más antiguo.
+     */
+    public List<CambioPrecio> findHistorialByProductoId(long productoId) {
+        String sql = "SELECT lote, producto_id, precio_anterior, precio_nuevo, fecha FROM historial_precios"
+                + " WHERE producto_id = ? ORDER BY fecha DESC, id DESC";
+        return jdbcTemplate.query(sql, cambioRowMapper, productoId);
+    }
+
+    /**
+     * Borra como mucho "maximo" filas del historial anteriores a "limite",
+     * salvo las de promociones pendientes de revertir (hacen falta para
+     * restaurar los precios). Se borra por tandas para no bloquear la tabla
+     * con un único DELETE enorme.
+     * Número de filas borradas
+     */
+    public int deleteHistorialAnteriorA(Instant limite, int maximo) {
+        String sql = "DELETE FROM historial_precios WHERE fecha < ? AND lote NOT IN"
+                + " (SELECT id FROM lotes_precios WHERE estado = 'APLICADO' AND fin IS NOT NULL) LIMIT ?";
+        return jdbcTemplate.update(sql, Timestamp.from(limite), maximo);
+    }
+
+    private static Instant instante(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+}
@@ -1,8 +1,19 @@
 package com.dam.supermercado.repository;
 
+import com.dam.supermercado.model.DescripcionesDiferidas;
 import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.model.ProductoCompacto;
+import com.dam.supermercado.model.ProductoResumen;
+import com.dam.supermercado.model.ProductosColumnares;
+import com.dam.supermercado.model.ResultadoActualizacion;
+import com.dam.supermercado.model.ResumenCategoria;
+import com.dam.supermercado.model.TramoPrecio;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
@@ -13,8 +24,19 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * ============================================
@@ -52,18 +74,98 @@ public class ProductoRepository {
      */
     private final JdbcTemplate jdbcTemplate;
 
+    /**
+     * Número de filas que se envían en cada lote JDBC en las operaciones
+     * masivas (saveAll, updateAll, upsertAll). Configurable con
+     * supermercado.jdbc.tamano-lote en application.properties.
+     */
+    private final int tamanoLote;
+
     /**
      * Constructor con inyección de dependencias.
      * Spring inyecta automáticamente el JdbcTemplate configurado.
      * jdbcTemplate Template JDBC inyectado por Spring
+     * tamanoLote Tamaño de lote por defecto para las operaciones masivas
      */
     @Autowired
-    public ProductoRepository(JdbcTemplate jdbcTemplate) {
+    public ProductoRepository(JdbcTemplate jdbcTemplate,
+                              @Value("${supermercado.jdbc.tamano-lote:500}") int tamanoLote) {
+        comprobarTamanoLote(tamanoLote);
         this.jdbcTemplate = jdbcTemplate;
+        this.tamanoLote = tamanoLote;
     }
 
     // ROWMAPPER - MAPEO MANUAL DE RESULTADOS
 
+    /**
+     * Columnas que devuelven todas las consultas de productos, SIEMPRE en este orden.
+     * Los RowMapper leen por posición (1, 2, 3...) en lugar de por nombre:
+     * rs.getLong("id") obliga al driver a buscar la columna por nombre en
+     * cada fila, mientras que rs.getLong(1) va directamente a ella.
+     */
+    private static final String COLUMNAS = "id, nombre, descripcion, precio, stock, categoria, version";
+
+    private static final int COL_ID = 1;
+    private static final int COL_NOMBRE = 2;
+    private static final int COL_DESCRIPCION = 3;
+    private static final int COL_PRECIO = 4;
+    private static final int COL_STOCK = 5;
+    private static final int COL_CATEGORIA = 6;
+    private static final int COL_VERSION = 7;
+
+    /**
+     * Columnas de los listados: las mismas, pero con NULL en lugar de la
+     * descripción (así las posiciones no cambian y vale el mismo RowMapper).
+     * La descripción solo se muestra en la ficha de un producto y es la
+     * columna más larga: los listados la cargan solo si se pide, en bloques
+     * (ver consultarListado y DescripcionesDiferidas).
+     */
+    private static final String COLUMNAS_LISTADO = "id, nombre, NULL, precio, stock, categoria, version";
+
+    /**
+     * Igual que COLUMNAS, pero con el precio ya convertido a céntimos por MySQL.
+     * Así se lee con getLong() y no hace falta crear un BigDecimal por fila.
+     */
+    private static final String COLUMNAS_COMPACTAS =
+            "id, nombre, descripcion, CAST(precio * 100 AS SIGNED) AS precio_centimos, stock, categoria";
+
+    /**
+     * Máximo de ids en cada WHERE id IN (...) de findAllById y findDescripcionesById.
+     */
+    private static final int MAXIMO_IN = 512;
+
+
+    // SQL DE LAS OPERACIONES MÁS FRECUENTES
+    // El driver de MySQL guarda en cada conexión las sentencias ya preparadas
+    // (cachePrepStmts) y las busca por el TEXTO exacto de la SQL: si el texto
+    // varía, el servidor vuelve a analizarla. Por eso las SQL son constantes
+    // (las de un solo uso de más abajo también lo son: javac calcula al
+    // compilar "SELECT " + COLUMNAS + ...) y las de longitud variable, como
+    // el IN de findAllById, se construyen al cargar la clase.
+
+    private static final String SQL_FIND_ALL = "SELECT " + COLUMNAS_LISTADO + " FROM productos";
+    private static final String SQL_FIND_BY_ID = "SELECT " + COLUMNAS + " FROM productos WHERE id = ?";
+    private static final String SQL_INSERT =
+            "INSERT INTO productos (nombre, descripcion, precio, stock, categoria) VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_DELETE_BY_ID = "DELETE FROM productos WHERE id = ?";
+    private static final String SQL_COUNT = "SELECT COUNT(*) FROM productos";
+
+    /**
+     * SQL_FIND_ALL_BY_ID[k], SQL_FIND_DESCRIPCIONES_BY_ID[k] y
+     * SQL_FIND_VERSIONES_BY_ID[k]: WHERE id IN con 2^k marcadores (de 8 a MAXIMO_IN).
+     */
+    private static final String[] SQL_FIND_ALL_BY_ID = sqlPorIds("SELECT " + COLUMNAS + " FROM productos");
+    private static final String[] SQL_FIND_DESCRIPCIONES_BY_ID = sqlPorIds("SELECT id, descripcion FROM productos");
+    private static final String[] SQL_FIND_VERSIONES_BY_ID = sqlPorIds("SELECT id, version FROM productos");
+
+    private static String[] sqlPorIds(String select) {
+        String[] sql = new String[Integer.numberOfTrailingZeros(MAXIMO_IN) + 1];
+        for (int k = 3; k < sql.length; k++) {
+            sql[k] = select + " WHERE id IN (" + String.join(", ", Collections.nCopies(1 << k, "?")) + ")";
+        }
+        return sql;
+    }
+
     /**
      * RowMapper es una interfaz funcional que define cómo
      * convertir cada fila del ResultSet en un objeto Producto.
@@ -79,18 +181,45 @@ public class ProductoRepository {
             Producto producto = new Producto();
 
             // Extraemos cada columna del ResultSet y la asignamos al objeto
-            // Los nombres deben coincidir con los de la BD
-            producto.setId(rs.getLong("id"));
-            producto.setNombre(rs.getString("nombre"));
-            producto.setDescripcion(rs.getString("descripcion"));
-            producto.setPrecio(rs.getBigDecimal("precio"));
-            producto.setStock(rs.getInt("stock"));
-            producto.setCategoria(rs.getString("categoria"));
+            // Las posiciones corresponden al orden de COLUMNAS
+            producto.setId(rs.getLong(COL_ID));
+            producto.setNombre(rs.getString(COL_NOMBRE));
+            producto.setDescripcion(rs.getString(COL_DESCRIPCION));
+            producto.setPrecio(rs.getBigDecimal(COL_PRECIO));
+            producto.setStock(rs.getInt(COL_STOCK));
+            producto.setCategoria(rs.getString(COL_CATEGORIA));
+            producto.setVersion(rs.getLong(COL_VERSION));
 
+            // Recién leído: ningún campo cuenta como modificado
+            producto.limpiarCambios();
             return producto;
         }
     };
 
+    /**
+     * Columnas de ProductoResumen, para los listados.
+     */
+    private static final String COLUMNAS_RESUMEN_PRODUCTO = "id, nombre, precio";
+
+    private static final RowMapper<ProductoResumen> resumenRowMapper = (rs, rowNum) -> new ProductoResumen(
+            rs.getLong(1),
+            rs.getString(2),
+            rs.getBigDecimal(3)
+    );
+
+    /**
+     * RowMapper para ProductoCompacto: solo primitivos y el precio en céntimos.
+     * Se usa con consultas que seleccionan COLUMNAS_COMPACTAS.
+     */
+    private static final RowMapper<ProductoCompacto> compactoRowMapper = (rs, rowNum) -> new ProductoCompacto(
+            rs.getLong(COL_ID),
+            rs.getString(COL_NOMBRE),
+            rs.getString(COL_DESCRIPCION),
+            rs.getLong(COL_PRECIO),
+            rs.getInt(COL_STOCK),
+            rs.getString(COL_CATEGORIA)
+    );
+
 
     // MÉTODOS CRUD
 
@@ -98,14 +227,13 @@ public class ProductoRepository {
      * Obtiene todos los productos de la base de datos.
      * Equivalente en JPA: productoRepository.findAll()
      * Aquí escribimos el SQL manualmente.
+     * Como todos los listados, no lee la descripción hasta que se pide.
      * Lista con todos los productos
      */
     public List<Producto> findAll() {
-        // SQL escrito manualmente - en JPA esto es automático
-        String sql = "SELECT id, nombre, descripcion, precio, stock, categoria FROM productos";
-
+        // SQL escrito manualmente (SQL_FIND_ALL) - en JPA esto es automático
         // query() ejecuta el SELECT y usa el RowMapper para convertir cada fila
-        return jdbcTemplate.query(sql, productoRowMapper);
+        return consultarListado(SQL_FIND_ALL);
     }
 
     /**
@@ -115,18 +243,79 @@ public class ProductoRepository {
      * Optional con el producto o vacío si no existe
      */
     public Optional<Producto> findById(Long id) {
-        String sql = "SELECT id, nombre, descripcion, precio, stock, categoria FROM productos WHERE id = ?";
-
         // queryForObject espera exactamente un resultado
         // Si no encuentra nada, lanza excepción, por eso usamos try-catch
         try {
-            Producto producto = jdbcTemplate.queryForObject(sql, productoRowMapper, id);
+            Producto producto = jdbcTemplate.queryForObject(SQL_FIND_BY_ID, productoRowMapper, id);
             return Optional.ofNullable(producto);
         } catch (Exception e) {
             return Optional.empty();
         }
     }
 
+    /**
+     * Busca varios productos por ID con una consulta WHERE id IN (...) por
+     * cada bloque de MAXIMO_IN ids, en vez de una consulta por ID.
+     * Equivalente en JPA: productoRepository.findAllById(ids)
+     * Para no generar una SQL distinta por cada número de ids (el servidor
+     * tendría que analizar y preparar cada una), la lista de "?" se redondea
+     * a la siguiente potencia de 2 repitiendo el último id: con 1 a 512 ids
+     * solo hay 7 sentencias distintas.
+     * ids IDs a buscar (los repetidos se consultan una vez)
+     * Productos encontrados, sin orden garantizado; los IDs que no existen se omiten
+     */
+    public List<Producto> findAllById(Collection<Long> ids) {
+        List<Producto> productos = new ArrayList<>(ids.size());
+        recorrerPorIds(ids, SQL_FIND_ALL_BY_ID, rs -> {
+            productos.add(productoRowMapper.mapRow(rs, productos.size()));
+        });
+        return productos;
+    }
+
+    /**
+     * Descripción de cada producto (con las mismas consultas por bloques
+     * que findAllById). Es lo que usan los listados para cargarla cuando
+     * se pide.
+     * Mapa id -> descripción; los IDs que no existen se omiten
+     */
+    public Map<Long, String> findDescripcionesById(Collection<Long> ids) {
+        Map<Long, String> descripciones = new HashMap<>();
+        recorrerPorIds(ids, SQL_FIND_DESCRIPCIONES_BY_ID, rs -> {
+            descripciones.put(rs.getLong(1), rs.getString(2));
+        });
+        return descripciones;
+    }
+
+    /**
+     * Ejecuta sqlPorMarcadores con los ids en bloques de MAXIMO_IN.
+     */
+    private void recorrerPorIds(Collection<Long> ids, String[] sqlPorMarcadores, RowCallbackHandler accion) {
+        List<Long> distintos = new ArrayList<>(new LinkedHashSet<>(ids));
+        for (int desde = 0; desde < distintos.size(); desde += MAXIMO_IN) {
+            List<Long> bloque = distintos.subList(desde, Math.min(desde + MAXIMO_IN, distintos.size()));
+            int marcadores = Math.max(8, Integer.highestOneBit(bloque.size() - 1) << 1);
+            Object[] parametros = new Object[marcadores];
+            for (int i = 0; i < marcadores; i++) {
+                parametros[i] = bloque.get(Math.min(i, bloque.size() - 1));
+            }
+            jdbcTemplate.query(sqlPorMarcadores[Integer.numberOfTrailingZeros(marcadores)], accion, parametros);
+        }
+    }
+
+    /**
+     * Ejecuta un listado (SQL con COLUMNAS_LISTADO): la descripción de cada
+     * producto se leerá al pedirla, junto con las de su bloque de MAXIMO_IN
+     * productos de la lista (una consulta por bloque, no por producto).
+     */
+    private List<Producto> consultarListado(String sql, Object... parametros) {
+        List<Producto> productos = jdbcTemplate.query(sql, productoRowMapper, parametros);
+        DescripcionesDiferidas diferidas = new DescripcionesDiferidas(this::findDescripcionesById, MAXIMO_IN);
+        for (Producto producto : productos) {
+            producto.diferirDescripcion(diferidas, diferidas.anadir(producto.getId()));
+        }
+        return productos;
+    }
+
     /**
      * Guarda un nuevo producto en la base de datos.
      * Equivalente en JPA: productoRepository.save(producto)
@@ -134,14 +323,12 @@ public class ProductoRepository {
      * Producto guardado con el ID generado
      */
     public Producto save(Producto producto) {
-        String sql = "INSERT INTO productos (nombre, descripcion, precio, stock, categoria) VALUES (?, ?, ?, ?, ?)";
-
         // KeyHolder nos permite recuperar el ID generado automáticamente
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
         jdbcTemplate.update(connection -> {
             // Creamos el PreparedStatement indicando que queremos recuperar las claves generadas
-            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            PreparedStatement ps = connection.prepareStatement(SQL_INSERT, Statement.RETURN_GENERATED_KEYS);
 
             // Establecemos los parámetros (los ? del SQL)
             ps.setString(1, producto.getNombre());
@@ -155,27 +342,105 @@ public class ProductoRepository {
 
         // Asignamos el ID generado al producto
         producto.setId(keyHolder.getKey().longValue());
+        producto.setVersion(0L);
+        producto.limpiarCambios();
 
         return producto;
     }
 
     /**
-     * Actualiza un producto existente.
-     * Producto con los datos actualizados
-     * Número de filas afectadas (debería ser 1)
+     * Columnas que puede cambiar un UPDATE, en el orden de los bits
+     * Producto.CAMPO_* (nombre = bit 0, descripcion = bit 1...).
+     */
+    private static final String[] COLUMNAS_MODIFICABLES = {"nombre", "descripcion", "precio", "stock", "categoria"};
+
+    private static final int TODOS_LOS_CAMPOS = (1 << COLUMNAS_MODIFICABLES.length) - 1;
+
+    /**
+     * Un UPDATE por cada combinación de campos modificados (índice = bits
+     * Producto.CAMPO_*), construidos una sola vez. Con 5 campos son 31
+     * sentencias distintas como mucho, que el driver y MySQL pueden cachear.
+     * Todas son UPDATE con bloqueo optimista: solo se aplican si la versión
+     * de la fila sigue siendo la que tenía el producto al leerlo, y la
+     * incrementan. COALESCE(?, version) hace que un producto sin versión
+     * (null) se actualice sin comprobarla, como antes.
+     */
+    private static final String[] SQL_UPDATE = new String[TODOS_LOS_CAMPOS + 1];
+
+    static {
+        for (int campos = 1; campos <= TODOS_LOS_CAMPOS; campos++) {
+            StringBuilder sql = new StringBuilder("UPDATE productos SET ");
+            for (int i = 0; i < COLUMNAS_MODIFICABLES.length; i++) {
+                if ((campos & (1 << i)) != 0) {
+                    sql.append(COLUMNAS_MODIFICABLES[i]).append(" = ?, ");
+                }
+            }
+            sql.append("version = version + 1 WHERE id = ? AND version = COALESCE(?, version)");
+            SQL_UPDATE[campos] = sql.toString();
+        }
+    }
+
+    /**
+     * Actualiza un producto existente si nadie lo ha modificado desde que se leyó.
+     * En JPA esto es @Version: Hibernate añade "AND version = ?" al UPDATE y
+     * lanza OptimisticLockException si no se actualiza ninguna fila.
+     * Aquí no se bloquea nada al leer: dos herramientas pueden trabajar a la
+     * vez y solo la segunda en guardar se entera del conflicto (en lugar de
+     * pisar sin saberlo los cambios de la primera).
+     * Solo se envían las columnas que se cambiaron con los setters desde
+     * que se leyó el producto (si cambió solo el precio, la descripción no
+     * viaja). Un producto creado con el constructor las envía todas, y uno
+     * leído sin cambios también (se guarda tal cual).
+     * producto Producto con los datos actualizados y la versión leída
+     * ACTUALIZADO (y el producto pasa a la versión nueva), CONFLICTO o NO_ENCONTRADO
      */
-    public int update(Producto producto) {
-        String sql = "UPDATE productos SET nombre = ?, descripcion = ?, precio = ?, stock = ?, categoria = ? WHERE id = ?";
+    public ResultadoActualizacion update(Producto producto) {
+        int campos = producto.getCamposModificados() != 0 ? producto.getCamposModificados() : TODOS_LOS_CAMPOS;
+        Object[] parametros = new Object[Integer.bitCount(campos) + 2];
+        int i = 0;
+        for (int bit = 0; bit < COLUMNAS_MODIFICABLES.length; bit++) {
+            if ((campos & (1 << bit)) != 0) {
+                parametros[i++] = valorCampo(producto, 1 << bit);
+            }
+        }
+        parametros[i++] = producto.getId();
+        parametros[i] = producto.getVersion();
 
         // update() ejecuta INSERT, UPDATE o DELETE y devuelve el número de filas afectadas
-        return jdbcTemplate.update(sql,
-                producto.getNombre(),
-                producto.getDescripcion(),
-                producto.getPrecio(),
-                producto.getStock(),
-                producto.getCategoria(),
-                producto.getId()
-        );
+        int filas = jdbcTemplate.update(SQL_UPDATE[campos], parametros);
+        if (filas > 0) {
+            if (producto.getVersion() != null) {
+                producto.setVersion(producto.getVersion() + 1);
+            }
+            producto.limpiarCambios();
+            return ResultadoActualizacion.ACTUALIZADO;
+        }
+        // Solo cuando falla: ¿la fila ya no existe o tiene otra versión?
+        List<Long> versiones = jdbcTemplate.queryForList("SELECT version FROM productos WHERE id = ?",
+                Long.class, producto.getId());
+        return versiones.isEmpty() ? ResultadoActualizacion.NO_ENCONTRADO : ResultadoActualizacion.CONFLICTO;
+    }
+
+    private static Object valorCampo(Producto producto, int campo) {
+        return switch (campo) {
+            case Producto.CAMPO_NOMBRE -> producto.getNombre();
+            case Producto.CAMPO_DESCRIPCION -> producto.getDescripcion();
+            case Producto.CAMPO_PRECIO -> producto.getPrecio();
+            case Producto.CAMPO_STOCK -> producto.getStock();
+            case Producto.CAMPO_CATEGORIA -> producto.getCategoria();
+            default -> throw new IllegalArgumentException("Campo desconocido: " + campo);
+        };
+    }
+
+    /**
+     * Lee un producto y bloquea su fila hasta el final de la transacción
+     * (bloqueo pesimista). Otra transacción que pida la misma fila espera.
+     * Solo tiene sentido dentro de una transacción.
+     * Equivalente en JPA: @Lock(LockModeType.PESSIMISTIC_WRITE)
+     */
+    public Optional<Producto> findByIdForUpdate(Long id) {
+        String sql = "SELECT " + COLUMNAS + " FROM productos WHERE id = ? FOR UPDATE";
+        return jdbcTemplate.query(sql, productoRowMapper, id).stream().findFirst();
     }
 
     /**
@@ -185,8 +450,7 @@ public class ProductoRepository {
      * Número de filas afectadas (debería ser 1)
      */
     public int deleteById(Long id) {
-        String sql = "DELETE FROM productos WHERE id = ?";
-        return jdbcTemplate.update(sql, id);
+        return jdbcTemplate.update(SQL_DELETE_BY_ID, id);
     }
 
     /**
@@ -195,8 +459,7 @@ public class ProductoRepository {
      * Número total de productos
      */
     public long count() {
-        String sql = "SELECT COUNT(*) FROM productos";
-        Long count = jdbcTemplate.queryForObject(sql, Long.class);
+        Long count = jdbcTemplate.queryForObject(SQL_COUNT, Long.class);
         return count != null ? count : 0;
     }
 
@@ -212,8 +475,23 @@ public class ProductoRepository {
      * Lista de productos de esa categoría
      */
     public List<Producto> findByCategoria(String categoria) {
-        String sql = "SELECT id, nombre, descripcion, precio, stock, categoria FROM productos WHERE categoria = ?";
-        return jdbcTemplate.query(sql, productoRowMapper, categoria);
+        String sql = "SELECT " + COLUMNAS_LISTADO + " FROM productos WHERE categoria = ?";
+        return consultarListado(sql, categoria);
+    }
+
+    /**
+     * Productos de la misma categoría que el producto indicado (sin incluirlo).
+     * La categoría se obtiene con una subconsulta, así que no hace falta leer
+     * antes el producto: esta consulta puede lanzarse a la vez que findById.
+     * id ID del producto de referencia
+     * limite Número máximo de productos
+     * Lista de productos relacionados, ordenada por id
+     */
+    public List<Producto> findRelacionados(Long id, int limite) {
+        String sql = "SELECT " + COLUMNAS_LISTADO + " FROM productos"
+                + " WHERE categoria = (SELECT categoria FROM productos WHERE id = ?) AND id <> ?"
+                + " ORDER BY id LIMIT ?";
+        return consultarListado(sql, id, id, limite);
     }
 
     /**
@@ -223,8 +501,16 @@ public class ProductoRepository {
      * Lista de productos que coinciden
      */
     public List<Producto> findByNombreContaining(String nombre) {
-        String sql = "SELECT id, nombre, descripcion, precio, stock, categoria FROM productos WHERE LOWER(nombre) LIKE LOWER(?)";
-        return jdbcTemplate.query(sql, productoRowMapper, "%" + nombre + "%");
+        String sql = "SELECT " + COLUMNAS_LISTADO + " FROM productos WHERE LOWER(nombre) LIKE LOWER(?)";
+        return consultarListado(sql, "%" + nombre + "%");
+    }
+
+    /**
+     * Igual que findByNombreContaining pero devolviendo como mucho "limite" productos.
+     */
+    public List<Producto> findByNombreContaining(String nombre, int limite) {
+        String sql = "SELECT " + COLUMNAS_LISTADO + " FROM productos WHERE LOWER(nombre) LIKE LOWER(?) LIMIT ?";
+        return consultarListado(sql, "%" + nombre + "%", limite);
     }
 
     /**
@@ -232,8 +518,17 @@ public class ProductoRepository {
      * Desde el que menos precio al que mas precio tiene
      */
     public List<Producto> findByPrecioLessThanEqual(BigDecimal precioMaximo) {
-        String sql = "SELECT id, nombre, descripcion, precio, stock, categoria FROM productos WHERE precio <= ? ORDER BY precio";
-        return jdbcTemplate.query(sql, productoRowMapper, precioMaximo);
+        String sql = "SELECT " + COLUMNAS_LISTADO + " FROM productos WHERE precio <= ? ORDER BY precio";
+        return consultarListado(sql, precioMaximo);
+    }
+
+    /**
+     * Busca productos con precio entre un mínimo y un máximo (ambos incluidos).
+     * Ordenados por precio, como findByPrecioLessThanEqual.
+     */
+    public List<Producto> findByPrecioBetween(BigDecimal precioMinimo, BigDecimal precioMaximo) {
+        String sql = "SELECT " + COLUMNAS_LISTADO + " FROM productos WHERE precio BETWEEN ? AND ? ORDER BY precio, id";
+        return consultarListado(sql, precioMinimo, precioMaximo);
     }
 
     /**
@@ -241,8 +536,8 @@ public class ProductoRepository {
      * Lista de productos con stock > 0
      */
     public List<Producto> findByStockGreaterThanZero() {
-        String sql = "SELECT id, nombre, descripcion, precio, stock, categoria FROM productos WHERE stock > 0";
-        return jdbcTemplate.query(sql, productoRowMapper);
+        String sql = "SELECT " + COLUMNAS_LISTADO + " FROM productos WHERE stock > 0";
+        return consultarListado(sql);
     }
 
     /**
@@ -258,7 +553,548 @@ public class ProductoRepository {
      * Del menor al mayor
      */
     public List<Producto> findAllOrderByPrecio() {
-        String sql = "SELECT id, nombre, descripcion, precio, stock, categoria FROM productos ORDER BY precio ASC";
-        return jdbcTemplate.query(sql, productoRowMapper);
+        String sql = "SELECT " + COLUMNAS_LISTADO + " FROM productos ORDER BY precio ASC";
+        return consultarListado(sql);
+    }
+
+
+    // OPERACIONES ATÓMICAS DE STOCK
+    // Todas incrementan también la versión: así un update() con datos leídos
+    // antes del cambio de stock da CONFLICTO en lugar de devolver el stock viejo.
+
+    /**
+     * Resta stock SOLO si hay suficiente, en una única sentencia atómica.
+     * Leer el stock, restarlo en Java y escribirlo con update() pierde ventas
+     * cuando dos clientes leen a la vez (ambos leen 5 y ambos escriben 4).
+     * Aquí la comprobación y la resta las hace MySQL sobre la fila bloqueada,
+     * así que dos reservas simultáneas nunca dejan el stock en negativo.
+     * id ID del producto
+     * cantidad Unidades a reservar (positivo)
+     * 1 si se reservó, 0 si no hay stock suficiente o el producto no existe
+     */
+    public int decrementarStock(Long id, int cantidad) {
+        String sql = "UPDATE productos SET stock = stock - ?, version = version + 1 WHERE id = ? AND stock >= ?";
+        return jdbcTemplate.update(sql, cantidad, id, cantidad);
+    }
+
+    /**
+     * Igual que decrementarStock, pero la comprobación cuenta también los
+     * movimientos que el buffer de stock aún no ha volcado: con 10 unidades
+     * en la BD y 8 ventas sin volcar (pendiente = -8) solo quedan 2.
+     * Sin esto la reserva se aceptaría y el volcado dejaría el stock en negativo.
+     * pendiente Delta sin volcar del producto (BufferStock.pendiente)
+     */
+    public int decrementarStock(Long id, int cantidad, long pendiente) {
+        if (pendiente == 0) {
+            return decrementarStock(id, cantidad);
+        }
+        String sql = "UPDATE productos SET stock = stock - ?, version = version + 1 WHERE id = ? AND stock + ? >= ?";
+        return jdbcTemplate.update(sql, cantidad, id, pendiente, cantidad);
+    }
+
+    /**
+     * Suma stock de forma atómica (por ejemplo, al liberar una reserva).
+     * id ID del producto
+     * cantidad Unidades a devolver (positivo)
+     * 1 si se actualizó, 0 si el producto no existe
+     */
+    public int incrementarStock(Long id, int cantidad) {
+        String sql = "UPDATE productos SET stock = stock + ?, version = version + 1 WHERE id = ?";
+        return jdbcTemplate.update(sql, cantidad, id);
+    }
+
+
+    /**
+     * Aplica muchos cambios de stock (positivos o negativos) en lotes.
+     * Lo usa el volcado del buffer de stock: cada producto recibe su delta
+     * neto acumulado, sin comprobar si el resultado queda por debajo de 0.
+     * deltas Mapa id de producto -> unidades a sumar (negativo para restar)
+     */
+    public void ajustarStockEnLote(Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE productos SET stock = stock + ?, version = version + 1 WHERE id = ?";
+        jdbcTemplate.batchUpdate(sql, deltas.entrySet(), tamanoLote, (ps, delta) -> {
+            ps.setLong(1, delta.getValue());
+            ps.setLong(2, delta.getKey());
+        });
+    }
+
+
+    // LECTURAS MASIVAS CON REPRESENTACIÓN COMPACTA
+
+    /**
+     * Obtiene todos los productos como ProductoCompacto (inmutable, con primitivos).
+     * Lista con todos los productos
+     */
+    public List<ProductoCompacto> findAllCompactos() {
+        String sql = "SELECT " + COLUMNAS_COMPACTAS + " FROM productos";
+        return jdbcTemplate.query(sql, compactoRowMapper);
+    }
+
+    /**
+     * Obtiene todos los productos en un contenedor columnar.
+     * Se lee con el cursor de streaming y cada fila se copia directamente a
+     * los arrays, sin crear un objeto intermedio por producto.
+     * Contenedor con todos los productos
+     */
+    public ProductosColumnares findAllColumnar() {
+        String sql = "SELECT " + COLUMNAS_COMPACTAS + " FROM productos";
+        ProductosColumnares resultado = new ProductosColumnares(1024);
+        jdbcTemplate.query(crearSentenciaStreaming(sql), (RowCallbackHandler) rs -> resultado.anadir(
+                rs.getLong(COL_ID),
+                rs.getString(COL_NOMBRE),
+                rs.getString(COL_DESCRIPCION),
+                rs.getLong(COL_PRECIO),
+                rs.getInt(COL_STOCK),
+                rs.getString(COL_CATEGORIA)
+        ));
+        return resultado;
+    }
+
+
+    // OPERACIONES MASIVAS (BATCH)
+
+    /**
+     * Inserta muchos productos usando lotes JDBC con el tamaño de lote por defecto.
+     * productos Productos a insertar (sin ID)
+     * La misma colección, con el ID generado asignado a cada producto
+     */
+    public Collection<Producto> saveAll(Collection<Producto> productos) {
+        return saveAll(productos, tamanoLote);
+    }
+
+    /**
+     * Inserta muchos productos usando lotes JDBC.
+     * En lugar de un viaje a la BD por producto (como save()), se usa un único
+     * PreparedStatement para todos: se acumulan "tamanoLote" filas con addBatch()
+     * y se envían juntas con executeBatch(). Con rewriteBatchedStatements=true
+     * en la URL, el driver de MySQL convierte cada lote en un único
+     * INSERT ... VALUES (...), (...), ...
+     * Los IDs generados se leen con getGeneratedKeys() tras cada lote y se
+     * asignan en el mismo orden en que se añadieron las filas.
+     * productos Productos a insertar (sin ID)
+     * tamanoLote Número de filas por lote
+     * La misma colección, con el ID generado asignado a cada producto
+     */
+    public Collection<Producto> saveAll(Collection<Producto> productos, int tamanoLote) {
+        comprobarTamanoLote(tamanoLote);
+        if (productos.isEmpty()) {
+            return productos;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(SQL_INSERT, Statement.RETURN_GENERATED_KEYS)) {
+                List<Producto> lote = new ArrayList<>(Math.min(tamanoLote, productos.size()));
+                Iterator<Producto> it = productos.iterator();
+                while (it.hasNext()) {
+                    Producto producto = it.next();
+                    asignarCampos(ps, producto, 1);
+                    ps.addBatch();
+                    lote.add(producto);
+
+                    if (lote.size() == tamanoLote || !it.hasNext()) {
+                        ps.executeBatch();
+                        asignarIdsGenerados(ps, lote);
+                        lote.clear();
+                    }
+                }
+            }
+            return null;
+        });
+        return productos;
+    }
+
+    /**
+     * Inserta productos que ya traen su ID (generado fuera de MySQL, por
+     * ejemplo por GeneradorIds con la tabla repartida en shards) y su
+     * versión (null = 0). Falla si algún ID ya existe.
+     * productos Productos a insertar (con ID)
+     * La misma colección
+     */
+    public Collection<Producto> saveAllWithIds(Collection<Producto> productos) {
+        String sql = "INSERT INTO productos (id, nombre, descripcion, precio, stock, categoria, version) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        jdbcTemplate.batchUpdate(sql, productos, tamanoLote, (ps, producto) -> {
+            ps.setLong(1, producto.getId());
+            asignarCampos(ps, producto, 2);
+            ps.setLong(7, producto.getVersion() != null ? producto.getVersion() : 0L);
+        });
+        for (Producto producto : productos) {
+            if (producto.getVersion() == null) {
+                producto.setVersion(0L);
+            }
+            producto.limpiarCambios();
+        }
+        return productos;
+    }
+
+    /**
+     * Actualiza muchos productos usando lotes JDBC con el tamaño de lote por defecto.
+     * productos Productos con los datos actualizados (con ID)
+     * Número total de filas afectadas
+     */
+    public int updateAll(Collection<Producto> productos) {
+        return updateAll(productos, tamanoLote);
+    }
+
+    /**
+     * Actualiza muchos productos usando lotes JDBC.
+     * Mismo UPDATE que update(), con la misma comprobación de versión,
+     * pero enviado en lotes de "tamanoLote" filas. Aquí se envían siempre
+     * todas las columnas: un lote JDBC usa una única sentencia para todas
+     * las filas. Los productos con
+     * conflicto simplemente no cuentan en el total; los actualizados pasan
+     * a la versión nueva.
+     * productos Productos con los datos actualizados (con ID)
+     * tamanoLote Número de filas por lote
+     * Número total de filas afectadas
+     */
+    public int updateAll(Collection<Producto> productos, int tamanoLote) {
+        comprobarTamanoLote(tamanoLote);
+        if (productos.isEmpty()) {
+            return 0;
+        }
+        int[][] resultados = jdbcTemplate.batchUpdate(SQL_UPDATE[TODOS_LOS_CAMPOS], productos, tamanoLote, (ps, producto) -> {
+            asignarCampos(ps, producto, 1);
+            ps.setLong(6, producto.getId());
+            ps.setObject(7, producto.getVersion());
+        });
+
+        // Los resultados llegan en el mismo orden que los productos
+        Iterator<Producto> it = productos.iterator();
+        for (int[] lote : resultados) {
+            for (int filas : lote) {
+                Producto producto = it.next();
+                if (filas > 0 || filas == Statement.SUCCESS_NO_INFO) {
+                    if (producto.getVersion() != null) {
+                        producto.setVersion(producto.getVersion() + 1);
+                    }
+                    producto.limpiarCambios();
+                }
+            }
+        }
+        return sumarFilasAfectadas(resultados);
+    }
+
+    /**
+     * Inserta o actualiza muchos productos con el tamaño de lote por defecto.
+     * productos Productos a guardar
+     * La misma colección, con ID asignado a los productos nuevos
+     */
+    public Collection<Producto> upsertAll(Collection<Producto> productos) {
+        return upsertAll(productos, tamanoLote);
+    }
+
+    /**
+     * Inserta o actualiza muchos productos en lotes.
+     * - Los productos SIN ID son nuevos: se insertan con saveAll() y reciben su ID.
+     * - Los productos CON ID se envían con INSERT ... ON DUPLICATE KEY UPDATE:
+     *   si el ID ya existe MySQL actualiza la fila, y si no, la inserta con ese ID.
+     * Se separan porque getGeneratedKeys() no es fiable cuando en un mismo
+     * lote se mezclan inserciones y actualizaciones.
+     * El UPDATE no sabe qué versión tenía cada fila (suma 1 a la de la BD),
+     * así que después se leen las versiones (un SELECT id, version por cada
+     * MAXIMO_IN) y se asignan a los productos, que quedan sin cambios
+     * pendientes, como tras updateAll(): un update() posterior no da conflicto.
+     * productos Productos a guardar
+     * tamanoLote Número de filas por lote
+     * La misma colección, con ID asignado a los productos nuevos
+     */
+    public Collection<Producto> upsertAll(Collection<Producto> productos, int tamanoLote) {
+        comprobarTamanoLote(tamanoLote);
+        List<Producto> nuevos = new ArrayList<>();
+        List<Producto> existentes = new ArrayList<>();
+        for (Producto producto : productos) {
+            if (producto.getId() == null) {
+                nuevos.add(producto);
+            } else {
+                existentes.add(producto);
+            }
+        }
+
+        saveAll(nuevos, tamanoLote);
+
+        if (!existentes.isEmpty()) {
+            String sql = "INSERT INTO productos (id, nombre, descripcion, precio, stock, categoria) VALUES (?, ?, ?, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE nombre = VALUES(nombre), descripcion = VALUES(descripcion), "
+                    + "precio = VALUES(precio), stock = VALUES(stock), categoria = VALUES(categoria), "
+                    + "version = version + 1";
+            jdbcTemplate.batchUpdate(sql, existentes, tamanoLote, (ps, producto) -> {
+                ps.setLong(1, producto.getId());
+                asignarCampos(ps, producto, 2);
+            });
+
+            Map<Long, Long> versiones = new HashMap<>();
+            recorrerPorIds(existentes.stream().map(Producto::getId).toList(), SQL_FIND_VERSIONES_BY_ID,
+                    rs -> {
+                        versiones.put(rs.getLong(1), rs.getLong(2));
+                    });
+            for (Producto producto : existentes) {
+                Long version = versiones.get(producto.getId());
+                if (version != null) {
+                    producto.setVersion(version);
+                    producto.limpiarCambios();
+                }
+            }
+        }
+        return productos;
+    }
+
+    /**
+     * Asigna nombre, descripcion, precio, stock y categoria a partir del
+     * parámetro "primero" del PreparedStatement.
+     */
+    private static void asignarCampos(PreparedStatement ps, Producto producto, int primero) throws SQLException {
+        ps.setString(primero, producto.getNombre());
+        ps.setString(primero + 1, producto.getDescripcion());
+        ps.setBigDecimal(primero + 2, producto.getPrecio());
+        ps.setInt(primero + 3, producto.getStock());
+        ps.setString(primero + 4, producto.getCategoria());
+    }
+
+    /**
+     * Lee las claves generadas por el último executeBatch() y las asigna,
+     * en orden, a los productos del lote.
+     */
+    private static void asignarIdsGenerados(PreparedStatement ps, List<Producto> lote) throws SQLException {
+        try (ResultSet claves = ps.getGeneratedKeys()) {
+            int i = 0;
+            while (claves.next() && i < lote.size()) {
+                Producto producto = lote.get(i++);
+                producto.setId(claves.getLong(1));
+                producto.setVersion(0L);
+                producto.limpiarCambios();
+            }
+            if (i != lote.size()) {
+                throw new SQLException("Se esperaban " + lote.size() + " IDs generados y se recibieron " + i);
+            }
+        }
+    }
+
+    /**
+     * Suma las filas afectadas de todos los lotes.
+     * Cuando el driver reescribe el lote no siempre conoce el recuento por fila
+     * y devuelve Statement.SUCCESS_NO_INFO; en ese caso contamos una fila.
+     */
+    private static int sumarFilasAfectadas(int[][] resultados) {
+        int total = 0;
+        for (int[] lote : resultados) {
+            for (int filas : lote) {
+                total += filas == Statement.SUCCESS_NO_INFO ? 1 : Math.max(filas, 0);
+            }
+        }
+        return total;
+    }
+
+    private static void comprobarTamanoLote(int tamanoLote) {
+        if (tamanoLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser positivo: " + tamanoLote);
+        }
+    }
+
+
+    // LECTURA EN STREAMING Y PAGINACIÓN POR CLAVE (KEYSET)
+
+    /**
+     * Con MySQL Connector/J, un fetchSize de Integer.MIN_VALUE sobre un
+     * PreparedStatement TYPE_FORWARD_ONLY / CONCUR_READ_ONLY hace que el driver
+     * entregue las filas una a una en lugar de cargar todo el ResultSet en memoria.
+     */
+    private static final int FETCH_SIZE_STREAMING = Integer.MIN_VALUE;
+
+    /**
+     * Otros drivers (por ejemplo H2, usado en los benchmarks) no aceptan un
+     * fetchSize negativo: para ellos se piden las filas en bloques de este tamaño.
+     */
+    private static final int FETCH_SIZE_BLOQUES = 1000;
+
+    /**
+     * Recorre todos los productos con un cursor de solo avance.
+     * A diferencia de findAll(), nunca se materializa la tabla completa:
+     * cada fila se convierte en Producto a medida que se consume el Stream.
+     * IMPORTANTE: el Stream mantiene abierta una conexión hasta que se cierra,
+     * así que debe usarse con try-with-resources.
+     * Stream de productos (hay que cerrarlo)
+     */
+    public Stream<Producto> streamAll() {
+        String sql = "SELECT " + COLUMNAS + " FROM productos";
+        return jdbcTemplate.queryForStream(crearSentenciaStreaming(sql), productoRowMapper);
+    }
+
+    /**
+     * Igual que streamAll() pero ordenado por precio.
+     * Se añade el id como desempate para que el orden sea total y estable.
+     * Stream de productos ordenados por precio (hay que cerrarlo)
+     */
+    public Stream<Producto> streamAllOrderByPrecio() {
+        String sql = "SELECT " + COLUMNAS + " FROM productos ORDER BY precio ASC, id ASC";
+        return jdbcTemplate.queryForStream(crearSentenciaStreaming(sql), productoRowMapper);
+    }
+
+    /**
+     * Variante con callback: entrega cada producto al consumidor según llega
+     * del cursor. La conexión se libera al terminar el recorrido.
+     * accion Código a ejecutar con cada producto
+     */
+    public void forEachProducto(Consumer<? super Producto> accion) {
+        String sql = "SELECT " + COLUMNAS + " FROM productos";
+        jdbcTemplate.query(crearSentenciaStreaming(sql), (RowCallbackHandler) rs -> accion.accept(productoRowMapper.mapRow(rs, 0)));
+    }
+
+    /**
+     * Recorre solo (id, version) de todos los productos, ordenados por id.
+     * Sirve para comparar una copia local con la BD sin traer las filas
+     * completas: MySQL lo resuelve leyendo la clave primaria.
+     */
+    public void forEachVersion(BiConsumer<Long, Long> accion) {
+        String sql = "SELECT id, version FROM productos ORDER BY id";
+        jdbcTemplate.query(crearSentenciaStreaming(sql), (RowCallbackHandler) rs -> accion.accept(rs.getLong(1), rs.getLong(2)));
+    }
+
+    /**
+     * Página de productos ordenada por id, empezando justo después de ultimoId.
+     * Paginación por clave (keyset): en vez de OFFSET, que obliga a MySQL
+     * a leer y descartar todas las filas anteriores, filtramos por la última
+     * clave vista y el índice de la PRIMARY KEY resuelve el salto directamente.
+     * ultimoId Último id de la página anterior (null para la primera página)
+     * limite Número máximo de productos a devolver
+     * Lista con, como mucho, "limite" productos
+     */
+    public List<Producto> findPageAfterId(Long ultimoId, int limite) {
+        String sql = "SELECT " + COLUMNAS + " FROM productos WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, productoRowMapper, ultimoId != null ? ultimoId : 0L, limite);
+    }
+
+    /**
+     * Página de productos ordenada por (precio, id), empezando justo después
+     * del par (ultimoPrecio, ultimoId). Se apoya en idx_precio, que en InnoDB
+     * incluye implícitamente la clave primaria.
+     * ultimoPrecio Precio del último producto de la página anterior (null para la primera página)
+     * ultimoId Id del último producto de la página anterior
+     * limite Número máximo de productos a devolver
+     * Lista con, como mucho, "limite" productos
+     */
+    public List<Producto> findPageOrderByPrecioAfter(BigDecimal ultimoPrecio, Long ultimoId, int limite) {
+        if (ultimoPrecio == null) {
+            String sql = "SELECT " + COLUMNAS_LISTADO + " FROM productos ORDER BY precio, id LIMIT ?";
+            return consultarListado(sql, limite);
+        }
+        String sql = "SELECT " + COLUMNAS_LISTADO + " FROM productos "
+                + "WHERE precio > ? OR (precio = ? AND id > ?) ORDER BY precio, id LIMIT ?";
+        return consultarListado(sql, ultimoPrecio, ultimoPrecio, ultimoId, limite);
+    }
+
+
+    // PROYECCIONES PARA LISTADOS (solo id, nombre y precio)
+
+    /**
+     * Todos los productos como ProductoResumen, ordenados por id.
+     */
+    public List<ProductoResumen> findAllResumenes() {
+        String sql = "SELECT " + COLUMNAS_RESUMEN_PRODUCTO + " FROM productos ORDER BY id";
+        return jdbcTemplate.query(sql, resumenRowMapper);
+    }
+
+    /**
+     * Resúmenes de los productos de una categoría, ordenados por id.
+     */
+    public List<ProductoResumen> findResumenesByCategoria(String categoria) {
+        String sql = "SELECT " + COLUMNAS_RESUMEN_PRODUCTO + " FROM productos WHERE categoria = ? ORDER BY id";
+        return jdbcTemplate.query(sql, resumenRowMapper, categoria);
+    }
+
+    /**
+     * Página de resúmenes por clave, igual que findPageAfterId.
+     * ultimoId Último id de la página anterior (null para la primera página)
+     * limite Número máximo de resúmenes a devolver
+     */
+    public List<ProductoResumen> findResumenesPageAfterId(Long ultimoId, int limite) {
+        String sql = "SELECT " + COLUMNAS_RESUMEN_PRODUCTO + " FROM productos WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, resumenRowMapper, ultimoId != null ? ultimoId : 0L, limite);
+    }
+
+
+    // ESTADÍSTICAS DE INVENTARIO (CALCULADAS EN SQL)
+
+    /**
+     * Columnas de ResumenCategoria. Todo sale de una sola pasada por la tabla:
+     * MySQL agrupa y suma, y a Java solo llega una fila por categoría en
+     * lugar de todos los productos.
+     */
+    private static final String COLUMNAS_RESUMEN = "categoria, COUNT(*), COALESCE(SUM(stock), 0),"
+            + " COALESCE(SUM(precio * stock), 0), SUM(CASE WHEN stock < ? THEN 1 ELSE 0 END),"
+            + " COUNT(precio), COALESCE(SUM(precio), 0), MIN(precio), MAX(precio)";
+
+    /**
+     * Resumen de inventario de cada categoría (valor del stock, precios,
+     * productos con poco stock), ordenado por categoría.
+     * umbralStockBajo Un producto tiene stock bajo si stock < umbralStockBajo
+     */
+    public List<ResumenCategoria> findResumenPorCategoria(int umbralStockBajo) {
+        String sql = "SELECT " + COLUMNAS_RESUMEN + " FROM productos GROUP BY categoria ORDER BY categoria";
+        return jdbcTemplate.query(sql, ProductoRepository::mapearResumen, umbralStockBajo);
+    }
+
+    /**
+     * Resumen de inventario de una sola categoría (vacío si no tiene productos).
+     */
+    public Optional<ResumenCategoria> findResumenPorCategoria(String categoria, int umbralStockBajo) {
+        String sql = "SELECT " + COLUMNAS_RESUMEN + " FROM productos WHERE categoria = ? GROUP BY categoria";
+        List<ResumenCategoria> resultado = jdbcTemplate.query(sql, ProductoRepository::mapearResumen,
+                umbralStockBajo, categoria);
+        return resultado.stream().findFirst();
+    }
+
+    /**
+     * Histograma de precios de cada categoría: tramos de anchura fija
+     * ([0, ancho), [ancho, 2*ancho), ...) con cuántos productos caen en cada
+     * uno. Los tramos vacíos no aparecen. Agrupar también por categoría
+     * permite recalcular después una sola categoría y volver a sumarlas.
+     * anchoTramo Anchura de cada tramo en euros
+     * Mapa categoría -> tramos ordenados por precio
+     */
+    public Map<String, List<TramoPrecio>> findHistogramaPrecios(BigDecimal anchoTramo) {
+        String sql = "SELECT categoria, tramo, COUNT(*) FROM"
+                + " (SELECT categoria, FLOOR(precio / ?) AS tramo FROM productos WHERE precio IS NOT NULL) t"
+                + " GROUP BY categoria, tramo ORDER BY categoria, tramo";
+        Map<String, List<TramoPrecio>> resultado = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> resultado
+                .computeIfAbsent(rs.getString(1), c -> new ArrayList<>())
+                .add(mapearTramo(rs.getLong(2), rs.getLong(3), anchoTramo)), anchoTramo);
+        return resultado;
+    }
+
+    /**
+     * Histograma de precios de una sola categoría.
+     */
+    public List<TramoPrecio> findHistogramaPrecios(String categoria, BigDecimal anchoTramo) {
+        String sql = "SELECT tramo, COUNT(*) FROM"
+                + " (SELECT FLOOR(precio / ?) AS tramo FROM productos WHERE categoria = ? AND precio IS NOT NULL) t"
+                + " GROUP BY tramo ORDER BY tramo";
+        return jdbcTemplate.query(sql, (rs, n) -> mapearTramo(rs.getLong(1), rs.getLong(2), anchoTramo),
+                anchoTramo, categoria);
+    }
+
+    private static ResumenCategoria mapearResumen(ResultSet rs, int rowNum) throws SQLException {
+        return new ResumenCategoria(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getBigDecimal(4),
+                rs.getLong(5), rs.getLong(6), rs.getBigDecimal(7), rs.getBigDecimal(8), rs.getBigDecimal(9));
+    }
+
+    private static TramoPrecio mapearTramo(long tramo, long productos, BigDecimal anchoTramo) {
+        BigDecimal desde = anchoTramo.multiply(BigDecimal.valueOf(tramo));
+        return new TramoPrecio(desde, desde.add(anchoTramo), productos);
+    }
+
+    /**
+     * Crea un PreparedStatement de solo avance preparado para streaming.
+     */
+    private static PreparedStatementCreator crearSentenciaStreaming(String sql) {
+        return connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            boolean esMySql = "MySQL".equals(connection.getMetaData().getDatabaseProductName());
+            ps.setFetchSize(esMySql ? FETCH_SIZE_STREAMING : FETCH_SIZE_BLOQUES);
+            return ps;
+        };
     }
 }
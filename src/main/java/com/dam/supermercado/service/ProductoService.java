@@ -1,13 +1,48 @@
 package com.dam.supermercado.service;
 
+import com.dam.supermercado.analitica.AnaliticaInventario;
+import com.dam.supermercado.cache.EstadisticasCache;
+import com.dam.supermercado.busqueda.IndiceBusqueda;
+import com.dam.supermercado.cache.ProductoCache;
+import com.dam.supermercado.cambios.EventoCambio;
+import com.dam.supermercado.cambios.FeedCambios;
+import com.dam.supermercado.cambios.Suscripcion;
+import com.dam.supermercado.catalogo.CatalogoEnMemoria;
+import com.dam.supermercado.importacion.ImportadorProductos;
+import com.dam.supermercado.metricas.EstadisticasMetodo;
+import com.dam.supermercado.metricas.MetricasRepositorio;
+import com.dam.supermercado.model.InformeInventario;
 import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.model.ProductoResumen;
+import com.dam.supermercado.model.ProductosColumnares;
+import com.dam.supermercado.model.ResultadoActualizacion;
+import com.dam.supermercado.precios.CambioPrecio;
+import com.dam.supermercado.precios.CriterioPrecios;
+import com.dam.supermercado.precios.LotePrecios;
+import com.dam.supermercado.precios.MotorPrecios;
+import com.dam.supermercado.repository.CargadorProductos;
 import com.dam.supermercado.repository.ProductoRepository;
+import com.dam.supermercado.stock.BufferStock;
+import com.dam.supermercado.stock.MotorReservasStock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * SERVICIO: ProductoService (JDBC)
@@ -23,18 +58,112 @@ import java.util.Optional;
 @Service
 public class ProductoService {
 
+    /**
+     * Trazas de cada llamada: DEBUG para la operación, TRACE para la SQL.
+     * Están desactivadas por defecto; se activan con
+     * logging.level.com.dam.supermercado.service=DEBUG (o TRACE).
+     */
+    private static final Logger log = LoggerFactory.getLogger(ProductoService.class);
+
+    /**
+     * Veces que se reintenta una actualización tras un conflicto de versión.
+     */
+    private static final int MAX_REINTENTOS = 5;
 
     // INYECCIÓN DE DEPENDENCIAS
 
     private final ProductoRepository productoRepository;
 
+    /**
+     * Caché de lectura para búsquedas por ID, categorías y total.
+     * Las escrituras de este servicio la invalidan.
+     */
+    private final ProductoCache productoCache;
+
+    /**
+     * Catálogo en memoria con índices por categoría, precio y stock.
+     * Solo se usa si supermercado.catalogo.habilitado=true.
+     */
+    private final CatalogoEnMemoria catalogo;
+
+    /**
+     * Índice de trigramas para buscar por nombre y descripción.
+     * Solo se usa si supermercado.busqueda.habilitada=true.
+     */
+    private final IndiceBusqueda indiceBusqueda;
+
+    /**
+     * Reservas de stock con UPDATE atómicos y agrupación por producto.
+     */
+    private final MotorReservasStock motorReservas;
+
+    /**
+     * Buffer de movimientos de stock con volcado diferido a la BD.
+     * Solo se usa si supermercado.stock.write-behind.habilitado=true.
+     */
+    private final BufferStock bufferStock;
+
+    /**
+     * Métricas de acceso a datos (tiempos, filas, espera del pool).
+     */
+    private final MetricasRepositorio metricas;
+
+    /**
+     * Junta en un solo WHERE id IN (...) las búsquedas por ID simultáneas.
+     */
+    private final CargadorProductos cargadorProductos;
+
+    /**
+     * Estadísticas de inventario calculadas en SQL y refrescadas en segundo plano.
+     */
+    private final AnaliticaInventario analitica;
+
+    /**
+     * Publica cada escritura como evento para quien quiera seguir los cambios.
+     */
+    private final FeedCambios feedCambios;
+
+    /**
+     * Cambios de precio en bloque, promociones e historial de precios.
+     */
+    private final MotorPrecios motorPrecios;
+
     /**
      * Constructor con inyección de dependencias.
      * productoRepository Repositorio JDBC de productos
+     * productoCache Caché de lectura de productos
+     * catalogo Catálogo en memoria (opcional según configuración)
+     * indiceBusqueda Índice de búsqueda por texto (opcional según configuración)
+     * motorReservas Motor de reservas de stock
+     * bufferStock Buffer de movimientos de stock (opcional según configuración)
+     * metricas Métricas de acceso a datos
+     * cargadorProductos Cargador por ID con micro-lotes
+     * analitica Estadísticas de inventario
+     * feedCambios Publicación de los cambios en productos
+     * importador Importación de ficheros (avisa de cada lote guardado)
+     * motorPrecios Cambios de precio en bloque (avisa de cada lote aplicado)
      */
     @Autowired
-    public ProductoService(ProductoRepository productoRepository) {
+    public ProductoService(ProductoRepository productoRepository, ProductoCache productoCache,
+                           CatalogoEnMemoria catalogo, IndiceBusqueda indiceBusqueda,
+                           MotorReservasStock motorReservas, BufferStock bufferStock,
+                           MetricasRepositorio metricas, CargadorProductos cargadorProductos,
+                           AnaliticaInventario analitica, FeedCambios feedCambios,
+                           ImportadorProductos importador, MotorPrecios motorPrecios) {
         this.productoRepository = productoRepository;
+        this.productoCache = productoCache;
+        this.catalogo = catalogo;
+        this.indiceBusqueda = indiceBusqueda;
+        this.motorReservas = motorReservas;
+        this.bufferStock = bufferStock;
+        this.metricas = metricas;
+        this.cargadorProductos = cargadorProductos;
+        this.analitica = analitica;
+        this.feedCambios = feedCambios;
+        this.motorPrecios = motorPrecios;
+        bufferStock.alVolcar(this::despuesDeVolcarStock);
+        importador.alConfirmarLote(this::despuesDeImportar);
+        motorPrecios.alCambiarPrecios(this::despuesDeCambiarPrecios);
     }
 
 
@@ -45,24 +174,106 @@ public class ProductoService {
      * @return List<Producto> Lista con todos los productos
      */
     public List<Producto> obtenerTodosLosProductos() {
-        System.out.println("\n[SERVICE] Obteniendo todos los productos de la BD...");
-        System.out.println("[SERVICE] Ejecutando: SELECT * FROM productos");
+        if (catalogo.isHabilitado()) {
+            return catalogo.findAll();
+        }
+        log.debug("[SERVICE] Obteniendo todos los productos de la BD...");
+        log.trace("[SERVICE] Ejecutando: SELECT * FROM productos");
 
-        List<Producto> productos = productoRepository.findAll();
+        List<Producto> productos = conStockPendiente(productoRepository.findAll());
 
-        System.out.println("[SERVICE] Se encontraron " + productos.size() + " productos.");
+        log.debug("[SERVICE] Se encontraron {} productos.", productos.size());
+        return productos;
+    }
+
+    /**
+     * Obtiene todos los productos como un Stream respaldado por un cursor.
+     * La memoria usada no depende del tamaño de la tabla, pero el Stream
+     * mantiene una conexión abierta: hay que cerrarlo (try-with-resources).
+     * @return Stream<Producto> Productos leídos bajo demanda
+     */
+    public Stream<Producto> obtenerTodosLosProductosEnStream() {
+        log.debug("[SERVICE] Recorriendo productos con cursor (streaming)...");
+        return productoRepository.streamAll();
+    }
+
+    /**
+     * Obtiene todos los productos en formato columnar (un array por columna).
+     * Pensado para listados y cálculos masivos: ocupa mucha menos memoria
+     * que una List<Producto> y no crea un objeto por fila.
+     * @return ProductosColumnares Contenedor con todos los productos
+     */
+    public ProductosColumnares obtenerTodosLosProductosColumnar() {
+        log.debug("[SERVICE] Obteniendo todos los productos en formato columnar...");
+        ProductosColumnares productos = productoRepository.findAllColumnar();
+        log.debug("[SERVICE] Se cargaron {} productos.", productos.tamano());
         return productos;
     }
 
+    /**
+     * Recorre todos los productos por páginas usando paginación por clave.
+     * Cada página es una consulta corta, así que no se retiene ninguna conexión
+     * entre páginas y en memoria solo hay "tamanoPagina" productos a la vez.
+     * @param tamanoPagina Número de productos por consulta
+     * @param accion Código a ejecutar con cada producto
+     * @return Número total de productos recorridos
+     */
+    public long recorrerTodosLosProductos(int tamanoPagina, Consumer<? super Producto> accion) {
+        if (tamanoPagina <= 0) {
+            throw new IllegalArgumentException("El tamaño de página debe ser positivo: " + tamanoPagina);
+        }
+        log.debug("[SERVICE] Recorriendo productos en páginas de {}...", tamanoPagina);
+
+        long total = 0;
+        Long ultimoId = null;
+        List<Producto> pagina;
+        do {
+            pagina = productoRepository.findPageAfterId(ultimoId, tamanoPagina);
+            for (Producto producto : pagina) {
+                accion.accept(producto);
+            }
+            if (!pagina.isEmpty()) {
+                ultimoId = pagina.get(pagina.size() - 1).getId();
+                total += pagina.size();
+            }
+        } while (pagina.size() == tamanoPagina);
+
+        log.debug("[SERVICE] Recorridos {} productos.", total);
+        return total;
+    }
+
     /**
      * Busca un producto por su ID.
      * id ID del producto a buscar
      * @return Optional<Producto> Producto encontrado o vacío si no existe
      */
     public Optional<Producto> obtenerProductoPorId(Long id) {
-        System.out.println("\n[SERVICE] Buscando producto con ID: " + id);
-        System.out.println("[SERVICE] Ejecutando: SELECT * FROM productos WHERE id = " + id);
-        return productoRepository.findById(id);
+        log.debug("[SERVICE] Buscando producto con ID: {}", id);
+        return productoCache.obtenerProducto(id, clave -> {
+            log.trace("[SERVICE] Ejecutando: SELECT * FROM productos WHERE id = {}", clave);
+            return cargadorProductos.cargar(clave);
+        }).map(this::conStockPendiente);
+    }
+
+    /**
+     * Busca varios productos por ID de una vez (por ejemplo, las líneas de un
+     * carrito). Los que no están en caché se leen con WHERE id IN (...) en
+     * lugar de una consulta por producto.
+     * @param ids IDs a buscar
+     * @return Mapa id -> producto en el orden recibido; los IDs que no existen no aparecen
+     */
+    public Map<Long, Producto> obtenerProductosPorIds(Collection<Long> ids) {
+        log.debug("[SERVICE] Buscando {} productos por ID", ids.size());
+        Map<Long, Producto> productos = productoCache.obtenerProductos(ids, faltan -> {
+            log.trace("[SERVICE] Ejecutando: SELECT * FROM productos WHERE id IN ({} ids)", faltan.size());
+            Map<Long, Producto> encontrados = new HashMap<>();
+            for (Producto producto : productoRepository.findAllById(faltan)) {
+                encontrados.put(producto.getId(), producto);
+            }
+            return encontrados;
+        });
+        productos.values().forEach(this::conStockPendiente);
+        return productos;
     }
 
     /**
@@ -71,20 +282,105 @@ public class ProductoService {
      * @return Producto guardado con ID asignado
      */
     public Producto guardarProducto(Producto producto) {
-        System.out.println("\n[SERVICE] Guardando producto: " + producto.getNombre());
-        System.out.println("[SERVICE] Ejecutando: INSERT INTO productos...");
-        return productoRepository.save(producto);
+        log.debug("[SERVICE] Guardando producto: {}", producto.getNombre());
+        log.trace("[SERVICE] Ejecutando: INSERT INTO productos...");
+        Producto guardado = productoRepository.save(producto);
+        despuesDeGuardar(guardado);
+        return guardado;
     }
 
     /**
      * Actualiza un producto existente.
+     * Si el producto trae versión y otro proceso lo ha modificado después de
+     * leerlo, no se guarda nada y devuelve false.
      * @param producto Producto con los datos actualizados
      * @return true si se actualizó correctamente
      */
     public boolean actualizarProducto(Producto producto) {
-        System.out.println("\n[SERVICE] Actualizando producto ID: " + producto.getId());
-        int filasAfectadas = productoRepository.update(producto);
-        return filasAfectadas > 0;
+        return actualizarProductoConVersion(producto) == ResultadoActualizacion.ACTUALIZADO;
+    }
+
+    /**
+     * Igual que actualizarProducto, pero distingue entre conflicto de
+     * versión y producto inexistente.
+     * @param producto Producto con los datos actualizados y la versión leída
+     * @return ACTUALIZADO, CONFLICTO o NO_ENCONTRADO
+     */
+    public ResultadoActualizacion actualizarProductoConVersion(Producto producto) {
+        log.debug("[SERVICE] Actualizando producto ID: {} (versión {})", producto.getId(), producto.getVersion());
+        Producto aEscribir = conStockDeBd(producto, true);
+        ResultadoActualizacion resultado = productoRepository.update(aEscribir);
+        if (aEscribir != producto && resultado == ResultadoActualizacion.ACTUALIZADO) {
+            producto.setVersion(aEscribir.getVersion());
+            producto.limpiarCambios();
+        }
+        despuesDeActualizar(producto, resultado == ResultadoActualizacion.ACTUALIZADO);
+        return resultado;
+    }
+
+    /**
+     * Lee el producto, le aplica "cambio" y lo guarda. Si otro proceso lo
+     * modifica entre medias (conflicto de versión), vuelve a leerlo y a
+     * aplicar el cambio, hasta MAX_REINTENTOS veces.
+     * Pensado para cambios que se calculan sobre el valor actual, como
+     * "subir el precio un 5%": el cambio nunca se aplica sobre datos viejos.
+     * @param id ID del producto
+     * @param cambio Modificación a aplicar sobre el producto leído
+     * @return ACTUALIZADO, CONFLICTO (si se agotan los reintentos) o NO_ENCONTRADO
+     */
+    public ResultadoActualizacion modificarProducto(Long id, Consumer<Producto> cambio) {
+        for (int intento = 0; ; intento++) {
+            Optional<Producto> actual = productoRepository.findById(id).map(this::conStockPendiente);
+            if (actual.isEmpty()) {
+                return ResultadoActualizacion.NO_ENCONTRADO;
+            }
+            Producto producto = actual.get();
+            cambio.accept(producto);
+            ResultadoActualizacion resultado = actualizarProductoConVersion(producto);
+            if (resultado != ResultadoActualizacion.CONFLICTO || intento == MAX_REINTENTOS) {
+                return resultado;
+            }
+            log.debug("[SERVICE] Conflicto de versión en el producto {}, reintento {}", id, intento + 1);
+        }
+    }
+
+    /**
+     * Guarda los cambios de un formulario de edición fusionándolos con lo
+     * que otros hayan guardado mientras tanto (fusión a tres bandas):
+     * - original es el producto tal como se leyó, modificado la copia editada.
+     * - Si hay conflicto de versión, se relee el producto y solo se aplican
+     *   los campos que el usuario cambió (los que difieren entre original y
+     *   modificado). Lo que cambiaron los demás se conserva.
+     * - El stock se fusiona como diferencia: si el usuario sumó 5 unidades y
+     *   mientras tanto se vendieron 2, se guarda el stock actual + 5.
+     * - Si otro proceso cambió el MISMO campo a un valor distinto, no hay
+     *   forma de fusionarlo sin perder uno de los dos: se devuelve CONFLICTO.
+     * Si se guarda, modificado queda con los valores y la versión guardados.
+     * @return ACTUALIZADO, CONFLICTO o NO_ENCONTRADO
+     */
+    public ResultadoActualizacion actualizarProductoFusionando(Producto original, Producto modificado) {
+        Producto intento = new Producto(modificado);
+        intento.setVersion(original.getVersion());
+        for (int reintento = 0; ; reintento++) {
+            ResultadoActualizacion resultado = actualizarProductoConVersion(intento);
+            if (resultado == ResultadoActualizacion.ACTUALIZADO) {
+                copiarCampos(intento, modificado);
+                return resultado;
+            }
+            if (resultado == ResultadoActualizacion.NO_ENCONTRADO || reintento == MAX_REINTENTOS) {
+                return resultado;
+            }
+            Optional<Producto> actual = productoRepository.findById(original.getId()).map(this::conStockPendiente);
+            if (actual.isEmpty()) {
+                return ResultadoActualizacion.NO_ENCONTRADO;
+            }
+            Optional<Producto> fusionado = fusionar(original, modificado, actual.get());
+            if (fusionado.isEmpty()) {
+                log.debug("[SERVICE] Conflicto no fusionable en el producto {}", original.getId());
+                return ResultadoActualizacion.CONFLICTO;
+            }
+            intento = fusionado.get();
+        }
     }
 
     /**
@@ -93,13 +389,191 @@ public class ProductoService {
      * @return true si se eliminó correctamente
      */
     public boolean eliminarProducto(Long id) {
-        System.out.println("\n[SERVICE] Eliminando producto con ID: " + id);
-        System.out.println("[SERVICE] Ejecutando: DELETE FROM productos WHERE id = " + id);
+        log.debug("[SERVICE] Eliminando producto con ID: {}", id);
+        log.trace("[SERVICE] Ejecutando: DELETE FROM productos WHERE id = {}", id);
         int filasAfectadas = productoRepository.deleteById(id);
+        despuesDeEliminar(id, filasAfectadas > 0);
         return filasAfectadas > 0;
     }
 
 
+    // OPERACIONES MASIVAS
+
+    /**
+     * Guarda muchos productos nuevos de una vez, en lotes JDBC.
+     * @param productos Productos a guardar
+     * @return Los mismos productos, con su ID asignado
+     */
+    public Collection<Producto> guardarProductos(Collection<Producto> productos) {
+        log.debug("[SERVICE] Guardando {} productos en lotes...", productos.size());
+        Collection<Producto> guardados = productoRepository.saveAll(productos);
+        despuesDeModificarVarios(guardados, false);
+        guardados.forEach(feedCambios::publicarAlta);
+        return guardados;
+    }
+
+    /**
+     * Actualiza muchos productos de una vez, en lotes JDBC.
+     * @param productos Productos con los datos actualizados
+     * @return Número de productos actualizados
+     */
+    public int actualizarProductos(Collection<Producto> productos) {
+        log.debug("[SERVICE] Actualizando {} productos en lotes...", productos.size());
+        List<Producto> aEscribir = new ArrayList<>(productos.size());
+        productos.forEach(producto -> aEscribir.add(conStockDeBd(producto, false)));
+        int actualizados = productoRepository.updateAll(aEscribir);
+        Iterator<Producto> escritos = aEscribir.iterator();
+        for (Producto producto : productos) {
+            Producto escrito = escritos.next();
+            // updateAll deja sin cambios pendientes las copias que guardó
+            if (escrito != producto && escrito.getCamposModificados() == 0) {
+                producto.setVersion(escrito.getVersion());
+                producto.limpiarCambios();
+            }
+        }
+        despuesDeModificarVarios(productos, true);
+        productos.forEach(feedCambios::publicarModificacion);
+        return actualizados;
+    }
+
+    /**
+     * Inserta los productos nuevos y actualiza los existentes, en lotes.
+     * Pensado para cargas de proveedores donde llegan ambos casos mezclados.
+     * @param productos Productos a guardar
+     * @return Los mismos productos, con ID asignado a los nuevos
+     */
+    public Collection<Producto> guardarOActualizarProductos(Collection<Producto> productos) {
+        log.debug("[SERVICE] Guardando/actualizando {} productos en lotes...", productos.size());
+        Collection<Producto> guardados = productoRepository.upsertAll(productos);
+        despuesDeModificarVarios(guardados, false);
+        guardados.forEach(feedCambios::publicarModificacion);
+        return guardados;
+    }
+
+
+    // CAMBIOS DE PRECIO EN BLOQUE
+
+    /**
+     * Sube o baja un porcentaje el precio de todos los productos del
+     * criterio (categoría, tramo de precio o lista de ids) con un único
+     * UPDATE en MySQL, en vez de leerlos y llamar a actualizarProducto con
+     * cada uno. Queda registrado en el historial de precios.
+     * @param criterio Productos a cambiar
+     * @param porcentaje Por ejemplo 5 (+5%) o -20 (-20%)
+     * @param motivo Texto libre que se guarda con el lote
+     * @return Lote aplicado, con el número de productos cambiados
+     */
+    public LotePrecios cambiarPrecios(CriterioPrecios criterio, BigDecimal porcentaje, String motivo) {
+        log.debug("[SERVICE] Cambiando un {}% los precios de {}", porcentaje, criterio);
+        return motorPrecios.cambiarPrecios(criterio, porcentaje, motivo);
+    }
+
+    /**
+     * Promoción entre inicio y fin: al acabar se restauran los precios
+     * anteriores (salvo los que se hayan cambiado a mano entre medias).
+     * @return Lote aplicado, o PROGRAMADO si inicio es futuro
+     */
+    public LotePrecios programarPromocion(CriterioPrecios criterio, BigDecimal porcentaje,
+                                          Instant inicio, Instant fin, String motivo) {
+        log.debug("[SERVICE] Promoción del {}% en {} de {} a {}", porcentaje, criterio, inicio, fin);
+        return motorPrecios.programarPromocion(criterio, porcentaje, inicio, fin, motivo);
+    }
+
+    /**
+     * Deshace un cambio de precios o termina antes de tiempo una promoción.
+     * @return Lote de la reversión, o vacío si el lote no existe o ya no está aplicado
+     */
+    public Optional<LotePrecios> revertirCambioPrecios(long lote) {
+        log.debug("[SERVICE] Revirtiendo el lote de precios {}", lote);
+        return motorPrecios.revertir(lote);
+    }
+
+    /**
+     * Cambios de precio de un producto, del más reciente al más antiguo.
+     */
+    public List<CambioPrecio> obtenerHistorialPrecios(Long id) {
+        return motorPrecios.historial(id);
+    }
+
+
+    // RESERVAS DE STOCK
+
+    /**
+     * Reserva unidades de un producto de forma atómica.
+     * A diferencia de leer el producto, cambiar el stock y llamar a
+     * actualizarProducto, dos reservas simultáneas nunca se pisan
+     * y el stock nunca queda en negativo.
+     * @param id ID del producto
+     * @param cantidad Unidades a reservar
+     * @return true si había stock suficiente y se reservó
+     */
+    public boolean reservarStock(Long id, int cantidad) {
+        boolean reservado = motorReservas.reservar(id, cantidad);
+        if (reservado) {
+            despuesDeCambiarStock(id, -cantidad);
+        }
+        return reservado;
+    }
+
+    /**
+     * Devuelve al stock unidades reservadas previamente.
+     * @param id ID del producto
+     * @param cantidad Unidades a devolver
+     * @return true si el producto existe
+     */
+    public boolean liberarStock(Long id, int cantidad) {
+        boolean liberado = motorReservas.liberar(id, cantidad);
+        if (liberado) {
+            despuesDeCambiarStock(id, cantidad);
+        }
+        return liberado;
+    }
+
+    /**
+     * Reserva todas las líneas de un pedido, o ninguna si alguna no tiene stock.
+     * @param lineas Mapa id de producto -> unidades
+     * @return true si se reservó el pedido completo
+     */
+    public boolean reservarPedido(Map<Long, Integer> lineas) {
+        log.debug("[SERVICE] Reservando pedido de {} líneas...", lineas.size());
+        boolean reservado = motorReservas.reservarPedido(lineas);
+        if (reservado) {
+            lineas.forEach((id, cantidad) -> despuesDeCambiarStock(id, -cantidad));
+        }
+        return reservado;
+    }
+
+    /**
+     * Devuelve al stock todas las líneas de un pedido (por ejemplo, si se cancela).
+     * @param lineas Mapa id de producto -> unidades
+     */
+    public void liberarPedido(Map<Long, Integer> lineas) {
+        log.debug("[SERVICE] Liberando pedido de {} líneas...", lineas.size());
+        motorReservas.liberarPedido(lineas);
+        lineas.forEach(this::despuesDeCambiarStock);
+    }
+
+    /**
+     * Registra un movimiento de stock sin comprobar disponibilidad
+     * (ventas en caja: el producto ya está en la cesta; reposiciones).
+     * Con el write-behind habilitado el movimiento se acumula en memoria y se
+     * vuelca a la BD en lote; si no, se hace un UPDATE en el momento.
+     * En ambos casos las lecturas de este servicio ya ven el nuevo stock.
+     * @param id ID del producto
+     * @param delta Unidades a sumar (negativo para ventas)
+     */
+    public void registrarMovimientoStock(Long id, int delta) {
+        if (bufferStock.isHabilitado()) {
+            bufferStock.registrar(id, delta);
+            ajustarStockEnIndices(id, delta);
+            return;
+        }
+        if (productoRepository.incrementarStock(id, delta) > 0) {
+            despuesDeCambiarStock(id, delta);
+        }
+    }
+
+
     // MÉTODOS DE CONSULTA ADICIONALES
 
     /**
@@ -108,9 +582,57 @@ public class ProductoService {
      * @return Lista de productos de esa categoría
      */
     public List<Producto> obtenerProductosPorCategoria(String categoria) {
-        System.out.println("\n[SERVICE] Buscando productos de categoría: " + categoria);
-        System.out.println("[SERVICE] Ejecutando: SELECT * FROM productos WHERE categoria = '" + categoria + "'");
-        return productoRepository.findByCategoria(categoria);
+        log.debug("[SERVICE] Buscando productos de categoría: {}", categoria);
+        if (catalogo.isHabilitado()) {
+            return catalogo.findByCategoria(categoria);
+        }
+        log.trace("[SERVICE] Ejecutando: SELECT * FROM productos WHERE categoria = '{}'", categoria);
+        return conStockPendiente(productoRepository.findByCategoria(categoria));
+    }
+
+    /**
+     * Listado ligero de una categoría: solo id, nombre y precio.
+     * Para pantallas de listado que no muestran la descripción ni el stock.
+     * @param categoria Categoría a buscar
+     * @return Resúmenes de los productos de esa categoría, por id
+     */
+    public List<ProductoResumen> obtenerResumenesPorCategoria(String categoria) {
+        log.debug("[SERVICE] Buscando resúmenes de la categoría: {}", categoria);
+        if (catalogo.isHabilitado()) {
+            return catalogo.findByCategoria(categoria).stream().map(ProductoResumen::desde).toList();
+        }
+        return productoRepository.findResumenesByCategoria(categoria);
+    }
+
+    /**
+     * Página del listado ligero de todos los productos (id, nombre y precio),
+     * con paginación por clave.
+     * @param ultimoId Último id de la página anterior (null para la primera)
+     * @param limite Número máximo de resúmenes
+     */
+    public List<ProductoResumen> obtenerPaginaResumenes(Long ultimoId, int limite) {
+        log.debug("[SERVICE] Obteniendo página de resúmenes tras el id {}", ultimoId);
+        return productoRepository.findResumenesPageAfterId(ultimoId, limite);
+    }
+
+    /**
+     * Obtiene otros productos de la misma categoría que uno dado
+     * (por ejemplo, "productos relacionados" en la ficha de un producto).
+     * @param id ID del producto de referencia
+     * @param limite Número máximo de productos
+     * @return Lista de productos relacionados (vacía si el producto no existe)
+     */
+    public List<Producto> obtenerProductosRelacionados(Long id, int limite) {
+        log.debug("[SERVICE] Buscando productos relacionados con ID: {}", id);
+        if (catalogo.isHabilitado()) {
+            return obtenerProductoPorId(id)
+                    .map(producto -> catalogo.findByCategoria(producto.getCategoria()).stream()
+                            .filter(relacionado -> !relacionado.getId().equals(id))
+                            .limit(limite)
+                            .toList())
+                    .orElse(List.of());
+        }
+        return conStockPendiente(productoRepository.findRelacionados(id, limite));
     }
 
     /**
@@ -119,8 +641,28 @@ public class ProductoService {
      * @return Lista de productos que coinciden
      */
     public List<Producto> buscarProductosPorNombre(String nombre) {
-        System.out.println("\n[SERVICE] Buscando productos con nombre que contenga: " + nombre);
-        return productoRepository.findByNombreContaining(nombre);
+        log.debug("[SERVICE] Buscando productos con nombre que contenga: {}", nombre);
+        if (indiceBusqueda.isHabilitado()) {
+            return productosEncontrados(indiceBusqueda.buscar(nombre, Integer.MAX_VALUE));
+        }
+        return conStockPendiente(productoRepository.findByNombreContaining(nombre));
+    }
+
+    /**
+     * Busca productos por texto con un máximo de resultados.
+     * Con el índice de búsqueda habilitado se busca en nombre y descripción,
+     * sin distinguir mayúsculas ni acentos, y los resultados salen ordenados
+     * por relevancia. Sin él, se usa el LIKE sobre el nombre.
+     * @param texto Texto a buscar
+     * @param limite Número máximo de resultados
+     * @return Lista de productos que coinciden
+     */
+    public List<Producto> buscarProductos(String texto, int limite) {
+        log.debug("[SERVICE] Buscando productos con texto: {} (máx. {})", texto, limite);
+        if (indiceBusqueda.isHabilitado()) {
+            return productosEncontrados(indiceBusqueda.buscar(texto, limite));
+        }
+        return conStockPendiente(productoRepository.findByNombreContaining(texto, limite));
     }
 
     /**
@@ -128,8 +670,17 @@ public class ProductoService {
      * @return Lista de productos con stock > 0
      */
     public List<Producto> obtenerProductosDisponibles() {
-        System.out.println("\n[SERVICE] Buscando productos con stock disponible...");
-        return productoRepository.findByStockGreaterThanZero();
+        log.debug("[SERVICE] Buscando productos con stock disponible...");
+        if (catalogo.isHabilitado()) {
+            return catalogo.findByStockGreaterThanZero();
+        }
+        List<Producto> productos = productoRepository.findByStockGreaterThanZero();
+        if (!bufferStock.sinPendientes()) {
+            // El filtro de la BD no ve las ventas sin volcar: se quitan los que ya no tienen
+            conStockPendiente(productos);
+            productos.removeIf(producto -> producto.getStock() <= 0);
+        }
+        return productos;
     }
 
     /**
@@ -138,8 +689,25 @@ public class ProductoService {
      * Lista de productos
      */
     public List<Producto> obtenerProductosPorPrecioMaximo(BigDecimal precioMaximo) {
-        System.out.println("\n[SERVICE] Buscando productos con precio <= " + precioMaximo);
-        return productoRepository.findByPrecioLessThanEqual(precioMaximo);
+        log.debug("[SERVICE] Buscando productos con precio <= {}", precioMaximo);
+        if (catalogo.isHabilitado()) {
+            return catalogo.findByPrecioLessThanEqual(precioMaximo);
+        }
+        return conStockPendiente(productoRepository.findByPrecioLessThanEqual(precioMaximo));
+    }
+
+    /**
+     * Obtiene productos con precio dentro de un rango (ambos extremos incluidos).
+     * @param precioMinimo Precio mínimo
+     * @param precioMaximo Precio máximo
+     * @return Lista de productos ordenada por precio
+     */
+    public List<Producto> obtenerProductosPorRangoDePrecio(BigDecimal precioMinimo, BigDecimal precioMaximo) {
+        log.debug("[SERVICE] Buscando productos con precio entre {} y {}", precioMinimo, precioMaximo);
+        if (catalogo.isHabilitado()) {
+            return catalogo.findByPrecioBetween(precioMinimo, precioMaximo);
+        }
+        return conStockPendiente(productoRepository.findByPrecioBetween(precioMinimo, precioMaximo));
     }
 
     /**
@@ -147,7 +715,7 @@ public class ProductoService {
      * Número total de productos
      */
     public long contarProductos() {
-        return productoRepository.count();
+        return productoCache.contarProductos(productoRepository::count);
     }
 
     /**
@@ -155,8 +723,345 @@ public class ProductoService {
      * Lista de categorías únicas
      */
     public List<String> obtenerCategorias() {
-        System.out.println("\n[SERVICE] Obteniendo lista de categorías...");
-        System.out.println("[SERVICE] Ejecutando: SELECT DISTINCT categoria FROM productos");
-        return productoRepository.findAllCategorias();
+        log.debug("[SERVICE] Obteniendo lista de categorías...");
+        return productoCache.obtenerCategorias(() -> {
+            log.trace("[SERVICE] Ejecutando: SELECT DISTINCT categoria FROM productos");
+            return productoRepository.findAllCategorias();
+        });
+    }
+
+    /**
+     * Estadísticas de inventario: valor del stock, precios mínimo/medio/máximo
+     * y productos con poco stock por categoría y en total, más el histograma
+     * de precios. Se calculan en MySQL con GROUP BY (sin traer los productos)
+     * y pueden ir unos segundos por detrás de las últimas escrituras.
+     */
+    public InformeInventario obtenerInformeInventario() {
+        log.debug("[SERVICE] Obteniendo informe de inventario...");
+        return analitica.obtenerInforme();
+    }
+
+    /**
+     * Suscribe un consumidor a los cambios en productos (altas, modificaciones,
+     * bajas y stock). Los recibe en orden desde un hilo propio, con una cola
+     * acotada: un consumidor lento no frena las escrituras.
+     * Suscripción, para consultar su estado o cancelarla
+     */
+    public Suscripcion suscribirseACambios(String nombre, Consumer<EventoCambio> consumidor) {
+        return feedCambios.suscribir(nombre, consumidor);
+    }
+
+    /**
+     * Cambios posteriores a la secuencia indicada, para quien consulta
+     * periódicamente en lugar de suscribirse. Vacío si ya no están en el
+     * historial y hay que recargar todo.
+     */
+    public Optional<List<EventoCambio>> obtenerCambiosDesde(long secuencia) {
+        return feedCambios.cambiosDesde(secuencia);
+    }
+
+    /**
+     * Obtiene los contadores de la caché de productos
+     * (aciertos, fallos, expulsiones y tamaño).
+     * Lista con las estadísticas de cada caché
+     */
+    public List<EstadisticasCache> obtenerEstadisticasCache() {
+        return productoCache.estadisticas();
+    }
+
+    /**
+     * Métricas de cada método del repositorio: llamadas, errores, filas y
+     * tiempos (media, p50, p99, máximo).
+     * Lista con una entrada por método, ordenada por nombre
+     */
+    public List<EstadisticasMetodo> obtenerMetricasRepositorio() {
+        return metricas.instantanea();
+    }
+
+    /**
+     * Tiempo que esperan las peticiones hasta conseguir conexión del pool.
+     */
+    public EstadisticasMetodo obtenerMetricasPool() {
+        return metricas.esperaPool();
+    }
+
+
+    // SINCRONIZACIÓN DE CACHÉS E ÍNDICES TRAS LAS ESCRITURAS
+
+    private void despuesDeGuardar(Producto guardado) {
+        productoCache.alGuardar(guardado);
+        analitica.marcarCategoria(guardado.getCategoria());
+        feedCambios.publicarAlta(guardado);
+        if (catalogo.isHabilitado()) {
+            catalogo.registrar(guardado);
+        }
+        if (indiceBusqueda.isHabilitado()) {
+            indiceBusqueda.registrar(guardado);
+        }
+    }
+
+    private void despuesDeActualizar(Producto producto, boolean existia) {
+        productoCache.alActualizar(producto);
+        if (!existia) {
+            return;
+        }
+        // Puede haber cambiado de categoría: no se sabe cuál era la anterior
+        analitica.marcarTodo();
+        feedCambios.publicarModificacion(producto);
+        if (catalogo.isHabilitado()) {
+            catalogo.registrar(producto);
+        }
+        if (indiceBusqueda.isHabilitado()) {
+            indiceBusqueda.registrar(producto);
+        }
+    }
+
+    private void despuesDeEliminar(Long id, boolean existia) {
+        productoCache.alEliminar(id);
+        if (!existia) {
+            return;
+        }
+        analitica.marcarTodo();
+        feedCambios.publicarBaja(id);
+        if (catalogo.isHabilitado()) {
+            catalogo.eliminar(id);
+        }
+        if (indiceBusqueda.isHabilitado()) {
+            indiceBusqueda.eliminar(id);
+        }
+    }
+
+    private void despuesDeCambiarStock(Long id, int delta) {
+        productoCache.invalidarProducto(id);
+        analitica.marcarTodo();
+        feedCambios.publicarStock(id, delta);
+        ajustarStockEnIndices(id, delta);
+    }
+
+    /**
+     * El índice de búsqueda no guarda el stock: solo hay que tocar el catálogo.
+     */
+    private void ajustarStockEnIndices(Long id, int delta) {
+        if (catalogo.isHabilitado()) {
+            catalogo.ajustarStock(id, delta);
+        }
+    }
+
+    /**
+     * Convierte los ids del índice de búsqueda en productos, en el mismo
+     * orden de relevancia: del catálogo en memoria si está activo y, si
+     * no, de la caché (los que faltan, con findAllById).
+     */
+    private List<Producto> productosEncontrados(List<Long> ids) {
+        if (catalogo.isHabilitado()) {
+            return catalogo.findAllById(ids);
+        }
+        Map<Long, Producto> productos = obtenerProductosPorIds(ids);
+        List<Producto> ordenados = new ArrayList<>(productos.size());
+        for (Long id : ids) {
+            Producto producto = productos.get(id);
+            if (producto != null) {
+                ordenados.add(producto);
+            }
+        }
+        return ordenados;
+    }
+
+    /**
+     * Cada lote confirmado por ImportadorProductos, que escribe con el
+     * repositorio directamente, se trata como un guardarOActualizarProductos.
+     */
+    private void despuesDeImportar(List<Producto> lote) {
+        despuesDeModificarVarios(lote, false);
+        lote.forEach(feedCambios::publicarModificacion);
+    }
+
+    /**
+     * Tras cada lote de MotorPrecios (también los que aplica o revierte su
+     * hilo al empezar o acabar una promoción): una sola invalidación con
+     * todos los productos. El catálogo, el índice y el feed necesitan los
+     * productos completos, que se releen con findAllById (una consulta por
+     * cada 512) solo si alguno está activo.
+     */
+    private void despuesDeCambiarPrecios(List<Long> ids) {
+        productoCache.alCambiarPrecios(ids);
+        analitica.marcarTodo();
+        if (!catalogo.isHabilitado() && !indiceBusqueda.isHabilitado() && !feedCambios.isHabilitado()) {
+            return;
+        }
+        List<Producto> productos = productoRepository.findAllById(ids);
+        feedCambios.publicarModificaciones(productos);
+        if (catalogo.isHabilitado()) {
+            catalogo.registrarTodos(productos);
+        }
+        if (indiceBusqueda.isHabilitado()) {
+            indiceBusqueda.registrarTodos(productos);
+        }
+    }
+
+    /**
+     * releer: true cuando la operación no dice qué filas existían (updateAll),
+     * y hay que volver a leerlas de la BD antes de actualizar los índices.
+     */
+    private void despuesDeModificarVarios(Collection<Producto> productos, boolean releer) {
+        productoCache.alModificarVarios(productos);
+        analitica.marcarTodo();
+        if (!catalogo.isHabilitado() && !indiceBusqueda.isHabilitado()) {
+            return;
+        }
+
+        Collection<Producto> vigentes = productos;
+        List<Long> borrados = new ArrayList<>();
+        if (releer) {
+            // Una consulta por cada 512 ids; los que no vuelven es que se han borrado
+            List<Long> ids = productos.stream().map(Producto::getId).toList();
+            List<Producto> releidos = productoRepository.findAllById(ids);
+            Set<Long> encontrados = new HashSet<>();
+            releidos.forEach(producto -> encontrados.add(producto.getId()));
+            for (Long id : ids) {
+                if (!encontrados.contains(id)) {
+                    borrados.add(id);
+                }
+            }
+            vigentes = releidos;
+        }
+
+        if (catalogo.isHabilitado()) {
+            catalogo.registrarTodos(vigentes);
+            borrados.forEach(catalogo::eliminar);
+        }
+        if (indiceBusqueda.isHabilitado()) {
+            indiceBusqueda.registrarTodos(vigentes);
+            borrados.forEach(indiceBusqueda::eliminar);
+        }
+    }
+
+    /**
+     * Tras volcar el buffer de stock la BD ya tiene esos deltas: se invalida la
+     * caché para que no sirva el stock anterior (con un solo aviso a las
+     * demás instancias). El catálogo y el índice no se tocan porque se
+     * ajustaron al registrar cada movimiento.
+     */
+    private void despuesDeVolcarStock(Map<Long, Long> deltas) {
+        productoCache.invalidarProductos(deltas.keySet());
+        analitica.marcarTodo();
+    }
+
+    // FUSIÓN DE CAMBIOS CONCURRENTES
+
+    /**
+     * Aplica sobre "actual" los campos que cambian de original a modificado.
+     * Vacío si algún campo lo cambiaron los dos a valores distintos.
+     */
+    private static Optional<Producto> fusionar(Producto original, Producto modificado, Producto actual) {
+        Producto resultado = new Producto(actual);
+        boolean fusionable = fusionarCampo(original.getNombre(), modificado.getNombre(), actual.getNombre(), resultado::setNombre)
+                && fusionarCampo(original.getDescripcion(), modificado.getDescripcion(), actual.getDescripcion(), resultado::setDescripcion)
+                && fusionarCampo(original.getPrecio(), modificado.getPrecio(), actual.getPrecio(), resultado::setPrecio)
+                && fusionarCampo(original.getCategoria(), modificado.getCategoria(), actual.getCategoria(), resultado::setCategoria);
+        if (!fusionable) {
+            return Optional.empty();
+        }
+        int delta = valorStock(modificado) - valorStock(original);
+        if (delta != 0) {
+            resultado.setStock(valorStock(actual) + delta);
+        }
+        return Optional.of(resultado);
+    }
+
+    private static <T> boolean fusionarCampo(T original, T modificado, T actual, Consumer<T> asignar) {
+        if (iguales(original, modificado)) {
+            return true;                      // el usuario no lo tocó: se queda el valor actual
+        }
+        if (iguales(original, actual) || iguales(modificado, actual)) {
+            asignar.accept(modificado);       // solo lo cambió el usuario (o los dos igual)
+            return true;
+        }
+        return false;                         // lo cambiaron los dos, a valores distintos
+    }
+
+    /**
+     * Como Objects.equals, pero 1.5 y 1.50 son el mismo precio.
+     */
+    private static boolean iguales(Object a, Object b) {
+        if (a instanceof BigDecimal x && b instanceof BigDecimal y) {
+            return x.compareTo(y) == 0;
+        }
+        return Objects.equals(a, b);
+    }
+
+    private static int valorStock(Producto producto) {
+        return producto.getStock() != null ? producto.getStock() : 0;
+    }
+
+    private static void copiarCampos(Producto desde, Producto hacia) {
+        hacia.setNombre(desde.getNombre());
+        hacia.setDescripcion(desde.getDescripcion());
+        hacia.setPrecio(desde.getPrecio());
+        hacia.setStock(desde.getStock());
+        hacia.setCategoria(desde.getCategoria());
+        hacia.setVersion(desde.getVersion());
+        hacia.limpiarCambios();
+    }
+
+    /**
+     * Suma al stock leído de la BD los movimientos que el buffer aún no ha volcado.
+     */
+    private Producto conStockPendiente(Producto producto) {
+        if (bufferStock.sinPendientes() || producto.getStock() == null) {
+            return producto;
+        }
+        long pendiente = bufferStock.pendiente(producto.getId());
+        if (pendiente != 0) {
+            // No cuenta como cambio del usuario: un update() posterior no debe
+            // escribir este stock, o el volcado del buffer lo sumaría otra vez
+            boolean sinCambios = producto.getCamposModificados() == 0;
+            producto.setStock((int) (producto.getStock() + pendiente));
+            if (sinCambios) {
+                producto.limpiarCambios();
+            }
+        }
+        return producto;
+    }
+
+    private List<Producto> conStockPendiente(List<Producto> productos) {
+        if (!bufferStock.sinPendientes()) {
+            productos.forEach(this::conStockPendiente);
+        }
+        return productos;
+    }
+
+    /**
+     * Lo contrario de conStockPendiente, antes de escribir: el stock que ve
+     * quien usa este servicio incluye los movimientos sin volcar, y el
+     * volcado los sumará otra vez en la BD. Si el UPDATE va a escribir el
+     * stock, se le restan. Devuelve una copia ajustada (el producto del
+     * llamante no se toca) o el mismo producto si no hace falta.
+     * soloCamposModificados true para update(), que solo escribe el stock
+     * si cambió (o si no cambió nada y se guarda tal cual); false para updateAll(), que
+     * escribe siempre todas las columnas
+     */
+    private Producto conStockDeBd(Producto producto, boolean soloCamposModificados) {
+        int campos = producto.getCamposModificados();
+        boolean escribeStock = !soloCamposModificados || campos == 0 || (campos & Producto.CAMPO_STOCK) != 0;
+        if (!escribeStock || bufferStock.sinPendientes() || producto.getStock() == null) {
+            return producto;
+        }
+        long pendiente = bufferStock.pendiente(producto.getId());
+        if (pendiente == 0) {
+            return producto;
+        }
+        int stockEnBd = (int) (producto.getStock() - pendiente);
+        Producto copia;
+        if (soloCamposModificados && campos == 0) {
+            // Con el constructor la copia también envía todas las columnas
+            copia = new Producto(producto.getId(), producto.getNombre(), producto.getDescripcion(),
+                    producto.getPrecio(), stockEnBd, producto.getCategoria());
+        } else {
+            copia = new Producto(producto);
+            copia.setStock(stockEnBd);
+        }
+        copia.setVersion(producto.getVersion());
+        return copia;
     }
 }
@@ -0,0 +1,263 @@
+package com.dam.supermercado.service;
+
+import com.dam.supermercado.ejecucion.EjecutorPeticiones;
+import com.dam.supermercado.model.PaginaProducto;
+import com.dam.supermercado.model.Producto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * ============================================
+ * SERVICIO: ProductoServiceAsync (asíncrono)
+ * ============================================
+ * Fachada de ProductoService cuyos métodos devuelven CompletableFuture en
+ * lugar de esperar al resultado. Sirve para lanzar a la vez consultas que
+ * no dependen unas de otras: la ficha de un producto necesita el producto,
+ * los relacionados y las categorías; en secuencia tarda la SUMA de las tres
+ * consultas, en paralelo lo que tarde la MÁS LENTA.
+ * Cada llamada se ejecuta en EjecutorPeticiones (hilos virtuales con Java
+ * 21; con Java 17, su pool de hilos normales), acotada así:
+ * - "hilos" llamadas ejecutándose a la vez como máximo. Una llamada solo se
+ *   entrega al ejecutor cuando ya tiene su turno (un permiso del semáforo
+ *   "ejecutando"): así nunca hay hilos bloqueados esperando, ni en el
+ *   ejecutor más de "hilos" tareas de este servicio.
+ * - Hasta "cola" llamadas más esperan turno en una cola propia (no ocupan
+ *   hilo). Al terminar una llamada, su hilo entrega la siguiente.
+ * - Si ya hay "hilos" + "cola" llamadas dentro, el Future falla al momento
+ *   con RejectedExecutionException (contrapresión): mejor avisar de que
+ *   estamos saturados que acumular peticiones que llegarán tarde de todos modos.
+ * - Cada Future falla con TimeoutException si no termina en "timeout-ms".
+ * - Cancelar un Future (o que caduque) la saca de la cola si aún estaba
+ *   esperando turno, y le devuelve su hueco; una consulta que ya está en
+ *   MySQL termina igualmente, pero su resultado se descarta y su hueco no
+ *   se devuelve hasta que acaba.
+ * Las conexiones siguen acotadas por DataSourceLimitado.
+ */
+@Service
+public class ProductoServiceAsync {
+
+    private final ProductoService productoService;
+    private final ExecutorService executor;
+    private final long timeoutMs;
+
+    /**
+     * Permisos para ejecutar ("hilos") y para entrar, ejecutando o
+     * esperando ("hilos" + "cola"). Un hueco de "admitidas" se devuelve
+     * cuando la tarea termina en el ejecutor o sale de la cola sin llegar a él.
+     */
+    private final Semaphore ejecutando;
+    private final Semaphore admitidas;
+
+    /**
+     * Llamadas admitidas que esperan un permiso de "ejecutando".
+     */
+    private final Queue<Llamada<?>> enEspera = new ConcurrentLinkedQueue<>();
+    private final int hilos;
+    private final int maximoAdmitidas;
+
+    private final LongAdder rechazadas = new LongAdder();
+    private final LongAdder caducadas = new LongAdder();
+    private final LongAdder canceladas = new LongAdder();
+
+    /**
+     * productoService Servicio síncrono al que se delega
+     * ejecutorPeticiones Ejecutor compartido de la aplicación (hilos virtuales si los hay)
+     * hilos Consultas ejecutándose a la vez (no tiene sentido superar mucho
+     *       el tamaño del pool de conexiones)
+     * cola Peticiones que pueden esperar turno antes de rechazar
+     * timeoutMs Tiempo máximo de cada llamada
+     */
+    @Autowired
+    public ProductoServiceAsync(ProductoService productoService, EjecutorPeticiones ejecutorPeticiones,
+                                @Value("${supermercado.async.hilos:8}") int hilos,
+                                @Value("${supermercado.async.cola:256}") int cola,
+                                @Value("${supermercado.async.timeout-ms:2000}") long timeoutMs) {
+        this.productoService = productoService;
+        this.executor = ejecutorPeticiones.getExecutor();
+        this.timeoutMs = timeoutMs;
+        this.hilos = hilos;
+        this.maximoAdmitidas = hilos + cola;
+        this.ejecutando = new Semaphore(hilos);
+        this.admitidas = new Semaphore(maximoAdmitidas);
+    }
+
+
+    // CONSULTAS ASÍNCRONAS
+
+    public CompletableFuture<Optional<Producto>> obtenerProductoPorId(Long id) {
+        return ejecutar(() -> productoService.obtenerProductoPorId(id));
+    }
+
+    public CompletableFuture<List<Producto>> obtenerProductosPorCategoria(String categoria) {
+        return ejecutar(() -> productoService.obtenerProductosPorCategoria(categoria));
+    }
+
+    public CompletableFuture<List<Producto>> obtenerProductosRelacionados(Long id, int limite) {
+        return ejecutar(() -> productoService.obtenerProductosRelacionados(id, limite));
+    }
+
+    public CompletableFuture<List<String>> obtenerCategorias() {
+        return ejecutar(productoService::obtenerCategorias);
+    }
+
+    public CompletableFuture<List<Producto>> buscarProductos(String texto, int limite) {
+        return ejecutar(() -> productoService.buscarProductos(texto, limite));
+    }
+
+    /**
+     * Datos de la ficha de un producto, con las tres consultas en paralelo.
+     * Si una falla, se cancelan las otras; si se cancela la ficha, también.
+     * @param id ID del producto
+     * @param maxRelacionados Número máximo de productos relacionados
+     * @return Future con la ficha, o vacío si el producto no existe
+     */
+    public CompletableFuture<Optional<PaginaProducto>> obtenerPaginaProducto(Long id, int maxRelacionados) {
+        CompletableFuture<Optional<Producto>> producto = obtenerProductoPorId(id);
+        CompletableFuture<List<Producto>> relacionados = obtenerProductosRelacionados(id, maxRelacionados);
+        CompletableFuture<List<String>> categorias = obtenerCategorias();
+        List<CompletableFuture<?>> consultas = List.of(producto, relacionados, categorias);
+
+        for (CompletableFuture<?> consulta : consultas) {
+            consulta.whenComplete((resultado, error) -> {
+                if (error != null) {
+                    consultas.forEach(otra -> otra.cancel(false));
+                }
+            });
+        }
+
+        CompletableFuture<Optional<PaginaProducto>> pagina = CompletableFuture
+                .allOf(producto, relacionados, categorias)
+                .thenApply(nada -> producto.join()
+                        .map(p -> new PaginaProducto(p, relacionados.join(), categorias.join())));
+        pagina.whenComplete((resultado, error) -> {
+            if (pagina.isCancelled()) {
+                consultas.forEach(consulta -> consulta.cancel(false));
+            }
+        });
+        return pagina;
+    }
+
+    /**
+     * Ejecuta cualquier llamada síncrona en el ejecutor de peticiones, con el mismo
+     * timeout y la misma contrapresión que el resto de métodos.
+     */
+    public <T> CompletableFuture<T> ejecutar(Supplier<T> llamada) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        if (!admitidas.tryAcquire()) {
+            rechazadas.increment();
+            resultado.completeExceptionally(new RejectedExecutionException(
+                    "Servicio asíncrono saturado: " + maximoAdmitidas + " llamadas en curso"));
+            return resultado;
+        }
+
+        Llamada<T> tarea = new Llamada<>(llamada, resultado);
+        enEspera.add(tarea);
+        despachar();
+
+        resultado.whenComplete((valor, error) -> {
+            if (resultado.isCancelled()) {
+                canceladas.increment();
+                descartar(tarea);
+            } else if (error instanceof TimeoutException) {
+                caducadas.increment();
+                descartar(tarea);
+            }
+        });
+        return resultado.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Entrega al ejecutor llamadas de la cola mientras haya permisos.
+     * Tras devolver un permiso se vuelve a mirar la cola: otra llamada pudo
+     * encolarse justo cuando no quedaban permisos, y alguien tiene que
+     * entregarla.
+     */
+    private void despachar() {
+        while (!enEspera.isEmpty() && ejecutando.tryAcquire()) {
+            Llamada<?> tarea = enEspera.poll();
+            if (tarea == null) {
+                ejecutando.release();
+                continue;
+            }
+            try {
+                executor.execute(tarea);
+            } catch (RejectedExecutionException e) {
+                // Ejecutor cerrado: la tarea no llegará a ejecutarse
+                ejecutando.release();
+                admitidas.release();
+                rechazadas.increment();
+                tarea.resultado.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Si la llamada aún esperaba turno, la saca de la cola y devuelve su
+     * hueco. Si ya está en el ejecutor, lo devuelve ella al terminar.
+     */
+    private void descartar(Llamada<?> tarea) {
+        if (enEspera.remove(tarea)) {
+            admitidas.release();
+        }
+    }
+
+    /**
+     * Una llamada admitida. Al terminar en el ejecutor devuelve su permiso y
+     * su hueco, y entrega la siguiente de la cola.
+     */
+    private final class Llamada<T> implements Runnable {
+        private final Supplier<T> llamada;
+        private final CompletableFuture<T> resultado;
+
+        private Llamada(Supplier<T> llamada, CompletableFuture<T> resultado) {
+            this.llamada = llamada;
+            this.resultado = resultado;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // Cancelada o caducada justo antes de recibir su turno
+                if (!resultado.isDone()) {
+                    resultado.complete(llamada.get());
+                }
+            } catch (Throwable e) {
+                resultado.completeExceptionally(e);
+            } finally {
+                ejecutando.release();
+                admitidas.release();
+                despachar();
+            }
+        }
+    }
+
+
+    // ESTADO DEL POOL
+
+    /**
+     * Contadores del servicio asíncrono: ejecutando, esperando turno,
+     * rechazadas por saturación, caducadas por timeout y canceladas.
+     */
+    public Map<String, Long> estadisticas() {
+        return Map.of("ejecutando", (long) (hilos - ejecutando.availablePermits()),
+                "enCola", (long) enEspera.size(),
+                "rechazadas", rechazadas.sum(),
+                "caducadas", caducadas.sum(),
+                "canceladas", canceladas.sum());
+    }
+}
@@ -0,0 +1,41 @@
+package com.dam.supermercado.shards;
+
+import com.dam.supermercado.model.Producto;
+
+import java.util.Locale;
+
+/**
+ * Decide en qué shard (base de datos) vive cada producto.
+ * Los shards se numeran de 0 a numeroShards - 1.
+ */
+public interface EstrategiaShard {
+
+    /**
+     * Shard en el que se guarda el producto.
+     */
+    int shardDe(Producto producto);
+
+    /**
+     * Shard del producto con ese id, o -1 si el id no basta para saberlo
+     * (entonces hay que preguntar a todos).
+     */
+    int shardDeId(long id);
+
+    /**
+     * Shard que tiene todos los productos de la categoría, o -1 si están
+     * repartidos entre varios.
+     */
+    int shardDeCategoria(String categoria);
+
+    /**
+     * Crea la estrategia configurada en supermercado.shards.estrategia.
+     * nombre "id" (hash del id) o "categoria"
+     */
+    static EstrategiaShard desdeNombre(String nombre, int numeroShards) {
+        return switch (nombre.trim().toLowerCase(Locale.ROOT)) {
+            case "id" -> new ShardPorId(numeroShards);
+            case "categoria" -> new ShardPorCategoria(numeroShards);
+            default -> throw new IllegalArgumentException("Estrategia de shards desconocida (id o categoria): " + nombre);
+        };
+    }
+}
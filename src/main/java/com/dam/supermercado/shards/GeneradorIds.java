@@ -0,0 +1,75 @@
+package com.dam.supermercado.shards;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ============================================
+ * SHARDS: GeneradorIds
+ * ============================================
+ * Ids únicos entre todos los shards sin preguntar a ninguna base de datos
+ * (con un AUTO_INCREMENT por shard, dos shards darían el mismo id).
+ * Es el esquema "Snowflake" de Twitter: un long de 63 bits con
+ * ─────────────────────────────────────────────────────────────
+ * | 41 bits: milisegundos  | 10 bits: nodo | 12 bits: secuencia |
+ * |   desde 2024-01-01     |   (0..1023)   |  dentro del ms     |
+ * ─────────────────────────────────────────────────────────────
+ * - Cada instancia de la aplicación tiene un nodo distinto
+ *   (supermercado.shards.nodo), así que dos instancias nunca coinciden.
+ * - Dentro de una instancia, la secuencia da 4096 ids por milisegundo.
+ *   Si se agota, se sigue con el milisegundo siguiente (el id va un poco
+ *   por delante del reloj) en lugar de esperar.
+ * - Si el reloj retrocede (ajuste NTP), se sigue desde el último id dado:
+ *   los ids nunca se repiten y siempre crecen.
+ * - Como empiezan por el tiempo, se ordenan aproximadamente por fecha de
+ *   alta, igual que los de AUTO_INCREMENT.
+ * Ojo: son números grandes (del orden de 10^17), así que no caben en un
+ * int; CatalogoEnMemoria, que indexa el stock con un BitSet por id, no
+ * los admite.
+ */
+public final class GeneradorIds {
+
+    /**
+     * 2024-01-01T00:00:00Z: con 41 bits de milisegundos alcanza hasta 2093.
+     */
+    private static final long EPOCA = 1_704_067_200_000L;
+    private static final int BITS_NODO = 10;
+    private static final int BITS_SECUENCIA = 12;
+    public static final int MAX_NODO = (1 << BITS_NODO) - 1;
+
+    private final long nodo;
+
+    /**
+     * Milisegundo (desde EPOCA) y secuencia del último id, juntos en un
+     * long para actualizarlos a la vez con compareAndSet.
+     */
+    private final AtomicLong ultimo = new AtomicLong();
+
+    public GeneradorIds(int nodo) {
+        if (nodo < 0 || nodo > MAX_NODO) {
+            throw new IllegalArgumentException("El nodo debe estar entre 0 y " + MAX_NODO + ": " + nodo);
+        }
+        this.nodo = nodo;
+    }
+
+    public long siguiente() {
+        while (true) {
+            long anterior = ultimo.get();
+            long ahora = System.currentTimeMillis() - EPOCA;
+            // Si el reloj no ha avanzado (o ha retrocedido) se suma 1 a la
+            // secuencia; al desbordar pasa sola al milisegundo siguiente
+            long nuevo = ahora > anterior >>> BITS_SECUENCIA ? ahora << BITS_SECUENCIA : anterior + 1;
+            if (ultimo.compareAndSet(anterior, nuevo)) {
+                long milis = nuevo >>> BITS_SECUENCIA;
+                long secuencia = nuevo & ((1L << BITS_SECUENCIA) - 1);
+                return (milis << (BITS_NODO + BITS_SECUENCIA)) | (nodo << BITS_SECUENCIA) | secuencia;
+            }
+        }
+    }
+
+    /**
+     * Momento (System.currentTimeMillis()) aproximado en que se generó el id.
+     */
+    public static long instante(long id) {
+        return (id >>> (BITS_NODO + BITS_SECUENCIA)) + EPOCA;
+    }
+}
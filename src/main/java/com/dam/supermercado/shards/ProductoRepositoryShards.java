@@ -0,0 +1,471 @@
+package com.dam.supermercado.shards;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.model.ResultadoActualizacion;
+import com.dam.supermercado.repository.ProductoRepository;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * ============================================
+ * SHARDS: ProductoRepositoryShards
+ * ============================================
+ * La tabla productos repartida entre varias bases de datos (shards), cada
+ * una con su pool y su ProductoRepository normal. Esta clase decide a
+ * cuál va cada operación:
+ * ─────────────────────────────────────────────────────────────
+ * | Operación                   | Se ejecuta en                  |
+ * ├─────────────────────────────────────────────────────────────┤
+ * | save, saveAll               | el shard de la estrategia      |
+ * | findById, update, deleteById| su shard (o todos si el id no  |
+ * |                             | lo dice: reparto por categoría)|
+ * | findByCategoria             | su shard (o todos: por id)     |
+ * | findAll, findByNombre...,   | TODOS en paralelo, y se juntan |
+ * | count, findAllCategorias    | los resultados                 |
+ * | findAllOrderByPrecio        | TODOS, mezclando las listas ya |
+ * |                             | ordenadas (merge de k listas)  |
+ * ─────────────────────────────────────────────────────────────
+ * Los ids los pone GeneradorIds antes de insertar: en cada shard la
+ * columna id sigue siendo la PRIMARY KEY, pero ya no se usa su AUTO_INCREMENT.
+ * Lo que NO hay:
+ * - Transacciones entre shards: saveAll confirma cada shard por separado,
+ *   y mover un producto de shard (cambio de categoría con reparto por
+ *   categoría) es insertar en uno y borrar en otro. Si la aplicación cae
+ *   entre medias, el producto queda en los dos.
+ * - Rebalanceo: cambiar el número de shards cambia el reparto y exige
+ *   mover los datos.
+ * Cada shard necesita la tabla creada con supermercado.sql.
+ * PRUEBAS EN LOCAL: varias H2 en memoria, p. ej.
+ * urls=jdbc:h2:mem:shard0;MODE=MySQL,jdbc:h2:mem:shard1;MODE=MySQL
+ */
+@Component
+public class ProductoRepositoryShards {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductoRepositoryShards.class);
+
+    private final boolean habilitados;
+    private final List<String> urls;
+    private final String usuario;
+    private final String password;
+    private final int tamanoPool;
+    private final String nombreEstrategia;
+    private final int nodo;
+    private final int tamanoLote;
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private List<ProductoRepository> shards = List.of();
+    private EstrategiaShard estrategia;
+    private GeneradorIds generadorIds;
+    private ExecutorService consultas;
+
+    /**
+     * urls Una URL JDBC por shard (el orden importa: es el número de shard)
+     * estrategia "id" o "categoria"
+     * nodo Número de esta instancia para GeneradorIds (distinto en cada una)
+     */
+    @Autowired
+    public ProductoRepositoryShards(@Value("${supermercado.shards.habilitados:false}") boolean habilitados,
+                                    @Value("${supermercado.shards.urls:}") List<String> urls,
+                                    @Value("${supermercado.shards.usuario:${spring.datasource.username:}}") String usuario,
+                                    @Value("${supermercado.shards.password:${spring.datasource.password:}}") String password,
+                                    @Value("${supermercado.shards.tamano-pool:5}") int tamanoPool,
+                                    @Value("${supermercado.shards.estrategia:id}") String estrategia,
+                                    @Value("${supermercado.shards.nodo:0}") int nodo,
+                                    @Value("${supermercado.jdbc.tamano-lote:500}") int tamanoLote) {
+        this.habilitados = habilitados && !urls.isEmpty();
+        this.urls = urls;
+        this.usuario = usuario;
+        this.password = password;
+        this.tamanoPool = tamanoPool;
+        this.nombreEstrategia = estrategia;
+        this.nodo = nodo;
+        this.tamanoLote = tamanoLote;
+    }
+
+    /**
+     * Para repositorios creados fuera de Spring (benchmarks).
+     */
+    public ProductoRepositoryShards(List<ProductoRepository> shards, EstrategiaShard estrategia, GeneradorIds generadorIds) {
+        this(true, List.of(), "", "", 0, "id", 0, 500);
+        this.shards = List.copyOf(shards);
+        this.estrategia = estrategia;
+        this.generadorIds = generadorIds;
+        this.consultas = crearEjecutor(shards.size());
+    }
+
+    public boolean isHabilitados() {
+        return !shards.isEmpty();
+    }
+
+    public int numeroShards() {
+        return shards.size();
+    }
+
+    /**
+     * Repositorio de un shard concreto (para mantenimiento y pruebas).
+     */
+    public ProductoRepository shard(int numero) {
+        return shards.get(numero);
+    }
+
+
+    // CICLO DE VIDA
+
+    @PostConstruct
+    public void iniciar() {
+        if (!habilitados) {
+            return;
+        }
+        List<ProductoRepository> repositorios = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl(urls.get(i).trim());
+            config.setUsername(usuario);
+            config.setPassword(password);
+            config.setPoolName("shard-" + i);
+            config.setMaximumPoolSize(tamanoPool);
+            HikariDataSource pool = new HikariDataSource(config);
+            pools.add(pool);
+            repositorios.add(new ProductoRepository(new JdbcTemplate(pool), tamanoLote));
+        }
+        shards = List.copyOf(repositorios);
+        estrategia = EstrategiaShard.desdeNombre(nombreEstrategia, shards.size());
+        generadorIds = new GeneradorIds(nodo);
+        consultas = crearEjecutor(shards.size());
+        log.info("[SHARDS] {} shards, reparto por {}, nodo {}", shards.size(), nombreEstrategia, nodo);
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (consultas != null) {
+            consultas.shutdownNow();
+        }
+        pools.forEach(HikariDataSource::close);
+    }
+
+    /**
+     * Dos hilos por shard: uno por consulta en curso y margen para que dos
+     * consultas a todos los shards no se esperen entre sí.
+     */
+    private static ExecutorService crearEjecutor(int numeroShards) {
+        AtomicInteger numero = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(numeroShards * 2, 1), r -> {
+            Thread hilo = new Thread(r, "consulta-shards-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+
+    // ESCRITURAS
+
+    /**
+     * Inserta un producto nuevo con un id de GeneradorIds.
+     */
+    public Producto save(Producto producto) {
+        producto.setId(generadorIds.siguiente());
+        shards.get(estrategia.shardDe(producto)).saveAllWithIds(List.of(producto));
+        return producto;
+    }
+
+    /**
+     * Inserta productos nuevos agrupándolos por shard; cada grupo va en
+     * lotes a su shard, y los shards se escriben en paralelo.
+     */
+    public Collection<Producto> saveAll(Collection<Producto> productos) {
+        for (Producto producto : productos) {
+            producto.setId(generadorIds.siguiente());
+        }
+        Map<Integer, List<Producto>> porShard = agrupar(productos, estrategia::shardDe);
+        enParalelo(porShard.keySet(), numero -> shards.get(numero).saveAllWithIds(porShard.get(numero)));
+        return productos;
+    }
+
+    /**
+     * Actualiza un producto en su shard. Con reparto por categoría, si la
+     * categoría ha cambiado el producto sigue en el shard de la anterior:
+     * se busca allí y se mueve.
+     */
+    public ResultadoActualizacion update(Producto producto) {
+        int destino = estrategia.shardDe(producto);
+        ResultadoActualizacion resultado = shards.get(destino).update(producto);
+        if (resultado != ResultadoActualizacion.NO_ENCONTRADO || estrategia.shardDeId(producto.getId()) >= 0) {
+            return resultado;
+        }
+        for (int origen = 0; origen < shards.size(); origen++) {
+            if (origen == destino) {
+                continue;
+            }
+            Optional<Producto> actual = shards.get(origen).findById(producto.getId());
+            if (actual.isPresent()) {
+                return mover(producto, actual.get(), origen, destino);
+            }
+        }
+        return ResultadoActualizacion.NO_ENCONTRADO;
+    }
+
+    /**
+     * Copia la fila al shard nuevo con los campos cambiados y la borra del
+     * viejo. Respeta el bloqueo optimista como update().
+     */
+    private ResultadoActualizacion mover(Producto producto, Producto actual, int origen, int destino) {
+        if (producto.getVersion() != null && !producto.getVersion().equals(actual.getVersion())) {
+            return ResultadoActualizacion.CONFLICTO;
+        }
+        int campos = producto.getCamposModificados();
+        Producto movido = new Producto(actual);
+        if (campos == 0 || (campos & Producto.CAMPO_NOMBRE) != 0) {
+            movido.setNombre(producto.getNombre());
+        }
+        if (campos == 0 || (campos & Producto.CAMPO_DESCRIPCION) != 0) {
+            movido.setDescripcion(producto.getDescripcion());
+        }
+        if (campos == 0 || (campos & Producto.CAMPO_PRECIO) != 0) {
+            movido.setPrecio(producto.getPrecio());
+        }
+        if (campos == 0 || (campos & Producto.CAMPO_STOCK) != 0) {
+            movido.setStock(producto.getStock());
+        }
+        movido.setCategoria(producto.getCategoria());
+        movido.setVersion(actual.getVersion() + 1);
+        shards.get(destino).saveAllWithIds(List.of(movido));
+        shards.get(origen).deleteById(producto.getId());
+        if (producto.getVersion() != null) {
+            producto.setVersion(movido.getVersion());
+        }
+        producto.limpiarCambios();
+        log.debug("[SHARDS] Producto {} movido del shard {} al {}", producto.getId(), origen, destino);
+        return ResultadoActualizacion.ACTUALIZADO;
+    }
+
+    public int deleteById(Long id) {
+        return enShardDe(id, shard -> shard.deleteById(id));
+    }
+
+    public int decrementarStock(Long id, int cantidad) {
+        return enShardDe(id, shard -> shard.decrementarStock(id, cantidad));
+    }
+
+    public int incrementarStock(Long id, int cantidad) {
+        return enShardDe(id, shard -> shard.incrementarStock(id, cantidad));
+    }
+
+    /**
+     * Ejecuta una escritura por id en su shard. Si la estrategia no sabe
+     * cuál es, se prueba shard a shard hasta que una afecte a alguna fila.
+     */
+    private int enShardDe(Long id, ToIntFunction<ProductoRepository> escritura) {
+        int numero = estrategia.shardDeId(id);
+        if (numero >= 0) {
+            return escritura.applyAsInt(shards.get(numero));
+        }
+        for (ProductoRepository shard : shards) {
+            int filas = escritura.applyAsInt(shard);
+            if (filas > 0) {
+                return filas;
+            }
+        }
+        return 0;
+    }
+
+
+    // LECTURAS
+
+    public Optional<Producto> findById(Long id) {
+        int numero = estrategia.shardDeId(id);
+        if (numero >= 0) {
+            return shards.get(numero).findById(id);
+        }
+        for (Optional<Producto> encontrado : enTodos(shard -> shard.findById(id))) {
+            if (encontrado.isPresent()) {
+                return encontrado;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Productos con esos ids. Con reparto por id se pregunta a cada shard
+     * solo por los suyos.
+     */
+    public List<Producto> findAllById(Collection<Long> ids) {
+        Map<Integer, List<Long>> porShard = agrupar(ids, estrategia::shardDeId);
+        if (porShard.containsKey(-1)) {
+            return unirPorId(enTodos(shard -> shard.findAllById(ids)));
+        }
+        return unirPorId(enParalelo(porShard.keySet(), numero -> shards.get(numero).findAllById(porShard.get(numero))));
+    }
+
+    /**
+     * Todos los productos, ordenados por id.
+     */
+    public List<Producto> findAll() {
+        return unirPorId(enTodos(ProductoRepository::findAll));
+    }
+
+    public List<Producto> findByNombreContaining(String nombre) {
+        return unirPorId(enTodos(shard -> shard.findByNombreContaining(nombre)));
+    }
+
+    /**
+     * Como mucho "limite" productos. Se piden "limite" a cada shard, porque
+     * no se sabe cuántos aportará cada uno, y se recorta al juntar.
+     */
+    public List<Producto> findByNombreContaining(String nombre, int limite) {
+        List<Producto> todos = unirPorId(enTodos(shard -> shard.findByNombreContaining(nombre, limite)));
+        return todos.size() > limite ? new ArrayList<>(todos.subList(0, limite)) : todos;
+    }
+
+    public List<Producto> findByCategoria(String categoria) {
+        int numero = estrategia.shardDeCategoria(categoria);
+        if (numero >= 0) {
+            return shards.get(numero).findByCategoria(categoria);
+        }
+        return unirPorId(enTodos(shard -> shard.findByCategoria(categoria)));
+    }
+
+    public long count() {
+        long total = 0;
+        for (Long parcial : enTodos(ProductoRepository::count)) {
+            total += parcial;
+        }
+        return total;
+    }
+
+    /**
+     * Categorías distintas de todos los shards, ordenadas como en MySQL
+     * (null primero).
+     */
+    public List<String> findAllCategorias() {
+        TreeSet<String> categorias = new TreeSet<>();
+        boolean hayNull = false;
+        for (List<String> parcial : enTodos(ProductoRepository::findAllCategorias)) {
+            for (String categoria : parcial) {
+                if (categoria == null) {
+                    hayNull = true;
+                } else {
+                    categorias.add(categoria);
+                }
+            }
+        }
+        List<String> resultado = new ArrayList<>(categorias.size() + 1);
+        if (hayNull) {
+            resultado.add(null);
+        }
+        resultado.addAll(categorias);
+        return resultado;
+    }
+
+    /**
+     * Todos los productos ordenados por precio. Cada shard devuelve su
+     * parte ya ordenada (ORDER BY precio) y se mezclan con un montículo:
+     * O(n log k) para k shards, sin volver a ordenar todo.
+     */
+    public List<Producto> findAllOrderByPrecio() {
+        return mezclarOrdenadas(enTodos(ProductoRepository::findAllOrderByPrecio),
+                Comparator.comparing(Producto::getPrecio));
+    }
+
+
+    // EJECUCIÓN EN VARIOS SHARDS
+
+    private <T> List<T> enTodos(Function<ProductoRepository, T> consulta) {
+        List<Integer> todos = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            todos.add(i);
+        }
+        return enParalelo(todos, numero -> consulta.apply(shards.get(numero)));
+    }
+
+    /**
+     * Ejecuta la operación en cada shard indicado a la vez y devuelve los
+     * resultados en el mismo orden. Con un solo shard no se cambia de hilo.
+     */
+    private <T> List<T> enParalelo(Collection<Integer> numeros, Function<Integer, T> operacion) {
+        if (numeros.size() == 1) {
+            return List.of(operacion.apply(numeros.iterator().next()));
+        }
+        List<CompletableFuture<T>> futuros = new ArrayList<>(numeros.size());
+        for (Integer numero : numeros) {
+            futuros.add(CompletableFuture.supplyAsync(() -> operacion.apply(numero), consultas));
+        }
+        List<T> resultados = new ArrayList<>(futuros.size());
+        try {
+            for (CompletableFuture<T> futuro : futuros) {
+                resultados.add(futuro.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+        return resultados;
+    }
+
+    private static <T> Map<Integer, List<T>> agrupar(Collection<T> elementos, ToIntFunction<T> shardDe) {
+        Map<Integer, List<T>> grupos = new TreeMap<>();
+        for (T elemento : elementos) {
+            grupos.computeIfAbsent(shardDe.applyAsInt(elemento), n -> new ArrayList<>()).add(elemento);
+        }
+        return grupos;
+    }
+
+    private static List<Producto> unirPorId(List<List<Producto>> parciales) {
+        List<Producto> todos = new ArrayList<>();
+        parciales.forEach(todos::addAll);
+        todos.sort(Comparator.comparing(Producto::getId));
+        return todos;
+    }
+
+    /**
+     * Mezcla k listas ya ordenadas: el montículo guarda la posición actual
+     * de cada lista y siempre da la que tiene el menor elemento.
+     */
+    static <T> List<T> mezclarOrdenadas(List<List<T>> listas, Comparator<? super T> orden) {
+        int total = 0;
+        PriorityQueue<int[]> monticulo = new PriorityQueue<>(Math.max(listas.size(), 1),
+                (a, b) -> orden.compare(listas.get(a[0]).get(a[1]), listas.get(b[0]).get(b[1])));
+        for (int i = 0; i < listas.size(); i++) {
+            total += listas.get(i).size();
+            if (!listas.get(i).isEmpty()) {
+                monticulo.add(new int[]{i, 0});
+            }
+        }
+        List<T> resultado = new ArrayList<>(total);
+        while (!monticulo.isEmpty()) {
+            int[] cursor = monticulo.poll();
+            List<T> lista = listas.get(cursor[0]);
+            resultado.add(lista.get(cursor[1]));
+            if (++cursor[1] < lista.size()) {
+                monticulo.add(cursor);
+            }
+        }
+        return resultado;
+    }
+}
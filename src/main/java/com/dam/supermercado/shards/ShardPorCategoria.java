@@ -0,0 +1,39 @@
+package com.dam.supermercado.shards;
+
+import com.dam.supermercado.model.Producto;
+
+/**
+ * Reparte por categoría: cada categoría vive entera en un shard, así que
+ * findByCategoria va a un solo shard (útil si cada tienda o sección pesa
+ * sobre todo en unas categorías). A cambio, el id no dice dónde está el
+ * producto: las operaciones por id preguntan a todos, y cambiar la
+ * categoría de un producto lo mueve de shard.
+ * El reparto depende de cuántas categorías haya y de lo grandes que sean:
+ * una categoría enorme no se puede dividir.
+ */
+public final class ShardPorCategoria implements EstrategiaShard {
+
+    private final int numeroShards;
+
+    public ShardPorCategoria(int numeroShards) {
+        this.numeroShards = numeroShards;
+    }
+
+    @Override
+    public int shardDe(Producto producto) {
+        return shardDeCategoria(producto.getCategoria());
+    }
+
+    @Override
+    public int shardDeId(long id) {
+        return -1;
+    }
+
+    /**
+     * Los productos sin categoría van al shard 0.
+     */
+    @Override
+    public int shardDeCategoria(String categoria) {
+        return categoria == null ? 0 : Math.floorMod(categoria.hashCode(), numeroShards);
+    }
+}
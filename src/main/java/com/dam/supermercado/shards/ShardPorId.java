@@ -0,0 +1,47 @@
+package com.dam.supermercado.shards;
+
+import com.dam.supermercado.model.Producto;
+
+/**
+ * Reparte por un hash del id: los productos quedan repartidos a partes
+ * iguales y cualquier operación por id va a un único shard, pero las
+ * consultas por categoría tienen que preguntar a todos.
+ * Se mezclan los bits del id antes del módulo porque los ids de
+ * GeneradorIds son consecutivos en sus bits bajos solo dentro de un mismo
+ * milisegundo: con un id % n directo, las ráfagas de altas no se repartirían bien.
+ */
+public final class ShardPorId implements EstrategiaShard {
+
+    private final int numeroShards;
+
+    public ShardPorId(int numeroShards) {
+        this.numeroShards = numeroShards;
+    }
+
+    @Override
+    public int shardDe(Producto producto) {
+        return shardDeId(producto.getId());
+    }
+
+    @Override
+    public int shardDeId(long id) {
+        return (int) Long.remainderUnsigned(mezclar(id), numeroShards);
+    }
+
+    @Override
+    public int shardDeCategoria(String categoria) {
+        return -1;
+    }
+
+    /**
+     * Paso final de MurmurHash3: cada bit del id afecta a todos los del resultado.
+     */
+    static long mezclar(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
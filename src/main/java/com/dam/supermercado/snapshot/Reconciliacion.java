@@ -0,0 +1,14 @@
+package com.dam.supermercado.snapshot;
+
+import com.dam.supermercado.model.Producto;
+
+import java.util.List;
+
+/**
+ * Diferencias entre el snapshot y la BD, tal como las calcula
+ * SnapshotCatalogo.reconciliar():
+ * - cambiados: productos nuevos o con otra versión, ya leídos de la BD.
+ * - borrados: ids que están en el snapshot pero ya no en la BD.
+ */
+public record Reconciliacion(List<Producto> cambiados, List<Long> borrados) {
+}
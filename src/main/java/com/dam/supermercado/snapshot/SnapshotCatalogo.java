@@ -0,0 +1,450 @@
+package com.dam.supermercado.snapshot;
+
+import com.dam.supermercado.model.Producto;
+import com.dam.supermercado.repository.ProductoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * ============================================
+ * SNAPSHOT: SnapshotCatalogo
+ * ============================================
+ * Copia local de la tabla productos en un fichero binario, para que una
+ * instancia que arranca pueda cargar el catálogo en memoria sin leer toda
+ * la tabla de MySQL (en un despliegue arrancan todas a la vez).
+ * FORMATO (todo big-endian):
+ * ─────────────────────────────────────────────────────────────
+ * | Cabecera (32 bytes) | "SUPSNAP1", formato, n.º de productos,  |
+ * |                     | inicio del pool, fecha de generación   |
+ * ├─────────────────────────────────────────────────────────────┤
+ * | n registros de 40 bytes, ordenados por id:                  |
+ * |   id (8) precio en céntimos (8) versión (8) stock (4)       |
+ * |   nombre (4) descripción (4) categoría (4)                  |
+ * |   (los textos son posiciones en el pool; -1 = null)         |
+ * ├─────────────────────────────────────────────────────────────┤
+ * | Pool de textos: longitud (4) + bytes UTF-8. Los repetidos    |
+ * | (categorías, nombres iguales) se guardan una sola vez.      |
+ * ─────────────────────────────────────────────────────────────
+ * Al arrancar el fichero se mapea en memoria (mmap): no se lee entero,
+ * el sistema operativo trae las páginas según se tocan, y con registros de
+ * tamaño fijo el producto i está en una posición conocida (búsqueda
+ * binaria por id sin índices aparte).
+ * Después, reconciliar() compara solo (id, version) con la BD y relee los
+ * productos que han cambiado desde que se generó el snapshot.
+ * El snapshot se regenera cada escritura-minutos recorriendo la tabla por
+ * páginas. Se escribe en un fichero temporal y se renombra al terminar,
+ * así nunca se mapea un fichero a medias.
+ * Límite: un MappedByteBuffer no pasa de 2 GB (unos 10 millones de
+ * productos con descripciones normales).
+ */
+@Component
+public class SnapshotCatalogo {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotCatalogo.class);
+
+    private static final byte[] MAGICO = "SUPSNAP1".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMATO = 1;
+    private static final int CABECERA = 32;
+    private static final int REGISTRO = 40;
+
+    private static final int OFF_PRECIO = 8;
+    private static final int OFF_VERSION = 16;
+    private static final int OFF_STOCK = 24;
+    private static final int OFF_NOMBRE = 28;
+    private static final int OFF_DESCRIPCION = 32;
+    private static final int OFF_CATEGORIA = 36;
+
+    /**
+     * Textos distintos que se recuerdan para no repetirlos en el pool. Con
+     * más, los nuevos se escriben sin buscar duplicados (las descripciones
+     * casi nunca se repiten y no merece la pena guardarlas todas en memoria).
+     */
+    private static final int MAX_TEXTOS_DEDUPLICADOS = 65_536;
+
+    private static final int TAMANO_PAGINA = 10_000;
+
+    private final ProductoRepository productoRepository;
+    private final boolean habilitado;
+    private final Path ruta;
+    private final long escrituraMinutos;
+
+    private volatile Mapeo mapeo;
+    private ScheduledExecutorService planificador;
+
+    /**
+     * habilitado Activa la lectura y la escritura del snapshot
+     * ruta Fichero del snapshot
+     * escrituraMinutos Cada cuánto se regenera (0 = nunca; basta con que lo haga una instancia)
+     */
+    @Autowired
+    public SnapshotCatalogo(ProductoRepository productoRepository,
+                            @Value("${supermercado.snapshot.habilitado:false}") boolean habilitado,
+                            @Value("${supermercado.snapshot.ruta:catalogo.snapshot}") String ruta,
+                            @Value("${supermercado.snapshot.escritura-minutos:10}") long escrituraMinutos) {
+        this.productoRepository = productoRepository;
+        this.habilitado = habilitado;
+        this.ruta = Paths.get(ruta);
+        this.escrituraMinutos = escrituraMinutos;
+    }
+
+
+    // CICLO DE VIDA
+
+    @PostConstruct
+    public void iniciar() {
+        if (!habilitado) {
+            return;
+        }
+        abrir();
+        if (escrituraMinutos > 0) {
+            planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "escritura-snapshot");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            // Sin snapshot previo se genera ya, para que el próximo arranque lo tenga
+            long primera = mapeo == null ? 0 : escrituraMinutos;
+            planificador.scheduleWithFixedDelay(this::escribirSinFallar, primera, escrituraMinutos, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+        }
+    }
+
+    /**
+     * Mapea el fichero si existe y es válido. Si no, el snapshot queda no disponible.
+     */
+    public void abrir() {
+        if (!Files.exists(ruta)) {
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            // El mapeo sigue siendo válido después de cerrar el canal
+            MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            mapeo = Mapeo.validar(buffer);
+            log.info("[SNAPSHOT] Mapeado {} con {} productos", ruta, mapeo.tamano);
+        } catch (IOException | IllegalStateException e) {
+            log.warn("[SNAPSHOT] No se puede usar {}: {}", ruta, e.getMessage());
+            mapeo = null;
+        }
+    }
+
+
+    // LECTURA
+
+    public boolean isDisponible() {
+        return mapeo != null;
+    }
+
+    /**
+     * Número de productos del snapshot (0 si no hay).
+     */
+    public int tamano() {
+        Mapeo actual = mapeo;
+        return actual == null ? 0 : actual.tamano;
+    }
+
+    /**
+     * Cuándo se generó el snapshot mapeado (System.currentTimeMillis()), o 0.
+     */
+    public long generadoEnMillis() {
+        Mapeo actual = mapeo;
+        return actual == null ? 0 : actual.generadoEnMillis;
+    }
+
+    /**
+     * Entrega todos los productos del snapshot, por orden de id.
+     */
+    public void forEach(Consumer<? super Producto> accion) {
+        Mapeo actual = mapeo;
+        if (actual == null) {
+            return;
+        }
+        for (int i = 0; i < actual.tamano; i++) {
+            accion.accept(actual.leer(i));
+        }
+    }
+
+    /**
+     * Busca un producto por id en el snapshot (búsqueda binaria, sin ir a la BD).
+     */
+    public Optional<Producto> buscar(long id) {
+        Mapeo actual = mapeo;
+        if (actual == null) {
+            return Optional.empty();
+        }
+        int i = actual.indice(id);
+        return i >= 0 ? Optional.of(actual.leer(i)) : Optional.empty();
+    }
+
+
+    // RECONCILIACIÓN CON LA BD
+
+    /**
+     * Compara el snapshot con la BD recorriendo solo (id, version), que
+     * MySQL resuelve con la clave primaria, y lee completos únicamente los
+     * productos nuevos o con otra versión. Los dos lados van ordenados por
+     * id, así que basta con avanzar a la vez por ambos (como un merge).
+     */
+    public Reconciliacion reconciliar() {
+        Mapeo actual = mapeo;
+        if (actual == null) {
+            throw new IllegalStateException("No hay snapshot que reconciliar");
+        }
+        List<Long> cambiados = new ArrayList<>();
+        List<Long> borrados = new ArrayList<>();
+        int[] posicion = {0};
+        productoRepository.forEachVersion((id, version) -> {
+            int i = posicion[0];
+            while (i < actual.tamano && actual.id(i) < id) {
+                borrados.add(actual.id(i++));
+            }
+            if (i < actual.tamano && actual.id(i) == id) {
+                if (actual.version(i) != version) {
+                    cambiados.add(id);
+                }
+                i++;
+            } else {
+                cambiados.add(id);
+            }
+            posicion[0] = i;
+        });
+        for (int i = posicion[0]; i < actual.tamano; i++) {
+            borrados.add(actual.id(i));
+        }
+        List<Producto> releidos = cambiados.isEmpty() ? List.of() : productoRepository.findAllById(cambiados);
+        log.info("[SNAPSHOT] Reconciliado: {} cambiados, {} borrados", releidos.size(), borrados.size());
+        return new Reconciliacion(releidos, borrados);
+    }
+
+
+    // ESCRITURA
+
+    /**
+     * Genera un snapshot nuevo desde la BD y lo mapea.
+     */
+    public void escribir() {
+        Path temporal = ruta.resolveSibling(ruta.getFileName() + ".tmp");
+        Path pool = ruta.resolveSibling(ruta.getFileName() + ".pool.tmp");
+        long inicio = System.nanoTime();
+        try {
+            int tamano;
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                canal.position(CABECERA);
+                try (DataOutputStream registros = new DataOutputStream(new BufferedOutputStream(
+                        Channels.newOutputStream(canal), 1 << 16));
+                     DataOutputStream textos = new DataOutputStream(new BufferedOutputStream(
+                             Files.newOutputStream(pool), 1 << 16))) {
+                    tamano = volcarProductos(registros, textos);
+                }
+                // Channels.newOutputStream cierra el canal al cerrar el stream: se reabre
+            }
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE);
+                 FileChannel textos = FileChannel.open(pool, StandardOpenOption.READ)) {
+                long inicioPool = CABECERA + (long) tamano * REGISTRO;
+                long copiados = 0;
+                while (copiados < textos.size()) {
+                    copiados += textos.transferTo(copiados, textos.size() - copiados, canal.position(inicioPool + copiados));
+                }
+                ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+                cabecera.put(MAGICO).putInt(FORMATO).putInt(tamano).putLong(inicioPool)
+                        .putLong(System.currentTimeMillis());
+                cabecera.flip();
+                canal.write(cabecera, 0);
+                canal.force(true);
+            }
+            Files.move(temporal, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("[SNAPSHOT] Escritos {} productos en {} ({} ms)", tamano, ruta,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir el snapshot " + ruta, e);
+        } finally {
+            try {
+                Files.deleteIfExists(pool);
+                Files.deleteIfExists(temporal);
+            } catch (IOException e) {
+                log.warn("[SNAPSHOT] No se pudieron borrar los temporales", e);
+            }
+        }
+        abrir();
+    }
+
+    private void escribirSinFallar() {
+        try {
+            escribir();
+        } catch (RuntimeException e) {
+            log.warn("[SNAPSHOT] Falló la generación del snapshot; se reintentará", e);
+        }
+    }
+
+    /**
+     * Recorre la tabla por páginas de id (consultas cortas, en orden) y
+     * escribe los registros y el pool de textos. Devuelve cuántos productos hay.
+     */
+    private int volcarProductos(DataOutputStream registros, DataOutputStream textos) throws IOException {
+        Map<String, Integer> posiciones = new HashMap<>();
+        int tamano = 0;
+        Long ultimoId = null;
+        List<Producto> pagina;
+        do {
+            pagina = productoRepository.findPageAfterId(ultimoId, TAMANO_PAGINA);
+            for (Producto p : pagina) {
+                registros.writeLong(p.getId());
+                registros.writeLong(p.getPrecio() != null ? p.getPrecio().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue() : 0);
+                registros.writeLong(p.getVersion() != null ? p.getVersion() : 0);
+                registros.writeInt(p.getStock() != null ? p.getStock() : 0);
+                registros.writeInt(texto(p.getNombre(), textos, posiciones));
+                registros.writeInt(texto(p.getDescripcion(), textos, posiciones));
+                registros.writeInt(texto(p.getCategoria(), textos, posiciones));
+                ultimoId = p.getId();
+                tamano++;
+            }
+        } while (pagina.size() == TAMANO_PAGINA);
+        return tamano;
+    }
+
+    private static int texto(String valor, DataOutputStream textos, Map<String, Integer> posiciones) throws IOException {
+        if (valor == null) {
+            return -1;
+        }
+        Integer conocida = posiciones.get(valor);
+        if (conocida != null) {
+            return conocida;
+        }
+        int posicion = textos.size();
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        textos.writeInt(bytes.length);
+        textos.write(bytes);
+        if (posiciones.size() < MAX_TEXTOS_DEDUPLICADOS) {
+            posiciones.put(valor, posicion);
+        }
+        return posicion;
+    }
+
+
+    /**
+     * Vista de solo lectura de un snapshot mapeado. Solo usa lecturas
+     * absolutas (getLong(posicion)...), que no mueven la posición del
+     * buffer, así que varios hilos pueden leer a la vez.
+     */
+    private static final class Mapeo {
+
+        private final ByteBuffer buffer;
+        private final int tamano;
+        private final int inicioPool;
+        private final long generadoEnMillis;
+
+        private Mapeo(ByteBuffer buffer, int tamano, int inicioPool, long generadoEnMillis) {
+            this.buffer = buffer;
+            this.tamano = tamano;
+            this.inicioPool = inicioPool;
+            this.generadoEnMillis = generadoEnMillis;
+        }
+
+        static Mapeo validar(ByteBuffer buffer) {
+            byte[] magico = new byte[MAGICO.length];
+            if (buffer.capacity() < CABECERA) {
+                throw new IllegalStateException("fichero demasiado corto");
+            }
+            buffer.get(0, magico);
+            if (!Arrays.equals(magico, MAGICO) || buffer.getInt(8) != FORMATO) {
+                throw new IllegalStateException("no es un snapshot de este formato");
+            }
+            int tamano = buffer.getInt(12);
+            long inicioPool = buffer.getLong(16);
+            if (inicioPool != CABECERA + (long) tamano * REGISTRO || inicioPool > buffer.capacity()) {
+                throw new IllegalStateException("cabecera inconsistente");
+            }
+            return new Mapeo(buffer, tamano, (int) inicioPool, buffer.getLong(24));
+        }
+
+        long id(int i) {
+            return buffer.getLong(CABECERA + i * REGISTRO);
+        }
+
+        long version(int i) {
+            return buffer.getLong(CABECERA + i * REGISTRO + OFF_VERSION);
+        }
+
+        /**
+         * Posición del producto con ese id, o -1 si no está.
+         */
+        int indice(long id) {
+            int bajo = 0;
+            int alto = tamano - 1;
+            while (bajo <= alto) {
+                int medio = (bajo + alto) >>> 1;
+                long actual = id(medio);
+                if (actual < id) {
+                    bajo = medio + 1;
+                } else if (actual > id) {
+                    alto = medio - 1;
+                } else {
+                    return medio;
+                }
+            }
+            return -1;
+        }
+
+        Producto leer(int i) {
+            int base = CABECERA + i * REGISTRO;
+            Producto producto = new Producto(
+                    buffer.getLong(base),
+                    texto(buffer.getInt(base + OFF_NOMBRE)),
+                    texto(buffer.getInt(base + OFF_DESCRIPCION)),
+                    BigDecimal.valueOf(buffer.getLong(base + OFF_PRECIO), 2),
+                    buffer.getInt(base + OFF_STOCK),
+                    texto(buffer.getInt(base + OFF_CATEGORIA)));
+            producto.setVersion(buffer.getLong(base + OFF_VERSION));
+            producto.limpiarCambios();
+            return producto;
+        }
+
+        private String texto(int posicion) {
+            if (posicion < 0) {
+                return null;
+            }
+            int inicio = inicioPool + posicion;
+            byte[] bytes = new byte[buffer.getInt(inicio)];
+            buffer.get(inicio + 4, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
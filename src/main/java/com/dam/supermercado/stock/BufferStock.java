@@ -0,0 +1,498 @@
+package com.dam.supermercado.stock;
+
+import com.dam.supermercado.repository.ProductoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * ============================================
+ * STOCK: BufferStock (escritura diferida / write-behind)
+ * ============================================
+ * En las cajas, cada artículo escaneado sería un UPDATE a MySQL, y los
+ * productos más vendidos machacan siempre la misma fila de InnoDB.
+ * En modo write-behind los movimientos de stock NO van a la BD al momento:
+ * 1. Cada movimiento se anota en un DIARIO en disco (fichero de solo
+ *    añadir) y se suma a un contador en memoria por producto (LongAdder,
+ *    que reparte las sumas entre varias celdas para que muchos hilos
+ *    puedan sumar a la vez sin bloquearse).
+ * 2. Cada "intervalo" milisegundos, o al acumular "umbral" movimientos,
+ *    se vuelca a MySQL el DELTA NETO de cada producto en un único lote
+ *    transaccional: 500 escaneos de agua se convierten en un solo
+ *    UPDATE stock = stock - 500.
+ * 3. Al arrancar, se releen los diarios que no llegaron a volcarse
+ *    (por ejemplo tras una caída) y se vuelcan.
+ * EL DIARIO: se escribe por segmentos numerados. En cada volcado se cierra el
+ * segmento actual y se abre uno nuevo; los segmentos cerrados se borran
+ * SOLO cuando su contenido ya está confirmado en MySQL.
+ * Las cajas no escriben en el fichero: dejan su movimiento en una cola sin
+ * bloqueos y esperan. Un único hilo escritor ("diario-stock") saca de golpe
+ * todo lo que haya en la cola, lo escribe y hace UN solo flush para todos
+ * (group commit, como el redo log de InnoDB): con mucha concurrencia, cada
+ * flush sirve a decenas de movimientos y las cajas no se esperan entre sí.
+ * LIMITACIONES (es el precio de no ir a la BD en cada movimiento):
+ * - No se comprueba que haya stock: el stock de la BD puede quedar negativo.
+ *   Para reservas con comprobación está MotorReservasStock, que tiene en
+ *   cuenta lo pendiente de este buffer.
+ * - Cada movimiento se pasa al sistema operativo antes de contarlo, así que
+ *   sobrevive a una caída de la aplicación, pero no necesariamente a un corte
+ *   de luz (no se fuerza a disco en cada movimiento, sería demasiado lento).
+ * - Si la aplicación cae justo después de confirmar un volcado y antes de
+ *   borrar su segmento, ese segmento se aplicará otra vez al arrancar.
+ */
+@Component
+public class BufferStock {
+
+    private static final Logger log = LoggerFactory.getLogger(BufferStock.class);
+
+    private final ProductoRepository productoRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean habilitado;
+    private final long intervaloMs;
+    private final long umbral;
+    private final Path diario;
+
+    /**
+     * Deltas pendientes de volcar, por producto.
+     */
+    private final Map<Long, LongAdder> pendientes = new ConcurrentHashMap<>();
+
+    /**
+     * Deltas que se están volcando ahora mismo: ya no están en "pendientes"
+     * pero todavía no están confirmados en la BD.
+     */
+    private final Map<Long, Long> enVuelo = new ConcurrentHashMap<>();
+
+    /**
+     * Los movimientos toman el lock de lectura (muchos a la vez); el cambio
+     * de segmento toma el de escritura, para que ningún movimiento quede
+     * anotado en un segmento y contado en el lote equivocado. Es lo único
+     * que comparten todas las cajas.
+     */
+    private final ReentrantReadWriteLock rotacion = new ReentrantReadWriteLock();
+    private final Object monitorVolcado = new Object();
+
+    /**
+     * Movimientos esperando a que el hilo escritor los pase al diario.
+     * LinkedTransferQueue no usa locks al encolar.
+     */
+    private final BlockingQueue<Anotacion> colaDiario = new LinkedTransferQueue<>();
+
+    private final AtomicLong movimientosDesdeVolcado = new AtomicLong();
+    private final AtomicBoolean volcadoSolicitado = new AtomicBoolean();
+    private final LongAdder movimientos = new LongAdder();
+    private final LongAdder volcados = new LongAdder();
+
+    private final List<Consumer<Map<Long, Long>>> alVolcar = new ArrayList<>();
+
+    private ScheduledExecutorService planificador;
+    private Thread escritorDiario;
+    private volatile BufferedWriter segmentoActual;
+    private long secuencia;
+    private boolean detenido;
+
+    /**
+     * habilitado Activa el modo write-behind
+     * intervaloMs Cada cuánto se vuelca a la BD
+     * umbral Movimientos acumulados que fuerzan un volcado anticipado
+     * diario Ruta base de los ficheros del diario
+     */
+    @Autowired
+    public BufferStock(ProductoRepository productoRepository, TransactionTemplate transactionTemplate,
+                       @Value("${supermercado.stock.write-behind.habilitado:false}") boolean habilitado,
+                       @Value("${supermercado.stock.write-behind.intervalo-ms:1000}") long intervaloMs,
+                       @Value("${supermercado.stock.write-behind.umbral:10000}") long umbral,
+                       @Value("${supermercado.stock.write-behind.diario:stock-deltas.journal}") String diario) {
+        this.productoRepository = productoRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.habilitado = habilitado;
+        this.intervaloMs = intervaloMs;
+        this.umbral = umbral;
+        this.diario = Path.of(diario).toAbsolutePath();
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Registra una acción a ejecutar tras cada volcado confirmado, con los
+     * deltas aplicados (por ejemplo, invalidar cachés de esos productos).
+     */
+    public void alVolcar(Consumer<Map<Long, Long>> accion) {
+        alVolcar.add(accion);
+    }
+
+
+    // CICLO DE VIDA
+
+    /**
+     * Reproduce los diarios pendientes y arranca el volcado periódico.
+     */
+    @PostConstruct
+    public void iniciar() {
+        if (!habilitado) {
+            return;
+        }
+        List<Path> segmentos = segmentosExistentes();
+        for (Path segmento : segmentos) {
+            reproducir(segmento);
+        }
+        secuencia = segmentos.isEmpty() ? 1 : numeroDe(segmentos.get(segmentos.size() - 1)) + 1;
+        segmentoActual = abrirSegmento(secuencia);
+
+        escritorDiario = new Thread(this::escribirDiario, "diario-stock");
+        escritorDiario.setDaemon(true);
+        escritorDiario.start();
+
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "volcado-stock");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::volcarSinExcepciones, 0, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Vuelca lo pendiente antes de cerrar la aplicación.
+     */
+    @PreDestroy
+    public void detener() {
+        if (!habilitado || planificador == null) {
+            return;
+        }
+        planificador.shutdown();
+        try {
+            planificador.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        volcar();
+        rotacion.writeLock().lock();
+        try {
+            // Con el lock de escritura no queda ningún movimiento en la cola
+            detenido = true;
+            escritorDiario.interrupt();
+            segmentoActual.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            rotacion.writeLock().unlock();
+        }
+    }
+
+
+    // MOVIMIENTOS
+
+    /**
+     * Anota un movimiento de stock (negativo para ventas, positivo para reposiciones).
+     * id ID del producto
+     * delta Unidades a sumar al stock
+     */
+    public void registrar(Long id, long delta) {
+        if (!habilitado) {
+            throw new IllegalStateException("El buffer de stock no está habilitado");
+        }
+        if (delta == 0) {
+            return;
+        }
+        rotacion.readLock().lock();
+        try {
+            if (detenido || escritorDiario == null) {
+                throw new IllegalStateException("El buffer de stock no está en marcha");
+            }
+            anotar(id, delta);
+            pendientes.computeIfAbsent(id, k -> new LongAdder()).add(delta);
+        } finally {
+            rotacion.readLock().unlock();
+        }
+        movimientos.increment();
+
+        if (movimientosDesdeVolcado.incrementAndGet() >= umbral && !planificador.isShutdown()
+                && volcadoSolicitado.compareAndSet(false, true)) {
+            planificador.execute(this::volcarSinExcepciones);
+        }
+    }
+
+    /**
+     * Unidades que se han movido y aún no están confirmadas en la BD.
+     * Stock real = stock de la BD + pendiente(id).
+     */
+    public long pendiente(Long id) {
+        LongAdder adder = pendientes.get(id);
+        long pendiente = adder != null ? adder.sum() : 0;
+        return pendiente + enVuelo.getOrDefault(id, 0L);
+    }
+
+    /**
+     * true si no hay ningún delta esperando (para evitar trabajo en las lecturas).
+     */
+    public boolean sinPendientes() {
+        return pendientes.isEmpty() && enVuelo.isEmpty();
+    }
+
+
+    // VOLCADO
+
+    /**
+     * Vuelca a MySQL los deltas netos acumulados.
+     * Número de productos actualizados
+     */
+    public int volcar() {
+        synchronized (monitorVolcado) {
+            volcadoSolicitado.set(false);
+            if (pendientes.isEmpty()) {
+                return 0;
+            }
+            Map<Long, Long> lote = new HashMap<>();
+            long segmentoCerrado;
+
+            rotacion.writeLock().lock();
+            try {
+                segmentoCerrado = secuencia;
+                cerrarSegmento();
+                secuencia++;
+                segmentoActual = abrirSegmento(secuencia);
+
+                // Sin movimientos en curso (tenemos el lock de escritura), así que
+                // podemos pasar los contadores a "enVuelo" y quitarlos. Primero se
+                // suman a enVuelo y luego se quitan: quien llame a pendiente()
+                // entre medias lo verá contado dos veces, nunca ninguna
+                pendientes.entrySet().removeIf(entrada -> {
+                    long delta = entrada.getValue().sum();
+                    if (delta != 0) {
+                        lote.put(entrada.getKey(), delta);
+                        enVuelo.merge(entrada.getKey(), delta, Long::sum);
+                    }
+                    return true;
+                });
+                movimientosDesdeVolcado.set(0);
+            } finally {
+                rotacion.writeLock().unlock();
+            }
+
+            if (!lote.isEmpty()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> productoRepository.ajustarStockEnLote(lote));
+                } catch (RuntimeException e) {
+                    // Se devuelven al buffer; sus segmentos siguen en disco y se
+                    // borrarán cuando un volcado posterior los confirme
+                    lote.forEach((id, delta) -> {
+                        pendientes.computeIfAbsent(id, k -> new LongAdder()).add(delta);
+                        restarEnVuelo(id, delta);
+                    });
+                    throw e;
+                }
+                // Ya están en MySQL: pase lo que pase en las acciones, dejan de estar
+                // en vuelo (si no, pendiente() los contaría dos veces para siempre).
+                // Se restan después de las acciones para que nadie lea la BD vieja
+                // de una caché aún sin invalidar sin sumarle el delta.
+                try {
+                    for (Consumer<Map<Long, Long>> accion : alVolcar) {
+                        try {
+                            accion.accept(lote);
+                        } catch (RuntimeException e) {
+                            log.error("[STOCK] Error en una acción tras el volcado de stock", e);
+                        }
+                    }
+                } finally {
+                    lote.forEach(this::restarEnVuelo);
+                }
+                volcados.increment();
+            }
+
+            borrarSegmentosHasta(segmentoCerrado);
+            return lote.size();
+        }
+    }
+
+    private void volcarSinExcepciones() {
+        try {
+            volcar();
+        } catch (RuntimeException e) {
+            log.error("[STOCK] Error volcando el buffer de stock, se reintentará", e);
+        }
+    }
+
+    private void restarEnVuelo(Long id, long delta) {
+        enVuelo.computeIfPresent(id, (k, actual) -> actual - delta == 0 ? null : actual - delta);
+    }
+
+    public Map<String, Long> estadisticas() {
+        return Map.of("movimientos", movimientos.sum(), "volcados", volcados.sum(),
+                "productosPendientes", (long) pendientes.size());
+    }
+
+
+    // DIARIO EN DISCO
+
+    /**
+     * Deja el movimiento en la cola del hilo escritor y espera a que esté en
+     * el sistema operativo antes de contarlo. Se espera con join() (no se
+     * puede interrumpir): un movimiento ya anotado en el diario tiene que
+     * acabar contado, o el borrado del segmento lo perdería.
+     */
+    private void anotar(Long id, long delta) {
+        Anotacion anotacion = new Anotacion(id, delta);
+        colaDiario.add(anotacion);
+        try {
+            anotacion.escrita.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof UncheckedIOException io ? io
+                    : new IllegalStateException("No se pudo escribir en el diario de stock", e.getCause());
+        }
+    }
+
+    /**
+     * Bucle del hilo escritor: espera al primer movimiento, recoge todos los
+     * que se han acumulado mientras tanto y los pasa al sistema operativo con
+     * un único flush. Sale cuando detener() lo interrumpe.
+     */
+    private void escribirDiario() {
+        List<Anotacion> grupo = new ArrayList<>();
+        while (true) {
+            try {
+                grupo.add(colaDiario.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            colaDiario.drainTo(grupo);
+            try {
+                BufferedWriter segmento = segmentoActual;
+                for (Anotacion anotacion : grupo) {
+                    segmento.write(anotacion.id + ";" + anotacion.delta);
+                    segmento.newLine();
+                }
+                segmento.flush();
+                grupo.forEach(anotacion -> anotacion.escrita.complete(null));
+            } catch (IOException e) {
+                UncheckedIOException error = new UncheckedIOException("No se pudo escribir en el diario de stock", e);
+                grupo.forEach(anotacion -> anotacion.escrita.completeExceptionally(error));
+            }
+            grupo.clear();
+        }
+    }
+
+    private BufferedWriter abrirSegmento(long numero) {
+        try {
+            Path ruta = rutaSegmento(numero);
+            Files.createDirectories(ruta.getParent());
+            return Files.newBufferedWriter(ruta, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el diario de stock", e);
+        }
+    }
+
+    /**
+     * Se llama con el lock de escritura: el hilo escritor no tiene nada
+     * pendiente y no vuelve a tocar el fichero hasta el siguiente movimiento.
+     */
+    private void cerrarSegmento() {
+        try {
+            segmentoActual.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo cerrar el diario de stock", e);
+        }
+    }
+
+    private void reproducir(Path segmento) {
+        try (Stream<String> lineas = Files.lines(segmento, StandardCharsets.UTF_8)) {
+            lineas.forEach(linea -> {
+                int separador = linea.indexOf(';');
+                if (separador <= 0) {
+                    return;
+                }
+                try {
+                    long id = Long.parseLong(linea.substring(0, separador));
+                    long delta = Long.parseLong(linea.substring(separador + 1));
+                    pendientes.computeIfAbsent(id, k -> new LongAdder()).add(delta);
+                } catch (NumberFormatException e) {
+                    // Última línea a medio escribir por una caída: se ignora
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el diario " + segmento, e);
+        }
+    }
+
+    private void borrarSegmentosHasta(long numero) {
+        for (Path segmento : segmentosExistentes()) {
+            if (numeroDe(segmento) <= numero) {
+                try {
+                    Files.deleteIfExists(segmento);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("No se pudo borrar el diario " + segmento, e);
+                }
+            }
+        }
+    }
+
+    private List<Path> segmentosExistentes() {
+        String prefijo = diario.getFileName() + ".";
+        Path directorio = diario.getParent();
+        if (!Files.isDirectory(directorio)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            return ficheros
+                    .filter(f -> f.getFileName().toString().startsWith(prefijo))
+                    .filter(f -> f.getFileName().toString().substring(prefijo.length()).matches("\\d+"))
+                    .sorted((a, b) -> Long.compare(numeroDe(a), numeroDe(b)))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo listar el diario de stock", e);
+        }
+    }
+
+    private Path rutaSegmento(long numero) {
+        return diario.resolveSibling(diario.getFileName() + "." + String.format("%06d", numero));
+    }
+
+    private long numeroDe(Path segmento) {
+        String nombre = segmento.getFileName().toString();
+        return Long.parseLong(nombre.substring(nombre.lastIndexOf('.') + 1));
+    }
+
+    private static final class Anotacion {
+        private final Long id;
+        private final long delta;
+        private final CompletableFuture<Void> escrita = new CompletableFuture<>();
+
+        private Anotacion(Long id, long delta) {
+            this.id = id;
+            this.delta = delta;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.dam.supermercado.stock;
+
+import com.dam.supermercado.repository.ProductoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ============================================
+ * STOCK: MotorReservasStock
+ * ============================================
+ * Reserva y libera stock sin perder actualizaciones en hora punta.
+ * 1. ATOMICIDAD: cada reserva es un
+ *      UPDATE productos SET stock = stock - ? WHERE id = ? AND stock >= ?
+ *    y nunca "leer, restar en Java y escribir".
+ * 2. AGRUPACIÓN (coalescing) POR PRODUCTO: cuando muchas cajas reservan a la
+ *    vez el mismo producto (agua, leche...), todas compiten por la misma fila
+ *    de InnoDB y se ejecutan en fila india. En su lugar, las peticiones de un
+ *    mismo producto se encolan y un solo hilo (el "líder") las junta en UN
+ *    único UPDATE con la suma de cantidades. Si no hay stock para todas, se
+ *    procesan una a una para atender a las que sí caben.
+ *    Cada producto tiene su propia cola, así que productos distintos
+ *    siguen reservándose en paralelo; la cola se quita del mapa al vaciarse.
+ *    Solo se agrupa FUERA de transacción: el líder ejecuta el UPDATE de los
+ *    demás en su propio hilo, y si estuviera dentro de una transacción que
+ *    luego se deshace, los que ya recibieron "true" perderían su reserva.
+ * 3. PEDIDOS: las reservas de un pedido con varias líneas se hacen en una
+ *    transacción (todo o nada), en orden de id para evitar interbloqueos.
+ * 4. WRITE-BEHIND: si BufferStock tiene ventas sin volcar de un producto, el
+ *    stock de la BD está por encima del real; la comprobación del UPDATE
+ *    suma ese pendiente para no reservar unidades que ya se han vendido.
+ */
+@Component
+public class MotorReservasStock {
+
+    /**
+     * Máximo de peticiones que el líder agrupa en un mismo UPDATE.
+     */
+    private static final int MAXIMO_POR_GRUPO = 256;
+
+    /**
+     * Cada cuánto vuelve a mirar un hilo en espera si el líder terminó
+     * sin atender su petición (llegó justo después de vaciar la cola).
+     */
+    private static final long ESPERA_MICROS = 200;
+
+    private final ProductoRepository productoRepository;
+    private final BufferStock bufferStock;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean agrupar;
+
+    private final Map<Long, ColaProducto> colas = new ConcurrentHashMap<>();
+
+    private final LongAdder reservas = new LongAdder();
+    private final LongAdder rechazadas = new LongAdder();
+    private final LongAdder sentencias = new LongAdder();
+
+    /**
+     * productoRepository Repositorio con las operaciones atómicas de stock
+     * bufferStock Movimientos de stock aún sin volcar a la BD
+     * transactionTemplate Transacciones para los pedidos de varias líneas
+     * agrupar Activa la agrupación de reservas por producto
+     */
+    @Autowired
+    public MotorReservasStock(ProductoRepository productoRepository, BufferStock bufferStock,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${supermercado.reservas.agrupar:true}") boolean agrupar) {
+        this.productoRepository = productoRepository;
+        this.bufferStock = bufferStock;
+        this.transactionTemplate = transactionTemplate;
+        this.agrupar = agrupar;
+    }
+
+
+    // RESERVAS INDIVIDUALES
+
+    /**
+     * Reserva unidades de un producto.
+     * id ID del producto
+     * cantidad Unidades a reservar (mayor que 0)
+     * true si se reservó; false si no hay stock suficiente o no existe
+     */
+    public boolean reservar(Long id, int cantidad) {
+        comprobarCantidad(cantidad);
+        boolean reservado = agrupar && !TransactionSynchronizationManager.isActualTransactionActive()
+                ? reservarAgrupado(id, cantidad)
+                : reservarDirecto(id, cantidad);
+        (reservado ? reservas : rechazadas).increment();
+        return reservado;
+    }
+
+    /**
+     * Devuelve unidades reservadas al stock.
+     * true si el producto existe
+     */
+    public boolean liberar(Long id, int cantidad) {
+        comprobarCantidad(cantidad);
+        sentencias.increment();
+        return productoRepository.incrementarStock(id, cantidad) > 0;
+    }
+
+    private boolean reservarDirecto(Long id, int cantidad) {
+        sentencias.increment();
+        return productoRepository.decrementarStock(id, cantidad, pendiente(id)) > 0;
+    }
+
+    private long pendiente(Long id) {
+        return bufferStock.sinPendientes() ? 0 : bufferStock.pendiente(id);
+    }
+
+    private boolean reservarAgrupado(Long id, int cantidad) {
+        ColaProducto cola = colas.computeIfAbsent(id, k -> new ColaProducto());
+        Peticion peticion = new Peticion(cantidad);
+        cola.pendientes.add(peticion);
+
+        while (true) {
+            if (cola.ocupada.compareAndSet(false, true)) {
+                // Somos el líder: atendemos todo lo acumulado (incluida nuestra petición)
+                try {
+                    atenderPendientes(id, cola);
+                } finally {
+                    cola.ocupada.set(false);
+                }
+                // Cola vacía: se retira para que el mapa no crezca con cada producto
+                // reservado alguna vez. Si otro hilo la tenía ya y encola después,
+                // él mismo se hará líder de esta cola y atenderá su petición.
+                if (cola.pendientes.isEmpty()) {
+                    colas.remove(id, cola);
+                }
+            }
+            try {
+                return peticion.resultado.get(ESPERA_MICROS, TimeUnit.MICROSECONDS);
+            } catch (TimeoutException e) {
+                // El líder aún trabaja o no llegó a ver nuestra petición: reintentamos
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Reserva interrumpida para el producto " + id, e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re
+                        : new IllegalStateException("Error reservando stock del producto " + id, e.getCause());
+            }
+        }
+    }
+
+    private void atenderPendientes(Long id, ColaProducto cola) {
+        List<Peticion> grupo = new ArrayList<>();
+        Peticion p;
+        while (grupo.size() < MAXIMO_POR_GRUPO && (p = cola.pendientes.poll()) != null) {
+            grupo.add(p);
+        }
+        if (grupo.isEmpty()) {
+            return;
+        }
+
+        try {
+            int total = 0;
+            for (Peticion peticion : grupo) {
+                total = Math.addExact(total, peticion.cantidad);
+            }
+            sentencias.increment();
+            if (productoRepository.decrementarStock(id, total, pendiente(id)) > 0) {
+                grupo.forEach(peticion -> peticion.resultado.complete(true));
+                return;
+            }
+            if (grupo.size() == 1) {
+                grupo.get(0).resultado.complete(false);
+                return;
+            }
+            // No hay stock para todas juntas: se atienden por orden de llegada
+            for (Peticion peticion : grupo) {
+                peticion.resultado.complete(reservarDirecto(id, peticion.cantidad));
+            }
+        } catch (RuntimeException e) {
+            grupo.forEach(peticion -> peticion.resultado.completeExceptionally(e));
+        }
+    }
+
+
+    // PEDIDOS CON VARIAS LÍNEAS
+
+    /**
+     * Reserva todas las líneas de un pedido o ninguna.
+     * lineas Mapa id de producto -> unidades
+     * true si se reservaron todas; false si alguna no tenía stock (no se reserva nada)
+     */
+    public boolean reservarPedido(Map<Long, Integer> lineas) {
+        // Orden fijo por id: dos pedidos con los mismos productos bloquean
+        // las filas en el mismo orden y no pueden interbloquearse
+        TreeMap<Long, Integer> ordenadas = new TreeMap<>(lineas);
+        ordenadas.values().forEach(MotorReservasStock::comprobarCantidad);
+
+        Boolean reservado = transactionTemplate.execute(status -> {
+            for (Map.Entry<Long, Integer> linea : ordenadas.entrySet()) {
+                sentencias.increment();
+                Long id = linea.getKey();
+                if (productoRepository.decrementarStock(id, linea.getValue(), pendiente(id)) == 0) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+            }
+            return true;
+        });
+        boolean ok = Boolean.TRUE.equals(reservado);
+        (ok ? reservas : rechazadas).increment();
+        return ok;
+    }
+
+    /**
+     * Devuelve al stock todas las líneas de un pedido, en una transacción.
+     */
+    public void liberarPedido(Map<Long, Integer> lineas) {
+        TreeMap<Long, Integer> ordenadas = new TreeMap<>(lineas);
+        ordenadas.values().forEach(MotorReservasStock::comprobarCantidad);
+        transactionTemplate.executeWithoutResult(status -> ordenadas.forEach((id, cantidad) -> {
+            sentencias.increment();
+            productoRepository.incrementarStock(id, cantidad);
+        }));
+    }
+
+
+    // ESTADÍSTICAS
+
+    /**
+     * Reservas aceptadas, rechazadas y UPDATE enviados a MySQL.
+     * Con la agrupación activa, "sentencias" crece bastante menos que
+     * "reservas" cuando hay mucha concurrencia sobre los mismos productos.
+     */
+    public Map<String, Long> estadisticas() {
+        return Map.of("reservas", reservas.sum(), "rechazadas", rechazadas.sum(), "sentencias", sentencias.sum());
+    }
+
+    private static void comprobarCantidad(int cantidad) {
+        if (cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser positiva: " + cantidad);
+        }
+    }
+
+    private static final class ColaProducto {
+        private final Queue<Peticion> pendientes = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean ocupada = new AtomicBoolean();
+    }
+
+    private static final class Peticion {
+        private final int cantidad;
+        private final CompletableFuture<Boolean> resultado = new CompletableFuture<>();
+
+        private Peticion(int cantidad) {
+            this.cantidad = cantidad;
+        }
+    }
+}
@@ -13,10 +13,74 @@ CREATE TABLE productos (
     precio      DECIMAL(10,2) NOT NULL,
     stock       INT DEFAULT 0,
     categoria   VARCHAR(50),
+    -- Bloqueo optimista: cada UPDATE comprueba y suma 1 a la versión
+    -- (en una BD ya creada: ALTER TABLE productos ADD COLUMN version BIGINT NOT NULL DEFAULT 0)
+    version     BIGINT NOT NULL DEFAULT 0,
     
     -- Índices para mejorar rendimiento en búsquedas
     INDEX idx_categoria (categoria),
-    INDEX idx_nombre (nombre)
+    INDEX idx_nombre (nombre),
+    -- Para ORDER BY precio y la paginación por clave (precio, id)
+    INDEX idx_precio (precio),
+    -- Para findByStockGreaterThanZero (WHERE stock > 0)
+    INDEX idx_stock (stock)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_spanish_ci;
+
+
+-- Cambios de precio en bloque (MotorPrecios): cada cambio o promoción es
+-- un lote; estado PROGRAMADO (aún no aplicado), APLICADO o REVERTIDO
+CREATE TABLE lotes_precios (
+    id            BIGINT AUTO_INCREMENT PRIMARY KEY,
+    motivo        VARCHAR(100),
+    -- NULL en los lotes que deshacen otro (revierte)
+    porcentaje    DECIMAL(7,2),
+    -- Criterio de selección de los productos (los no nulos se combinan con AND)
+    categoria     VARCHAR(50),
+    precio_minimo DECIMAL(10,2),
+    precio_maximo DECIMAL(10,2),
+    inicio        DATETIME NOT NULL,
+    -- Fin de la promoción: al llegar se restauran los precios (NULL = permanente)
+    fin           DATETIME,
+    estado        VARCHAR(12) NOT NULL,
+    productos     INT NOT NULL DEFAULT 0,
+    revierte      BIGINT,
+
+    INDEX idx_lotes_estado (estado, inicio)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_spanish_ci;
+
+-- Historial de precios: una fila por producto y lote. Sin clave ajena a
+-- productos, para conservar el historial de los productos borrados
+CREATE TABLE historial_precios (
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+    lote            BIGINT NOT NULL,
+    producto_id     BIGINT NOT NULL,
+    precio_anterior DECIMAL(10,2) NOT NULL,
+    precio_nuevo    DECIMAL(10,2) NOT NULL,
+    fecha           DATETIME NOT NULL,
+
+    -- Para aplicar y revertir un lote
+    INDEX idx_historial_lote (lote, producto_id),
+    -- Para el historial de un producto
+    INDEX idx_historial_producto (producto_id, fecha),
+    -- Para borrar lo que supera la retención
+    INDEX idx_historial_fecha (fecha)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_spanish_ci;
+
+-- Invalidaciones de caché entre instancias (BusInvalidacionJdbc): cada
+-- instancia inserta una fila por escritura y lee las de las demás
+CREATE TABLE invalidaciones_cache (
+    id          BIGINT AUTO_INCREMENT PRIMARY KEY,
+    -- Instancia que hizo la escritura
+    origen      VARCHAR(36) NOT NULL,
+    -- IDs de los productos separados por comas (como mucho 1000 por fila)
+    ids         TEXT,
+    total       BOOLEAN NOT NULL DEFAULT FALSE,
+    categorias  BOOLEAN NOT NULL DEFAULT FALSE,
+    todo        BOOLEAN NOT NULL DEFAULT FALSE,
+    fecha       DATETIME NOT NULL,
+
+    -- Para borrar lo que supera la retención
+    INDEX idx_invalidaciones_fecha (fecha)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_spanish_ci;
 
 